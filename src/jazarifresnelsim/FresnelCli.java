@@ -0,0 +1,723 @@
+package jazarifresnelsim;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jazarifresnelsim.core.AnnualYieldEvaluator;
+import jazarifresnelsim.core.CheckpointManager;
+import jazarifresnelsim.core.FluxMapCalculator;
+import jazarifresnelsim.core.GroundShadowCalculator;
+import jazarifresnelsim.core.ITrackingCommandListener;
+import jazarifresnelsim.core.LayoutOptimizer;
+import jazarifresnelsim.core.MirrorStatistics;
+import jazarifresnelsim.core.SensitivityAnalysis;
+import jazarifresnelsim.core.SetpointServer;
+import jazarifresnelsim.core.SimulationEngine;
+import jazarifresnelsim.core.SweepQueue;
+import jazarifresnelsim.core.SweepWorker;
+import jazarifresnelsim.core.TrackingCommandGenerator;
+import jazarifresnelsim.core.UncertaintyAnalysis;
+import jazarifresnelsim.domain.ClearSkyIrradianceSource;
+import jazarifresnelsim.domain.ClearSkyModels;
+import jazarifresnelsim.domain.EpochTime;
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.IamTable;
+import jazarifresnelsim.domain.IneichenClearSkyModel;
+import jazarifresnelsim.domain.MirrorAngleTable;
+import jazarifresnelsim.domain.OpticsKernels;
+import jazarifresnelsim.domain.ReceiverThermalModel;
+import jazarifresnelsim.domain.WeatherFileIrradianceSource;
+import jazarifresnelsim.models.FieldLayout;
+import jazarifresnelsim.models.FluxMap;
+import jazarifresnelsim.models.GroundShadowMap;
+import jazarifresnelsim.models.LayoutEvaluation;
+import jazarifresnelsim.models.LayoutOptimizationResult;
+import jazarifresnelsim.models.SimulationCheckpoint;
+import jazarifresnelsim.models.SimulationState;
+import jazarifresnelsim.models.SolarPosition;
+import jazarifresnelsim.models.UncertaintyResult;
+
+/**
+ * Command-line entry point for numeric runs.
+ * <p>
+ * Only the core, domain and models packages are loaded: no Processing, JOGL,
+ * native libraries or ControlP5 fonts. Each step is written as one CSV line
+ * ({@code time,altitude,azimuth,dni,angle_0..angle_n}). The {@code dist/fresnel-cli}
+ * launcher produced by the build starts it with a class-data-sharing archive.
+ */
+public class FresnelCli {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter OUTPUT_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    // Options that select what the run does; at most one may be given
+    private static final List<String> MODES = List.of("--deadband", "--serve", "--uncertainty", "--optimize",
+            "--sweep", "--sweep-worker", "--sensitivity", "--shadow-year");
+    // Outputs of the stepping run that event-driven tracking does not produce
+    private static final List<String> NOT_WITH_DEADBAND = List.of("--thermal", "--flux-map", "--iam",
+            "--mirror-stats", "--shadow-map");
+    // Sweep cases run on fresh default engines: only the case defaults and queue options apply
+    private static final List<String> SWEEP_OPTIONS = List.of("--sweep", "--cases", "--chunk", "--lease", "--output",
+            "--date", "--start", "--end", "--step", "--lat", "--lon", "--mirrors", "--spacing");
+    private static final List<String> SWEEP_WORKER_OPTIONS = List.of("--sweep-worker", "--lease");
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: fresnel-cli [options]",
+            "  --date dd.MM.yyyy       simulation date (default: today)",
+            "  --start HH:mm           start time (default: 08:00)",
+            "  --end HH:mm             end time (default: 17:00)",
+            "  --step minutes          step size (default: 10)",
+            "  --lat degrees           latitude",
+            "  --lon degrees           longitude",
+            "  --mirrors n             number of mirrors",
+            "  --spacing cm            mirror spacing",
+            "  --layout file           field layout CSV (x,y,height,width,receiver); replaces --mirrors/--spacing",
+            "  --weather file          EPW/CSV weather file for measured DNI",
+            "  --tmy                   treat the weather file as a typical year",
+            "  --sky model             clear-sky DNI model: meinel (default), ineichen or ashrae",
+            "  --turbidity tl          Linke turbidity for --sky ineichen (default: 3)",
+            "  --elevation m           site elevation for --sky ineichen (default: 0)",
+            "  --kernel name           scalar, vector or fast",
+            "  --checkpoint file       write checkpoints to file",
+            "  --checkpoint-every n    steps between checkpoints (default: 1000)",
+            "  --resume file           continue from a checkpoint",
+            "  --thermal nodes         run the receiver thermal model with n nodes",
+            "  --flow kg/s             fluid mass flow rate (default: 0.05)",
+            "  --inlet celsius         fluid inlet temperature (default: 20)",
+            "  --iam file              ray trace an IAM table, write it to file and add optical efficiency",
+            "  --uncertainty n         Monte Carlo intercept/yield intervals over at most n scenarios",
+            "  --sensitivity           energy and mean cosine of the run with exact partials for",
+            "                          latitude, longitude, receiver height, spacing and support height",
+            "  --optimize cost|land    search mirror count, spacing, receiver and support height for the",
+            "                          best annual energy per cost or per land area",
+            "  --sweep dir             coordinate a sweep over --cases in a durable queue in dir, wait for the",
+            "                          workers and write the merged results; rerun to resume",
+            "  --cases file            sweep cases CSV (latitude,longitude,date,start,end,step,mirrors,spacing,",
+            "                          receiver_height,support_height); missing columns come from the options",
+            "  --chunk n               cases per sweep chunk (default: 10)",
+            "  --sweep-worker dir      run chunks of the sweep in dir until it is complete",
+            "                          (cases run on default engines: site and geometry come only from the cases)",
+            "  --lease seconds         time after which a silent worker's chunk is reassigned (default: 30)",
+            "  --deadband degrees      emit sparse drive commands instead of angles (time,mirror,angle)",
+            "  --motor-step degrees    drive resolution for --deadband (default: 0.01)",
+            "  --serve port            answer binary setpoint requests on localhost:port until killed",
+            "  --angle-table file      precompute a year of 16-bit mirror angles, write them and replay from them",
+            "  --flux-map file         write the receiver flux map of the peak step as CSV",
+            "  --mirror-stats file     write per-mirror cosine, intensity and daily angle statistics as CSV",
+            "  --shadow-map file       write the daylight shade fraction of the ground around the field as CSV",
+            "  --shadow-cell cm        ground cell size for --shadow-map (default: 10)",
+            "  --shadow-year           accumulate --shadow-map over a clear-sky year sampled every --step",
+            "  --output file           write CSV to file instead of stdout",
+            "  --summary               print only a summary line");
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args) throws IOException {
+        SimulationState state = new SimulationState();
+        SimulationEngine engine = new SimulationEngine(state);
+
+        LocalDate date = LocalDate.now();
+        LocalTime start = LocalTime.of(8, 0);
+        LocalTime end = LocalTime.of(17, 0);
+        double step = 10;
+        double latitude = state.getLatitude();
+        double longitude = state.getLongitude();
+        Path layoutFile = null;
+        Path weatherFile = null;
+        boolean typicalYear = false;
+        String skyModel = null;
+        double turbidity = IneichenClearSkyModel.DEFAULT_LINKE_TURBIDITY;
+        double elevation = 0;
+        Path checkpointFile = null;
+        int checkpointEvery = 1000;
+        Path resumeFile = null;
+        Path outputFile = null;
+        Path fluxMapFile = null;
+        Path shadowMapFile = null;
+        double shadowCell = 10;
+        boolean shadowYear = false;
+        Path mirrorStatsFile = null;
+        Path angleTableFile = null;
+        Path iamFile = null;
+        int scenarios = 0;
+        int servePort = -1;
+        double deadband = 0;
+        double motorStep = 0.01;
+        int thermalNodes = 0;
+        double massFlow = 0.05;
+        double inletTemperature = 20;
+        boolean summaryOnly = false;
+        boolean sensitivity = false;
+        LayoutOptimizer.Objective optimize = null;
+        Path sweepDirectory = null;
+        Path casesFile = null;
+        int chunkSize = 10;
+        boolean sweepWorker = false;
+        double leaseSeconds = 30;
+
+        Set<String> given = new HashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            given.add(option);
+            switch (option) {
+                case "--date" -> date = LocalDate.parse(value(args, ++i, option), DATE_FORMAT);
+                case "--start" -> start = LocalTime.parse(value(args, ++i, option), TIME_FORMAT);
+                case "--end" -> end = LocalTime.parse(value(args, ++i, option), TIME_FORMAT);
+                case "--step" -> step = Double.parseDouble(value(args, ++i, option));
+                case "--lat" -> latitude = Double.parseDouble(value(args, ++i, option));
+                case "--lon" -> longitude = Double.parseDouble(value(args, ++i, option));
+                case "--mirrors" -> state.setNumReflectors(Integer.parseInt(value(args, ++i, option)));
+                case "--spacing" -> state.setReflectorSpacing(Float.parseFloat(value(args, ++i, option)));
+                case "--layout" -> layoutFile = Path.of(value(args, ++i, option));
+                case "--weather" -> weatherFile = Path.of(value(args, ++i, option));
+                case "--tmy" -> typicalYear = true;
+                case "--kernel" -> engine.setOpticsKernel(kernel(value(args, ++i, option)));
+                case "--checkpoint" -> checkpointFile = Path.of(value(args, ++i, option));
+                case "--checkpoint-every" -> checkpointEvery = Integer.parseInt(value(args, ++i, option));
+                case "--resume" -> resumeFile = Path.of(value(args, ++i, option));
+                case "--thermal" -> thermalNodes = Integer.parseInt(value(args, ++i, option));
+                case "--flow" -> massFlow = Double.parseDouble(value(args, ++i, option));
+                case "--inlet" -> inletTemperature = Double.parseDouble(value(args, ++i, option));
+                case "--iam" -> iamFile = Path.of(value(args, ++i, option));
+                case "--uncertainty" -> scenarios = Integer.parseInt(value(args, ++i, option));
+                case "--sensitivity" -> sensitivity = true;
+                case "--optimize" -> optimize = objective(value(args, ++i, option));
+                case "--sweep" -> sweepDirectory = Path.of(value(args, ++i, option));
+                case "--cases" -> casesFile = Path.of(value(args, ++i, option));
+                case "--chunk" -> chunkSize = Integer.parseInt(value(args, ++i, option));
+                case "--sweep-worker" -> {
+                    sweepDirectory = Path.of(value(args, ++i, option));
+                    sweepWorker = true;
+                }
+                case "--lease" -> leaseSeconds = Double.parseDouble(value(args, ++i, option));
+                case "--deadband" -> deadband = Double.parseDouble(value(args, ++i, option));
+                case "--motor-step" -> motorStep = Double.parseDouble(value(args, ++i, option));
+                case "--serve" -> servePort = Integer.parseInt(value(args, ++i, option));
+                case "--flux-map" -> fluxMapFile = Path.of(value(args, ++i, option));
+                case "--angle-table" -> angleTableFile = Path.of(value(args, ++i, option));
+                case "--sky" -> skyModel = value(args, ++i, option);
+                case "--turbidity" -> turbidity = Double.parseDouble(value(args, ++i, option));
+                case "--elevation" -> elevation = Double.parseDouble(value(args, ++i, option));
+                case "--mirror-stats" -> mirrorStatsFile = Path.of(value(args, ++i, option));
+                case "--shadow-map" -> shadowMapFile = Path.of(value(args, ++i, option));
+                case "--shadow-cell" -> shadowCell = Double.parseDouble(value(args, ++i, option));
+                case "--shadow-year" -> shadowYear = true;
+                case "--output" -> outputFile = Path.of(value(args, ++i, option));
+                case "--summary" -> summaryOnly = true;
+                case "--help", "-h" -> {
+                    System.out.println(USAGE);
+                    return 0;
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        checkOptions(given);
+
+        WeatherFileIrradianceSource weather = null;
+        CheckpointManager checkpoints = null;
+        FluxMapCalculator fluxMaps = null;
+        GroundShadowCalculator shadows = null;
+        try (Writer out = outputFile != null
+                ? Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+            SimulationCheckpoint resumed = null;
+            if (resumeFile != null) {
+                // Site, time range and geometry for the setup below; the engine and its models resume at the end
+                resumed = CheckpointManager.load(resumeFile);
+                state.restoreCheckpoint(resumed);
+            } else {
+                state.setTimeRange(LocalDateTime.of(date, start), LocalDateTime.of(date, end));
+                state.setSimulationStepMinutes(step);
+                engine.setLocation(latitude, longitude);
+            }
+            if (layoutFile != null) {
+                state.setFieldLayout(FieldLayout.load(layoutFile));
+            }
+            if (weatherFile != null) {
+                weather = new WeatherFileIrradianceSource(weatherFile, typicalYear);
+                engine.setIrradianceSource(weather);
+            }
+            if (skyModel != null) {
+                if (weather != null) {
+                    throw new IllegalArgumentException("--sky cannot be combined with --weather");
+                }
+                engine.setIrradianceSource(new ClearSkyIrradianceSource(
+                        ClearSkyModels.forName(skyModel, elevation, turbidity)));
+            }
+            if (checkpointFile != null) {
+                checkpoints = new CheckpointManager(checkpointFile, checkpointEvery);
+                engine.setCheckpointManager(checkpoints);
+            }
+            if (fluxMapFile != null) {
+                fluxMaps = new FluxMapCalculator();
+                engine.setFluxMapCalculator(fluxMaps);
+            }
+            if (iamFile != null) {
+                IamTable table = engine.createIamTable(2);
+                table.writeCsv(iamFile);
+                engine.setIamTable(table);
+            }
+            ReceiverThermalModel thermal = null;
+            if (thermalNodes > 0) {
+                thermal = new ReceiverThermalModel(thermalNodes, state.getReflectorLength(), state.getReceiverDiameter());
+                thermal.setMassFlowRate(massFlow);
+                thermal.setInletTemperature(inletTemperature);
+                engine.setThermalModel(thermal);
+            }
+            TrackingCommandGenerator commands = null;
+            if (deadband > 0) {
+                commands = new TrackingCommandGenerator(state.getNumReflectors(), deadband, motorStep);
+                engine.setTrackingCommandGenerator(commands);
+            }
+            if (angleTableFile != null) {
+                MirrorAngleTable table = engine.createMirrorAngleTable(5);
+                table.write(angleTableFile);
+                System.err.printf("angle table: %d angles, %d bytes, minutes %d-%d%n", table.getValueCount(),
+                        Files.size(angleTableFile), table.getStartMinute(), table.getEndMinute());
+                engine.setMirrorAngleTable(table);
+            }
+            MirrorStatistics mirrorStats = null;
+            if (mirrorStatsFile != null) {
+                mirrorStats = new MirrorStatistics(state.getNumReflectors());
+                engine.addStepListener(mirrorStats);
+            }
+            if (shadowMapFile != null) {
+                shadows = new GroundShadowCalculator(state, shadowCell, 2 * state.getReceiverHeight());
+                if (!shadowYear) {
+                    engine.addStepListener(shadows);
+                }
+            } else if (shadowYear) {
+                throw new IllegalArgumentException("--shadow-year needs --shadow-map");
+            }
+            if (resumed != null) {
+                engine.resumeFromCheckpoint(resumed);
+            } else {
+                engine.reset();
+            }
+            if (commands != null) {
+                return runTracking(engine, commands, out, summaryOnly, resumed != null);
+            }
+            if (servePort >= 0) {
+                return serve(engine, servePort);
+            }
+            if (scenarios > 0) {
+                return runUncertainty(engine, scenarios, out);
+            }
+            if (optimize != null) {
+                return runOptimizer(state, optimize, out);
+            }
+            if (sweepDirectory != null) {
+                long leaseMillis = (long) (leaseSeconds * 1000);
+                if (sweepWorker) {
+                    return runSweepWorker(SweepQueue.open(sweepDirectory), leaseMillis);
+                }
+                if (casesFile == null) {
+                    throw new IllegalArgumentException("--sweep needs --cases");
+                }
+                Map<String, String> defaults = Map.of(
+                        "latitude", Double.toString(latitude),
+                        "longitude", Double.toString(longitude),
+                        "date", DATE_FORMAT.format(date),
+                        "start", TIME_FORMAT.format(start),
+                        "end", TIME_FORMAT.format(end),
+                        "step", Double.toString(step),
+                        "mirrors", Integer.toString(state.getNumReflectors()),
+                        "spacing", Float.toString(state.getReflectorSpacing()),
+                        "receiver_height", Float.toString(state.getReceiverHeight()),
+                        "support_height", Float.toString(state.getSupportHeight()));
+                SweepQueue queue = SweepQueue.create(sweepDirectory, SweepWorker.caseHeader(),
+                        SweepWorker.readCases(casesFile, defaults), chunkSize);
+                return coordinateSweep(queue, leaseMillis, out);
+            }
+            if (sensitivity) {
+                SensitivityAnalysis.evaluateRun(state).writeCsv(out);
+                return 0;
+            }
+            if (shadowYear) {
+                shadows.accumulateYear(engine.getSolarCalculator(), engine.getOpticsKernel(), state.getFieldLayout(),
+                        state.getSimulationStepMinutes());
+                return writeShadowMap(shadows.getMap(), shadowMapFile);
+            }
+
+            StringBuilder line = new StringBuilder(256);
+            if (!summaryOnly) {
+                out.write(header(state.getNumReflectors(), iamFile != null, thermal != null));
+            }
+            long steps = 0;
+            double energy = 0; // DNI integrated over the run, Wh/m²
+            double heat = 0;   // useful heat, Wh
+            double stepHours = state.getSimulationStepMinutes() / 60.0;
+            FluxMap peakMap = null;
+            double[] sun = new double[3];
+            double[] angles = null;
+            do {
+                state.getCurrentSolarPosition(sun);
+                FluxMap map = state.getFluxMap();
+                if (map != null && (peakMap == null || map.getPeakFluxDensity() > peakMap.getPeakFluxDensity())) {
+                    peakMap = map;
+                }
+                if (sun[0] > 0) {
+                    energy += sun[2] * stepHours;
+                }
+                if (thermal != null) {
+                    heat += Math.max(0, thermal.getUsefulPower()) * stepHours;
+                }
+                if (!summaryOnly) {
+                    line.setLength(0);
+                    angles = state.getMirrorAngles(angles);
+                    appendLine(line, state.getCurrentTime(), sun, angles, state.getMirrorCount());
+                    if (iamFile != null) {
+                        line.append(',').append(state.getOpticalEfficiency());
+                    }
+                    if (thermal != null) {
+                        line.append(',').append(state.getReceiverOutletTemperature());
+                    }
+                    line.append('\n');
+                    out.append(line);
+                }
+                steps++;
+            } while (engine.step());
+
+            if (summaryOnly) {
+                out.write(String.format("steps=%d, kernel=%s, dni_energy=%.1f Wh/m2%n",
+                        steps, engine.getOpticsKernel().getName(), energy));
+                if (thermal != null) {
+                    out.write(String.format("useful_heat=%.1f Wh, outlet_max=%.2f C%n", heat, thermal.getMaxTemperature()));
+                }
+            }
+            if (fluxMapFile != null && peakMap != null) {
+                peakMap.writeCsv(fluxMapFile);
+            }
+            if (mirrorStats != null) {
+                mirrorStats.writeCsv(mirrorStatsFile);
+            }
+            if (shadows != null) {
+                writeShadowMap(shadows.getMap(), shadowMapFile);
+            }
+        } finally {
+            if (shadows != null) {
+                shadows.close();
+            }
+            if (fluxMaps != null) {
+                fluxMaps.close();
+            }
+            if (checkpoints != null) {
+                checkpoints.close();
+            }
+            if (weather != null) {
+                weather.close();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes a ground shadow map and reports its totals on stderr
+     */
+    private static int writeShadowMap(GroundShadowMap map, Path file) throws IOException {
+        map.writeCsv(file);
+        System.err.printf("shadow map: %dx%d cells, %.1f daylight h, mean shade %.4f, "
+                + "shaded >50%%: %.2f m2%n", map.getColumns(), map.getRows(), map.getDaylightHours(),
+                map.getMeanShadeFraction(), map.getShadedArea(0.5));
+        return 0;
+    }
+
+    /**
+     * Serves mirror setpoints for the configured field and location
+     */
+    private static int serve(SimulationEngine engine, int port) throws IOException {
+        try (SetpointServer server = new SetpointServer(engine, port)) {
+            server.start();
+            System.err.println("Serving setpoints on port " + server.getPort());
+            server.join();
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * Traces perturbed copies of the field over the run's sun positions and
+     * prints the converging intervals
+     */
+    private static int runUncertainty(SimulationEngine engine, int scenarios, Writer out) throws IOException {
+        SimulationState state = engine.getState();
+        List<SolarPosition> suns = new ArrayList<>();
+        do {
+            suns.add(state.getCurrentSolarPosition());
+        } while (engine.step());
+
+        try (UncertaintyAnalysis analysis = new UncertaintyAnalysis()) {
+            analysis.setScenarioLimits(Math.min(100, scenarios), scenarios);
+            analysis.addListener(result -> System.err.println(result));
+            UncertaintyResult result = analysis.run(state, suns, state.getSimulationStepMinutes() / 60.0);
+            out.write(String.format("scenarios=%d, intercept=%.4f+-%.4f (sd %.4f), yield=%.1f+-%.1f Wh (sd %.1f)%s%n",
+                    result.getScenarios(), result.getMeanInterceptFactor(), result.getInterceptFactorHalfWidth(),
+                    result.getInterceptFactorStdDev(), result.getMeanYield(), result.getYieldHalfWidth(),
+                    result.getYieldStdDev(), result.isConverged() ? ", converged" : ""));
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * Optimizes the symmetric row for the site, starting from the given
+     * geometry, and prints the best layout
+     */
+    private static int runOptimizer(SimulationState state, LayoutOptimizer.Objective objective, Writer out)
+            throws IOException {
+        AnnualYieldEvaluator evaluator = new AnnualYieldEvaluator(state, 7, 30);
+        try (LayoutOptimizer optimizer = new LayoutOptimizer()) {
+            optimizer.setObjective(objective);
+            optimizer.addListener(result -> {
+                if (result.getIterations() % 10 == 0) {
+                    System.err.println(result);
+                }
+            });
+            LayoutOptimizationResult result = optimizer.optimize(evaluator, state);
+            LayoutEvaluation best = result.getBest();
+            out.write(String.format("mirrors=%d, spacing=%.1f cm, receiver_height=%.1f cm, support_height=%.1f cm%n",
+                    best.getMirrors(), best.getSpacing(), best.getReceiverHeight(), best.getSupportHeight()));
+            out.write(String.format("energy=%.1f kWh/a, aperture=%.2f m2, land=%.2f m2, cost=%.0f, "
+                    + "energy_per_cost=%.4f, energy_per_land=%.2f kWh/m2%n",
+                    best.getAnnualEnergy(), best.getApertureArea(), best.getLandArea(), best.getCost(),
+                    best.getEnergyPerCost(), best.getEnergyPerLandArea()));
+            out.write(String.format("iterations=%d, evaluations=%d, cache_hits=%d, stop=%s%n",
+                    result.getIterations(), result.getEvaluations(), result.getCacheHits(), result.getStopReason()));
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * Waits for the workers to finish the sweep, returning the chunks of dead
+     * workers to the queue, and writes the merged results
+     * @return 1 if chunks failed; their cases are missing from the results
+     */
+    private static int coordinateSweep(SweepQueue queue, long leaseMillis, Writer out) throws IOException {
+        int reported = -1;
+        try {
+            while (!queue.isComplete()) {
+                int reclaimed = queue.reclaimExpired(leaseMillis);
+                int done = queue.getCompletedCount() + queue.getFailedCount();
+                if (done != reported || reclaimed > 0) {
+                    System.err.printf("sweep: %d/%d chunks done, %d running, %d pending, %d failed%s%n",
+                            queue.getCompletedCount(), queue.getChunkCount(), queue.getClaimedCount(),
+                            queue.getPendingCount(), queue.getFailedCount(),
+                            reclaimed > 0 ? ", " + reclaimed + " reclaimed" : "");
+                    reported = done;
+                }
+                Thread.sleep(Math.min(1000, Math.max(50, leaseMillis / 4)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+        queue.reclaimExpired(leaseMillis); // drop leases of chunks finished twice
+        queue.merge(out);
+        int failed = queue.getFailedCount();
+        if (failed > 0) {
+            System.err.printf("sweep: %d chunks given up after %d failed runs, see %s%n", failed,
+                    SweepQueue.MAX_FAILURES, queue.getDirectory().resolve("failed"));
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Runs chunks of the sweep in this process until it is complete
+     */
+    private static int runSweepWorker(SweepQueue queue, long leaseMillis) throws IOException {
+        SweepWorker worker = new SweepWorker(queue, leaseMillis);
+        System.err.println("sweep worker " + worker.getWorkerId() + " on " + queue.getDirectory());
+        try {
+            worker.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+        System.err.println("sweep worker " + worker.getWorkerId() + ": " + worker.getChunksDone() + " chunks");
+        return 0;
+    }
+
+    /**
+     * Event-driven run: instead of stepping at a fixed interval, jumps to the
+     * predicted time of the next drive command (at most one step ahead) and
+     * writes only the commands
+     */
+    private static int runTracking(SimulationEngine engine, TrackingCommandGenerator commands, Writer out,
+            boolean summaryOnly, boolean resumed) throws IOException {
+        SimulationState state = engine.getState();
+        StringBuilder lines = new StringBuilder(1024);
+        if (!summaryOnly) {
+            out.write("time,mirror,angle\n");
+            commands.addListener(new CommandWriter(lines));
+        }
+        if (!resumed) { // a resumed generator keeps its setpoints
+            commands.reset();
+            engine.reset(); // initial setpoints, now with the listener attached
+            out.append(lines);
+        }
+
+        double maxSleep = state.getSimulationStepMinutes() * 60;
+        LocalDateTime time = state.getCurrentTime();
+        while (true) {
+            double now = time.toEpochSecond(ZoneOffset.UTC) + time.getNano() / 1e9;
+            double next = commands.getNextCrossingTime();
+            double sleep = Double.isNaN(next) ? Math.min(1, maxSleep) : Math.max(1, Math.min(maxSleep, next - now));
+            time = time.plusNanos((long) (sleep * 1e9));
+            if (time.isAfter(state.getEndTime())) {
+                break;
+            }
+            lines.setLength(0);
+            engine.advanceTo(time);
+            out.append(lines);
+        }
+
+        String summary = String.format(
+                "evaluations=%d, commands=%d (%.1f per mirror), max_error=%.4f deg, mean_error=%.4f deg%n",
+                commands.getUpdateCount(), commands.getCommandCount(),
+                commands.getCommandCount() / (double) state.getNumReflectors(),
+                commands.getMaxTrackingError(), commands.getMeanTrackingError());
+        if (summaryOnly) {
+            out.write(summary);
+        } else {
+            System.err.print(summary);
+        }
+        return 0;
+    }
+
+    /**
+     * Rejects combinations in which options would be silently ignored: more
+     * than one mode, or outputs the selected mode does not write
+     */
+    private static void checkOptions(Set<String> given) {
+        String mode = null;
+        for (String option : MODES) {
+            if (given.contains(option)) {
+                if (mode != null) {
+                    throw new IllegalArgumentException(mode + " cannot be combined with " + option);
+                }
+                mode = option;
+            }
+        }
+        if ("--deadband".equals(mode)) {
+            for (String option : NOT_WITH_DEADBAND) {
+                if (given.contains(option)) {
+                    throw new IllegalArgumentException(option + " cannot be combined with --deadband");
+                }
+            }
+        } else if ("--sweep".equals(mode) || "--sweep-worker".equals(mode)) {
+            List<String> allowed = "--sweep".equals(mode) ? SWEEP_OPTIONS : SWEEP_WORKER_OPTIONS;
+            for (String option : given) {
+                if (!allowed.contains(option)) {
+                    throw new IllegalArgumentException(option + " is not applied to sweep cases; allowed with "
+                            + mode + ": " + String.join(" ", allowed));
+                }
+            }
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static IOpticsKernel kernel(String name) {
+        return switch (name) {
+            case "scalar" -> OpticsKernels.scalar();
+            case "vector" -> OpticsKernels.vector();
+            case "fast" -> OpticsKernels.fast();
+            default -> throw new IllegalArgumentException("Unknown kernel: " + name);
+        };
+    }
+
+    private static LayoutOptimizer.Objective objective(String name) {
+        return switch (name) {
+            case "cost" -> LayoutOptimizer.Objective.ENERGY_PER_COST;
+            case "land" -> LayoutOptimizer.Objective.ENERGY_PER_LAND_AREA;
+            default -> throw new IllegalArgumentException("Unknown objective: " + name);
+        };
+    }
+
+    private static String header(int mirrors, boolean efficiency, boolean thermal) {
+        StringBuilder header = new StringBuilder("time,altitude,azimuth,dni");
+        for (int i = 0; i < mirrors; i++) {
+            header.append(",angle_").append(i);
+        }
+        if (efficiency) {
+            header.append(",optical_eff");
+        }
+        if (thermal) {
+            header.append(",outlet_temp");
+        }
+        return header.append('\n').toString();
+    }
+
+    /**
+     * Appends one CSV line per drive command; the time stamp is formatted
+     * once per update, not per command
+     */
+    private static final class CommandWriter implements ITrackingCommandListener {
+        private final StringBuilder lines;
+        private double lastSeconds = Double.NaN;
+        private String stamp;
+
+        CommandWriter(StringBuilder lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void onCommand(int mirrorIndex, double angle, double timeSeconds) {
+            if (timeSeconds != lastSeconds) {
+                stamp = OUTPUT_FORMAT.format(EpochTime.toDateTime(timeSeconds));
+                lastSeconds = timeSeconds;
+            }
+            lines.append(stamp).append(',').append(mirrorIndex).append(',').append(angle).append('\n');
+        }
+    }
+
+    private static void appendLine(StringBuilder line, LocalDateTime time, double[] sun,
+            double[] angles, int mirrors) {
+        OUTPUT_FORMAT.formatTo(time, line);
+        line.append(',').append(sun[0])
+                .append(',').append(sun[1])
+                .append(',').append(sun[2]);
+        for (int i = 0; i < mirrors; i++) {
+            line.append(',').append(angles[i]);
+        }
+    }
+}
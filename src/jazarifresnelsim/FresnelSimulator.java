@@ -22,6 +22,12 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
     private IRenderer renderer;
     private PeasyCam cam;
     private ControlP5 cp5;
+    private FluxMapCalculator fluxMapCalculator;
+    private MirrorStatistics mirrorStatistics;
+    private TimelineCache timeline;
+    private double pendingScrub = Double.NaN;
+    private boolean rebuildingTimeline;
+    private boolean rayFanVisible;
 
     public static void main(String[] args) {
         PApplet.main(new String[]{FresnelSimulator.class.getName()});
@@ -44,6 +50,14 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
         simulationController = new SimulationController(state);
         ((SimulationController) simulationController).setGUICallback(this);
 
+        // Receiver flux map for the heat overlay
+        fluxMapCalculator = new FluxMapCalculator();
+        ((SimulationController) simulationController).getEngine().setFluxMapCalculator(fluxMapCalculator);
+
+        // Running per-mirror efficiency for the info panel
+        mirrorStatistics = new MirrorStatistics(state.getNumReflectors());
+        ((SimulationController) simulationController).getEngine().addStepListener(mirrorStatistics);
+
         // Setup camera
         cam = new PeasyCam(this, 0, -REFLECTOR_LENGTH / 2, RECEIVER_HEIGHT / 2, 800);
         cam.setMinimumDistance(10);
@@ -66,6 +80,7 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
         // Start initial calculation without animation
         simulationController.updateSolarPosition();
         simulationController.updateMirrorPositions();
+        rebuildTimeline();
 
         // Disable automatic GUI drawing
         if (cp5 != null) {
@@ -189,6 +204,20 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
 
         // Control buttons
         setupControlButtons(guiGroup, labelColor, currentY - 10);
+
+        // Timeline scrubber along the bottom of the window
+        cp5.addSlider("TIMELINE")
+                .setPosition(GUI_PANEL_WIDTH + 2 * GUI_SPACING, WINDOW_HEIGHT - 2 * GUI_SPACING)
+                .setSize(WINDOW_WIDTH - GUI_PANEL_WIDTH - 4 * GUI_SPACING, TEXT_HEIGHT)
+                .setRange(0, 1)
+                .setValue(0)
+                .setColorBackground(backgroundColor)
+                .setColorForeground(foregroundColor)
+                .setColorActive(activeColor)
+                .setColorLabel(labelColor)
+                .setColorValue(textColor)
+                .getCaptionLabel().align(ControlP5.LEFT, ControlP5.TOP_OUTSIDE);
+        cp5.getController("TIMELINE").getValueLabel().setVisible(false);
     }
 
     private Textfield addTextField(String name, String defaultValue,
@@ -271,6 +300,12 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
                 case "NUMBER OF MIRRORS", "RECEIVER HEIGHT", "RECEIVER DIAMETER", "MIRROR WIDTH", "MIRROR LENGTH", "MIRROR SPACING", "SUPPORT HEIGHT" ->
                     handleSystemParameterUpdate();
 
+                case "TIMELINE" -> {
+                    if (!rebuildingTimeline) {
+                        handleTimelineScrub(event.getController().getValue());
+                    }
+                }
+
                 case "START TIME", "END TIME" -> {
                     System.out.println("\nTime input changed:");
                     System.out.println("Field: " + name + " = " + value);
@@ -314,7 +349,9 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
 
     private void reinitializeSystem() {
         // Renderer'ı yeni state ile yeniden oluştur
-        renderer = new FresnelRenderer(this, state);
+        FresnelRenderer fresnelRenderer = new FresnelRenderer(this, state);
+        fresnelRenderer.setRayFanVisible(rayFanVisible);
+        renderer = fresnelRenderer;
         // Controller'ı güncelle
         simulationController.updateMirrorPositions();
         simulationController.updateSolarPosition();
@@ -385,6 +422,7 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
 
             // Sistem parametrelerini güncelle
             reinitializeSystem();
+            rebuildTimeline();
 
             System.out.println("System reinitialization complete.");
 
@@ -394,6 +432,52 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
         }
     }
 
+    /**
+     * Precomputes the days of the start date in the background and maps the
+     * slider onto their steps
+     */
+    private void rebuildTimeline() {
+        if (timeline != null) {
+            timeline.close();
+        }
+        LocalDateTime dayStart = state.getStartTime().toLocalDate().atStartOfDay();
+        timeline = ((SimulationController) simulationController).getEngine()
+                .createTimeline(dayStart, dayStart.plusDays(TIMELINE_DAYS));
+        pendingScrub = Double.NaN;
+        if (cp5 != null) {
+            rebuildingTimeline = true;
+            cp5.get(Slider.class, "TIMELINE")
+                    .setRange(0, Math.max(1, timeline.getStepCount() - 1))
+                    .setValue((float) timeline.getPosition(state.getCurrentTime()));
+            rebuildingTimeline = false;
+        }
+    }
+
+    private void handleTimelineScrub(float position) {
+        if (timeline == null) {
+            return;
+        }
+        simulationController.stopSimulation();
+        pendingScrub = position;
+        applyPendingScrub();
+    }
+
+    /**
+     * Shows the scrubbed step, or keeps it pending until the background
+     * computation has reached it
+     */
+    private void applyPendingScrub() {
+        if (Double.isNaN(pendingScrub)
+                || !((SimulationController) simulationController).getEngine().showTimeline(timeline, pendingScrub)) {
+            return;
+        }
+        pendingScrub = Double.NaN;
+        Textfield currentTimeField = cp5.get(Textfield.class, "CURRENT TIME");
+        if (currentTimeField != null) {
+            currentTimeField.setText(state.getCurrentTime().format(DateTimeFormatter.ofPattern("HH:mm")));
+        }
+    }
+
     private void handleStart() {
         try {
             System.out.println("\nStart button pressed - updating all parameters...");
@@ -421,11 +505,30 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
         }
     }
 
+    @Override
+    public void keyPressed() {
+        // R toggles the daily ray fan, unless a text field is being edited
+        if ((key == 'r' || key == 'R') && !isTextFieldFocused()) {
+            rayFanVisible = !rayFanVisible;
+            ((FresnelRenderer) renderer).setRayFanVisible(rayFanVisible);
+        }
+    }
+
+    private boolean isTextFieldFocused() {
+        for (Textfield field : cp5.getAll(Textfield.class)) {
+            if (field.isFocus()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void draw() {
         background(135, 206, 235); // Sky blue background
 
         simulationController.update();
+        applyPendingScrub();
         renderer.render();
 
         // GUI should be drawn after 3D scene and not affected by camera
@@ -455,6 +558,14 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
                     infoX, infoY + 40);
             text(String.format("Sun Azimuth: %.1f°", sunPos.getAzimuthAngle()),
                     infoX, infoY + 60);
+            double fieldCosine = mirrorStatistics.getFieldCosine();
+            if (!Double.isNaN(fieldCosine)) {
+                text(String.format("Mean Cosine Efficiency: %.3f", fieldCosine), infoX, infoY + 80);
+            }
+        }
+        if (timeline != null && !timeline.isComplete()) {
+            text(String.format("Precomputing timeline: %d%%",
+                    100 * timeline.getComputedSteps() / timeline.getStepCount()), infoX, infoY - 20);
         }
     }
 
@@ -463,6 +574,12 @@ public class FresnelSimulator extends PApplet implements IGUIUpdateCallback {
         if (cp5 != null) {
             cp5.dispose();
         }
+        if (fluxMapCalculator != null) {
+            fluxMapCalculator.close();
+        }
+        if (timeline != null) {
+            timeline.close();
+        }
         super.dispose();
     }
 }
@@ -0,0 +1,277 @@
+// AnnualYieldEvaluator.java
+package jazarifresnelsim.core;
+
+import java.util.Arrays;
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.OpticsKernels;
+import jazarifresnelsim.domain.ReceiverRayTracer;
+import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.models.FieldLayout;
+import jazarifresnelsim.models.LayoutEvaluation;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Fast headless estimate of the annual yield and cost of a symmetric
+ * field, for the layout optimizer.
+ * <p>
+ * The clear-sky year at the site is sampled once: one representative day
+ * per {@code dayStride} days, every {@code stepMinutes} while the sun is
+ * up, each sample weighted by the hours it stands for. A candidate is then
+ * evaluated without an engine: the kernel aims the mirrors, the ray tracer
+ * gives the power reaching the tube (cosine, spillage and end losses), and
+ * the part of every mirror shaded or blocked by its neighbours in the
+ * transversal plane is taken off. Mirror width and length and the receiver
+ * diameter come from the state; the mirror count, spacing, receiver height
+ * and support height are the candidate. Immutable; evaluations may run
+ * concurrently.
+ * <p>
+ * Cost = mirror area x mirror cost + support area (height x length per
+ * mirror) x support cost + receiver length x receiver cost + receiver
+ * structure area (height x length) x structure cost + land area x land
+ * cost, in any currency unit.
+ */
+public class AnnualYieldEvaluator {
+
+    private final double mirrorWidth;      // cm
+    private final double mirrorLength;     // cm
+    private final double receiverDiameter; // cm
+    private final double[] altitude;       // per daylight sample, degrees
+    private final double[] azimuth;
+    private final double[] sunX;
+    private final double[] sunY;
+    private final double[] sunZ;
+    private final double[] dni;
+    private final double[] hours;          // hours of the year each sample stands for
+    private final IOpticsKernel kernel = OpticsKernels.getDefault();
+
+    private double mirrorCost = 120;           // per m² of aperture
+    private double supportCost = 40;           // per m² of support height x mirror length
+    private double receiverCost = 400;         // per m of receiver
+    private double receiverSupportCost = 80;   // per m² of receiver height x receiver length
+    private double landCost = 5;               // per m² of land
+
+    /**
+     * @param state Site, mirror width and length and receiver diameter
+     * @param dayStride Days represented by one sampled day
+     * @param stepMinutes Sample spacing within a day
+     */
+    public AnnualYieldEvaluator(SimulationState state, int dayStride, double stepMinutes) {
+        if (dayStride < 1 || !(stepMinutes > 0)) {
+            throw new IllegalArgumentException("Invalid yield sampling");
+        }
+        this.mirrorWidth = state.getReflectorWidth();
+        this.mirrorLength = state.getReflectorLength();
+        this.receiverDiameter = state.getReceiverDiameter();
+
+        SolarCalculator calculator = SolarCalculator.forSite(state.getLatitude(), state.getLongitude());
+        int perDay = (int) Math.ceil(24 * 60 / stepMinutes);
+        int capacity = ((365 + dayStride - 1) / dayStride) * perDay;
+        double[] alt = new double[capacity];
+        double[] az = new double[capacity];
+        double[] irradiance = new double[capacity];
+        double[] weight = new double[capacity];
+        double[] sample = new double[3];
+        int count = 0;
+        for (int first = 1; first <= 365; first += dayStride) {
+            int days = Math.min(dayStride, 366 - first);
+            int day = first + days / 2;
+            for (int s = 0; s < perDay; s++) {
+                double hour = (s + 0.5) * stepMinutes / 60;
+                calculator.calculateSolarPosition(day, hour, sample);
+                if (sample[0] > 0) {
+                    alt[count] = sample[0];
+                    az[count] = sample[1];
+                    irradiance[count] = sample[2];
+                    weight[count] = days * stepMinutes / 60;
+                    count++;
+                }
+            }
+        }
+        this.altitude = Arrays.copyOf(alt, count);
+        this.azimuth = Arrays.copyOf(az, count);
+        this.dni = Arrays.copyOf(irradiance, count);
+        this.hours = Arrays.copyOf(weight, count);
+        this.sunX = new double[count];
+        this.sunY = new double[count];
+        this.sunZ = new double[count];
+        double[] vector = new double[3];
+        for (int i = 0; i < count; i++) {
+            ReceiverRayTracer.sunVector(altitude[i], azimuth[i], vector);
+            sunX[i] = vector[0];
+            sunY[i] = vector[1];
+            sunZ[i] = vector[2];
+        }
+    }
+
+    /**
+     * Sets the cost model (see the class comment)
+     */
+    public void setCosts(double mirrorPerSquareMeter, double supportPerSquareMeter, double receiverPerMeter,
+            double receiverSupportPerSquareMeter, double landPerSquareMeter) {
+        this.mirrorCost = mirrorPerSquareMeter;
+        this.supportCost = supportPerSquareMeter;
+        this.receiverCost = receiverPerMeter;
+        this.receiverSupportCost = receiverSupportPerSquareMeter;
+        this.landCost = landPerSquareMeter;
+    }
+
+    public double getMirrorWidth() {
+        return mirrorWidth;
+    }
+
+    public double getReceiverDiameter() {
+        return receiverDiameter;
+    }
+
+    /**
+     * Number of daylight samples per evaluation
+     */
+    public int getSampleCount() {
+        return altitude.length;
+    }
+
+    /**
+     * @param mirrors Mirror count
+     * @param spacing Pivot spacing in cm
+     * @param receiverHeight Receiver axis height in cm
+     * @param supportHeight Mirror support height in cm (pivots 2 cm above)
+     */
+    public LayoutEvaluation evaluate(int mirrors, double spacing, double receiverHeight, double supportHeight) {
+        double pivotHeight = supportHeight + 2;
+        FieldLayout layout = FieldLayout.symmetric(mirrors, spacing, pivotHeight, mirrorWidth, receiverHeight);
+        ReceiverRayTracer tracer = new ReceiverRayTracer(mirrorWidth, mirrorLength, receiverHeight,
+                receiverDiameter / 2, mirrorLength, 1, 1, 8, 16);
+
+        // Mirrors from west to east, so neighbours are adjacent in this order
+        double[] x = layout.getXPositions();
+        Integer[] boxed = new Integer[mirrors];
+        for (int i = 0; i < mirrors; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, (a, b) -> Double.compare(x[a], x[b]));
+        int[] order = new int[mirrors];
+        for (int k = 0; k < mirrors; k++) {
+            order[k] = boxed[k];
+        }
+
+        double[] angles = new double[mirrors];
+        double[] sin = new double[mirrors];
+        double[] cos = new double[mirrors];
+        double[] intervals = new double[8];
+        double energy = 0; // Wh
+        for (int s = 0; s < altitude.length; s++) {
+            kernel.calculateMirrorAngles(altitude[s], azimuth[s], layout.getTargetX(), layout.getTargetZ(),
+                    angles, mirrors);
+            for (int i = 0; i < mirrors; i++) {
+                double angle = Math.toRadians(angles[i]);
+                sin[i] = Math.sin(angle);
+                cos[i] = Math.cos(angle);
+            }
+            double power = 0;
+            for (int k = 0; k < mirrors; k++) {
+                int i = order[k];
+                double intercepted = tracer.traceMirror(sunX[s], sunY[s], sunZ[s], dni[s],
+                        x[i], pivotHeight, angles[i], null);
+                if (intercepted <= 0) {
+                    continue;
+                }
+                double cosIncidence = sunX[s] * sin[i] + sunZ[s] * cos[i];
+                double rayX = -sunX[s] + 2 * cosIncidence * sin[i];
+                double rayZ = -sunZ[s] + 2 * cosIncidence * cos[i];
+                int n = 0;
+                for (int neighbour = k - 1; neighbour <= k + 1; neighbour += 2) {
+                    if (neighbour < 0 || neighbour >= mirrors) {
+                        continue;
+                    }
+                    int j = order[neighbour];
+                    n = occluded(x[i], sin[i], cos[i], x[j], sin[j], cos[j], pivotHeight,
+                            sunX[s], sunZ[s], intervals, n);
+                    n = occluded(x[i], sin[i], cos[i], x[j], sin[j], cos[j], pivotHeight,
+                            rayX, rayZ, intervals, n);
+                }
+                power += intercepted * (1 - unionLength(intervals, n) / mirrorWidth);
+            }
+            energy += power * hours[s];
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        for (double position : x) {
+            minX = Math.min(minX, position);
+            maxX = Math.max(maxX, position);
+        }
+        double length = mirrorLength / 100;
+        double apertureArea = mirrors * mirrorWidth / 100 * length;
+        double landArea = mirrors > 0 ? (maxX - minX + mirrorWidth) / 100 * length : 0;
+        double cost = apertureArea * mirrorCost
+                + mirrors * supportHeight / 100 * length * supportCost
+                + length * receiverCost
+                + receiverHeight / 100 * length * receiverSupportCost
+                + landArea * landCost;
+        return new LayoutEvaluation(mirrors, spacing, receiverHeight, supportHeight, energy / 1000,
+                apertureArea, landArea, cost);
+    }
+
+    /**
+     * Adds the part of mirror a whose rays in direction (dirX, dirZ) pass
+     * through mirror b, as an interval of a's width coordinate. Both pivots
+     * are at the same height; a point of a at width coordinate u lies at
+     * (xA + u cosA, h - u sinA), like in the ray tracer.
+     * @return the new number of intervals
+     */
+    private int occluded(double xA, double sinA, double cosA, double xB, double sinB, double cosB,
+            double height, double dirX, double dirZ, double[] intervals, int n) {
+        if ((xB - xA) * dirX <= 0) {
+            return n; // b is not in front of a in this direction
+        }
+        // Coordinate across the direction: q = px dirZ - pz dirX
+        double slopeA = cosA * dirZ + sinA * dirX;
+        if (Math.abs(slopeA) < 1e-12) {
+            return n; // a is seen edge-on
+        }
+        double half = mirrorWidth / 2;
+        double qA = xA * dirZ - height * dirX;
+        double qB = xB * dirZ - height * dirX;
+        double spreadB = half * Math.abs(cosB * dirZ + sinB * dirX);
+        double u0 = (qB - spreadB - qA) / slopeA;
+        double u1 = (qB + spreadB - qA) / slopeA;
+        double lo = Math.max(-half, Math.min(u0, u1));
+        double hi = Math.min(half, Math.max(u0, u1));
+        if (hi > lo) {
+            intervals[2 * n] = lo;
+            intervals[2 * n + 1] = hi;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Total length covered by n intervals (at most four)
+     */
+    private static double unionLength(double[] intervals, int n) {
+        // Insertion sort by start; n is tiny
+        for (int i = 1; i < n; i++) {
+            double lo = intervals[2 * i];
+            double hi = intervals[2 * i + 1];
+            int j = i - 1;
+            while (j >= 0 && intervals[2 * j] > lo) {
+                intervals[2 * j + 2] = intervals[2 * j];
+                intervals[2 * j + 3] = intervals[2 * j + 1];
+                j--;
+            }
+            intervals[2 * j + 2] = lo;
+            intervals[2 * j + 3] = hi;
+        }
+        double total = 0;
+        double end = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double lo = Math.max(intervals[2 * i], end);
+            double hi = intervals[2 * i + 1];
+            if (hi > lo) {
+                total += hi - lo;
+                end = hi;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,162 @@
+// CheckpointManager.java
+package jazarifresnelsim.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import jazarifresnelsim.models.SimulationCheckpoint;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Periodically writes {@link SimulationCheckpoint}s of a running simulation.
+ * <p>
+ * The stepping thread only copies the state (under its lock) and hands the
+ * snapshot to a background writer; it never waits for disk I/O. If the writer
+ * is still busy, the newer snapshot replaces the pending one. Files are
+ * written to a temporary sibling, suffixed with a CRC32 and atomically moved
+ * into place, so the checkpoint on disk is always complete. A failed write
+ * is reported on stderr and thrown again by {@link #close}, so a run never
+ * ends looking protected when it was not.
+ */
+public class CheckpointManager implements AutoCloseable {
+
+    private final Path file;
+    private final int stepInterval;
+    private final ExecutorService writer;
+    private final AtomicReference<SimulationCheckpoint> pending = new AtomicReference<>();
+    private volatile IOException lastError;
+    private long stepCount;
+
+    /**
+     * @param file Checkpoint file to (re)write
+     * @param stepInterval Number of simulation steps between checkpoints
+     */
+    public CheckpointManager(Path file, int stepInterval) {
+        if (stepInterval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + stepInterval);
+        }
+        this.file = file;
+        this.stepInterval = stepInterval;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Called by the engine after every simulation step
+     */
+    public void onStep(SimulationEngine engine) {
+        stepCount++;
+        if (stepCount % stepInterval == 0) {
+            checkpoint(engine.createCheckpoint());
+        }
+    }
+
+    /**
+     * Snapshots the state now and schedules it for writing. Without an
+     * engine the thermal and tracking models are not included.
+     */
+    public void checkpoint(SimulationState state) {
+        checkpoint(state.createCheckpoint());
+    }
+
+    /**
+     * Schedules a snapshot for writing
+     */
+    public void checkpoint(SimulationCheckpoint checkpoint) {
+        if (pending.getAndSet(checkpoint) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * Returns the last write failure, or null if all writes succeeded
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads and verifies a checkpoint file
+     * @throws IOException if the file is truncated, corrupt or of another version
+     */
+    public static SimulationCheckpoint load(Path file) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), new CRC32());
+                DataInputStream in = new DataInputStream(checked)) {
+            SimulationCheckpoint checkpoint = SimulationCheckpoint.readFrom(in);
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Checkpoint checksum mismatch: " + file);
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Writes a checkpoint synchronously
+     */
+    public static void save(SimulationCheckpoint checkpoint, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            checkpoint.writeTo(out);
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writePending() {
+        SimulationCheckpoint checkpoint = pending.getAndSet(null);
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            save(checkpoint, file);
+        } catch (IOException e) {
+            lastError = e;
+            System.err.println("Error writing checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes the pending checkpoint and stops the writer thread
+     * @throws IOException the last write failure, if any write failed
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException error = lastError;
+        if (error != null) {
+            throw new IOException("Checkpoint not written: " + file, error);
+        }
+    }
+}
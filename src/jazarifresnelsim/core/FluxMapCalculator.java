@@ -0,0 +1,191 @@
+// FluxMapCalculator.java
+package jazarifresnelsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jazarifresnelsim.domain.ReceiverRayTracer;
+import jazarifresnelsim.models.FieldLayout;
+import jazarifresnelsim.models.FluxMap;
+import jazarifresnelsim.models.MirrorPosition;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Computes the receiver {@link FluxMap} for the current state.
+ * <p>
+ * Every mirror is traced relative to the receiver it aims at, so with
+ * several receivers the map is the sum of their flux. Per-mirror widths and
+ * positions along the receiver axis are not traced; the state's mirror
+ * width is used and every mirror is centered on its receiver.
+ * <p>
+ * Mirrors are split into contiguous chunks, one per worker. Each worker
+ * traces its chunk into its own preallocated histogram, so there is no
+ * sharing or locking while tracing; the histograms are summed once all
+ * workers are done. Small fields are traced on the calling thread.
+ * Not thread-safe: one {@link #compute} at a time.
+ */
+public class FluxMapCalculator implements AutoCloseable {
+
+    public static final int DEFAULT_AXIAL_BINS = 60;
+    public static final int DEFAULT_ANGULAR_BINS = 36;
+    private static final int DEFAULT_SAMPLES_ACROSS = 16;
+    private static final int DEFAULT_SAMPLES_ALONG = 32;
+    private static final int MIN_MIRRORS_PER_WORKER = 4;
+
+    private final int axialBins;
+    private final int angularBins;
+    private final int samplesAcross;
+    private final int samplesAlong;
+    private final int workers;
+    private final ExecutorService executor;
+    private final double[][] histograms;
+    private final List<Callable<Void>> tasks;
+    private final double[] merged;
+
+    // Inputs of the running compute(), read by the worker tasks
+    private ReceiverRayTracer tracer;
+    private final double[] sun = new double[3];
+    private double dni;
+    private double[] mirrorX = new double[0];
+    private double[] mirrorHeight = new double[0];
+    private double[] mirrorAngle = new double[0];
+    private int mirrorCount;
+
+    public FluxMapCalculator() {
+        this(DEFAULT_AXIAL_BINS, DEFAULT_ANGULAR_BINS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param axialBins Bins along the receiver length
+     * @param angularBins Bins around the receiver circumference
+     * @param workers Number of worker threads
+     */
+    public FluxMapCalculator(int axialBins, int angularBins, int workers) {
+        this.axialBins = axialBins;
+        this.angularBins = angularBins;
+        this.samplesAcross = DEFAULT_SAMPLES_ACROSS;
+        this.samplesAlong = DEFAULT_SAMPLES_ALONG;
+        this.workers = Math.max(1, workers);
+        this.histograms = new double[this.workers][axialBins * angularBins];
+        this.merged = new double[axialBins * angularBins];
+        this.tasks = new ArrayList<>(this.workers);
+        for (int w = 0; w < this.workers; w++) {
+            final int worker = w;
+            tasks.add(() -> {
+                traceChunk(worker);
+                return null;
+            });
+        }
+        this.executor = this.workers > 1 ? Executors.newFixedThreadPool(this.workers, r -> {
+            Thread thread = new Thread(r, "flux-map-worker");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Traces all mirrors of the state onto the receiver
+     * @return the flux map, or null if the sun is below the horizon or the thread was interrupted
+     * @throws IllegalStateException if a worker failed; the cause is the worker's exception
+     */
+    public FluxMap compute(SimulationState state) {
+        if (state.getCurrentSolarPosition() == null) {
+            return null;
+        }
+        double altitude = state.getCurrentSolarPosition().getAltitudeAngle();
+        double azimuth = state.getCurrentSolarPosition().getAzimuthAngle();
+        if (altitude <= 0) {
+            return null;
+        }
+        ReceiverRayTracer.sunVector(altitude, azimuth, sun);
+        dni = state.getCurrentSolarPosition().getSolarIntensity();
+        tracer = tracerFor(state);
+
+        List<MirrorPosition> mirrors = state.getMirrorPositions();
+        FieldLayout layout = state.getFieldLayout();
+        double receiverHeight = tracer.getReceiverHeight();
+        mirrorCount = Math.min(mirrors.size(), layout.getMirrorCount());
+        if (mirrorX.length < mirrorCount) {
+            mirrorX = new double[mirrorCount];
+            mirrorHeight = new double[mirrorCount];
+            mirrorAngle = new double[mirrorCount];
+        }
+        for (int i = 0; i < mirrorCount; i++) {
+            MirrorPosition mirror = mirrors.get(i);
+            int index = mirror.getMirrorIndex();
+            mirrorX[i] = layout.getRelativeX(index);
+            mirrorHeight[i] = layout.getRelativeHeight(index, receiverHeight);
+            mirrorAngle[i] = mirror.getRotationAngle();
+        }
+
+        if (executor == null || mirrorCount < 2 * MIN_MIRRORS_PER_WORKER) {
+            Arrays.fill(histograms[0], 0);
+            traceRange(0, mirrorCount, histograms[0]);
+            return new FluxMap(axialBins, angularBins, tracer.getReceiverLength(),
+                    tracer.getReceiverRadius(), histograms[0]);
+        }
+
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error computing flux map", e.getCause());
+        }
+
+        Arrays.fill(merged, 0);
+        for (double[] histogram : histograms) {
+            for (int c = 0; c < merged.length; c++) {
+                merged[c] += histogram[c];
+            }
+        }
+        return new FluxMap(axialBins, angularBins, tracer.getReceiverLength(),
+                tracer.getReceiverRadius(), merged);
+    }
+
+    private ReceiverRayTracer tracerFor(SimulationState state) {
+        double receiverRadius = state.getReceiverDiameter() / 2.0;
+        double receiverLength = state.getReflectorLength();
+        ReceiverRayTracer current = tracer;
+        if (current != null && current.getReceiverRadius() == receiverRadius
+                && current.getReceiverLength() == receiverLength
+                && current.getReceiverHeight() == state.getReceiverHeight()
+                && current.getMirrorWidth() == state.getReflectorWidth()) {
+            return current;
+        }
+        return new ReceiverRayTracer(state.getReflectorWidth(), state.getReflectorLength(),
+                state.getReceiverHeight(), receiverRadius, receiverLength,
+                axialBins, angularBins, samplesAcross, samplesAlong);
+    }
+
+    private void traceChunk(int worker) {
+        double[] histogram = histograms[worker];
+        Arrays.fill(histogram, 0);
+        int chunk = (mirrorCount + workers - 1) / workers;
+        int from = Math.min(mirrorCount, worker * chunk);
+        int to = Math.min(mirrorCount, from + chunk);
+        traceRange(from, to, histogram);
+    }
+
+    private void traceRange(int from, int to, double[] histogram) {
+        for (int i = from; i < to; i++) {
+            tracer.traceMirror(sun[0], sun[1], sun[2], dni,
+                    mirrorX[i], mirrorHeight[i], mirrorAngle[i], histogram);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,508 @@
+// GroundShadowCalculator.java
+package jazarifresnelsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.ReceiverRayTracer;
+import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.models.FieldLayout;
+import jazarifresnelsim.models.GroundShadowMap;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Accumulates the shadows the field casts on the ground into a
+ * {@link GroundShadowMap}, for land-use and soiling planning.
+ * <p>
+ * For every daylight step each mirror, each support post (one under each
+ * end of a mirror, from the ground to its pivot) and each receiver tube is
+ * projected along the sun onto the ground as a convex quadrilateral; a
+ * receiver shadow is the strip of its axis widened by the tube's projected
+ * diameter. Grid cells whose center falls inside any of the quads are
+ * shaded for the step's duration; overlapping shadows count once. The grid
+ * covers the field plus a margin, and shadow parts beyond it are dropped.
+ * <p>
+ * Steps are collected in batches of quads. A batch is rasterized in
+ * parallel: the grid is split into bands of rows and each worker fills its
+ * own bands of a float tile buffer, so there is no sharing or locking; once
+ * every band is done the bands are added into the double-precision totals.
+ * A batch that fails to rasterize is dropped whole, its time no longer
+ * counts as daylight, and the failure is thrown from the call that flushed
+ * it. Works as an
+ * {@link IStepListener} (each step weighted by the time since the previous
+ * one, like {@link MirrorStatistics}) or over a clear-sky year with
+ * {@link #accumulateYear}. Not thread-safe: one caller at a time.
+ */
+public class GroundShadowCalculator implements IStepListener, AutoCloseable {
+
+    public static final double DEFAULT_SUPPORT_WIDTH = 4; // cm
+    private static final int MAX_BATCH_STEPS = 256;
+    private static final int MAX_BATCH_FLOATS = 4_000_000;
+    private static final int BANDS_PER_WORKER = 4;
+
+    // Field geometry
+    private final int mirrors;
+    private final int receivers;
+    private final int quadsPerStep;
+    private final double[] mirrorX;
+    private final double[] mirrorY;
+    private final double[] mirrorHeight;
+    private final double[] mirrorHalfWidth;
+    private final double halfLength;
+    private final double[] receiverX;
+    private final double[] receiverHeight;
+    private final double[] receiverStartY;
+    private final double[] receiverEndY;
+    private final double receiverRadius;
+    private double supportWidth = DEFAULT_SUPPORT_WIDTH;
+
+    // Grid
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final double[] shadedSeconds;
+    private final float[] tile;       // shaded seconds of the current batch
+    private final int[] stamp;        // last batch step that shaded each cell
+    private double daylightSeconds;
+
+    // Batch of projected quads: corner i of quad q of step s at [(s * quadsPerStep + q) * 4 + i]
+    private final int batchCapacity;
+    private final float[] quadX;
+    private final float[] quadY;
+    private final float[] quadMinY;
+    private final float[] quadMaxY;
+    private final float[] batchWeight;
+    private double batchSeconds;      // daylight time of the batch, counted once it is added
+    private int batchSteps;
+    private int stepCounter;
+
+    private final int workers;
+    private final ExecutorService executor;
+    private final int[] bandRows;     // band b covers rows [bandRows[b], bandRows[b + 1])
+    private final List<Callable<Void>> rasterizeTasks;
+    private final List<Callable<Void>> addTasks;
+    private final double[] sun = new double[3];
+    private double lastTime = Double.NaN;
+
+    /**
+     * Grid and geometry from a state: its field layout, mirror length and
+     * receiver diameter
+     * @param cellSize Grid cell edge in cm
+     * @param margin Ground around the field covered by the grid, in cm
+     */
+    public GroundShadowCalculator(SimulationState state, double cellSize, double margin) {
+        this(state.getFieldLayout(), state.getReflectorLength(), state.getReceiverDiameter(), cellSize, margin,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param mirrorLength Mirror and receiver length along Y in cm
+     * @param receiverDiameter Receiver tube diameter in cm
+     * @param cellSize Grid cell edge in cm
+     * @param margin Ground around the field covered by the grid, in cm
+     * @param workers Number of worker threads
+     */
+    public GroundShadowCalculator(FieldLayout layout, double mirrorLength, double receiverDiameter,
+            double cellSize, double margin, int workers) {
+        if (!(cellSize > 0) || margin < 0) {
+            throw new IllegalArgumentException("Invalid shadow grid: cell " + cellSize + " cm, margin " + margin + " cm");
+        }
+        this.mirrors = layout.getMirrorCount();
+        this.receivers = layout.getReceiverCount();
+        this.quadsPerStep = 3 * mirrors + receivers;
+        this.mirrorX = new double[mirrors];
+        this.mirrorY = new double[mirrors];
+        this.mirrorHeight = new double[mirrors];
+        this.mirrorHalfWidth = new double[mirrors];
+        this.halfLength = mirrorLength / 2;
+        this.receiverX = new double[receivers];
+        this.receiverHeight = new double[receivers];
+        this.receiverStartY = new double[receivers];
+        this.receiverEndY = new double[receivers];
+        this.receiverRadius = receiverDiameter / 2;
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        Arrays.fill(receiverStartY, Double.POSITIVE_INFINITY);
+        Arrays.fill(receiverEndY, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < mirrors; i++) {
+            mirrorX[i] = layout.getX(i);
+            mirrorY[i] = layout.getY(i);
+            mirrorHeight[i] = layout.getHeight(i);
+            mirrorHalfWidth[i] = layout.getWidth(i) / 2;
+            minX = Math.min(minX, mirrorX[i] - mirrorHalfWidth[i]);
+            maxX = Math.max(maxX, mirrorX[i] + mirrorHalfWidth[i]);
+            minY = Math.min(minY, mirrorY[i] - halfLength);
+            maxY = Math.max(maxY, mirrorY[i] + halfLength);
+            int r = layout.getReceiver(i);
+            receiverStartY[r] = Math.min(receiverStartY[r], mirrorY[i] - halfLength);
+            receiverEndY[r] = Math.max(receiverEndY[r], mirrorY[i] + halfLength);
+        }
+        for (int r = 0; r < receivers; r++) {
+            receiverX[r] = layout.getReceiverX(r);
+            receiverHeight[r] = layout.getReceiverHeight(r);
+            if (receiverStartY[r] > receiverEndY[r]) { // no mirrors aim at it
+                receiverStartY[r] = -halfLength;
+                receiverEndY[r] = halfLength;
+            }
+            minX = Math.min(minX, receiverX[r] - receiverRadius);
+            maxX = Math.max(maxX, receiverX[r] + receiverRadius);
+            minY = Math.min(minY, receiverStartY[r]);
+            maxY = Math.max(maxY, receiverEndY[r]);
+        }
+
+        this.cellSize = cellSize;
+        this.originX = minX - margin;
+        this.originY = minY - margin;
+        this.columns = Math.max(1, (int) Math.ceil((maxX + margin - originX) / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil((maxY + margin - originY) / cellSize));
+        this.shadedSeconds = new double[columns * rows];
+        this.tile = new float[columns * rows];
+        this.stamp = new int[columns * rows];
+        Arrays.fill(stamp, -1);
+
+        this.batchCapacity = Math.max(1, Math.min(MAX_BATCH_STEPS, MAX_BATCH_FLOATS / Math.max(1, quadsPerStep * 10)));
+        this.quadX = new float[batchCapacity * quadsPerStep * 4];
+        this.quadY = new float[batchCapacity * quadsPerStep * 4];
+        this.quadMinY = new float[batchCapacity * quadsPerStep];
+        this.quadMaxY = new float[batchCapacity * quadsPerStep];
+        this.batchWeight = new float[batchCapacity];
+
+        this.workers = Math.max(1, workers);
+        int bands = Math.min(rows, this.workers * BANDS_PER_WORKER);
+        this.bandRows = new int[bands + 1];
+        this.rasterizeTasks = new ArrayList<>(bands);
+        this.addTasks = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            final int band = b;
+            bandRows[b + 1] = (b + 1) * rows / bands;
+            rasterizeTasks.add(() -> {
+                rasterizeBand(bandRows[band], bandRows[band + 1]);
+                return null;
+            });
+            addTasks.add(() -> {
+                addBand(bandRows[band], bandRows[band + 1]);
+                return null;
+            });
+        }
+        this.executor = this.workers > 1 ? Executors.newFixedThreadPool(this.workers, r -> {
+            Thread thread = new Thread(r, "ground-shadow-worker");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Width of the support posts across the shadow, in cm
+     */
+    public void setSupportWidth(double width) {
+        this.supportWidth = width;
+    }
+
+    @Override
+    public void onStep(double timeSeconds, double altitude, double azimuth, double dni,
+            double[] mirrorAngles, int count) {
+        double dt = timeSeconds - lastTime;
+        if (dt == 0) {
+            return;
+        }
+        lastTime = timeSeconds;
+        if (dt > 0 && count == mirrors) {
+            accumulate(altitude, azimuth, mirrorAngles, dt);
+        }
+    }
+
+    /**
+     * Adds one sun position; nothing happens while the sun is down
+     * @param mirrorAngles Rotation angle of every mirror in degrees
+     * @param seconds Time the position stands for
+     */
+    public void accumulate(double altitude, double azimuth, double[] mirrorAngles, double seconds) {
+        if (altitude <= 0 || !(seconds > 0)) {
+            return;
+        }
+        ReceiverRayTracer.sunVector(altitude, azimuth, sun);
+        double shiftX = -sun[0] / sun[2]; // ground offset per cm of height
+        double shiftY = -sun[1] / sun[2];
+        int quad = batchSteps * quadsPerStep;
+
+        for (int i = 0; i < mirrors; i++) {
+            double angle = Math.toRadians(mirrorAngles[i]);
+            double cos = Math.cos(angle) * mirrorHalfWidth[i];
+            double sin = Math.sin(angle) * mirrorHalfWidth[i];
+            // Edges at u = -w/2 and u = +w/2, each running along Y
+            double x0 = mirrorX[i] - cos + (mirrorHeight[i] + sin) * shiftX;
+            double y0 = mirrorY[i] + (mirrorHeight[i] + sin) * shiftY;
+            double x1 = mirrorX[i] + cos + (mirrorHeight[i] - sin) * shiftX;
+            double y1 = mirrorY[i] + (mirrorHeight[i] - sin) * shiftY;
+            setQuad(quad++, x0, y0 - halfLength, x1, y1 - halfLength, x1, y1 + halfLength, x0, y0 + halfLength);
+        }
+
+        // Posts: a strip from the foot to the shadow of the top, across the shadow direction
+        double length = Math.hypot(shiftX, shiftY);
+        double acrossX = length > 1e-9 ? -shiftY / length * supportWidth / 2 : supportWidth / 2;
+        double acrossY = length > 1e-9 ? shiftX / length * supportWidth / 2 : 0;
+        for (int i = 0; i < mirrors; i++) {
+            double topX = mirrorHeight[i] * shiftX;
+            double topY = mirrorHeight[i] * shiftY;
+            for (int end = -1; end <= 1; end += 2) {
+                double footX = mirrorX[i];
+                double footY = mirrorY[i] + end * halfLength;
+                setQuad(quad++, footX - acrossX, footY - acrossY, footX + acrossX, footY + acrossY,
+                        footX + acrossX + topX, footY + acrossY + topY, footX - acrossX + topX, footY - acrossY + topY);
+            }
+        }
+
+        double halfShadow = receiverRadius * Math.hypot(sun[0], sun[2]) / sun[2];
+        for (int r = 0; r < receivers; r++) {
+            double x = receiverX[r] + receiverHeight[r] * shiftX;
+            double y = receiverHeight[r] * shiftY;
+            setQuad(quad++, x - halfShadow, receiverStartY[r] + y, x + halfShadow, receiverStartY[r] + y,
+                    x + halfShadow, receiverEndY[r] + y, x - halfShadow, receiverEndY[r] + y);
+        }
+
+        batchWeight[batchSteps++] = (float) seconds;
+        batchSeconds += seconds;
+        if (batchSteps == batchCapacity) {
+            flush();
+        }
+    }
+
+    /**
+     * Accumulates a clear-sky year at the site, one sample every stepMinutes
+     * from midnight, with the mirrors aimed by the kernel
+     */
+    public void accumulateYear(SolarCalculator calculator, IOpticsKernel kernel, FieldLayout layout,
+            double stepMinutes) {
+        if (layout.getMirrorCount() != mirrors) {
+            throw new IllegalArgumentException("Layout has " + layout.getMirrorCount() + " mirrors, grid " + mirrors);
+        }
+        double[] angles = new double[mirrors];
+        double[] sample = new double[3];
+        int perDay = (int) Math.ceil(24 * 60 / stepMinutes);
+        for (int day = 1; day <= 365; day++) {
+            for (int s = 0; s < perDay; s++) {
+                calculator.calculateSolarPosition(day, s * stepMinutes / 60, sample);
+                if (sample[0] <= 0) {
+                    continue;
+                }
+                kernel.calculateMirrorAngles(sample[0], sample[1], layout.getTargetX(), layout.getTargetZ(),
+                        angles, mirrors);
+                accumulate(sample[0], sample[1], angles, stepMinutes * 60);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Shade fractions accumulated so far
+     */
+    public GroundShadowMap getMap() {
+        flush();
+        float[] fraction = new float[shadedSeconds.length];
+        if (daylightSeconds > 0) {
+            for (int c = 0; c < fraction.length; c++) {
+                fraction[c] = (float) (shadedSeconds[c] / daylightSeconds);
+            }
+        }
+        return new GroundShadowMap(originX, originY, cellSize, columns, rows, fraction, daylightSeconds);
+    }
+
+    /**
+     * Clears the accumulated shade
+     */
+    public void reset() {
+        batchSteps = 0;
+        batchSeconds = 0;
+        Arrays.fill(shadedSeconds, 0);
+        daylightSeconds = 0;
+        lastTime = Double.NaN;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    private void setQuad(int quad, double x0, double y0, double x1, double y1,
+            double x2, double y2, double x3, double y3) {
+        int corner = quad * 4;
+        quadX[corner] = (float) x0;
+        quadY[corner] = (float) y0;
+        quadX[corner + 1] = (float) x1;
+        quadY[corner + 1] = (float) y1;
+        quadX[corner + 2] = (float) x2;
+        quadY[corner + 2] = (float) y2;
+        quadX[corner + 3] = (float) x3;
+        quadY[corner + 3] = (float) y3;
+        quadMinY[quad] = (float) Math.min(Math.min(y0, y1), Math.min(y2, y3));
+        quadMaxY[quad] = (float) Math.max(Math.max(y0, y1), Math.max(y2, y3));
+    }
+
+    /**
+     * Rasterizes the pending batch and adds it into the totals
+     * @throws IllegalStateException if a band failed; the cause is its
+     *         exception and the batch is dropped
+     */
+    private void flush() {
+        if (batchSteps == 0) {
+            return;
+        }
+        try {
+            if (executor == null || rasterizeTasks.size() < 2) {
+                for (int b = 0; b + 1 < bandRows.length; b++) {
+                    rasterizeBand(bandRows[b], bandRows[b + 1]);
+                }
+            } else {
+                runOnWorkers(rasterizeTasks);
+            }
+        } catch (RuntimeException e) {
+            dropBatch();
+            throw e;
+        }
+        if (executor == null || addTasks.size() < 2) {
+            for (int b = 0; b + 1 < bandRows.length; b++) {
+                addBand(bandRows[b], bandRows[b + 1]);
+            }
+        } else {
+            runOnWorkers(addTasks);
+        }
+        daylightSeconds += batchSeconds;
+        batchSeconds = 0;
+        stepCounter += batchSteps;
+        batchSteps = 0;
+    }
+
+    /**
+     * Runs one task per band on the workers and waits for all of them. An
+     * interrupt does not abandon running bands: the wait goes on and the
+     * interrupt flag is restored afterwards.
+     * @throws IllegalStateException if a band failed; the cause is its exception
+     */
+    private void runOnWorkers(List<Callable<Void>> bandTasks) {
+        List<Future<Void>> results = new ArrayList<>(bandTasks.size());
+        for (Callable<Void> task : bandTasks) {
+            results.add(executor.submit(task));
+        }
+        boolean interrupted = false;
+        Throwable failure = null;
+        try {
+            for (Future<Void> result : results) {
+                while (true) {
+                    try {
+                        result.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Error computing ground shadows", failure);
+        }
+    }
+
+    /**
+     * Forgets a batch that could not be rasterized, so the totals and the
+     * daylight time leave its steps out
+     */
+    private void dropBatch() {
+        batchSeconds = 0;
+        Arrays.fill(tile, 0);
+        stepCounter += batchSteps; // keeps the stamps of the dropped steps stale
+        batchSteps = 0;
+    }
+
+    /**
+     * Marks the cells of rows [firstRow, endRow) shaded by each step of the
+     * batch in the tile
+     */
+    private void rasterizeBand(int firstRow, int endRow) {
+        float bandMinY = (float) (originY + firstRow * cellSize);
+        float bandMaxY = (float) (originY + endRow * cellSize);
+        for (int s = 0; s < batchSteps; s++) {
+            int stepStamp = stepCounter + s;
+            float weight = batchWeight[s];
+            int end = (s + 1) * quadsPerStep;
+            for (int q = s * quadsPerStep; q < end; q++) {
+                if (quadMaxY[q] < bandMinY || quadMinY[q] > bandMaxY) {
+                    continue;
+                }
+                int rowFrom = Math.max(firstRow, (int) Math.ceil((quadMinY[q] - originY) / cellSize - 0.5));
+                int rowTo = Math.min(endRow - 1, (int) Math.floor((quadMaxY[q] - originY) / cellSize - 0.5));
+                int corner = q * 4;
+                for (int row = rowFrom; row <= rowTo; row++) {
+                    double centerY = originY + (row + 0.5) * cellSize;
+                    double left = Double.POSITIVE_INFINITY;
+                    double right = Double.NEGATIVE_INFINITY;
+                    for (int e = 0; e < 4; e++) {
+                        int a = corner + e;
+                        int b = corner + ((e + 1) & 3);
+                        double ya = quadY[a];
+                        double yb = quadY[b];
+                        if ((ya <= centerY) != (yb <= centerY)) {
+                            double x = quadX[a] + (centerY - ya) * (quadX[b] - quadX[a]) / (yb - ya);
+                            left = Math.min(left, x);
+                            right = Math.max(right, x);
+                        }
+                    }
+                    if (!(left <= right)) {
+                        continue;
+                    }
+                    int from = Math.max(0, (int) Math.ceil((left - originX) / cellSize - 0.5));
+                    int to = Math.min(columns - 1, (int) Math.floor((right - originX) / cellSize - 0.5));
+                    int base = row * columns;
+                    for (int c = from; c <= to; c++) {
+                        int cell = base + c;
+                        if (stamp[cell] != stepStamp) { // overlapping shadows count once
+                            stamp[cell] = stepStamp;
+                            tile[cell] += weight;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the tile rows [firstRow, endRow) into the totals and clears them
+     */
+    private void addBand(int firstRow, int endRow) {
+        int from = firstRow * columns;
+        int to = endRow * columns;
+        for (int cell = from; cell < to; cell++) {
+            shadedSeconds[cell] += tile[cell];
+            tile[cell] = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+// IOptimizationListener.java
+package jazarifresnelsim.core;
+
+import jazarifresnelsim.models.LayoutOptimizationResult;
+
+/**
+ * Receives the best layout after every iteration of a {@link LayoutOptimizer}.
+ * Called on the thread that started the optimization.
+ */
+public interface IOptimizationListener {
+    void onProgress(LayoutOptimizationResult result);
+}
@@ -0,0 +1,13 @@
+// IScenario.java
+package jazarifresnelsim.core;
+
+/**
+ * One what-if run executed by a {@link ScenarioExecutor}
+ * @param <T> Result of the run
+ */
+public interface IScenario<T> {
+    /**
+     * @param engine Engine bound to the scenario's own state; confined to the calling thread
+     */
+    T run(SimulationEngine engine) throws Exception;
+}
@@ -0,0 +1,20 @@
+// IStepListener.java
+package jazarifresnelsim.core;
+
+/**
+ * Receives every mirror update of a {@link SimulationEngine}, on the
+ * stepping thread. The sun position the mirrors were aimed for comes as
+ * primitives, so a step allocates nothing for its listeners; the arrays are
+ * the engine's own and only valid during the call.
+ */
+public interface IStepListener {
+    /**
+     * @param timeSeconds Simulation time in epoch seconds (local time as UTC)
+     * @param altitude Sun altitude in degrees
+     * @param azimuth Sun azimuth in degrees
+     * @param dni Direct normal irradiance in W/m²
+     * @param mirrorAngles Rotation angle of every mirror in degrees
+     * @param count Number of mirrors
+     */
+    void onStep(double timeSeconds, double altitude, double azimuth, double dni, double[] mirrorAngles, int count);
+}
@@ -0,0 +1,14 @@
+// ITrackingCommandListener.java
+package jazarifresnelsim.core;
+
+/**
+ * Receives drive setpoint changes from a {@link TrackingCommandGenerator}
+ */
+public interface ITrackingCommandListener {
+    /**
+     * @param mirrorIndex Mirror whose drive should move
+     * @param angle New setpoint in degrees, a multiple of the motor step
+     * @param timeSeconds Simulation time of the command in epoch seconds
+     */
+    void onCommand(int mirrorIndex, double angle, double timeSeconds);
+}
@@ -0,0 +1,12 @@
+// IUncertaintyListener.java
+package jazarifresnelsim.core;
+
+import jazarifresnelsim.models.UncertaintyResult;
+
+/**
+ * Receives intermediate results of an {@link UncertaintyAnalysis} while it runs.
+ * Called on the thread that started the analysis.
+ */
+public interface IUncertaintyListener {
+    void onProgress(UncertaintyResult result);
+}
@@ -0,0 +1,423 @@
+// LayoutOptimizer.java
+package jazarifresnelsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import jazarifresnelsim.models.LayoutEvaluation;
+import jazarifresnelsim.models.LayoutOptimizationResult;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Gradient-free search for the mirror count, spacing, receiver height and
+ * support height that maximize annual energy per cost or per land area.
+ * <p>
+ * Nelder-Mead on the four parameters scaled to their bounds. Every
+ * iteration evaluates the reflection, expansion and both contraction
+ * points at once on the worker pool (speculatively; only the ones the
+ * method picks are used), and a shrink evaluates all moved vertices at
+ * once. Candidates are rounded to whole mirrors and 0.1 cm, and every
+ * configuration is evaluated only once: results are cached by
+ * configuration for as long as the evaluator stays the same, across runs.
+ * <p>
+ * The search stops when the simplex has collapsed, when the best objective
+ * has not improved for a number of iterations, or at the evaluation or
+ * time limit, or on {@link #cancel}.
+ */
+public class LayoutOptimizer implements AutoCloseable {
+
+    public enum Objective {
+        ENERGY_PER_COST, ENERGY_PER_LAND_AREA
+    }
+
+    private static final int DIMENSIONS = 4; // mirrors, spacing, receiver height, support height
+
+    private final ExecutorService executor;
+    private final List<IOptimizationListener> listeners = new ArrayList<>();
+    private final Map<Configuration, Future<LayoutEvaluation>> cache = new ConcurrentHashMap<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private AnnualYieldEvaluator cachedEvaluator;
+
+    private Objective objective = Objective.ENERGY_PER_COST;
+    private final double[] lower = {2, 20, 50, 10};
+    private final double[] upper = {64, 200, 600, 200};
+    private int maxEvaluations = 400;
+    private long timeLimitMillis;           // 0 = none
+    private double tolerance = 1e-3;        // simplex size, as a fraction of the bounds
+    private int patience = 25;              // iterations without improvement
+    private double improvementTolerance = 1e-6;
+    private volatile boolean cancelled;
+
+    public LayoutOptimizer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public LayoutOptimizer(int threads) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "optimizer-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setObjective(Objective objective) {
+        this.objective = objective;
+    }
+
+    /**
+     * Search box; the spacing is never less than the mirror width, and the
+     * support never reaches the receiver
+     */
+    public void setBounds(int minMirrors, int maxMirrors, double minSpacing, double maxSpacing,
+            double minReceiverHeight, double maxReceiverHeight, double minSupportHeight, double maxSupportHeight) {
+        double[] min = {minMirrors, minSpacing, minReceiverHeight, minSupportHeight};
+        double[] max = {maxMirrors, maxSpacing, maxReceiverHeight, maxSupportHeight};
+        for (int d = 0; d < DIMENSIONS; d++) {
+            if (!(max[d] >= min[d])) {
+                throw new IllegalArgumentException("Empty optimization bounds");
+            }
+        }
+        System.arraycopy(min, 0, lower, 0, DIMENSIONS);
+        System.arraycopy(max, 0, upper, 0, DIMENSIONS);
+    }
+
+    /**
+     * Upper limit of distinct configurations evaluated per run
+     */
+    public void setMaxEvaluations(int evaluations) {
+        this.maxEvaluations = evaluations;
+    }
+
+    /**
+     * Wall-clock limit per run in milliseconds; 0 for none
+     */
+    public void setTimeLimit(long millis) {
+        this.timeLimitMillis = millis;
+    }
+
+    /**
+     * Stop when every vertex is this close to the best one, as a fraction
+     * of the bounds
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Stop after this many iterations without a relative improvement of the
+     * best objective larger than the given tolerance
+     */
+    public void setPatience(int iterations, double relativeImprovement) {
+        this.patience = iterations;
+        this.improvementTolerance = relativeImprovement;
+    }
+
+    /**
+     * Stops a running optimization after its current iteration
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public void addListener(IOptimizationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(IOptimizationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Optimizes starting from the geometry of the state
+     * @return the best configuration found
+     * @throws IllegalStateException if an evaluation failed; the cause is the evaluator's exception
+     */
+    public LayoutOptimizationResult optimize(AnnualYieldEvaluator evaluator, SimulationState start)
+            throws InterruptedException {
+        if (evaluator != cachedEvaluator) {
+            cache.clear();
+            cachedEvaluator = evaluator;
+        }
+        cancelled = false;
+        Search search = new Search(evaluator);
+        long deadline = timeLimitMillis > 0 ? System.currentTimeMillis() + timeLimitMillis : Long.MAX_VALUE;
+
+        // Initial simplex: the start point and one step along every axis
+        double[][] simplex = new double[DIMENSIONS + 1][];
+        simplex[0] = normalize(new double[]{start.getNumReflectors(), start.getReflectorSpacing(),
+            start.getReceiverHeight(), start.getSupportHeight()});
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double[] vertex = simplex[0].clone();
+            vertex[d] += vertex[d] + 0.15 <= 1 ? 0.15 : -0.15;
+            simplex[d + 1] = vertex;
+        }
+        double[] values = search.evaluate(simplex);
+
+        int iterations = 0;
+        int stale = 0;
+        String stopReason;
+        boolean converged = false;
+        while (true) {
+            sort(simplex, values);
+            double best = values[0];
+            if (cancelled) {
+                stopReason = "cancelled";
+                break;
+            }
+            if (search.evaluations >= maxEvaluations) {
+                stopReason = "evaluation limit";
+                break;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                stopReason = "time limit";
+                break;
+            }
+            if (isCollapsed(simplex)) {
+                stopReason = "simplex converged";
+                converged = true;
+                break;
+            }
+            if (stale >= patience) {
+                stopReason = "no improvement";
+                converged = true;
+                break;
+            }
+
+            int worst = DIMENSIONS;
+            double[] centroid = new double[DIMENSIONS];
+            for (int v = 0; v < worst; v++) {
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    centroid[d] += simplex[v][d] / worst;
+                }
+            }
+            double[][] candidates = {
+                move(centroid, simplex[worst], -1.0),   // reflection
+                move(centroid, simplex[worst], -2.0),   // expansion
+                move(centroid, simplex[worst], -0.5),   // outside contraction
+                move(centroid, simplex[worst], 0.5)     // inside contraction
+            };
+            double[] f = search.evaluate(candidates);
+
+            double[] replacement = null;
+            double replacementValue = 0;
+            if (f[0] < values[0]) {
+                boolean expand = f[1] < f[0];
+                replacement = candidates[expand ? 1 : 0];
+                replacementValue = f[expand ? 1 : 0];
+            } else if (f[0] < values[worst - 1]) {
+                replacement = candidates[0];
+                replacementValue = f[0];
+            } else if (f[0] < values[worst]) {
+                if (f[2] <= f[0]) {
+                    replacement = candidates[2];
+                    replacementValue = f[2];
+                }
+            } else if (f[3] < values[worst]) {
+                replacement = candidates[3];
+                replacementValue = f[3];
+            }
+
+            if (replacement != null) {
+                simplex[worst] = replacement;
+                values[worst] = replacementValue;
+            } else {
+                // Shrink towards the best vertex
+                double[][] moved = new double[DIMENSIONS][];
+                for (int v = 1; v <= DIMENSIONS; v++) {
+                    moved[v - 1] = move(simplex[0], simplex[v], 0.5);
+                }
+                double[] movedValues = search.evaluate(moved);
+                for (int v = 1; v <= DIMENSIONS; v++) {
+                    simplex[v] = moved[v - 1];
+                    values[v] = movedValues[v - 1];
+                }
+            }
+
+            iterations++;
+            double newBest = Math.min(best, min(values));
+            stale = newBest < best - improvementTolerance * Math.abs(best) ? 0 : stale + 1;
+            notifyListeners(search.result(iterations, false, null));
+        }
+        return search.result(iterations, converged, stopReason);
+    }
+
+    /**
+     * from + factor (to - from), clamped to the unit box
+     */
+    private static double[] move(double[] from, double[] to, double factor) {
+        double[] point = new double[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            point[d] = Math.max(0, Math.min(1, from[d] + factor * (to[d] - from[d])));
+        }
+        return point;
+    }
+
+    private boolean isCollapsed(double[][] simplex) {
+        for (int v = 1; v < simplex.length; v++) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                if (Math.abs(simplex[v][d] - simplex[0][d]) > tolerance) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void sort(double[][] simplex, double[] values) {
+        for (int i = 1; i < values.length; i++) {
+            double value = values[i];
+            double[] vertex = simplex[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > value) {
+                values[j + 1] = values[j];
+                simplex[j + 1] = simplex[j];
+                j--;
+            }
+            values[j + 1] = value;
+            simplex[j + 1] = vertex;
+        }
+    }
+
+    private static double min(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        for (double value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private double[] normalize(double[] parameters) {
+        double[] point = new double[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double range = upper[d] - lower[d];
+            point[d] = range > 0 ? Math.max(0, Math.min(1, (parameters[d] - lower[d]) / range)) : 0;
+        }
+        return point;
+    }
+
+    private void notifyListeners(LayoutOptimizationResult result) {
+        for (IOptimizationListener listener : listeners) {
+            listener.onProgress(result);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * State of one run: the evaluator, the best configuration so far and
+     * the number of configurations it evaluated
+     */
+    private final class Search {
+        private final AnnualYieldEvaluator evaluator;
+        private final long hitsAtStart = cacheHits.get();
+        private int evaluations;
+        private LayoutEvaluation best;
+        private double bestObjective = Double.NEGATIVE_INFINITY;
+
+        Search(AnnualYieldEvaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        /**
+         * Evaluates all points concurrently. A failed evaluation is dropped
+         * from the cache, so a later run tries it again.
+         * @return minus the objective of every point
+         */
+        double[] evaluate(double[][] points) throws InterruptedException {
+            List<Future<LayoutEvaluation>> futures = new ArrayList<>(points.length);
+            Configuration[] configurations = new Configuration[points.length];
+            for (int p = 0; p < points.length; p++) {
+                Configuration configuration = decode(points[p]);
+                configurations[p] = configuration;
+                Future<LayoutEvaluation> future = cache.get(configuration);
+                if (future != null) {
+                    cacheHits.incrementAndGet();
+                } else {
+                    future = cache.computeIfAbsent(configuration, c -> executor.submit(
+                            () -> evaluator.evaluate(c.mirrors, c.spacing / 10.0, c.receiverHeight / 10.0,
+                                    c.supportHeight / 10.0)));
+                    evaluations++;
+                }
+                futures.add(future);
+            }
+            double[] values = new double[points.length];
+            for (int p = 0; p < points.length; p++) {
+                LayoutEvaluation evaluation;
+                try {
+                    evaluation = futures.get(p).get();
+                } catch (ExecutionException e) {
+                    cache.remove(configurations[p], futures.get(p));
+                    throw new IllegalStateException("Error evaluating layout", e.getCause());
+                }
+                double value = objective == Objective.ENERGY_PER_COST
+                        ? evaluation.getEnergyPerCost() : evaluation.getEnergyPerLandArea();
+                if (value > bestObjective) {
+                    bestObjective = value;
+                    best = evaluation;
+                }
+                values[p] = -value;
+            }
+            return values;
+        }
+
+        /**
+         * Rounded, feasible configuration of a point of the unit box
+         */
+        Configuration decode(double[] point) {
+            double[] p = new double[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                p[d] = lower[d] + point[d] * (upper[d] - lower[d]);
+            }
+            int mirrors = (int) Math.round(p[0]);
+            double spacing = Math.max(p[1], evaluator.getMirrorWidth());
+            double receiverHeight = p[2];
+            double support = Math.max(0, Math.min(p[3],
+                    receiverHeight - evaluator.getReceiverDiameter() - evaluator.getMirrorWidth() / 2 - 2));
+            return new Configuration(mirrors, Math.round(spacing * 10), Math.round(receiverHeight * 10),
+                    Math.round(support * 10));
+        }
+
+        LayoutOptimizationResult result(int iterations, boolean converged, String stopReason) {
+            return new LayoutOptimizationResult(best, bestObjective, iterations, evaluations,
+                    cacheHits.get() - hitsAtStart, converged, stopReason);
+        }
+    }
+
+    /**
+     * Cache key: mirror count and lengths in tenths of a cm
+     */
+    private static final class Configuration {
+        final int mirrors;
+        final long spacing;
+        final long receiverHeight;
+        final long supportHeight;
+
+        Configuration(int mirrors, long spacing, long receiverHeight, long supportHeight) {
+            this.mirrors = mirrors;
+            this.spacing = spacing;
+            this.receiverHeight = receiverHeight;
+            this.supportHeight = supportHeight;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Configuration c && mirrors == c.mirrors && spacing == c.spacing
+                    && receiverHeight == c.receiverHeight && supportHeight == c.supportHeight;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new long[]{mirrors, spacing, receiverHeight, supportHeight});
+        }
+    }
+}
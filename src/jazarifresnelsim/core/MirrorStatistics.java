@@ -0,0 +1,331 @@
+// MirrorStatistics.java
+package jazarifresnelsim.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import jazarifresnelsim.domain.EpochTime;
+
+/**
+ * Per-mirror statistics accumulated while the engine steps, so no snapshots
+ * have to be kept.
+ * <p>
+ * For every mirror it tracks the cosine efficiency (cosine of the incidence
+ * angle on the mirror) and the intensity on the mirror (DNI times that
+ * cosine) with Welford mean and variance, as in
+ * {@link jazarifresnelsim.domain.RunningStatistics}, plus min/max and
+ * time-weighted sums, and the min/max rotation angle over the run and per
+ * day of the simulation clock. Only daylight samples count. Each sample is
+ * weighted by the time since the previous one; a repeated timestamp is
+ * ignored and a jump back in time (e.g. an engine reset) starts a new
+ * segment. A day that is stepped again adds to its existing daily figures.
+ * <p>
+ * Everything lives in primitive arrays; an update is O(mirrors) and only
+ * allocates when a new day outgrows the daily arrays, which double. Updates
+ * and reads are synchronized, so the GUI can read while another thread
+ * steps.
+ */
+public class MirrorStatistics implements IStepListener {
+
+    private int mirrors;
+    private long[] count = new long[0];
+    private double[] cosineMean = new double[0];
+    private double[] cosineM2 = new double[0];
+    private double[] cosineMin = new double[0];
+    private double[] cosineMax = new double[0];
+    private double[] cosineTime = new double[0];     // integral of the cosine over time, s
+    private double[] intensityMean = new double[0];
+    private double[] intensityM2 = new double[0];
+    private double[] intensityTime = new double[0];  // integral of the intensity over time, W·s/m²
+    private double[] angleMin = new double[0];
+    private double[] angleMax = new double[0];
+    // Daily min/max angles, indexed day * mirrors + mirror, days in order of first sample
+    private long[] days = new long[0];
+    private double[] dayAngleMin = new double[0];
+    private double[] dayAngleMax = new double[0];
+    private int dayCount;
+    private int currentDay = -1;          // index of the day of the last sample
+    private double daylightSeconds;
+    private double lastTime = Double.NaN;
+
+    public MirrorStatistics() {
+        this(0);
+    }
+
+    /**
+     * @param mirrors Initial number of mirrors; the arrays follow the field size
+     */
+    public MirrorStatistics(int mirrors) {
+        resize(mirrors);
+    }
+
+    /**
+     * Clears all statistics
+     */
+    public synchronized void reset() {
+        resize(mirrors);
+    }
+
+    private void resize(int size) {
+        if (count.length != size) {
+            count = new long[size];
+            cosineMean = new double[size];
+            cosineM2 = new double[size];
+            cosineMin = new double[size];
+            cosineMax = new double[size];
+            cosineTime = new double[size];
+            intensityMean = new double[size];
+            intensityM2 = new double[size];
+            intensityTime = new double[size];
+            angleMin = new double[size];
+            angleMax = new double[size];
+            days = new long[0];
+            dayAngleMin = new double[0];
+            dayAngleMax = new double[0];
+        } else {
+            Arrays.fill(count, 0);
+            Arrays.fill(cosineMean, 0);
+            Arrays.fill(cosineM2, 0);
+            Arrays.fill(cosineTime, 0);
+            Arrays.fill(intensityMean, 0);
+            Arrays.fill(intensityM2, 0);
+            Arrays.fill(intensityTime, 0);
+        }
+        Arrays.fill(cosineMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(cosineMax, Double.NEGATIVE_INFINITY);
+        Arrays.fill(angleMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(angleMax, Double.NEGATIVE_INFINITY);
+        mirrors = size;
+        dayCount = 0;
+        currentDay = -1;
+        daylightSeconds = 0;
+        lastTime = Double.NaN;
+    }
+
+    @Override
+    public synchronized void onStep(double timeSeconds, double sunAltitude, double sunAzimuth, double dni,
+            double[] mirrorAngles, int count) {
+        if (count != mirrors) {
+            resize(count); // new field, start over
+        }
+        double dt = timeSeconds - lastTime;
+        if (dt == 0) {
+            return;
+        }
+        double weight = dt > 0 ? dt : 0; // first sample or new segment
+        lastTime = timeSeconds;
+        if (sunAltitude <= 0) {
+            return;
+        }
+        daylightSeconds += weight;
+        long epochDay = EpochTime.epochDay(timeSeconds);
+        if (currentDay < 0 || days[currentDay] != epochDay) {
+            currentDay = dayIndex(epochDay);
+        }
+        int dayOffset = currentDay * count;
+
+        double altitude = Math.toRadians(sunAltitude);
+        double azimuth = Math.toRadians(sunAzimuth);
+        double sunX = -Math.cos(altitude) * Math.sin(azimuth);
+        double sunZ = Math.sin(altitude);
+
+        for (int i = 0; i < count; i++) {
+            double angle = mirrorAngles[i];
+            double radians = Math.toRadians(angle);
+            double cosine = Math.max(0, sunX * Math.sin(radians) + sunZ * Math.cos(radians));
+            double intensity = dni * cosine;
+
+            long n = ++this.count[i];
+            double delta = cosine - cosineMean[i];
+            cosineMean[i] += delta / n;
+            cosineM2[i] += delta * (cosine - cosineMean[i]);
+            delta = intensity - intensityMean[i];
+            intensityMean[i] += delta / n;
+            intensityM2[i] += delta * (intensity - intensityMean[i]);
+
+            cosineMin[i] = Math.min(cosineMin[i], cosine);
+            cosineMax[i] = Math.max(cosineMax[i], cosine);
+            angleMin[i] = Math.min(angleMin[i], angle);
+            angleMax[i] = Math.max(angleMax[i], angle);
+            dayAngleMin[dayOffset + i] = Math.min(dayAngleMin[dayOffset + i], angle);
+            dayAngleMax[dayOffset + i] = Math.max(dayAngleMax[dayOffset + i], angle);
+            cosineTime[i] += cosine * weight;
+            intensityTime[i] += intensity * weight;
+        }
+    }
+
+    /**
+     * Index of the daily entry of an epoch day, adding one if the day is new
+     */
+    private int dayIndex(long epochDay) {
+        for (int d = dayCount - 1; d >= 0; d--) {
+            if (days[d] == epochDay) {
+                return d;
+            }
+        }
+        if (dayCount == days.length) {
+            int capacity = Math.max(4, 2 * days.length);
+            days = Arrays.copyOf(days, capacity);
+            dayAngleMin = Arrays.copyOf(dayAngleMin, capacity * mirrors);
+            dayAngleMax = Arrays.copyOf(dayAngleMax, capacity * mirrors);
+        }
+        days[dayCount] = epochDay;
+        Arrays.fill(dayAngleMin, dayCount * mirrors, (dayCount + 1) * mirrors, Double.POSITIVE_INFINITY);
+        Arrays.fill(dayAngleMax, dayCount * mirrors, (dayCount + 1) * mirrors, Double.NEGATIVE_INFINITY);
+        return dayCount++;
+    }
+
+    public synchronized int getMirrorCount() {
+        return mirrors;
+    }
+
+    /**
+     * Number of daylight samples of a mirror
+     */
+    public synchronized long getCount(int mirror) {
+        return count[mirror];
+    }
+
+    /**
+     * Daylight time covered by the weighted sums, in seconds
+     */
+    public synchronized double getDaylightSeconds() {
+        return daylightSeconds;
+    }
+
+    public synchronized double getMeanCosine(int mirror) {
+        return count[mirror] > 0 ? cosineMean[mirror] : Double.NaN;
+    }
+
+    public synchronized double getCosineStandardDeviation(int mirror) {
+        return count[mirror] > 1 ? Math.sqrt(cosineM2[mirror] / (count[mirror] - 1)) : 0;
+    }
+
+    public synchronized double getMinCosine(int mirror) {
+        return count[mirror] > 0 ? cosineMin[mirror] : Double.NaN;
+    }
+
+    public synchronized double getMaxCosine(int mirror) {
+        return count[mirror] > 0 ? cosineMax[mirror] : Double.NaN;
+    }
+
+    /**
+     * Cosine efficiency averaged over daylight time rather than samples
+     */
+    public synchronized double getTimeWeightedCosine(int mirror) {
+        return daylightSeconds > 0 ? cosineTime[mirror] / daylightSeconds : Double.NaN;
+    }
+
+    public synchronized double getMinAngle(int mirror) {
+        return count[mirror] > 0 ? angleMin[mirror] : Double.NaN;
+    }
+
+    public synchronized double getMaxAngle(int mirror) {
+        return count[mirror] > 0 ? angleMax[mirror] : Double.NaN;
+    }
+
+    /**
+     * Number of days with daylight samples
+     */
+    public synchronized int getDayCount() {
+        return dayCount;
+    }
+
+    /**
+     * Date of a daily entry, in order of first sample
+     */
+    public synchronized LocalDate getDay(int day) {
+        return LocalDate.ofEpochDay(days[day]);
+    }
+
+    public synchronized double getDailyMinAngle(int day, int mirror) {
+        return dayAngleMin[day * mirrors + mirror];
+    }
+
+    public synchronized double getDailyMaxAngle(int day, int mirror) {
+        return dayAngleMax[day * mirrors + mirror];
+    }
+
+    /**
+     * Mean intensity on the mirror plane in W/m²
+     */
+    public synchronized double getMeanIntensity(int mirror) {
+        return count[mirror] > 0 ? intensityMean[mirror] : Double.NaN;
+    }
+
+    public synchronized double getIntensityStandardDeviation(int mirror) {
+        return count[mirror] > 1 ? Math.sqrt(intensityM2[mirror] / (count[mirror] - 1)) : 0;
+    }
+
+    /**
+     * Energy received per square meter of mirror in Wh/m²
+     */
+    public synchronized double getEnergy(int mirror) {
+        return intensityTime[mirror] / 3600.0;
+    }
+
+    /**
+     * Time-weighted cosine efficiency of the whole field
+     */
+    public synchronized double getFieldCosine() {
+        if (mirrors == 0 || daylightSeconds <= 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = 0; i < mirrors; i++) {
+            sum += cosineTime[i];
+        }
+        return sum / (mirrors * daylightSeconds);
+    }
+
+    /**
+     * Writes one CSV line per mirror, then, after a blank line, a daily
+     * section with the min/max angle of every mirror per day
+     */
+    public synchronized void writeCsv(Writer out) throws IOException {
+        out.write("mirror,samples,mean_cos,sd_cos,min_cos,max_cos,time_weighted_cos,"
+                + "min_angle,max_angle,mean_intensity,sd_intensity,energy_wh_m2\n");
+        StringBuilder line = new StringBuilder(160);
+        for (int i = 0; i < mirrors; i++) {
+            line.setLength(0);
+            line.append(i).append(',').append(count[i]);
+            append(line, getMeanCosine(i));
+            append(line, getCosineStandardDeviation(i));
+            append(line, getMinCosine(i));
+            append(line, getMaxCosine(i));
+            append(line, getTimeWeightedCosine(i));
+            append(line, getMinAngle(i));
+            append(line, getMaxAngle(i));
+            append(line, getMeanIntensity(i));
+            append(line, getIntensityStandardDeviation(i));
+            append(line, getEnergy(i));
+            out.write(line.append('\n').toString());
+        }
+        out.write("\ndate,mirror,min_angle,max_angle\n");
+        for (int d = 0; d < dayCount; d++) {
+            String date = getDay(d).toString();
+            for (int i = 0; i < mirrors; i++) {
+                line.setLength(0);
+                line.append(date).append(',').append(i);
+                append(line, getDailyMinAngle(d, i));
+                append(line, getDailyMaxAngle(d, i));
+                out.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+    }
+
+    private static void append(StringBuilder line, double value) {
+        line.append(',').append(String.format(Locale.ROOT, "%.6g", value));
+    }
+}
@@ -0,0 +1,114 @@
+// ScenarioExecutor.java
+package jazarifresnelsim.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Runs many independent simulations concurrently, e.g. the what-if sessions
+ * of a server.
+ * <p>
+ * Every scenario gets its own {@link SimulationEngine} on its own
+ * {@link SimulationState}, so scenarios never share mutable data; what they
+ * do share is immutable, like the per-site solar calculator and the optics
+ * kernels. On a JVM with virtual threads each scenario runs on its own
+ * virtual thread, so hundreds of mostly idle sessions cost little. Older
+ * JVMs fall back to a pool of platform threads, one per processor.
+ */
+public class ScenarioExecutor implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public ScenarioExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param platformThreads Pool size used when virtual threads are unavailable
+     */
+    public ScenarioExecutor(int platformThreads) {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual
+                : Executors.newFixedThreadPool(Math.max(1, platformThreads), r -> {
+                    Thread thread = new Thread(r, "scenario-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Looked up reflectively so the code still builds and runs on Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True if every scenario runs on its own virtual thread
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Starts a scenario on a new engine for the given state. The state must
+     * not be touched by anyone else until the future completes.
+     */
+    public <T> Future<T> submit(SimulationState state, IScenario<T> scenario) {
+        return executor.submit(() -> scenario.run(new SimulationEngine(state)));
+    }
+
+    /**
+     * Starts a plain run from the start to the end time of the state
+     * @return the future of the final state
+     */
+    public Future<SimulationState> submit(SimulationState state) {
+        return submit(state, engine -> {
+            engine.reset();
+            while (engine.step()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return engine.getState();
+        });
+    }
+
+    /**
+     * Runs one scenario per state and waits for all of them
+     * @return results in the order of the states
+     * @throws ExecutionException with the first failure; the other scenarios are cancelled
+     */
+    public <T> List<T> runAll(List<SimulationState> states, IScenario<T> scenario)
+            throws InterruptedException, ExecutionException {
+        List<Future<T>> futures = new ArrayList<>(states.size());
+        for (SimulationState state : states) {
+            futures.add(submit(state, scenario));
+        }
+        List<T> results = new ArrayList<>(states.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,300 @@
+// SetpointServer.java
+package jazarifresnelsim.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import jazarifresnelsim.domain.EpochTime;
+import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.models.FieldLayout;
+
+/**
+ * Serves mirror angle setpoints to hardware-in-the-loop controllers over TCP.
+ * <p>
+ * One selector thread handles every connection with non-blocking channels
+ * and two reusable buffers per connection. Messages are big-endian and
+ * fixed-layout; a client may pipeline any number of requests:
+ * <pre>
+ * request  (20 bytes): int id, double time (epoch seconds, local time as UTC), int first, int count
+ * response:            int id, int count (-1 if out of range), float angle[count] in degrees
+ * </pre>
+ * Times outside the years 1-9999 (or not finite) and mirror ranges outside
+ * the field are answered with -1. A client whose request cannot be served
+ * loses its connection; the others are not affected.
+ * Angles for the most recent timestamps are kept in a small direct-mapped
+ * cache keyed by time and field layout instance, so many controllers asking
+ * for the same instant cost one solve and a geometry change is never served
+ * stale angles.
+ * The server only reads the geometry and location of the engine's state.
+ */
+public class SetpointServer implements AutoCloseable {
+
+    public static final int REQUEST_SIZE = 20;
+    public static final int RESPONSE_HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    public static final int MAX_MIRRORS_PER_REQUEST = (BUFFER_SIZE - RESPONSE_HEADER_SIZE) / 4;
+    private static final int CACHE_SLOTS = 64;
+    private static final double MIN_TIME = EpochTime.toSeconds(LocalDateTime.of(1, 1, 1, 0, 0));
+    private static final double MAX_TIME = EpochTime.toSeconds(LocalDateTime.of(10000, 1, 1, 0, 0));
+
+    private final SimulationEngine engine;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+
+    // Confined to the selector thread
+    private SolarCalculator solarCalculator;
+    private final double[] cacheTime = new double[CACHE_SLOTS];
+    private final FieldLayout[] cacheLayout = new FieldLayout[CACHE_SLOTS];
+    private final float[][] cacheAngles = new float[CACHE_SLOTS][];
+    private double[] scratch = new double[0];
+    private final double[] sun = new double[3];
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private int cachedDayOfYear;
+    private volatile IOException failure;
+
+    private volatile boolean running;
+    private volatile long requestCount;
+    private volatile long cacheHits;
+
+    /**
+     * Binds to the loopback interface
+     * @param port TCP port, 0 for any free port
+     */
+    public SetpointServer(SimulationEngine engine, int port) throws IOException {
+        this.engine = engine;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        Arrays.fill(cacheTime, Double.NaN);
+        this.thread = new Thread(this::serve, "setpoint-server");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Blocks until the server is closed
+     */
+    public void join() throws InterruptedException {
+        thread.join();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable() && flush(key)) {
+                                process(key); // requests held back while the output was full
+                            }
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    } catch (RuntimeException e) {
+                        System.err.println("Setpoint client dropped: " + e);
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                failure = e;
+                System.err.println("Error in setpoint server: " + e.getMessage());
+            }
+        } catch (ClosedSelectorException e) {
+            // closed
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (channel.read(connection.in) < 0) {
+            key.cancel();
+            channel.close();
+            return;
+        }
+        process(key);
+    }
+
+    private void process(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        connection.in.flip();
+        while (connection.in.remaining() >= REQUEST_SIZE) {
+            int position = connection.in.position();
+            int id = connection.in.getInt();
+            double time = connection.in.getDouble();
+            int first = connection.in.getInt();
+            int count = connection.in.getInt();
+            if (!answer(connection.out, id, time, first, count)) {
+                connection.in.position(position); // no room yet, retry after the next write
+                break;
+            }
+        }
+        connection.in.compact();
+        flush(key);
+    }
+
+    /**
+     * Encodes one response
+     * @return false if the output buffer has no room for it
+     */
+    private boolean answer(ByteBuffer out, int id, double time, int first, int count) {
+        FieldLayout layout = engine.getState().getFieldLayout();
+        int mirrors = layout.getMirrorCount();
+        boolean valid = first >= 0 && count >= 0 && count <= MAX_MIRRORS_PER_REQUEST
+                && (long) first + count <= mirrors && time >= MIN_TIME && time < MAX_TIME;
+        int size = RESPONSE_HEADER_SIZE + (valid ? 4 * count : 0);
+        if (out.remaining() < size) {
+            return false;
+        }
+        requestCount++;
+        out.putInt(id);
+        if (!valid) {
+            out.putInt(-1);
+            return true;
+        }
+        float[] angles = anglesAt(layout, time);
+        out.putInt(count);
+        for (int i = first; i < first + count; i++) {
+            out.putFloat(angles[i]);
+        }
+        return true;
+    }
+
+    private float[] anglesAt(FieldLayout layout, double time) {
+        SolarCalculator calculator = engine.getSolarCalculator();
+        if (calculator != solarCalculator) {
+            solarCalculator = calculator;
+            Arrays.fill(cacheTime, Double.NaN);
+        }
+
+        int slot = (Long.hashCode(Double.doubleToLongBits(time)) & 0x7fffffff) % CACHE_SLOTS;
+        if (cacheTime[slot] == time && cacheLayout[slot] == layout) {
+            cacheHits++;
+            return cacheAngles[slot];
+        }
+
+        long epochDay = EpochTime.epochDay(time);
+        if (epochDay != cachedEpochDay) {
+            cachedDayOfYear = EpochTime.dayOfYear(epochDay);
+            cachedEpochDay = epochDay;
+        }
+        solarCalculator.calculateSolarPosition(cachedDayOfYear,
+                (time - epochDay * EpochTime.SECONDS_PER_DAY) / 3600, sun);
+
+        int mirrors = layout.getMirrorCount();
+        if (scratch.length < mirrors) {
+            scratch = new double[mirrors];
+        }
+        engine.getOpticsKernel().calculateMirrorAngles(sun[0], sun[1],
+                layout.getTargetX(), layout.getTargetZ(), scratch, mirrors);
+        float[] angles = cacheAngles[slot];
+        if (angles == null || angles.length < mirrors) {
+            angles = new float[mirrors];
+            cacheAngles[slot] = angles;
+        }
+        for (int i = 0; i < mirrors; i++) {
+            angles[i] = (float) scratch[i];
+        }
+        cacheTime[slot] = time;
+        cacheLayout[slot] = layout;
+        return angles;
+    }
+
+    /**
+     * Writes pending output; reading pauses until the client has taken it
+     * @return true if the output buffer is now empty
+     */
+    private boolean flush(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        connection.out.flip();
+        ((SocketChannel) key.channel()).write(connection.out);
+        connection.out.compact();
+        boolean drained = connection.out.position() == 0;
+        key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+        return drained;
+    }
+
+    /**
+     * Stops the server and closes every connection
+     * @throws IOException the failure that stopped the selector thread, if any
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        server.close();
+        IOException error = failure;
+        if (error != null) {
+            throw new IOException("Setpoint server failed", error);
+        }
+    }
+
+    private static final class Connection {
+        final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+}
@@ -1,34 +1,42 @@
 package jazarifresnelsim.core;
 
-import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.domain.IIrradianceSource;
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.models.SimulationCheckpoint;
 import jazarifresnelsim.models.SimulationState;
-import jazarifresnelsim.models.MirrorPosition;
-import jazarifresnelsim.models.SolarPosition;
 import controlP5.ControlP5;
 import controlP5.Textfield;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
-import static jazarifresnelsim.domain.Constants.*;
 import jazarifresnelsim.ui.IGUIUpdateCallback;
 
 public class SimulationController implements ISimulationController {
 
     private final SimulationState state;
-    private final SolarCalculator solarCalculator;
+    private final SimulationEngine engine;
     private int frameCounter;
     private int selectedMonth = 1;
     private int selectedDay = 1;
     private static final float FRAMES_PER_UPDATE = 60; // Assuming 60 FPS
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
     private IGUIUpdateCallback guiCallback;
+    private StepPublisher stepPublisher;
 
     public SimulationController(SimulationState state) {
         this.state = state;
-        this.solarCalculator = new SolarCalculator(state.getLatitude(), state.getLongitude(), 0);
+        this.engine = new SimulationEngine(state);
         this.frameCounter = 0;
     }
 
+    /**
+     * Headless engine doing the actual stepping
+     */
+    public SimulationEngine getEngine() {
+        return engine;
+    }
+
     @Override
     public void startSimulation() {
         state.setAnimating(true);
@@ -52,31 +60,17 @@ public class SimulationController implements ISimulationController {
         frameCounter++;
         if (frameCounter >= FRAMES_PER_UPDATE) {
             // Mevcut zamanı simülasyon adımına göre güncelle
-            LocalDateTime currentTime = state.getCurrentTime();
-            double stepMinutes = state.getSimulationStepMinutes();
-            currentTime = currentTime.plusMinutes((long) stepMinutes);
-
-            // End time kontrolünü debug edelim
-            LocalDateTime endTime = state.getEndTime();
-            System.out.println("Current Time: " + currentTime.format(DateTimeFormatter.ofPattern("HH:mm")));
-            System.out.println("End Time: " + endTime.format(DateTimeFormatter.ofPattern("HH:mm")));
-
-            if (currentTime.isAfter(endTime)) {
+            if (!engine.step()) {
                 System.out.println("Simulation ended: Current time passed end time");
                 stopSimulation();
                 return;
             }
 
-            state.setCurrentTime(currentTime);
-
             if (guiCallback != null) {
-                String timeStr = currentTime.format(DateTimeFormatter.ofPattern("HH:mm"));
+                String timeStr = TIME_FORMAT.format(state.getCurrentTime());
                 guiCallback.onTimeUpdate(timeStr);
             }
 
-            updateSolarPosition();
-            updateMirrorPositions();
-
             frameCounter = 0;
         }
     }
@@ -85,9 +79,55 @@ public class SimulationController implements ISimulationController {
         this.guiCallback = callback;
     }
 
+    /**
+     * Stream of step snapshots with backpressure; created and attached to
+     * the engine on first use, so runs without subscribers pay nothing
+     */
+    public synchronized StepPublisher getStepPublisher() {
+        if (stepPublisher == null) {
+            stepPublisher = new StepPublisher();
+            engine.addStepListener(stepPublisher);
+        }
+        return stepPublisher;
+    }
+
+    /**
+     * Replaces the clear-sky intensity with DNI from the given source,
+     * e.g. a measured weather file. Pass null to return to the clear-sky model.
+     */
+    public void setIrradianceSource(IIrradianceSource source) {
+        engine.setIrradianceSource(source);
+    }
+
+    /**
+     * Selects the kernel used for mirror angle computation
+     */
+    public void setOpticsKernel(IOpticsKernel kernel) {
+        engine.setOpticsKernel(kernel);
+    }
+
+    /**
+     * Enables periodic checkpointing of the state. Pass null to disable.
+     */
+    public void setCheckpointManager(CheckpointManager manager) {
+        engine.setCheckpointManager(manager);
+    }
+
+    /**
+     * Restores the state from a checkpoint file; stepping continues from the
+     * saved time with the saved solar and mirror positions.
+     */
+    public void resumeFromCheckpoint(Path file) throws IOException {
+        SimulationCheckpoint checkpoint = engine.resumeFromCheckpoint(file);
+        selectedMonth = checkpoint.getStartTime().getMonthValue();
+        selectedDay = checkpoint.getStartTime().getDayOfMonth();
+        frameCounter = 0;
+        updateCurrentTimeDisplay();
+    }
+
     private void updateCurrentTimeDisplay() {
         if (guiCallback != null) {
-            String currentTimeStr = state.getCurrentTime().format(DateTimeFormatter.ofPattern("HH:mm"));
+            String currentTimeStr = TIME_FORMAT.format(state.getCurrentTime());
             guiCallback.onTimeUpdate(currentTimeStr);
         }
     }
@@ -95,7 +135,7 @@ public class SimulationController implements ISimulationController {
     @Override
     public void updateGUIDisplay(ControlP5 cp5) {
         // Interface'den implement edilen metod
-        String currentTimeStr = state.getCurrentTime().format(DateTimeFormatter.ofPattern("HH:mm"));
+        String currentTimeStr = TIME_FORMAT.format(state.getCurrentTime());
         if (cp5 != null) {
             Textfield currentTimeField = cp5.get(Textfield.class, "CurrentTime");
             if (currentTimeField != null) {
@@ -121,11 +161,7 @@ public class SimulationController implements ISimulationController {
 
     @Override
     public void setLocation(double latitude, double longitude) {
-        state.setLatitude(latitude);
-        state.setLongitude(longitude);
-        solarCalculator.updateLocation(latitude, longitude);
-        updateSolarPosition();
-        updateMirrorPositions();
+        engine.setLocation(latitude, longitude);
     }
 
 //    private void updateSolarPosition() {
@@ -165,58 +201,6 @@ public class SimulationController implements ISimulationController {
 //        state.updateMirrorPositions(newPositions);
 //        System.out.println("Updated positions size: " + newPositions.size());
 //    }
-    private double calculateOptimalMirrorAngle(double mirrorX, SolarPosition sunPos) {
-        // Convert sun position to radians
-        double sunAltitude = Math.toRadians(sunPos.getAltitudeAngle());
-        double sunAzimuth = Math.toRadians(sunPos.getAzimuthAngle());
-
-        // Sun ray vector
-        double[] sunRay = {
-            -Math.cos(sunAltitude) * Math.sin(sunAzimuth),
-            Math.cos(sunAltitude) * Math.cos(sunAzimuth),
-            Math.sin(sunAltitude)
-        };
-
-        // Target vector (to receiver)
-        double[] targetRay = {
-            -mirrorX,
-            0,
-            RECEIVER_HEIGHT - (SUPPORT_HEIGHT + 2)
-        };
-
-        // Normalize target ray
-        double targetMagnitude = Math.sqrt(
-                targetRay[0] * targetRay[0]
-                + targetRay[1] * targetRay[1]
-                + targetRay[2] * targetRay[2]
-        );
-
-        for (int i = 0; i < 3; i++) {
-            targetRay[i] /= targetMagnitude;
-        }
-
-        // Normal vector (bisector of incident and reflected rays)
-        double[] normalVector = {
-            sunRay[0] + targetRay[0],
-            sunRay[1] + targetRay[1],
-            sunRay[2] + targetRay[2]
-        };
-
-        // Normalize normal vector
-        double normalMagnitude = Math.sqrt(
-                normalVector[0] * normalVector[0]
-                + normalVector[1] * normalVector[1]
-                + normalVector[2] * normalVector[2]
-        );
-
-        for (int i = 0; i < 3; i++) {
-            normalVector[i] /= normalMagnitude;
-        }
-
-        // Calculate rotation angle around Y axis
-        return Math.toDegrees(Math.atan2(normalVector[0], normalVector[2]));
-    }
-
     private void updateCurrentTime() {
         // Sadece current time'ı start time'a eşitleyelim
         state.setCurrentTime(state.getStartTime());
@@ -247,40 +231,12 @@ public class SimulationController implements ISimulationController {
 
     @Override
     public void updateSolarPosition() {
-        SolarPosition newPosition = solarCalculator.calculateSolarPosition(state.getCurrentTime());
-        state.setCurrentSolarPosition(newPosition);
+        engine.updateSolarPosition();
     }
 
     @Override
     public void updateMirrorPositions() {
-        List<MirrorPosition> newPositions = new ArrayList<>();
-        SolarPosition sunPos = state.getCurrentSolarPosition();
-
-        if (sunPos == null) {
-            return;
-        }
-
-        // Constants.NUM_REFLECTORS yerine state.getNumReflectors() kullan
-        int numReflectors = state.getNumReflectors();
-
-        for (int i = 0; i < numReflectors; i++) {
-            double offset = (i < numReflectors / 2)
-                    ? -(i + 0.5) : (i - numReflectors / 2 + 0.5);
-
-            // state'den spacing değerini al    
-            double xOffset = offset * state.getReflectorSpacing();
-
-            double rotationAngle = calculateOptimalMirrorAngle(xOffset, sunPos);
-
-            newPositions.add(new MirrorPosition(
-                    rotationAngle,
-                    xOffset,
-                    state.getSupportHeight() + 2, // state'den support height değerini al
-                    i
-            ));
-        }
-
-        state.updateMirrorPositions(newPositions);
+        engine.updateMirrorPositions();
     }
 
 }
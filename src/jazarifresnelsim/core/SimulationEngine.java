@@ -0,0 +1,494 @@
+// SimulationEngine.java
+package jazarifresnelsim.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jazarifresnelsim.domain.EpochTime;
+import jazarifresnelsim.domain.IIrradianceSource;
+import jazarifresnelsim.domain.IamTable;
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.MirrorAngleTable;
+import jazarifresnelsim.domain.OpticsKernels;
+import jazarifresnelsim.domain.ReceiverRayTracer;
+import jazarifresnelsim.domain.ReceiverThermalModel;
+import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.models.FieldLayout;
+import jazarifresnelsim.models.FluxMap;
+import jazarifresnelsim.models.SimulationCheckpoint;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Headless simulation engine: advances a {@link SimulationState} step by step
+ * and keeps its solar and mirror positions up to date.
+ * <p>
+ * Depends only on the core, domain and models packages, so command-line and
+ * batch runs never load Processing, JOGL or ControlP5. The GUI controller
+ * adds frame pacing on top of it.
+ * <p>
+ * The clock is the state's epoch-second double, so steps of any length,
+ * down to fractions of a second, advance exactly. A step allocates nothing
+ * unless an irradiance source needs the calendar time or a flux map or
+ * the GUI asks for object views of the state; step listeners get
+ * primitives.
+ */
+public class SimulationEngine {
+
+    private final SimulationState state;
+    private volatile SolarCalculator solarCalculator; // immutable, shared by every engine at the site
+    private IIrradianceSource irradianceSource; // null -> clear-sky model of SolarCalculator
+    private CheckpointManager checkpointManager;
+    private IOpticsKernel opticsKernel = OpticsKernels.getDefault();
+    private FluxMapCalculator fluxMapCalculator;
+    private ReceiverThermalModel thermalModel;
+    private IamTable iamTable;
+    private TrackingCommandGenerator trackingCommands;
+    private MirrorAngleTable angleTable;
+    private final List<IStepListener> stepListeners = new CopyOnWriteArrayList<>();
+
+    // Scratch buffers reused by every step
+    private final double[] sun = new double[3];
+    private double[] rotationAngles = new double[0];
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private int cachedDayOfYear;
+
+    public SimulationEngine(SimulationState state) {
+        this.state = state;
+        this.solarCalculator = SolarCalculator.forSite(state.getLatitude(), state.getLongitude());
+    }
+
+    public SimulationState getState() {
+        return state;
+    }
+
+    /**
+     * Rewinds to the start time and recomputes positions
+     */
+    public void reset() {
+        state.setCurrentTime(state.getStartTime());
+        updateSolarPosition();
+        updateMirrorPositions();
+        if (thermalModel != null) {
+            thermalModel.reset(thermalModel.getInletTemperature());
+            state.setReceiverOutletTemperature(thermalModel.getOutletTemperature());
+        }
+    }
+
+    /**
+     * Advances the simulation by one step
+     * @return false if the next step would pass the end time; the state is then left unchanged
+     */
+    public boolean step() {
+        double stepSeconds = state.getSimulationStepMinutes() * 60;
+        double next = EpochTime.round(state.getCurrentTimeSeconds() + stepSeconds);
+        if (!(stepSeconds > 0) || next > state.getEndTimeSeconds()) {
+            return false;
+        }
+
+        state.setCurrentTimeSeconds(next);
+        updateSolarPosition();
+        updateMirrorPositions();
+        updateReceiverTemperature(state.getSimulationStepMinutes() * 60);
+
+        if (checkpointManager != null) {
+            checkpointManager.onStep(this);
+        }
+        return true;
+    }
+
+    public void setLocation(double latitude, double longitude) {
+        state.setLatitude(latitude);
+        state.setLongitude(longitude);
+        updateSolarPosition();
+        updateMirrorPositions();
+    }
+
+    /**
+     * Replaces the clear-sky intensity with DNI from the given source,
+     * e.g. a measured weather file. Pass null to return to the clear-sky model.
+     */
+    public void setIrradianceSource(IIrradianceSource source) {
+        this.irradianceSource = source;
+        updateSolarPosition();
+    }
+
+    /**
+     * Selects the kernel used for mirror angle computation
+     */
+    public void setOpticsKernel(IOpticsKernel kernel) {
+        this.opticsKernel = kernel;
+        updateMirrorPositions();
+    }
+
+    public IOpticsKernel getOpticsKernel() {
+        return opticsKernel;
+    }
+
+    /**
+     * Enables the receiver flux map, recomputed after every mirror update.
+     * Pass null to disable; the caller owns and closes the calculator.
+     */
+    public void setFluxMapCalculator(FluxMapCalculator calculator) {
+        this.fluxMapCalculator = calculator;
+        if (calculator == null) {
+            state.setFluxMap(null);
+        } else {
+            state.setFluxMap(calculator.compute(state));
+        }
+    }
+
+    /**
+     * Ray traces an IAM table for the current geometry. This is the expensive
+     * part; {@link #setIamTable} then costs a lookup per step.
+     * @param stepDegrees Grid spacing of the incidence angles
+     */
+    public IamTable createIamTable(double stepDegrees) {
+        FieldLayout layout = state.getFieldLayout();
+        double receiverHeight = state.getReceiverHeight();
+        double[] xOffsets = new double[layout.getMirrorCount()];
+        double[] heights = new double[layout.getMirrorCount()];
+        for (int i = 0; i < xOffsets.length; i++) {
+            xOffsets[i] = layout.getRelativeX(i);
+            heights[i] = layout.getRelativeHeight(i, receiverHeight);
+        }
+        ReceiverRayTracer tracer = new ReceiverRayTracer(state.getReflectorWidth(), state.getReflectorLength(),
+                receiverHeight, state.getReceiverDiameter() / 2.0, state.getReflectorLength(),
+                1, 1, 16, 32);
+        return IamTable.compute(tracer, xOffsets, heights, stepDegrees);
+    }
+
+    /**
+     * Enables per-step optical efficiency from a precomputed table. Pass
+     * null to disable.
+     */
+    public void setIamTable(IamTable table) {
+        this.iamTable = table;
+        updateOpticalEfficiency();
+    }
+
+    public IamTable getIamTable() {
+        return iamTable;
+    }
+
+    /**
+     * Feeds every mirror update to a tracking command generator, which turns
+     * the ideal angles into sparse drive commands. Pass null to disable.
+     */
+    public void setTrackingCommandGenerator(TrackingCommandGenerator generator) {
+        this.trackingCommands = generator;
+    }
+
+    public TrackingCommandGenerator getTrackingCommandGenerator() {
+        return trackingCommands;
+    }
+
+    /**
+     * Precomputes a year of mirror angles for the current site and field
+     * @param stepMinutes Sample spacing in minutes
+     */
+    public MirrorAngleTable createMirrorAngleTable(int stepMinutes) {
+        return MirrorAngleTable.generate(getSolarCalculator(), opticsKernel, state.getFieldLayout(), stepMinutes);
+    }
+
+    /**
+     * Looks mirror angles up in a precomputed table instead of solving them,
+     * e.g. for fast replay. The kernel is still used outside the table's
+     * daylight window and whenever the table does not match the site or the
+     * field geometry. Pass null to disable.
+     */
+    public void setMirrorAngleTable(MirrorAngleTable table) {
+        this.angleTable = table;
+        updateMirrorPositions();
+    }
+
+    /**
+     * Starts precomputing the sun and mirror states from start to end at the
+     * current step length in the background, for {@link #showTimeline}
+     */
+    public TimelineCache createTimeline(LocalDateTime start, LocalDateTime end) {
+        TimelineCache timeline = new TimelineCache(getSolarCalculator(), irradianceSource, opticsKernel,
+                state.getFieldLayout(), start, end, state.getSimulationStepMinutes());
+        timeline.start();
+        return timeline;
+    }
+
+    /**
+     * Jumps to a fractional step of a precomputed timeline without stepping:
+     * sets the time, sun and mirror positions from the cache. Listeners, the
+     * tracking generator and the thermal model are not advanced.
+     * @return false if the step is not computed yet or the field has changed
+     */
+    public boolean showTimeline(TimelineCache timeline, double position) {
+        FieldLayout layout = state.getFieldLayout();
+        if (timeline.getFieldLayout() != layout) {
+            return false;
+        }
+        if (rotationAngles.length < layout.getMirrorCount()) {
+            rotationAngles = new double[layout.getMirrorCount()];
+        }
+        if (!timeline.sample(position, sun, rotationAngles)) {
+            return false;
+        }
+        state.setCurrentTime(timeline.getTime(position));
+        state.setCurrentSolarPosition(sun[0], sun[1], sun[2]);
+        publishMirrorPositions(layout, rotationAngles);
+        if (fluxMapCalculator != null) {
+            state.setFluxMap(fluxMapCalculator.compute(state));
+        }
+        return true;
+    }
+
+    /**
+     * Registers a listener called after every mirror update, e.g.
+     * {@link MirrorStatistics}. May be called from any thread.
+     */
+    public void addStepListener(IStepListener listener) {
+        stepListeners.add(listener);
+    }
+
+    public void removeStepListener(IStepListener listener) {
+        stepListeners.remove(listener);
+    }
+
+    /**
+     * Moves the clock to an arbitrary time and recomputes positions, e.g.
+     * to jump to the next predicted tracking command instead of stepping.
+     * Counts as a step for checkpointing.
+     */
+    public void advanceTo(LocalDateTime time) {
+        state.setCurrentTime(time);
+        updateSolarPosition();
+        updateMirrorPositions();
+        if (checkpointManager != null) {
+            checkpointManager.onStep(this);
+        }
+    }
+
+    /**
+     * Couples a receiver thermal model: every step it absorbs the power of the
+     * flux map, or an estimate from DNI and mirror cosines when no flux map is
+     * computed, and advances by the step length. Pass null to disable.
+     */
+    public void setThermalModel(ReceiverThermalModel model) {
+        this.thermalModel = model;
+        state.setReceiverOutletTemperature(model != null ? model.getOutletTemperature() : Double.NaN);
+    }
+
+    public ReceiverThermalModel getThermalModel() {
+        return thermalModel;
+    }
+
+    /**
+     * Enables periodic checkpointing of the state. Pass null to disable.
+     */
+    public void setCheckpointManager(CheckpointManager manager) {
+        this.checkpointManager = manager;
+    }
+
+    /**
+     * Snapshot of the state together with the receiver temperatures and
+     * drive setpoints of the attached thermal model and command generator
+     */
+    public SimulationCheckpoint createCheckpoint() {
+        double[] temperatures = null;
+        double thermalTime = 0;
+        if (thermalModel != null) {
+            temperatures = new double[thermalModel.getNodeCount()];
+            thermalModel.getTemperatures(temperatures);
+            thermalTime = thermalModel.getTime();
+        }
+        return state.createCheckpoint().withModels(temperatures, thermalTime,
+                trackingCommands != null ? trackingCommands.createCheckpoint() : null);
+    }
+
+    /**
+     * Restores the state from a checkpoint file; stepping continues from the
+     * saved time with the saved solar and mirror positions.
+     * @return the restored checkpoint
+     */
+    public SimulationCheckpoint resumeFromCheckpoint(Path file) throws IOException {
+        return resumeFromCheckpoint(CheckpointManager.load(file));
+    }
+
+    /**
+     * Restores the state and the attached thermal model and command
+     * generator. Attach those first; a model the checkpoint has no state
+     * for starts fresh, as after {@link #reset}.
+     * @return the restored checkpoint
+     */
+    public SimulationCheckpoint resumeFromCheckpoint(SimulationCheckpoint checkpoint) {
+        state.restoreCheckpoint(checkpoint);
+        solarCalculator = SolarCalculator.forSite(checkpoint.getLatitude(), checkpoint.getLongitude());
+        if (thermalModel != null) {
+            double[] temperatures = checkpoint.getReceiverTemperatures();
+            if (temperatures != null && temperatures.length == thermalModel.getNodeCount()) {
+                thermalModel.restore(temperatures, checkpoint.getReceiverModelTime());
+            } else {
+                thermalModel.reset(thermalModel.getInletTemperature());
+            }
+            state.setReceiverOutletTemperature(thermalModel.getOutletTemperature());
+        }
+        if (trackingCommands != null) {
+            if (checkpoint.getTracking() != null) {
+                trackingCommands.restoreCheckpoint(checkpoint.getTracking());
+            } else {
+                trackingCommands.reset();
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Calculator for the current location of the state; swapped for the
+     * shared one of the new site when the location has changed
+     */
+    public SolarCalculator getSolarCalculator() {
+        SolarCalculator calculator = solarCalculator;
+        if (!calculator.isAt(state.getLatitude(), state.getLongitude())) {
+            calculator = SolarCalculator.forSite(state.getLatitude(), state.getLongitude());
+            solarCalculator = calculator;
+        }
+        return calculator;
+    }
+
+    public void updateSolarPosition() {
+        double seconds = state.getCurrentTimeSeconds();
+        long epochDay = EpochTime.epochDay(seconds);
+        if (epochDay != cachedEpochDay) {
+            cachedDayOfYear = EpochTime.dayOfYear(epochDay);
+            cachedEpochDay = epochDay;
+        }
+        double hour = (seconds - epochDay * EpochTime.SECONDS_PER_DAY) / 3600;
+        getSolarCalculator().calculateSolarPosition(cachedDayOfYear, hour, sun);
+        if (irradianceSource != null) {
+            sun[2] = irradianceSource.getDirectNormalIrradiance(seconds, sun[0]);
+        }
+        state.setCurrentSolarPosition(sun[0], sun[1], sun[2]);
+    }
+
+    private void updateReceiverTemperature(double dtSeconds) {
+        if (thermalModel == null) {
+            return;
+        }
+        thermalModel.clearAbsorbedPower();
+        if (fluxMapCalculator != null) {
+            FluxMap map = state.getFluxMap(); // null while the sun is down
+            if (map != null) {
+                int bins = map.getAxialBins();
+                for (int a = 0; a < bins; a++) {
+                    thermalModel.addAbsorbedPower((double) a / bins, (double) (a + 1) / bins, map.getAxialPower(a));
+                }
+            }
+        } else {
+            thermalModel.setUniformAbsorbedPower(estimateReceiverPower());
+        }
+        thermalModel.step(dtSeconds);
+        state.setReceiverOutletTemperature(thermalModel.getOutletTemperature());
+    }
+
+    /**
+     * DNI times the mirror area times the optical efficiency of the IAM
+     * table; without a table, DNI times the projected mirror area, assuming
+     * every reflected ray reaches the receiver (no end or spillage losses)
+     */
+    private double estimateReceiverPower() {
+        if (!state.getCurrentSolarPosition(sun) || sun[0] <= 0) {
+            return 0;
+        }
+        FieldLayout layout = state.getFieldLayout();
+        if (iamTable != null) {
+            return sun[2] * state.getOpticalEfficiency()
+                    * layout.getTotalWidth() * state.getReflectorLength() * 1e-4;
+        }
+        double altitude = Math.toRadians(sun[0]);
+        double azimuth = Math.toRadians(sun[1]);
+        double sunX = -Math.cos(altitude) * Math.sin(azimuth);
+        double sunZ = Math.sin(altitude);
+
+        rotationAngles = state.getMirrorAngles(rotationAngles);
+        int mirrors = Math.min(state.getMirrorCount(), layout.getMirrorCount());
+        double power = 0;
+        for (int i = 0; i < mirrors; i++) {
+            double angle = Math.toRadians(rotationAngles[i]);
+            double cosIncidence = sunX * Math.sin(angle) + sunZ * Math.cos(angle);
+            if (cosIncidence > 0) {
+                double mirrorArea = layout.getWidth(i) * state.getReflectorLength() * 1e-4;
+                power += sun[2] * cosIncidence * mirrorArea;
+            }
+        }
+        return power;
+    }
+
+    public void updateMirrorPositions() {
+        if (!state.getCurrentSolarPosition(sun)) {
+            return;
+        }
+
+        FieldLayout layout = state.getFieldLayout();
+        int numReflectors = layout.getMirrorCount();
+        if (rotationAngles.length < numReflectors) {
+            rotationAngles = new double[numReflectors];
+        }
+        double seconds = state.getCurrentTimeSeconds();
+        MirrorAngleTable table = angleTable;
+        boolean fromTable = false;
+        if (table != null && table.getLatitude() == state.getLatitude()
+                && table.getLongitude() == state.getLongitude() && table.matches(layout)) {
+            long epochDay = EpochTime.epochDay(seconds);
+            int day = epochDay == cachedEpochDay ? cachedDayOfYear : EpochTime.dayOfYear(epochDay);
+            fromTable = table.getAngles(day, (seconds - epochDay * EpochTime.SECONDS_PER_DAY) / 60, rotationAngles);
+        }
+        if (!fromTable) {
+            opticsKernel.calculateMirrorAngles(sun[0], sun[1],
+                    layout.getTargetX(), layout.getTargetZ(), rotationAngles, numReflectors);
+        }
+
+        publishMirrorPositions(layout, rotationAngles);
+
+        if (trackingCommands != null) {
+            trackingCommands.update(seconds, rotationAngles, numReflectors);
+        }
+        if (!stepListeners.isEmpty()) {
+            for (IStepListener listener : stepListeners) {
+                listener.onStep(seconds, sun[0], sun[1], sun[2], rotationAngles, numReflectors);
+            }
+        }
+
+        if (fluxMapCalculator != null) {
+            state.setFluxMap(fluxMapCalculator.compute(state));
+        }
+    }
+
+    private void publishMirrorPositions(FieldLayout layout, double[] rotationAngles) {
+        state.updateMirrorAngles(layout, rotationAngles, layout.getMirrorCount());
+        updateOpticalEfficiency();
+    }
+
+    private void updateOpticalEfficiency() {
+        if (iamTable == null || !state.getCurrentSolarPosition(sun)) {
+            state.setOpticalEfficiency(Double.NaN);
+            return;
+        }
+        state.setOpticalEfficiency(iamTable.getEfficiencyForSun(sun[0], sun[1]));
+    }
+
+    /**
+     * Ideal mirror angles for an arbitrary sun position. Leaves the state
+     * untouched, so it can serve requests alongside the stepping thread.
+     * @param out Receives one angle per mirror
+     */
+    public void calculateMirrorAngles(double sunAltitude, double sunAzimuth, double[] out) {
+        FieldLayout layout = state.getFieldLayout();
+        opticsKernel.calculateMirrorAngles(sunAltitude, sunAzimuth,
+                layout.getTargetX(), layout.getTargetZ(), out, layout.getMirrorCount());
+    }
+
+    /**
+     * Pivot X positions of the mirrors of the field layout
+     */
+    public double[] getMirrorOffsets() {
+        return state.getFieldLayout().getXPositions();
+    }
+}
@@ -0,0 +1,293 @@
+// StepPublisher.java
+package jazarifresnelsim.core;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import jazarifresnelsim.models.SolarPosition;
+import jazarifresnelsim.models.StepSnapshot;
+
+/**
+ * Publishes every step of a {@link SimulationEngine} as an immutable
+ * {@link StepSnapshot} to any number of {@link Flow.Subscriber}s, e.g.
+ * exporters, statistics, the GUI or network servers.
+ * <p>
+ * Register it with {@link SimulationEngine#addStepListener}. The stepping
+ * thread only copies the step and appends it to a bounded queue per
+ * subscriber; delivery runs on the "step-publisher" daemon threads, in
+ * order and never concurrently for one subscriber, as the subscriber
+ * requests items. A subscriber that falls behind receives the queued
+ * snapshots in a burst once it requests again; when its queue is full the
+ * subscription's {@link OverflowPolicy} drops a snapshot instead of
+ * stalling the simulation. Dropped snapshots show up as gaps in
+ * {@link StepSnapshot#getSequence()} and in {@link #getDroppedCount()}.
+ * Without subscribers a step costs nothing.
+ */
+public class StepPublisher implements Flow.Publisher<StepSnapshot>, IStepListener, AutoCloseable {
+
+    /**
+     * What to drop when a subscriber's queue is full
+     */
+    public enum OverflowPolicy {
+        /** Discard the oldest queued snapshot; the subscriber stays current */
+        DROP_OLDEST,
+        /** Discard the new snapshot; the subscriber sees an unbroken prefix */
+        DROP_NEWEST
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final List<StepSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "step-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int defaultCapacity;
+    private final OverflowPolicy defaultPolicy;
+    private long sequence;
+    private volatile boolean closed;
+
+    public StepPublisher() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * @param capacity Queue size per subscriber for {@link #subscribe(Flow.Subscriber)}
+     * @param policy Overflow policy for {@link #subscribe(Flow.Subscriber)}
+     */
+    public StepPublisher(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.defaultCapacity = capacity;
+        this.defaultPolicy = policy;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super StepSnapshot> subscriber) {
+        subscribe(subscriber, defaultCapacity, defaultPolicy);
+    }
+
+    /**
+     * Subscribes with its own queue size and overflow policy
+     */
+    public void subscribe(Flow.Subscriber<? super StepSnapshot> subscriber, int capacity, OverflowPolicy policy) {
+        if (subscriber == null || policy == null) {
+            throw new NullPointerException();
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        StepSubscription subscription = new StepSubscription(subscriber, capacity, policy);
+        if (closed) {
+            subscription.complete();
+        } else {
+            subscriptions.add(subscription);
+        }
+        subscription.signal(); // onSubscribe, on a delivery thread
+    }
+
+    @Override
+    public void onStep(double timeSeconds, double altitude, double azimuth, double dni,
+            double[] mirrorAngles, int count) {
+        if (closed || subscriptions.isEmpty()) {
+            return;
+        }
+        StepSnapshot snapshot = new StepSnapshot(sequence++, timeSeconds, new SolarPosition(altitude, azimuth, dni),
+                mirrorAngles, count);
+        for (StepSubscription subscription : subscriptions) {
+            subscription.offer(snapshot);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Snapshots dropped so far over all current subscribers
+     */
+    public long getDroppedCount() {
+        long dropped = 0;
+        for (StepSubscription subscription : subscriptions) {
+            dropped += subscription.getDropped();
+        }
+        return dropped;
+    }
+
+    /**
+     * Completes every subscription after its queued snapshots are delivered;
+     * later steps are ignored
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (StepSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        executor.shutdown();
+    }
+
+    private final class StepSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super StepSnapshot> subscriber;
+        private final int capacity;
+        private final OverflowPolicy policy;
+        private final AtomicInteger work = new AtomicInteger();
+
+        // Guarded by this
+        private final ArrayDeque<StepSnapshot> queue = new ArrayDeque<>();
+        private long demand;
+        private long dropped;
+        private boolean completed;
+        private boolean cancelled;
+        private Throwable error;
+
+        // Confined to the draining thread
+        private boolean subscribed;
+        private boolean terminated;
+
+        StepSubscription(Flow.Subscriber<? super StepSnapshot> subscriber, int capacity, OverflowPolicy policy) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.policy = policy;
+        }
+
+        void offer(StepSnapshot snapshot) {
+            synchronized (this) {
+                if (completed || cancelled) {
+                    return;
+                }
+                if (queue.size() >= capacity) {
+                    dropped++;
+                    if (policy == OverflowPolicy.DROP_NEWEST) {
+                        return;
+                    }
+                    queue.pollFirst();
+                }
+                queue.addLast(snapshot);
+                if (demand == 0) {
+                    return; // delivered on the next request
+                }
+            }
+            signal();
+        }
+
+        synchronized long getDropped() {
+            return dropped;
+        }
+
+        void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            signal();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Non-positive request: " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                queue.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Schedules a drain unless one is running; the running one sees the new work
+         */
+        void signal() {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    drain(); // publisher closed; finish on the caller
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    try {
+                        subscriber.onSubscribe(this);
+                    } catch (Throwable t) {
+                        fail(t);
+                    }
+                }
+                while (!terminated) {
+                    StepSnapshot next;
+                    Throwable failure;
+                    boolean done;
+                    synchronized (this) {
+                        if (cancelled) {
+                            terminated = true;
+                            break;
+                        }
+                        failure = error;
+                        next = failure == null && demand > 0 ? queue.pollFirst() : null;
+                        if (next != null && demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                        done = completed && queue.isEmpty();
+                    }
+                    if (failure != null) {
+                        cancel();
+                        terminated = true;
+                        subscriber.onError(failure);
+                    } else if (next != null) {
+                        try {
+                            subscriber.onNext(next);
+                        } catch (Throwable t) {
+                            fail(t);
+                        }
+                    } else {
+                        if (done) {
+                            terminated = true;
+                            subscriptions.remove(this);
+                            subscriber.onComplete();
+                        }
+                        break;
+                    }
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * A throwing subscriber is cancelled and told why
+         */
+        private void fail(Throwable t) {
+            cancel();
+            terminated = true;
+            try {
+                subscriber.onError(t);
+            } catch (Throwable ignored) {
+                // nothing left to tell
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+// SweepQueue.java
+package jazarifresnelsim.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Durable work queue of a parameter sweep in a local directory, shared by a
+ * coordinator and any number of worker processes.
+ * <pre>
+ * sweep.properties            chunk count and CSV header; written last, marks a complete queue
+ * pending/chunk-NNNNN.csv     chunks nobody works on
+ * claimed/chunk-NNNNN.csv.ID  chunks leased by worker ID; the modification time is the heartbeat
+ * results/chunk-NNNNN.csv     finished chunks
+ * failures/chunk-NNNNN.csv    number of times a case of a chunk threw
+ * failed/chunk-NNNNN.csv      chunks given up after {@value #MAX_FAILURES} failures
+ * </pre>
+ * Every transition is an atomic rename within the directory, so exactly
+ * one worker wins a claim. A claim touches the chunk before renaming it,
+ * so a fresh lease never carries the time the chunk was queued. A worker
+ * renews its lease by touching its claimed file; leases not renewed within
+ * the lease time (the worker was killed) are renamed back to pending by
+ * whoever notices, and a worker whose renewal fails has lost its lease.
+ * A chunk whose cases keep throwing is moved to failed instead of being
+ * leased again, so one bad case cannot hold the sweep up forever; the sweep
+ * then completes without it. Expired leases do not count as failures: a
+ * chunk can outlive any number of killed workers. Results are
+ * written to a temporary file and moved into place, so a result is either
+ * complete or absent; a chunk run twice after a lost lease produces the
+ * same file again. Workers can therefore join or die at any time without
+ * losing or duplicating results. The directory must be on a local file
+ * system with atomic renames.
+ */
+public class SweepQueue {
+
+    private static final String DESCRIPTOR = "sweep.properties";
+    private static final String PREFIX = "chunk-";
+    private static final String SUFFIX = ".csv";
+    /** Releases of a chunk after a failed case after which it is moved to failed */
+    public static final int MAX_FAILURES = 3;
+
+    private final Path directory;
+    private final Path pending;
+    private final Path claimed;
+    private final Path results;
+    private final Path failures;
+    private final Path failed;
+    private final int chunks;
+    private final String header;
+
+    private SweepQueue(Path directory, int chunks, String header) {
+        this.directory = directory;
+        this.pending = directory.resolve("pending");
+        this.claimed = directory.resolve("claimed");
+        this.results = directory.resolve("results");
+        this.failures = directory.resolve("failures");
+        this.failed = directory.resolve("failed");
+        this.chunks = chunks;
+        this.header = header;
+    }
+
+    /**
+     * Partitions the rows into chunks in a new queue. An existing complete
+     * queue in the directory is opened instead, so a restarted coordinator
+     * resumes; an incomplete one (the coordinator died while creating it) is
+     * created again.
+     * @param header CSV header of the rows
+     * @param rows CSV lines without line breaks
+     */
+    public static SweepQueue create(Path directory, String header, List<String> rows, int chunkSize)
+            throws IOException {
+        if (Files.exists(directory.resolve(DESCRIPTOR))) {
+            return open(directory);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        int chunks = (rows.size() + chunkSize - 1) / chunkSize;
+        SweepQueue queue = new SweepQueue(directory, chunks, header);
+        for (Path dir : new Path[]{queue.pending, queue.claimed, queue.results, queue.failures, queue.failed}) {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+        }
+        for (int c = 0; c < chunks; c++) {
+            Path file = queue.pending.resolve(chunkName(c));
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write(header);
+                out.write('\n');
+                for (int r = c * chunkSize; r < Math.min(rows.size(), (c + 1) * chunkSize); r++) {
+                    out.write(rows.get(r));
+                    out.write('\n');
+                }
+            }
+        }
+        Properties descriptor = new Properties();
+        descriptor.setProperty("chunks", Integer.toString(chunks));
+        descriptor.setProperty("header", header);
+        Path temp = directory.resolve(DESCRIPTOR + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            descriptor.store(out, "Sweep queue");
+        }
+        move(temp, directory.resolve(DESCRIPTOR));
+        return queue;
+    }
+
+    /**
+     * Opens a queue created by {@link #create}
+     */
+    public static SweepQueue open(Path directory) throws IOException {
+        Properties descriptor = new Properties();
+        try (var in = Files.newBufferedReader(directory.resolve(DESCRIPTOR), StandardCharsets.UTF_8)) {
+            descriptor.load(in);
+        } catch (NoSuchFileException e) {
+            throw new IOException("No sweep queue in " + directory);
+        }
+        return new SweepQueue(directory, Integer.parseInt(descriptor.getProperty("chunks")),
+                descriptor.getProperty("header"));
+    }
+
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * Leases the next pending chunk
+     * @return the claimed file, or null if nothing is pending
+     */
+    public Path claim(String workerId) throws IOException {
+        for (Path file : list(pending, SUFFIX)) {
+            String chunk = file.getFileName().toString();
+            if (Files.exists(results.resolve(chunk))) {
+                Files.deleteIfExists(file); // finished by a worker whose lease had expired
+                continue;
+            }
+            Path lease = claimed.resolve(chunk + "." + workerId);
+            try {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                move(file, lease);
+            } catch (NoSuchFileException e) {
+                continue; // another worker was faster
+            }
+            if (!renew(lease)) {
+                continue; // reclaimed already
+            }
+            return lease;
+        }
+        return null;
+    }
+
+    /**
+     * Records a failure of a chunk; only the lease holder calls this
+     * @return the number of failures including this one
+     */
+    private int countFailure(String chunk) throws IOException {
+        Path file = failures.resolve(chunk);
+        int count = 1;
+        try {
+            count += Integer.parseInt(Files.readString(file, StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException e) {
+            // first failure
+        } catch (NumberFormatException e) {
+            // torn write of a killed worker; count it as one failure
+        }
+        Files.writeString(file, Integer.toString(count), StandardCharsets.UTF_8);
+        return count;
+    }
+
+    /**
+     * Gives a leased chunk up after one of its cases failed: back to pending
+     * for another worker, or to failed after {@value #MAX_FAILURES} failures
+     */
+    public void release(Path lease) throws IOException {
+        String chunk = chunkOf(lease);
+        Path target = countFailure(chunk) >= MAX_FAILURES ? failed.resolve(chunk) : pending.resolve(chunk);
+        try {
+            Files.move(lease, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // lease lost already
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(lease);
+        }
+    }
+
+    /**
+     * Heartbeat of a lease
+     * @return false if the lease was taken away after it expired
+     */
+    public boolean renew(Path lease) {
+        try {
+            Files.setLastModifiedTime(lease, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Publishes the result of a leased chunk and releases the lease
+     * @param rows Result lines without line breaks
+     * @param resultHeader CSV header of the result lines
+     */
+    public void complete(Path lease, String resultHeader, List<String> rows, String workerId) throws IOException {
+        String chunk = chunkOf(lease);
+        Path temp = results.resolve(chunk + ".tmp-" + workerId);
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(resultHeader);
+            out.write('\n');
+            for (String row : rows) {
+                out.write(row);
+                out.write('\n');
+            }
+        }
+        move(temp, results.resolve(chunk));
+        Files.deleteIfExists(lease);
+    }
+
+    /**
+     * Returns expired leases to pending and drops leases of finished chunks
+     * @param leaseMillis Time after the last heartbeat at which a lease expires
+     * @return number of chunks returned to pending
+     */
+    public int reclaimExpired(long leaseMillis) throws IOException {
+        long now = System.currentTimeMillis();
+        int reclaimed = 0;
+        for (Path lease : list(claimed, null)) {
+            String chunk = chunkOf(lease);
+            try {
+                if (Files.exists(results.resolve(chunk))) {
+                    Files.deleteIfExists(lease);
+                } else if (now - Files.getLastModifiedTime(lease).toMillis() > leaseMillis) {
+                    try {
+                        Files.move(lease, pending.resolve(chunk), StandardCopyOption.ATOMIC_MOVE);
+                        reclaimed++;
+                    } catch (FileAlreadyExistsException e) {
+                        Files.deleteIfExists(lease); // already pending again
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // released or reclaimed concurrently
+            }
+        }
+        return reclaimed;
+    }
+
+    public int getPendingCount() throws IOException {
+        return list(pending, SUFFIX).size();
+    }
+
+    public int getClaimedCount() throws IOException {
+        return list(claimed, null).size();
+    }
+
+    public int getCompletedCount() throws IOException {
+        return list(results, SUFFIX).size();
+    }
+
+    /**
+     * Number of chunks given up after {@value #MAX_FAILURES} failures
+     */
+    public int getFailedCount() throws IOException {
+        return list(failed, SUFFIX).size();
+    }
+
+    /**
+     * Whether every chunk has a result or has failed
+     */
+    public boolean isComplete() throws IOException {
+        return getCompletedCount() + getFailedCount() >= chunks;
+    }
+
+    /**
+     * Concatenates the results of all chunks in chunk order, leaving out
+     * failed chunks
+     * @throws IOException if a chunk has no result yet
+     */
+    public void merge(Writer out) throws IOException {
+        boolean first = true;
+        for (int c = 0; c < chunks; c++) {
+            Path file = results.resolve(chunkName(c));
+            if (!Files.exists(file) && Files.exists(failed.resolve(chunkName(c)))) {
+                continue;
+            }
+            if (!Files.exists(file)) {
+                throw new IOException("Sweep chunk " + c + " has no result yet");
+            }
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (int l = first ? 0 : 1; l < lines.size(); l++) {
+                out.write(lines.get(l));
+                out.write('\n');
+            }
+            first = false;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private static String chunkName(int chunk) {
+        return String.format("%s%05d%s", PREFIX, chunk, SUFFIX);
+    }
+
+    /**
+     * Chunk file name of a lease ({@code chunk-NNNNN.csv.ID})
+     */
+    private static String chunkOf(Path lease) {
+        String name = lease.getFileName().toString();
+        return name.substring(0, name.indexOf(SUFFIX) + SUFFIX.length());
+    }
+
+    /**
+     * Chunk files of a directory in name order
+     * @param suffix Required file name suffix; null for any chunk file
+     */
+    private static List<Path> list(Path dir, String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(PREFIX) && (suffix == null || name.endsWith(suffix))) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            throw new IOException("Sweep directory needs atomic renames: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+// SweepWorker.java
+package jazarifresnelsim.core;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Runs the chunks of a {@link SweepQueue} on headless engines until the
+ * sweep is complete. Any number of workers, in one or several processes,
+ * can work on the same queue.
+ * <p>
+ * A case is one CSV row with the columns of {@link #COLUMNS}; columns
+ * missing from the case file are taken from the defaults. Each case runs
+ * on a fresh {@link SimulationEngine} and its row is written back with the
+ * result columns appended: steps, DNI integrated over the daylight steps
+ * (Wh/m²), energy reflected by the whole field (Wh, DNI x mirror area x
+ * cosine) and the mean cosine efficiency. Results depend only on the case,
+ * so a chunk run again after a lost lease yields the same rows.
+ * <p>
+ * While a chunk runs, a daemon thread renews its lease every third of the
+ * lease time; if a renewal fails the lease was lost to another worker and
+ * the chunk is abandoned before its next case. A case that throws is
+ * reported on stderr and its chunk is released for another attempt, until
+ * the queue gives it up as failed. When nothing is pending the worker
+ * returns expired leases of dead workers to the queue and waits.
+ */
+public class SweepWorker {
+
+    /** Case columns, in the order cases are written */
+    public static final String[] COLUMNS = {
+        "latitude", "longitude", "date", "start", "end", "step",
+        "mirrors", "spacing", "receiver_height", "support_height"
+    };
+    public static final String RESULT_COLUMNS = "steps,dni_energy_wh_m2,reflected_energy_wh,mean_cosine";
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final SweepQueue queue;
+    private final String workerId;
+    private final long leaseMillis;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private int chunksDone;
+
+    /**
+     * @param leaseMillis Time without a heartbeat after which a chunk is
+     *                    given to another worker
+     */
+    public SweepWorker(SweepQueue queue, long leaseMillis) {
+        this.queue = queue;
+        this.leaseMillis = leaseMillis;
+        this.workerId = ManagementFactory.getRuntimeMXBean().getPid() + "-"
+                + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x10000));
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Number of chunks this worker completed
+     */
+    public int getChunksDone() {
+        return chunksDone;
+    }
+
+    /**
+     * Makes {@link #run} return after the current chunk
+     */
+    public void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Claims and runs chunks until the sweep is complete or {@link #stop} is called
+     */
+    public void run() throws IOException, InterruptedException {
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sweep-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (!stopped.get() && !queue.isComplete()) {
+                Path lease = queue.claim(workerId);
+                if (lease == null) {
+                    if (queue.reclaimExpired(leaseMillis) == 0) {
+                        Thread.sleep(Math.min(1000, Math.max(50, leaseMillis / 4)));
+                    }
+                    continue;
+                }
+                long period = Math.max(1, leaseMillis / 3);
+                AtomicBoolean lost = new AtomicBoolean();
+                ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> {
+                    if (!queue.renew(lease)) {
+                        lost.set(true);
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+                try {
+                    List<String> lines = Files.readAllLines(lease, StandardCharsets.UTF_8);
+                    String[] header = lines.get(0).split(",", -1);
+                    List<String> rows = new ArrayList<>(lines.size());
+                    for (int i = 1; i < lines.size() && !lost.get(); i++) {
+                        if (!lines.get(i).isBlank()) {
+                            rows.add(lines.get(i) + "," + runCase(header, lines.get(i).split(",", -1)));
+                        }
+                    }
+                    if (lost.get()) {
+                        System.err.println("sweep worker " + workerId + ": lease of " + lease.getFileName()
+                                + " lost, chunk abandoned");
+                        continue;
+                    }
+                    queue.complete(lease, lines.get(0) + "," + RESULT_COLUMNS, rows, workerId);
+                    chunksDone++;
+                } catch (RuntimeException e) {
+                    System.err.println("sweep worker " + workerId + ": " + lease.getFileName() + " failed: " + e);
+                    queue.release(lease);
+                } finally {
+                    renewal.cancel(false);
+                }
+            }
+        } finally {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a case file and fills missing columns from the defaults
+     * @param defaults Value per column name, for columns the file may omit
+     * @return the cases as rows in the order of {@link #COLUMNS}
+     */
+    public static List<String> readCases(Path file, Map<String, String> defaults) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("Empty case file: " + file);
+        }
+        String[] header = lines.get(0).trim().split(",", -1);
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            index.put(header[i].trim(), i);
+        }
+        for (String name : index.keySet()) {
+            if (!List.of(COLUMNS).contains(name)) {
+                throw new IOException("Unknown case column: " + name);
+            }
+        }
+        List<String> cases = new ArrayList<>(lines.size());
+        StringBuilder row = new StringBuilder(128);
+        for (int l = 1; l < lines.size(); l++) {
+            if (lines.get(l).isBlank()) {
+                continue;
+            }
+            String[] values = lines.get(l).split(",", -1);
+            row.setLength(0);
+            for (String column : COLUMNS) {
+                Integer i = index.get(column);
+                String value = i != null && i < values.length ? values[i].trim() : defaults.get(column);
+                if (value == null || value.isEmpty()) {
+                    throw new IOException("Case " + l + " has no " + column);
+                }
+                if (row.length() > 0) {
+                    row.append(',');
+                }
+                row.append(value);
+            }
+            cases.add(row.toString());
+        }
+        return cases;
+    }
+
+    /**
+     * Header of the rows produced by {@link #readCases}
+     */
+    public static String caseHeader() {
+        return String.join(",", COLUMNS);
+    }
+
+    /**
+     * Runs one case and returns its result columns
+     */
+    static String runCase(String[] header, String[] values) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length && i < values.length; i++) {
+            fields.put(header[i], values[i]);
+        }
+        SimulationState state = new SimulationState();
+        SimulationEngine engine = new SimulationEngine(state);
+        LocalDate date = LocalDate.parse(fields.get("date"), DATE_FORMAT);
+        state.setNumReflectors(Integer.parseInt(fields.get("mirrors")));
+        state.setReflectorSpacing(Float.parseFloat(fields.get("spacing")));
+        state.setReceiverHeight(Float.parseFloat(fields.get("receiver_height")));
+        state.setSupportHeight(Float.parseFloat(fields.get("support_height")));
+        state.setTimeRange(LocalDateTime.of(date, LocalTime.parse(fields.get("start"), TIME_FORMAT)),
+                LocalDateTime.of(date, LocalTime.parse(fields.get("end"), TIME_FORMAT)));
+        state.setSimulationStepMinutes(Double.parseDouble(fields.get("step")));
+        engine.setLocation(Double.parseDouble(fields.get("latitude")), Double.parseDouble(fields.get("longitude")));
+        engine.reset();
+
+        double stepHours = state.getSimulationStepMinutes() / 60.0;
+        double mirrorArea = state.getReflectorWidth() * state.getReflectorLength() * 1e-4; // m²
+        long steps = 0;
+        long samples = 0;
+        double energy = 0;    // Wh/m²
+        double reflected = 0; // Wh
+        double cosineSum = 0;
+        double[] sun = new double[3];
+        double[] angles = null;
+        do {
+            state.getCurrentSolarPosition(sun);
+            if (sun[0] > 0) {
+                double altitude = Math.toRadians(sun[0]);
+                double azimuth = Math.toRadians(sun[1]);
+                double sunX = -Math.cos(altitude) * Math.sin(azimuth);
+                double sunZ = Math.sin(altitude);
+                double dni = sun[2];
+                energy += dni * stepHours;
+                angles = state.getMirrorAngles(angles);
+                for (int i = 0; i < state.getMirrorCount(); i++) {
+                    double radians = Math.toRadians(angles[i]);
+                    double cosine = Math.max(0, sunX * Math.sin(radians) + sunZ * Math.cos(radians));
+                    reflected += dni * mirrorArea * cosine * stepHours;
+                    cosineSum += cosine;
+                    samples++;
+                }
+            }
+            steps++;
+        } while (engine.step());
+        return String.format(Locale.ROOT, "%d,%.3f,%.3f,%.6f", steps, energy, reflected,
+                samples > 0 ? cosineSum / samples : 0);
+    }
+}
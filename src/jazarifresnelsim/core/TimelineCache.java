@@ -0,0 +1,184 @@
+// TimelineCache.java
+package jazarifresnelsim.core;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import jazarifresnelsim.domain.IIrradianceSource;
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.models.FieldLayout;
+
+/**
+ * Sun and mirror states of a whole time range, precomputed in the
+ * background so the GUI can jump to any instant without playing back.
+ * <p>
+ * Steps are stored in primitive arrays (angles as floats, step-major) and
+ * published in chunks while the worker thread runs, so the start of the
+ * range can be scrubbed before the end is ready. A position is a fractional
+ * step index; lookups interpolate linearly between the two neighbouring
+ * steps. The cache is bound to the site, field layout, kernel and
+ * irradiance source it was built with; build a new one when they change.
+ */
+public class TimelineCache implements AutoCloseable {
+
+    private static final int PUBLISH_INTERVAL = 64;
+
+    private final SolarCalculator solarCalculator;
+    private final IIrradianceSource irradianceSource; // null -> clear-sky model
+    private final IOpticsKernel kernel;
+    private final FieldLayout layout;
+    private final LocalDateTime start;
+    private final double stepSeconds;
+    private final int steps;
+    private final int mirrors;
+    private final double[] altitude;
+    private final double[] azimuth;
+    private final double[] intensity;
+    private final float[] angles;    // [step * mirrors + mirror]
+    private final Thread thread;
+
+    private volatile int computedSteps;
+    private volatile boolean cancelled;
+
+    /**
+     * @param start First step
+     * @param end Last instant of the range; the last step is the one at or before it
+     * @param stepMinutes Step length, may be fractional
+     */
+    public TimelineCache(SolarCalculator solarCalculator, IIrradianceSource irradianceSource,
+            IOpticsKernel kernel, FieldLayout layout, LocalDateTime start, LocalDateTime end, double stepMinutes) {
+        if (!(stepMinutes > 0) || end.isBefore(start)) {
+            throw new IllegalArgumentException("Invalid timeline range or step");
+        }
+        this.solarCalculator = solarCalculator;
+        this.irradianceSource = irradianceSource;
+        this.kernel = kernel;
+        this.layout = layout;
+        this.start = start;
+        this.stepSeconds = stepMinutes * 60;
+        this.steps = (int) Math.floor(Duration.between(start, end).toMillis() / 1000.0 / stepSeconds) + 1;
+        this.mirrors = layout.getMirrorCount();
+        this.altitude = new double[steps];
+        this.azimuth = new double[steps];
+        this.intensity = new double[steps];
+        this.angles = new float[steps * mirrors];
+        this.thread = new Thread(this::compute, "timeline-cache");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the background computation
+     */
+    public void start() {
+        thread.start();
+    }
+
+    private void compute() {
+        double[] sample = new double[3];
+        double[] scratch = new double[mirrors];
+        double startSeconds = start.toEpochSecond(ZoneOffset.UTC) + start.getNano() / 1e9;
+        for (int s = 0; s < steps && !cancelled; s++) {
+            double seconds = startSeconds + s * stepSeconds;
+            long whole = (long) Math.floor(seconds);
+            LocalDateTime time = LocalDateTime.ofEpochSecond(whole,
+                    (int) Math.min(999_999_999, Math.round((seconds - whole) * 1e9)), ZoneOffset.UTC);
+            double hour = time.getHour() + time.getMinute() / 60.0
+                    + (time.getSecond() + time.getNano() / 1e9) / 3600.0;
+            solarCalculator.calculateSolarPosition(time.getDayOfYear(), hour, sample);
+            altitude[s] = sample[0];
+            azimuth[s] = sample[1];
+            intensity[s] = irradianceSource != null
+                    ? irradianceSource.getDirectNormalIrradiance(time, sample[0]) : sample[2];
+
+            kernel.calculateMirrorAngles(sample[0], sample[1], layout.getTargetX(), layout.getTargetZ(),
+                    scratch, mirrors);
+            int offset = s * mirrors;
+            for (int i = 0; i < mirrors; i++) {
+                angles[offset + i] = (float) scratch[i];
+            }
+            if ((s + 1) % PUBLISH_INTERVAL == 0 || s + 1 == steps) {
+                computedSteps = s + 1; // volatile write publishes the arrays up to here
+            }
+        }
+    }
+
+    /**
+     * Interpolated state at a fractional step, clamped to the range
+     * @param sun Receives altitude (degrees), azimuth (degrees) and DNI (W/m²)
+     * @param mirrorAngles Receives one angle per mirror, in degrees
+     * @return false if the worker has not reached that step yet
+     */
+    public boolean sample(double position, double[] sun, double[] mirrorAngles) {
+        double clamped = Math.max(0, Math.min(steps - 1, position));
+        int lower = (int) clamped;
+        int upper = Math.min(lower + 1, steps - 1);
+        if (upper >= computedSteps) {
+            return false;
+        }
+        double f = clamped - lower;
+        sun[0] = altitude[lower] + f * (altitude[upper] - altitude[lower]);
+        double turn = azimuth[upper] - azimuth[lower];
+        turn -= 360 * Math.rint(turn / 360); // shortest way through north
+        double az = azimuth[lower] + f * turn;
+        sun[1] = az < 0 ? az + 360 : (az >= 360 ? az - 360 : az);
+        sun[2] = intensity[lower] + f * (intensity[upper] - intensity[lower]);
+
+        int a = lower * mirrors;
+        int b = upper * mirrors;
+        for (int i = 0; i < mirrors; i++) {
+            mirrorAngles[i] = angles[a + i] + f * (angles[b + i] - angles[a + i]);
+        }
+        return true;
+    }
+
+    /**
+     * Time of a fractional step, clamped to the range
+     */
+    public LocalDateTime getTime(double position) {
+        double clamped = Math.max(0, Math.min(steps - 1, position));
+        return start.plusNanos(Math.round(clamped * stepSeconds * 1e9));
+    }
+
+    /**
+     * Fractional step of a time; may lie outside [0, steps - 1]
+     */
+    public double getPosition(LocalDateTime time) {
+        return Duration.between(start, time).toNanos() / 1e9 / stepSeconds;
+    }
+
+    public int getStepCount() {
+        return steps;
+    }
+
+    /**
+     * Number of leading steps that can be sampled
+     */
+    public int getComputedSteps() {
+        return computedSteps;
+    }
+
+    public boolean isComplete() {
+        return computedSteps == steps;
+    }
+
+    public int getMirrorCount() {
+        return mirrors;
+    }
+
+    public FieldLayout getFieldLayout() {
+        return layout;
+    }
+
+    public LocalDateTime getStartTime() {
+        return start;
+    }
+
+    /**
+     * Stops the background computation; steps computed so far stay usable
+     */
+    @Override
+    public void close() {
+        cancelled = true;
+    }
+}
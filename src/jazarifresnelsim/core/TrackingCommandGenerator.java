@@ -0,0 +1,203 @@
+// TrackingCommandGenerator.java
+package jazarifresnelsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jazarifresnelsim.domain.RunningStatistics;
+import jazarifresnelsim.models.TrackingCheckpoint;
+
+/**
+ * Turns ideal mirror angles into sparse drive commands.
+ * <p>
+ * Setpoints are multiples of the motor step. A mirror is only commanded when
+ * its ideal angle drifts further than the deadband from its current setpoint
+ * (never less than half a motor step, otherwise the drive would chatter).
+ * From the angular rate between the last two updates the generator predicts
+ * when the next mirror will leave its deadband, so a caller can sleep until
+ * then instead of polling every step. The tracking error (ideal angle
+ * minus setpoint, before any new command) is reported. An update with a
+ * different mirror count is a new field: the arrays follow its size and
+ * the generator starts over, commanding every mirror. Uses primitive
+ * arrays only; not thread-safe.
+ */
+public class TrackingCommandGenerator {
+
+    private final double deadband;
+    private final double motorStep;
+    private double[] commanded;
+    private double[] lastTarget;
+    private double[] rate;                // degrees per second
+    private final List<ITrackingCommandListener> listeners = new ArrayList<>();
+    private final RunningStatistics trackingError = new RunningStatistics();
+    private double lastTime = Double.NaN;
+    private double nextCrossingTime = Double.NaN;
+    private long commandCount;
+    private long updateCount;
+
+    /**
+     * @param mirrors Initial number of mirrors; the arrays follow the field size
+     * @param deadbandDegrees Allowed deviation before a mirror is commanded
+     * @param motorStepDegrees Drive resolution; 0 for continuous setpoints
+     */
+    public TrackingCommandGenerator(int mirrors, double deadbandDegrees, double motorStepDegrees) {
+        this.motorStep = motorStepDegrees;
+        this.deadband = Math.max(deadbandDegrees, motorStepDegrees / 2);
+        this.commanded = new double[mirrors];
+        this.lastTarget = new double[mirrors];
+        this.rate = new double[mirrors];
+        reset();
+    }
+
+    public void addListener(ITrackingCommandListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ITrackingCommandListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Forgets all setpoints; the next update commands every mirror
+     */
+    public final void reset() {
+        Arrays.fill(commanded, Double.NaN);
+        Arrays.fill(lastTarget, Double.NaN);
+        Arrays.fill(rate, 0);
+        lastTime = Double.NaN;
+        nextCrossingTime = Double.NaN;
+        trackingError.reset();
+        commandCount = 0;
+        updateCount = 0;
+    }
+
+    /**
+     * Compares the ideal angles with the current setpoints and emits commands
+     * @param timeSeconds Simulation time in epoch seconds
+     * @param targetAngles Ideal mirror angles in degrees
+     * @param count Number of mirrors to process
+     * @return number of commands emitted
+     */
+    public int update(double timeSeconds, double[] targetAngles, int count) {
+        if (count != commanded.length) {
+            resize(count); // new field, start over
+        }
+        updateCount++;
+        double dt = timeSeconds - lastTime; // NaN on the first update
+        double nearest = Double.POSITIVE_INFINITY;
+        int emitted = 0;
+
+        for (int i = 0; i < count; i++) {
+            double target = targetAngles[i];
+            if (dt > 0) {
+                rate[i] = (target - lastTarget[i]) / dt;
+            }
+            lastTarget[i] = target;
+
+            double error = target - commanded[i];
+            if (!Double.isNaN(error)) {
+                trackingError.add(Math.abs(error)); // error the drive has run with until now
+            }
+            if (!(Math.abs(error) <= deadband)) { // also true for the first (NaN) setpoint
+                commanded[i] = quantize(target);
+                error = target - commanded[i];
+                emitted++;
+                for (ITrackingCommandListener listener : listeners) {
+                    listener.onCommand(i, commanded[i], timeSeconds);
+                }
+            }
+            nearest = Math.min(nearest, timeToLeaveDeadband(error, rate[i]));
+        }
+
+        commandCount += emitted;
+        lastTime = timeSeconds;
+        nextCrossingTime = timeSeconds + nearest;
+        return emitted;
+    }
+
+    /**
+     * Snapshot of the setpoints, rates, counters and error statistics
+     */
+    public TrackingCheckpoint createCheckpoint() {
+        return new TrackingCheckpoint(commanded, lastTarget, rate, lastTime, nextCrossingTime,
+                commandCount, updateCount, trackingError.getCount(), trackingError.getMean(),
+                trackingError.getSumOfSquares(), trackingError.getMin(), trackingError.getMax());
+    }
+
+    /**
+     * Continues from a snapshot, taking over its mirror count
+     */
+    public void restoreCheckpoint(TrackingCheckpoint checkpoint) {
+        if (checkpoint.getMirrorCount() != commanded.length) {
+            resize(checkpoint.getMirrorCount());
+        }
+        checkpoint.getMirrorState(commanded, lastTarget, rate);
+        lastTime = checkpoint.getLastTime();
+        nextCrossingTime = checkpoint.getNextCrossingTime();
+        commandCount = checkpoint.getCommandCount();
+        updateCount = checkpoint.getUpdateCount();
+        trackingError.restore(checkpoint.getErrorCount(), checkpoint.getErrorMean(),
+                checkpoint.getErrorSumOfSquares(), checkpoint.getErrorMin(), checkpoint.getErrorMax());
+    }
+
+    private void resize(int mirrors) {
+        commanded = new double[mirrors];
+        lastTarget = new double[mirrors];
+        rate = new double[mirrors];
+        reset();
+    }
+
+    private double quantize(double angle) {
+        return motorStep > 0 ? Math.round(angle / motorStep) * motorStep : angle;
+    }
+
+    /**
+     * Seconds until target - setpoint reaches ±deadband at the current rate
+     */
+    private double timeToLeaveDeadband(double error, double ratePerSecond) {
+        if (ratePerSecond == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double remaining = ratePerSecond > 0 ? deadband - error : deadband + error;
+        return Math.max(0, remaining) / Math.abs(ratePerSecond);
+    }
+
+    /**
+     * Predicted epoch second at which the first mirror leaves its deadband,
+     * extrapolating the angular rates linearly. Infinite if no mirror moves,
+     * NaN before two updates.
+     */
+    public double getNextCrossingTime() {
+        return updateCount > 1 ? nextCrossingTime : Double.NaN;
+    }
+
+    public double getCommandedAngle(int mirror) {
+        return commanded[mirror];
+    }
+
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Largest |ideal - setpoint| seen at an update before commanding, in degrees
+     */
+    public double getMaxTrackingError() {
+        return trackingError.getCount() > 0 ? trackingError.getMax() : 0;
+    }
+
+    /**
+     * Mean |ideal - setpoint| over all updates and mirrors, in degrees
+     */
+    public double getMeanTrackingError() {
+        return trackingError.getCount() > 0 ? trackingError.getMean() : 0;
+    }
+
+    public double getDeadband() {
+        return deadband;
+    }
+}
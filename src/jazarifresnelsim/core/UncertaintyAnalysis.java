@@ -0,0 +1,298 @@
+// UncertaintyAnalysis.java
+package jazarifresnelsim.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jazarifresnelsim.domain.ReceiverRayTracer;
+import jazarifresnelsim.domain.RunningStatistics;
+import jazarifresnelsim.domain.ScalarOpticsKernel;
+import jazarifresnelsim.models.FieldLayout;
+import jazarifresnelsim.models.SimulationState;
+import jazarifresnelsim.models.SolarPosition;
+import jazarifresnelsim.models.UncertaintyResult;
+
+/**
+ * Monte Carlo uncertainty analysis of intercept factor and yield.
+ * <p>
+ * Every scenario perturbs the ideal field with normally distributed errors:
+ * a slope error and a tracking offset per mirror, one receiver displacement
+ * (X and Z) and a sun-shape deviation per mirror and sun sample. Slope and
+ * sun-shape errors are applied in the transversal plane, where they move the
+ * reflected beam across the tube. Each scenario is traced over the given sun
+ * samples; its intercept factor is intercepted over reflected power and its
+ * yield the intercepted energy.
+ * <p>
+ * Scenarios run in parallel, each with its own {@link SplittableRandom}
+ * split from the seed in submission order, so results do not depend on the
+ * thread count. Statistics are updated as scenarios complete; listeners get
+ * the running confidence intervals and the run stops early once both
+ * intervals are within the relative tolerance.
+ */
+public class UncertaintyAnalysis implements AutoCloseable {
+
+    private static final double Z_95 = 1.96;
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final List<IUncertaintyListener> listeners = new ArrayList<>();
+
+    private double slopeError = 2.0;          // mrad
+    private double trackingError = 0.1;       // degrees
+    private double receiverMisalignment = 0.5; // cm
+    private double sunShapeError = 2.5;       // mrad
+    private int minScenarios = 100;
+    private int maxScenarios = 10000;
+    private double relativeTolerance = 0.002;
+    private int reportInterval = 100;
+    private long seed = 42;
+
+    public UncertaintyAnalysis() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public UncertaintyAnalysis(int threads) {
+        this.threads = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "uncertainty-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Standard deviation of the mirror surface slope in mrad
+     */
+    public void setSlopeError(double mrad) {
+        this.slopeError = mrad;
+    }
+
+    /**
+     * Standard deviation of the drive angle offset in degrees
+     */
+    public void setTrackingError(double degrees) {
+        this.trackingError = degrees;
+    }
+
+    /**
+     * Standard deviation of the receiver displacement in cm, per axis
+     */
+    public void setReceiverMisalignment(double cm) {
+        this.receiverMisalignment = cm;
+    }
+
+    /**
+     * Standard deviation of the incident direction in mrad
+     */
+    public void setSunShapeError(double mrad) {
+        this.sunShapeError = mrad;
+    }
+
+    public void setScenarioLimits(int min, int max) {
+        this.minScenarios = min;
+        this.maxScenarios = max;
+    }
+
+    /**
+     * Stop once both 95 % half widths are below this fraction of their means
+     */
+    public void setRelativeTolerance(double tolerance) {
+        this.relativeTolerance = tolerance;
+    }
+
+    /**
+     * Number of completed scenarios between listener calls
+     */
+    public void setReportInterval(int scenarios) {
+        this.reportInterval = Math.max(1, scenarios);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void addListener(IUncertaintyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(IUncertaintyListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Runs the analysis for the geometry of the state
+     * @param state Mirror and receiver geometry
+     * @param sunSamples Sun positions to trace; samples below the horizon are skipped
+     * @param stepHours Duration each sample stands for, for the yield
+     * @return the final statistics
+     * @throws IllegalStateException if a scenario failed; the cause is the scenario's exception
+     */
+    public UncertaintyResult run(SimulationState state, List<SolarPosition> sunSamples, double stepHours)
+            throws InterruptedException {
+        Field field = new Field(state, sunSamples, stepHours);
+        RunningStatistics intercept = new RunningStatistics();
+        RunningStatistics yield = new RunningStatistics();
+        CompletionService<double[]> completion = new ExecutorCompletionService<>(executor);
+        Deque<Future<double[]>> inFlight = new ArrayDeque<>();
+        SplittableRandom root = new SplittableRandom(seed);
+
+        int submitted = 0;
+        boolean converged = false;
+        try {
+            while (submitted < maxScenarios && inFlight.size() < 4 * threads) {
+                SplittableRandom random = root.split();
+                inFlight.add(completion.submit(() -> field.evaluate(random)));
+                submitted++;
+            }
+            while (!inFlight.isEmpty()) {
+                Future<double[]> done = completion.take();
+                inFlight.remove(done);
+                double[] scenario = done.get();
+                intercept.add(scenario[0]);
+                yield.add(scenario[1]);
+
+                long count = intercept.getCount();
+                converged = count >= minScenarios
+                        && isTight(intercept) && isTight(yield);
+                if (count % reportInterval == 0 || converged) {
+                    notifyListeners(result(intercept, yield, converged));
+                }
+                if (converged) {
+                    break;
+                }
+                if (submitted < maxScenarios) {
+                    SplittableRandom random = root.split();
+                    inFlight.add(completion.submit(() -> field.evaluate(random)));
+                    submitted++;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error evaluating scenario", e.getCause());
+        } finally {
+            for (Future<double[]> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+        return result(intercept, yield, converged);
+    }
+
+    private boolean isTight(RunningStatistics statistics) {
+        double mean = Math.abs(statistics.getMean());
+        return mean > 0 && statistics.getConfidenceHalfWidth(Z_95) <= relativeTolerance * mean;
+    }
+
+    private static UncertaintyResult result(RunningStatistics intercept, RunningStatistics yield,
+            boolean converged) {
+        return new UncertaintyResult(intercept.getCount(),
+                intercept.getMean(), intercept.getConfidenceHalfWidth(Z_95), intercept.getStandardDeviation(),
+                yield.getMean(), yield.getConfidenceHalfWidth(Z_95), yield.getStandardDeviation(),
+                converged);
+    }
+
+    private void notifyListeners(UncertaintyResult result) {
+        for (IUncertaintyListener listener : listeners) {
+            listener.onProgress(result);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ideal field precomputed once per run and shared read-only by the workers
+     */
+    private final class Field {
+
+        private final ReceiverRayTracer tracer;
+        private final double[] mirrorX;        // relative to the assigned receiver
+        private final double[] mirrorHeight;
+        private final double[][] sun;          // [sample][x, y, z]
+        private final double[] dni;
+        private final double[][] idealAngles;  // [sample][mirror]
+        private final double stepHours;
+        private final double slopeDegrees = Math.toDegrees(slopeError / 1000);
+        private final double sunShapeRadians = sunShapeError / 1000;
+        private final double tracking = trackingError;
+        private final double misalignment = receiverMisalignment;
+
+        Field(SimulationState state, List<SolarPosition> sunSamples, double stepHours) {
+            this.stepHours = stepHours;
+            this.tracer = new ReceiverRayTracer(state.getReflectorWidth(), state.getReflectorLength(),
+                    state.getReceiverHeight(), state.getReceiverDiameter() / 2.0, state.getReflectorLength(),
+                    1, 1, 8, 16);
+
+            FieldLayout layout = state.getFieldLayout();
+            int mirrors = layout.getMirrorCount();
+            this.mirrorX = new double[mirrors];
+            this.mirrorHeight = new double[mirrors];
+            for (int i = 0; i < mirrors; i++) {
+                mirrorX[i] = layout.getRelativeX(i);
+                mirrorHeight[i] = layout.getRelativeHeight(i, state.getReceiverHeight());
+            }
+
+            List<SolarPosition> daylight = new ArrayList<>();
+            for (SolarPosition position : sunSamples) {
+                if (position.getAltitudeAngle() > 0) {
+                    daylight.add(position);
+                }
+            }
+            this.sun = new double[daylight.size()][3];
+            this.dni = new double[daylight.size()];
+            this.idealAngles = new double[daylight.size()][mirrors];
+            for (int s = 0; s < daylight.size(); s++) {
+                SolarPosition position = daylight.get(s);
+                ReceiverRayTracer.sunVector(position.getAltitudeAngle(), position.getAzimuthAngle(), sun[s]);
+                dni[s] = position.getSolarIntensity();
+                for (int m = 0; m < mirrors; m++) {
+                    idealAngles[s][m] = ScalarOpticsKernel.calculateMirrorAngle(mirrorX[m], mirrorHeight[m],
+                            state.getReceiverHeight(), position.getAltitudeAngle(), position.getAzimuthAngle());
+                }
+            }
+        }
+
+        /**
+         * @return intercept factor and yield (Wh) of one random scenario
+         */
+        double[] evaluate(SplittableRandom random) {
+            int mirrors = mirrorX.length;
+            double receiverX = random.nextGaussian() * misalignment;
+            double receiverZ = random.nextGaussian() * misalignment;
+            double[] angleOffset = new double[mirrors];
+            for (int m = 0; m < mirrors; m++) {
+                angleOffset[m] = random.nextGaussian() * slopeDegrees + random.nextGaussian() * tracking;
+            }
+
+            double reflected = 0;
+            double intercepted = 0;
+            for (int s = 0; s < sun.length; s++) {
+                double sunX = sun[s][0];
+                double sunY = sun[s][1];
+                double sunZ = sun[s][2];
+                for (int m = 0; m < mirrors; m++) {
+                    // Rotate the incident direction about the row axis
+                    double deviation = random.nextGaussian() * sunShapeRadians;
+                    double cos = Math.cos(deviation);
+                    double sin = Math.sin(deviation);
+                    double x = sunX * cos + sunZ * sin;
+                    double z = sunZ * cos - sunX * sin;
+                    double angle = idealAngles[s][m] + angleOffset[m];
+                    reflected += tracer.reflectedPower(x, z, dni[s], angle);
+                    intercepted += tracer.traceMirror(x, sunY, z, dni[s],
+                            mirrorX[m] - receiverX, mirrorHeight[m] - receiverZ, angle, null);
+                }
+            }
+            double interceptFactor = reflected > 0 ? intercepted / reflected : 0;
+            return new double[]{interceptFactor, intercepted * stepHours};
+        }
+    }
+}
@@ -0,0 +1,63 @@
+// AshraeClearSkyModel.java
+package jazarifresnelsim.domain;
+
+/**
+ * ASHRAE clear-day model: DNI = A · exp(-B / sin(altitude)) and
+ * DHI = C · DNI, with the apparent extraterrestrial irradiance A, the
+ * optical depth B and the diffuse factor C given per month. The monthly
+ * values are interpolated to a table per day of year once, so a sample is
+ * one exponential.
+ */
+public final class AshraeClearSkyModel implements IClearSkyModel {
+
+    /** Standard monthly coefficients (ASHRAE Handbook), January to December */
+    public static final double[] STANDARD_A = {
+        1230, 1215, 1186, 1136, 1104, 1088, 1085, 1107, 1151, 1192, 1221, 1233
+    };
+    public static final double[] STANDARD_B = {
+        0.142, 0.144, 0.156, 0.180, 0.196, 0.205, 0.207, 0.201, 0.177, 0.160, 0.149, 0.142
+    };
+    public static final double[] STANDARD_C = {
+        0.058, 0.060, 0.071, 0.097, 0.121, 0.134, 0.136, 0.122, 0.092, 0.073, 0.063, 0.057
+    };
+
+    // Indexed by day of year (1-366)
+    private final double[] a;
+    private final double[] b;
+    private final double[] c;
+
+    public AshraeClearSkyModel() {
+        this(STANDARD_A, STANDARD_B, STANDARD_C);
+    }
+
+    /**
+     * @param monthlyA Apparent extraterrestrial irradiance per month in W/m²
+     * @param monthlyB Atmospheric extinction coefficient per month
+     * @param monthlyC Diffuse radiation factor per month
+     */
+    public AshraeClearSkyModel(double[] monthlyA, double[] monthlyB, double[] monthlyC) {
+        this.a = ClearSkyModels.daily(monthlyA);
+        this.b = ClearSkyModels.daily(monthlyB);
+        this.c = ClearSkyModels.daily(monthlyC);
+    }
+
+    @Override
+    public void calculate(int dayOfYear, double solarAltitude, double[] out) {
+        double dni = getDirectNormalIrradiance(dayOfYear, solarAltitude);
+        out[0] = dni;
+        out[1] = c[dayOfYear] * dni;
+    }
+
+    @Override
+    public double getDirectNormalIrradiance(int dayOfYear, double solarAltitude) {
+        if (solarAltitude <= 0) {
+            return 0;
+        }
+        return a[dayOfYear] * Math.exp(-b[dayOfYear] / Math.sin(Math.toRadians(solarAltitude)));
+    }
+
+    @Override
+    public String getName() {
+        return "ashrae";
+    }
+}
@@ -0,0 +1,57 @@
+// ClearSkyIrradianceSource.java
+package jazarifresnelsim.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Irradiance source backed by an {@link IClearSkyModel}, by default the
+ * air-mass model of {@link SolarCalculator}. Cloudy periods are never
+ * represented.
+ */
+public class ClearSkyIrradianceSource implements IIrradianceSource {
+
+    private final IClearSkyModel model;
+    // Epoch day in the high bits, its day of year in the low 9 bits
+    private volatile long cachedDay = Long.MIN_VALUE;
+
+    public ClearSkyIrradianceSource() {
+        this(ClearSkyModels.meinel());
+    }
+
+    public ClearSkyIrradianceSource(IClearSkyModel model) {
+        this.model = model;
+    }
+
+    public IClearSkyModel getModel() {
+        return model;
+    }
+
+    @Override
+    public double getDirectNormalIrradiance(LocalDateTime dateTime, double solarAltitude) {
+        return model.getDirectNormalIrradiance(dateTime.getDayOfYear(), solarAltitude);
+    }
+
+    @Override
+    public double getDirectNormalIrradiance(double epochSeconds, double solarAltitude) {
+        return model.getDirectNormalIrradiance(dayOfYear(epochSeconds), solarAltitude);
+    }
+
+    /**
+     * DNI and diffuse horizontal irradiance at a clock value of the engine
+     * @param out Receives DNI and DHI in W/m²
+     */
+    public void getIrradiance(double epochSeconds, double solarAltitude, double[] out) {
+        model.calculate(dayOfYear(epochSeconds), solarAltitude, out);
+    }
+
+    private int dayOfYear(double epochSeconds) {
+        long epochDay = EpochTime.epochDay(epochSeconds);
+        long cached = cachedDay;
+        if (cached >> 9 == epochDay) {
+            return (int) (cached & 0x1FF);
+        }
+        int day = EpochTime.dayOfYear(epochDay);
+        cachedDay = epochDay << 9 | day;
+        return day;
+    }
+}
@@ -0,0 +1,89 @@
+// ClearSkyModels.java
+package jazarifresnelsim.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Selects an {@link IClearSkyModel} by name and holds the day-of-year
+ * helpers the models share.
+ */
+public final class ClearSkyModels {
+
+    public static final String[] NAMES = {"meinel", "ineichen", "ashrae"};
+
+    // Day of year of the 15th of each month, where monthly values are anchored
+    private static final int[] MID_MONTH = new int[12];
+
+    static {
+        for (int m = 0; m < 12; m++) {
+            MID_MONTH[m] = LocalDate.of(2001, m + 1, 15).getDayOfYear();
+        }
+    }
+
+    // Built after MID_MONTH, which their tables need
+    private static final IClearSkyModel MEINEL = new MeinelClearSkyModel();
+    private static final IClearSkyModel ASHRAE = new AshraeClearSkyModel();
+
+    private ClearSkyModels() {
+        // Prevent instantiation
+    }
+
+    /**
+     * The original model of {@link SolarCalculator}
+     */
+    public static IClearSkyModel meinel() {
+        return MEINEL;
+    }
+
+    /**
+     * ASHRAE model with the standard monthly coefficients
+     */
+    public static IClearSkyModel ashrae() {
+        return ASHRAE;
+    }
+
+    /**
+     * Model by name; the elevation and Linke turbidity are used by ineichen only
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public static IClearSkyModel forName(String name, double elevation, double linkeTurbidity) {
+        return switch (name) {
+            case "meinel" -> MEINEL;
+            case "ashrae" -> ASHRAE;
+            case "ineichen" -> new IneichenClearSkyModel(elevation, linkeTurbidity);
+            default -> throw new IllegalArgumentException("Unknown clear-sky model: " + name
+                    + " (expected " + String.join(", ", NAMES) + ")");
+        };
+    }
+
+    /**
+     * Extraterrestrial normal irradiance on a day of year, in W/m²
+     */
+    public static double extraterrestrialIrradiance(int dayOfYear) {
+        return SolarCalculator.SOLAR_CONSTANT * (1 + 0.033 * Math.cos(2 * Math.PI * dayOfYear / 365.0));
+    }
+
+    /**
+     * Spreads twelve monthly values over the days of the year, linearly
+     * between mid-month days and wrapping around the new year
+     * @return values indexed by day of year (1-366)
+     */
+    static double[] daily(double[] monthly) {
+        if (monthly.length != 12) {
+            throw new IllegalArgumentException("Expected 12 monthly values, got " + monthly.length);
+        }
+        double[] daily = new double[367];
+        for (int day = 1; day <= 366; day++) {
+            int next = 0;
+            while (next < 12 && MID_MONTH[next] <= day) {
+                next++;
+            }
+            int previous = next - 1;
+            double from = previous >= 0 ? MID_MONTH[previous] : MID_MONTH[11] - 365;
+            double to = next < 12 ? MID_MONTH[next] : MID_MONTH[0] + 365;
+            double weight = (day - from) / (to - from);
+            daily[day] = monthly[(previous + 12) % 12] * (1 - weight) + monthly[next % 12] * weight;
+        }
+        return daily;
+    }
+}
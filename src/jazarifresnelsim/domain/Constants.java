@@ -23,6 +23,7 @@ public final class Constants {
     public static final int GUI_BAR_HEIGHT = 20;
     public static final int GUI_SPACING = 20;
     public static final int TEXT_HEIGHT = 20;
+    public static final int TIMELINE_DAYS = 1;           // Days precomputed for the timeline slider
 
     private Constants() {
         // Prevent instantiation
@@ -0,0 +1,211 @@
+// Dual.java
+package jazarifresnelsim.domain;
+
+/**
+ * Dual number for forward-mode automatic differentiation: a value and its
+ * exact partial derivatives with respect to a fixed number of inputs.
+ * <p>
+ * Inputs are created with {@link #variable}, everything else with
+ * {@link #constant}; every operation applies the chain rule to all partials
+ * at once, so one evaluation yields the full gradient. All operands of an
+ * expression must have the same number of partials. Immutable.
+ */
+public final class Dual {
+
+    private final double value;
+    private final double[] partials;
+
+    private Dual(double value, double[] partials) {
+        this.value = value;
+        this.partials = partials;
+    }
+
+    /**
+     * A value that does not depend on any input
+     * @param partials Number of inputs
+     */
+    public static Dual constant(double value, int partials) {
+        return new Dual(value, new double[partials]);
+    }
+
+    /**
+     * Input number {@code index} of {@code partials}
+     */
+    public static Dual variable(double value, int index, int partials) {
+        double[] d = new double[partials];
+        d[index] = 1;
+        return new Dual(value, d);
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Partial derivative with respect to input {@code index}
+     */
+    public double getPartial(int index) {
+        return partials[index];
+    }
+
+    public int getPartialCount() {
+        return partials.length;
+    }
+
+    /**
+     * Copy of all partial derivatives
+     */
+    public double[] getPartials() {
+        return partials.clone();
+    }
+
+    /**
+     * f(this) given f and f' at this value
+     */
+    private Dual chain(double f, double derivative) {
+        double[] d = new double[partials.length];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = derivative * partials[i];
+        }
+        return new Dual(f, d);
+    }
+
+    public Dual add(Dual other) {
+        double[] d = new double[partials.length];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = partials[i] + other.partials[i];
+        }
+        return new Dual(value + other.value, d);
+    }
+
+    public Dual add(double constant) {
+        return new Dual(value + constant, partials);
+    }
+
+    public Dual subtract(Dual other) {
+        double[] d = new double[partials.length];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = partials[i] - other.partials[i];
+        }
+        return new Dual(value - other.value, d);
+    }
+
+    public Dual subtract(double constant) {
+        return new Dual(value - constant, partials);
+    }
+
+    public Dual multiply(Dual other) {
+        double[] d = new double[partials.length];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = partials[i] * other.value + value * other.partials[i];
+        }
+        return new Dual(value * other.value, d);
+    }
+
+    public Dual multiply(double constant) {
+        return chain(value * constant, constant);
+    }
+
+    public Dual divide(Dual other) {
+        double quotient = value / other.value;
+        double[] d = new double[partials.length];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = (partials[i] - quotient * other.partials[i]) / other.value;
+        }
+        return new Dual(quotient, d);
+    }
+
+    public Dual divide(double constant) {
+        return chain(value / constant, 1 / constant);
+    }
+
+    public Dual negate() {
+        return chain(-value, -1);
+    }
+
+    /**
+     * constant - this
+     */
+    public Dual subtractFrom(double constant) {
+        return chain(constant - value, -1);
+    }
+
+    /**
+     * constant / this
+     */
+    public Dual divideInto(double constant) {
+        return chain(constant / value, -constant / (value * value));
+    }
+
+    public Dual sin() {
+        return chain(Math.sin(value), Math.cos(value));
+    }
+
+    public Dual cos() {
+        return chain(Math.cos(value), -Math.sin(value));
+    }
+
+    public Dual tan() {
+        double t = Math.tan(value);
+        return chain(t, 1 + t * t);
+    }
+
+    public Dual asin() {
+        return chain(Math.asin(value), 1 / Math.sqrt(1 - value * value));
+    }
+
+    public Dual acos() {
+        return chain(Math.acos(value), -1 / Math.sqrt(1 - value * value));
+    }
+
+    /**
+     * atan2(this, x)
+     */
+    public Dual atan2(Dual x) {
+        double r2 = value * value + x.value * x.value;
+        double[] d = new double[partials.length];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = (x.value * partials[i] - value * x.partials[i]) / r2;
+        }
+        return new Dual(Math.atan2(value, x.value), d);
+    }
+
+    public Dual sqrt() {
+        double root = Math.sqrt(value);
+        return chain(root, 0.5 / root);
+    }
+
+    public Dual exp() {
+        double e = Math.exp(value);
+        return chain(e, e);
+    }
+
+    public Dual log() {
+        return chain(Math.log(value), 1 / value);
+    }
+
+    /**
+     * this raised to a constant power
+     */
+    public Dual pow(double exponent) {
+        double p = Math.pow(value, exponent);
+        return chain(p, exponent * Math.pow(value, exponent - 1));
+    }
+
+    public Dual toRadians() {
+        return multiply(Math.PI / 180);
+    }
+
+    public Dual toDegrees() {
+        return multiply(180 / Math.PI);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder().append(value).append(" [");
+        for (int i = 0; i < partials.length; i++) {
+            text.append(i > 0 ? ", " : "").append(partials[i]);
+        }
+        return text.append(']').toString();
+    }
+}
@@ -0,0 +1,57 @@
+// EpochTime.java
+package jazarifresnelsim.domain;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions for the simulation clock, which counts local standard time
+ * as epoch seconds in a double (local time taken as UTC, like
+ * {@link jazarifresnelsim.core.IStepListener}). Near the present a double
+ * resolves well below a microsecond, so clock values are kept on a
+ * microsecond grid: stepping by fractions of a second does not drift and
+ * every value converts to the same {@link LocalDateTime} and back.
+ */
+public final class EpochTime {
+
+    public static final double SECONDS_PER_DAY = 86400;
+    private static final double MICROS = 1e6;
+
+    private EpochTime() {
+    }
+
+    public static double toSeconds(LocalDateTime time) {
+        return round(time.toEpochSecond(ZoneOffset.UTC) + time.getNano() / 1e9);
+    }
+
+    /**
+     * Date and time of a clock value, to the microsecond
+     */
+    public static LocalDateTime toDateTime(double seconds) {
+        long micros = Math.round(seconds * MICROS);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Snaps a clock value to the microsecond grid
+     */
+    public static double round(double seconds) {
+        return Math.round(seconds * MICROS) / MICROS;
+    }
+
+    /**
+     * Days since 1970-01-01 of a clock value
+     */
+    public static long epochDay(double seconds) {
+        return (long) Math.floor(seconds / SECONDS_PER_DAY);
+    }
+
+    /**
+     * Day of year (1-366) of an epoch day; allocates, so callers cache it per day
+     */
+    public static int dayOfYear(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).getDayOfYear();
+    }
+}
@@ -0,0 +1,103 @@
+// FastTrig.java
+package jazarifresnelsim.domain;
+
+/**
+ * Table-based trigonometry with bounded error for real-time tracking and
+ * coarse sweeps.
+ * <p>
+ * {@link #sin}/{@link #cos} interpolate linearly in an 8192-entry table over
+ * one period (absolute error below 7.4e-8). {@link #atan2} reduces to an
+ * octant and interpolates a 2048-entry arctangent table on [0, 1] (absolute
+ * error below 2e-8 rad, about 1.1e-6°). The inverse functions are built on
+ * {@link #atan2} so they stay well conditioned near ±1. Used by
+ * {@link FastOpticsKernel}; see {@code tools.FastTrigValidation} for the
+ * end-to-end error against the exact path.
+ */
+public final class FastTrig {
+
+    private static final int SIN_TABLE_SIZE = 1 << 13;
+    private static final int SIN_MASK = SIN_TABLE_SIZE - 1;
+    private static final double SIN_SCALE = SIN_TABLE_SIZE / (2 * Math.PI);
+    private static final double[] SIN_TABLE = new double[SIN_TABLE_SIZE + 1];
+
+    private static final int ATAN_TABLE_SIZE = 1 << 11;
+    private static final double[] ATAN_TABLE = new double[ATAN_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= SIN_TABLE_SIZE; i++) {
+            SIN_TABLE[i] = Math.sin(i / SIN_SCALE);
+        }
+        for (int i = 0; i <= ATAN_TABLE_SIZE; i++) {
+            ATAN_TABLE[i] = Math.atan((double) i / ATAN_TABLE_SIZE);
+        }
+    }
+
+    private FastTrig() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Sine of an angle in radians
+     */
+    public static double sin(double radians) {
+        return lookupSin(radians * SIN_SCALE);
+    }
+
+    /**
+     * Cosine of an angle in radians
+     */
+    public static double cos(double radians) {
+        return lookupSin(radians * SIN_SCALE + SIN_TABLE_SIZE / 4);
+    }
+
+    /**
+     * Angle of the point (x, y) in radians, in the range [-π, π]
+     */
+    public static double atan2(double y, double x) {
+        double ax = Math.abs(x);
+        double ay = Math.abs(y);
+        if (ax == 0 && ay == 0) {
+            return 0;
+        }
+        double angle = ax >= ay
+                ? lookupAtan(ay / ax)
+                : Math.PI / 2 - lookupAtan(ax / ay);
+        if (x < 0) {
+            angle = Math.PI - angle;
+        }
+        return y < 0 ? -angle : angle;
+    }
+
+    /**
+     * Arc sine in radians; the argument is clamped to [-1, 1]
+     */
+    public static double asin(double value) {
+        double clamped = Math.max(-1, Math.min(1, value));
+        return atan2(clamped, Math.sqrt(1 - clamped * clamped));
+    }
+
+    /**
+     * Arc cosine in radians; the argument is clamped to [-1, 1]
+     */
+    public static double acos(double value) {
+        double clamped = Math.max(-1, Math.min(1, value));
+        return atan2(Math.sqrt(1 - clamped * clamped), clamped);
+    }
+
+    private static double lookupSin(double tableIndex) {
+        double floor = Math.floor(tableIndex);
+        int index = (int) ((long) floor & SIN_MASK);
+        double fraction = tableIndex - floor;
+        return SIN_TABLE[index] + fraction * (SIN_TABLE[index + 1] - SIN_TABLE[index]);
+    }
+
+    private static double lookupAtan(double ratio) {
+        double tableIndex = ratio * ATAN_TABLE_SIZE;
+        int index = (int) tableIndex;
+        if (index >= ATAN_TABLE_SIZE) {
+            return ATAN_TABLE[ATAN_TABLE_SIZE];
+        }
+        double fraction = tableIndex - index;
+        return ATAN_TABLE[index] + fraction * (ATAN_TABLE[index + 1] - ATAN_TABLE[index]);
+    }
+}
@@ -0,0 +1,29 @@
+// IClearSkyModel.java
+package jazarifresnelsim.domain;
+
+/**
+ * Cloudless-sky irradiance as a function of the day and the solar altitude.
+ * Implementations precompute whatever depends only on the day (sun-earth
+ * distance, turbidity, monthly coefficients) so a sample costs a few
+ * exponentials. Instances are immutable and may be shared between threads.
+ */
+public interface IClearSkyModel {
+    /**
+     * Computes the clear-sky irradiance of one sample
+     * @param dayOfYear Day of year (1-366)
+     * @param solarAltitude Apparent solar altitude in degrees
+     * @param out Receives DNI and diffuse horizontal irradiance (DHI), both in W/m²;
+     *            zeros while the sun is down
+     */
+    void calculate(int dayOfYear, double solarAltitude, double[] out);
+
+    /**
+     * Direct normal irradiance only, in W/m²
+     */
+    double getDirectNormalIrradiance(int dayOfYear, double solarAltitude);
+
+    /**
+     * Short name used in logs and on the command line
+     */
+    String getName();
+}
@@ -0,0 +1,29 @@
+// IIrradianceSource.java
+package jazarifresnelsim.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Supplies the direct normal irradiance (DNI) used by the simulation.
+ * Implementations either model the sky (clear-sky formulas) or read
+ * measured values from weather files.
+ */
+public interface IIrradianceSource {
+    /**
+     * Returns the direct normal irradiance at the given time
+     * @param dateTime Local standard time of the sample
+     * @param solarAltitude Apparent solar altitude in degrees
+     * @return DNI in W/m²
+     */
+    double getDirectNormalIrradiance(LocalDateTime dateTime, double solarAltitude);
+
+    /**
+     * Same for a clock value of the engine; sources that do not need the
+     * calendar fields override it to avoid building a {@link LocalDateTime}
+     * per step
+     * @param epochSeconds Local standard time as epoch seconds, see {@link EpochTime}
+     */
+    default double getDirectNormalIrradiance(double epochSeconds, double solarAltitude) {
+        return getDirectNormalIrradiance(EpochTime.toDateTime(epochSeconds), solarAltitude);
+    }
+}
@@ -0,0 +1,54 @@
+// IOpticsKernel.java
+package jazarifresnelsim.domain;
+
+/**
+ * Batch evaluation of the solar-position and mirror-angle math.
+ * Implementations differ only in how they compute (scalar, SIMD, approximated);
+ * results must agree with {@link ScalarOpticsKernel} within the documented tolerance.
+ */
+public interface IOpticsKernel {
+    /**
+     * Computes solar positions for many samples at one site
+     * @param latitude Latitude in radians
+     * @param longitude Longitude in radians
+     * @param dayOfYear Day of year per sample (1-366)
+     * @param hour Local standard time per sample in fractional hours
+     * @param outAltitude Apparent solar altitude in degrees
+     * @param outAzimuth Solar azimuth in degrees
+     * @param outIntensity Clear-sky DNI in W/m²
+     * @param count Number of samples
+     */
+    void calculateSolarPositions(double latitude, double longitude, int[] dayOfYear, double[] hour,
+            double[] outAltitude, double[] outAzimuth, double[] outIntensity, int count);
+
+    /**
+     * Computes the rotation angle of every mirror for one sun position
+     * @param sunAltitude Solar altitude in degrees
+     * @param sunAzimuth Solar azimuth in degrees
+     * @param mirrorX Mirror X offsets from the receiver axis
+     * @param mirrorHeight Height of the mirror pivots
+     * @param receiverHeight Height of the receiver axis
+     * @param outAngles Rotation angles around the Y axis in degrees
+     * @param count Number of mirrors
+     */
+    void calculateMirrorAngles(double sunAltitude, double sunAzimuth, double[] mirrorX,
+            double mirrorHeight, double receiverHeight, double[] outAngles, int count);
+
+    /**
+     * Computes the rotation angle of every mirror of an arbitrary field,
+     * where each mirror may have its own height and receiver
+     * @param sunAltitude Solar altitude in degrees
+     * @param sunAzimuth Solar azimuth in degrees
+     * @param targetX X from each mirror pivot to the axis of its receiver
+     * @param targetZ Height from each mirror pivot to the axis of its receiver
+     * @param outAngles Rotation angles around the Y axis in degrees
+     * @param count Number of mirrors
+     */
+    void calculateMirrorAngles(double sunAltitude, double sunAzimuth, double[] targetX, double[] targetZ,
+            double[] outAngles, int count);
+
+    /**
+     * Short name used in logs and benchmarks
+     */
+    String getName();
+}
@@ -0,0 +1,197 @@
+// IamTable.java
+package jazarifresnelsim.domain;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Optical efficiency of a mirror field as a function of the transversal and
+ * longitudinal incidence angles.
+ * <p>
+ * The table is ray traced once for a fixed geometry: for every grid point
+ * the mirrors are aimed with {@link ScalarOpticsKernel#calculateMirrorAngle}
+ * and traced in full 3D with {@link ReceiverRayTracer}, so cosine losses,
+ * spillage and end losses along the row are included. Efficiency is the
+ * power reaching the receiver divided by DNI times the total mirror area.
+ * Lookups are bilinear and allocation-free.
+ * <p>
+ * θT is measured in the plane across the row, {@code atan(sx / sz)};
+ * θL along the row, {@code asin(sy)}. The field is symmetric in θL, so only
+ * its magnitude is tabulated. Grid points past 89° are traced at 89°.
+ */
+public final class IamTable {
+
+    private static final double MAX_TRANSVERSAL = 89;
+    private static final double MAX_LONGITUDINAL = 89;
+    private static final double REFERENCE_DNI = 1000;
+
+    private final double step;
+    private final int transversalCount;
+    private final int longitudinalCount;
+    private final double[] efficiency; // [t * longitudinalCount + l]
+    private final double normalEfficiency;
+
+    private IamTable(double step, int transversalCount, int longitudinalCount, double[] efficiency) {
+        this.step = step;
+        this.transversalCount = transversalCount;
+        this.longitudinalCount = longitudinalCount;
+        this.efficiency = efficiency;
+        this.normalEfficiency = getEfficiency(0, 0);
+    }
+
+    /**
+     * Ray traces the table for a mirror field
+     * @param tracer Receiver and mirror geometry
+     * @param mirrorX Mirror pivot X offsets
+     * @param mirrorHeight Mirror pivot height
+     * @param stepDegrees Grid spacing of both angles
+     */
+    public static IamTable compute(ReceiverRayTracer tracer, double[] mirrorX, double mirrorHeight,
+            double stepDegrees) {
+        double[] heights = new double[mirrorX.length];
+        Arrays.fill(heights, mirrorHeight);
+        return compute(tracer, mirrorX, heights, stepDegrees);
+    }
+
+    /**
+     * Ray traces the table for a field with individual mirror heights
+     * @param tracer Receiver and mirror geometry
+     * @param mirrorX Mirror pivot X offsets from the receiver axis
+     * @param mirrorHeight Mirror pivot heights
+     * @param stepDegrees Grid spacing of both angles
+     */
+    public static IamTable compute(ReceiverRayTracer tracer, double[] mirrorX, double[] mirrorHeight,
+            double stepDegrees) {
+        int transversalCount = 2 * (int) Math.ceil(MAX_TRANSVERSAL / stepDegrees) + 1;
+        int longitudinalCount = (int) Math.ceil(MAX_LONGITUDINAL / stepDegrees) + 1;
+        double[] efficiency = new double[transversalCount * longitudinalCount];
+        double mirrorArea = tracer.getMirrorWidth() * tracer.getMirrorLength() * 1e-4 * mirrorX.length;
+        double receiverHeight = tracer.getReceiverHeight();
+
+        IntStream.range(0, transversalCount).parallel().forEach(t -> {
+            double transversal = Math.toRadians(Math.min(MAX_TRANSVERSAL,
+                    Math.max(-MAX_TRANSVERSAL, (t - transversalCount / 2) * stepDegrees)));
+            for (int l = 0; l < longitudinalCount; l++) {
+                double longitudinal = Math.toRadians(Math.min(MAX_LONGITUDINAL, l * stepDegrees));
+                double sunX = Math.cos(longitudinal) * Math.sin(transversal);
+                double sunY = Math.sin(longitudinal);
+                double sunZ = Math.cos(longitudinal) * Math.cos(transversal);
+                double altitude = Math.toDegrees(Math.asin(sunZ));
+                double azimuth = Math.toDegrees(Math.atan2(-sunX, sunY));
+
+                double intercepted = 0;
+                for (int m = 0; m < mirrorX.length; m++) {
+                    double angle = ScalarOpticsKernel.calculateMirrorAngle(mirrorX[m], mirrorHeight[m],
+                            receiverHeight, altitude, azimuth);
+                    intercepted += tracer.traceMirror(sunX, sunY, sunZ, REFERENCE_DNI,
+                            mirrorX[m], mirrorHeight[m], angle, null);
+                }
+                efficiency[t * longitudinalCount + l] = intercepted / (REFERENCE_DNI * mirrorArea);
+            }
+        });
+        return new IamTable(stepDegrees, transversalCount, longitudinalCount, efficiency);
+    }
+
+    /**
+     * Transversal incidence angle in degrees for a sun position
+     */
+    public static double transversalAngle(double altitudeDegrees, double azimuthDegrees) {
+        double altitude = Math.toRadians(altitudeDegrees);
+        double sunX = -Math.cos(altitude) * Math.sin(Math.toRadians(azimuthDegrees));
+        return Math.toDegrees(Math.atan2(sunX, Math.sin(altitude)));
+    }
+
+    /**
+     * Longitudinal incidence angle in degrees for a sun position
+     */
+    public static double longitudinalAngle(double altitudeDegrees, double azimuthDegrees) {
+        double sunY = Math.cos(Math.toRadians(altitudeDegrees)) * Math.cos(Math.toRadians(azimuthDegrees));
+        return Math.toDegrees(Math.asin(sunY));
+    }
+
+    /**
+     * Optical efficiency for a sun position; 0 below the horizon
+     */
+    public double getEfficiencyForSun(double altitudeDegrees, double azimuthDegrees) {
+        if (altitudeDegrees <= 0) {
+            return 0;
+        }
+        return getEfficiency(transversalAngle(altitudeDegrees, azimuthDegrees),
+                longitudinalAngle(altitudeDegrees, azimuthDegrees));
+    }
+
+    /**
+     * Bilinearly interpolated optical efficiency
+     * @param transversalDegrees θT, clamped to the table range
+     * @param longitudinalDegrees θL, sign ignored, clamped to the table range
+     */
+    public double getEfficiency(double transversalDegrees, double longitudinalDegrees) {
+        double t = transversalDegrees / step + transversalCount / 2;
+        double l = Math.abs(longitudinalDegrees) / step;
+        t = Math.max(0, Math.min(transversalCount - 1, t));
+        l = Math.max(0, Math.min(longitudinalCount - 1, l));
+
+        int t0 = Math.min((int) t, transversalCount - 2);
+        int l0 = Math.min((int) l, longitudinalCount - 2);
+        double ft = t - t0;
+        double fl = l - l0;
+        int i = t0 * longitudinalCount + l0;
+        double lowT = efficiency[i] + (efficiency[i + 1] - efficiency[i]) * fl;
+        double highT = efficiency[i + longitudinalCount]
+                + (efficiency[i + longitudinalCount + 1] - efficiency[i + longitudinalCount]) * fl;
+        return lowT + (highT - lowT) * ft;
+    }
+
+    /**
+     * Incidence angle modifier: efficiency relative to normal incidence
+     */
+    public double getIam(double transversalDegrees, double longitudinalDegrees) {
+        return normalEfficiency > 0 ? getEfficiency(transversalDegrees, longitudinalDegrees) / normalEfficiency : 0;
+    }
+
+    /**
+     * Efficiency with the sun at zenith (θT = θL = 0)
+     */
+    public double getNormalEfficiency() {
+        return normalEfficiency;
+    }
+
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * Writes the efficiency grid as CSV: one row per θT, one column per θL
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder("theta_t\\theta_l");
+        for (int l = 0; l < longitudinalCount; l++) {
+            line.append(',').append(format(l * step));
+        }
+        out.write(line.append('\n').toString());
+        for (int t = 0; t < transversalCount; t++) {
+            line.setLength(0);
+            line.append(format((t - transversalCount / 2) * step));
+            for (int l = 0; l < longitudinalCount; l++) {
+                line.append(',').append(String.format(Locale.ROOT, "%.5f", efficiency[t * longitudinalCount + l]));
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -0,0 +1,36 @@
+// MeinelClearSkyModel.java
+package jazarifresnelsim.domain;
+
+/**
+ * The simulator's original clear-sky model (Meinel): DNI = 1361 · 0.7^(AM^0.678)
+ * with the Kasten-Young air mass, the same for every day. The diffuse part
+ * is taken as a fixed share of the beam on a horizontal plane. Evaluated
+ * at the apparent altitude, so near the horizon it gives slightly more than
+ * the engine's built-in intensity, which uses the altitude before refraction.
+ */
+public final class MeinelClearSkyModel implements IClearSkyModel {
+
+    public static final double DIFFUSE_RATIO = 0.1;
+
+    @Override
+    public void calculate(int dayOfYear, double solarAltitude, double[] out) {
+        if (solarAltitude <= 0) {
+            out[0] = 0;
+            out[1] = 0;
+            return;
+        }
+        double dni = SolarCalculator.calculateClearSkyIntensity(solarAltitude);
+        out[0] = dni;
+        out[1] = DIFFUSE_RATIO * dni * Math.sin(Math.toRadians(solarAltitude));
+    }
+
+    @Override
+    public double getDirectNormalIrradiance(int dayOfYear, double solarAltitude) {
+        return solarAltitude > 0 ? SolarCalculator.calculateClearSkyIntensity(solarAltitude) : 0;
+    }
+
+    @Override
+    public String getName() {
+        return "meinel";
+    }
+}
@@ -0,0 +1,472 @@
+// MirrorAngleTable.java
+package jazarifresnelsim.domain;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import jazarifresnelsim.models.FieldLayout;
+
+/**
+ * Precomputed mirror angles of one site and field for a whole year, for
+ * controllers that cannot run the solar model and for fast replay.
+ * <p>
+ * Angles are sampled every few minutes of every day of the year inside the
+ * daylight window (the minutes at which the sun is up on at least one day)
+ * and stored as 16-bit fixed point in 1/{@value #SCALE} degree steps.
+ * Lookups interpolate linearly between samples of the same day. On disk
+ * every mirror-day row is delta encoded twice (the angle changes almost
+ * linearly over minutes); the second differences are zig-zag encoded and
+ * bit packed per row, with the width that minimizes the row size and an
+ * escape code for the few larger ones (fast swings at low sun), so most
+ * samples take two bits. The table records a hash of the field geometry
+ * it was solved for; {@link #matches} tells whether it applies to a
+ * layout. Immutable once built.
+ */
+public final class MirrorAngleTable {
+
+    public static final int SCALE = 360;
+    private static final int MAGIC = 0x4d415442; // "MATB"
+    private static final int VERSION = 2;
+    private static final int DAYS = 366;
+
+    private final double latitude;
+    private final double longitude;
+    private final int mirrors;
+    private final long geometryHash;
+    private final int stepMinutes;
+    private final int startMinute;   // minute of day of sample 0
+    private final int samples;       // per mirror and day
+    private final short[] values;    // [(mirror * DAYS + day - 1) * samples + sample]
+    private volatile FieldLayout matchedLayout; // last layout found to match
+
+    private MirrorAngleTable(double latitude, double longitude, int mirrors, long geometryHash, int stepMinutes,
+            int startMinute, int samples, short[] values) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.mirrors = mirrors;
+        this.geometryHash = geometryHash;
+        this.stepMinutes = stepMinutes;
+        this.startMinute = startMinute;
+        this.samples = samples;
+        this.values = values;
+    }
+
+    /**
+     * Computes the table for a field at the calculator's site
+     * @param stepMinutes Sample spacing in minutes
+     */
+    public static MirrorAngleTable generate(SolarCalculator calculator, IOpticsKernel kernel, FieldLayout layout,
+            int stepMinutes) {
+        int perDay = (24 * 60) / stepMinutes;
+        double[] sun = new double[3];
+
+        // Daylight window over the whole year
+        int first = perDay;
+        int last = -1;
+        for (int day = 1; day <= DAYS; day++) {
+            for (int s = 0; s < perDay; s++) {
+                calculator.calculateSolarPosition(day, s * stepMinutes / 60.0, sun);
+                if (sun[0] > 0) {
+                    first = Math.min(first, s);
+                    last = Math.max(last, s);
+                }
+            }
+        }
+        if (last < 0) {
+            throw new IllegalArgumentException("The sun never rises at this site");
+        }
+        first = Math.max(0, first - 1); // one sample margin for interpolation at sunrise/sunset
+        last = Math.min(perDay - 1, last + 1);
+        int samples = last - first + 1;
+
+        int mirrors = layout.getMirrorCount();
+        short[] values = new short[mirrors * DAYS * samples];
+        double[] angles = new double[mirrors];
+        for (int day = 1; day <= DAYS; day++) {
+            for (int s = 0; s < samples; s++) {
+                calculator.calculateSolarPosition(day, (first + s) * stepMinutes / 60.0, sun);
+                kernel.calculateMirrorAngles(sun[0], sun[1], layout.getTargetX(), layout.getTargetZ(),
+                        angles, mirrors);
+                for (int m = 0; m < mirrors; m++) {
+                    values[(m * DAYS + day - 1) * samples + s] = quantize(angles[m]);
+                }
+            }
+        }
+        MirrorAngleTable table = new MirrorAngleTable(calculator.getLatitude(), calculator.getLongitude(), mirrors,
+                geometryHash(layout), stepMinutes, first * stepMinutes, samples, values);
+        table.matchedLayout = layout;
+        return table;
+    }
+
+    /**
+     * Hash of what the mirror angles depend on: the offset from every
+     * mirror pivot to its receiver axis
+     */
+    public static long geometryHash(FieldLayout layout) {
+        double[] targetX = layout.getTargetX();
+        double[] targetZ = layout.getTargetZ();
+        long hash = 0xcbf29ce484222325L ^ layout.getMirrorCount();
+        for (int i = 0; i < layout.getMirrorCount(); i++) {
+            hash = (hash ^ Double.doubleToLongBits(targetX[i])) * 0x100000001b3L;
+            hash = (hash ^ Double.doubleToLongBits(targetZ[i])) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Whether the table was solved for the geometry of a layout. O(mirrors)
+     * for a new layout instance, then a reference compare.
+     */
+    public boolean matches(FieldLayout layout) {
+        if (layout == matchedLayout) {
+            return true;
+        }
+        if (layout.getMirrorCount() != mirrors || geometryHash(layout) != geometryHash) {
+            return false;
+        }
+        matchedLayout = layout;
+        return true;
+    }
+
+    private static short quantize(double degrees) {
+        long fixed = Math.round(degrees * SCALE);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, fixed));
+    }
+
+    /**
+     * Interpolated angle of a mirror
+     * @param dayOfYear Day of year (1-366)
+     * @param minuteOfDay Local standard time in minutes since midnight
+     * @return angle in degrees, NaN outside the daylight window
+     */
+    public double getAngle(int mirror, int dayOfYear, double minuteOfDay) {
+        double position = (minuteOfDay - startMinute) / stepMinutes;
+        if (!(position >= 0 && position <= samples - 1) || dayOfYear < 1 || dayOfYear > DAYS) {
+            return Double.NaN;
+        }
+        int row = (mirror * DAYS + dayOfYear - 1) * samples;
+        if (samples == 1) {
+            return values[row] / (double) SCALE;
+        }
+        int sample = Math.min((int) position, samples - 2);
+        double fraction = position - sample;
+        double a = values[row + sample];
+        double b = values[row + sample + 1];
+        return (a + (b - a) * fraction) / SCALE;
+    }
+
+    public double getAngle(int mirror, LocalDateTime time) {
+        return getAngle(mirror, time.getDayOfYear(), minuteOfDay(time));
+    }
+
+    /**
+     * Angles of all mirrors at one time
+     * @param out Receives one angle per mirror
+     * @return false (and NaN angles) outside the daylight window
+     */
+    public boolean getAngles(LocalDateTime time, double[] out) {
+        return getAngles(time.getDayOfYear(), minuteOfDay(time), out);
+    }
+
+    /**
+     * Allocation-free version of {@link #getAngles(LocalDateTime, double[])}
+     * @param day Day of year (1-366)
+     * @param minute Local standard time in fractional minutes of the day
+     */
+    public boolean getAngles(int day, double minute, double[] out) {
+        for (int m = 0; m < mirrors; m++) {
+            out[m] = getAngle(m, day, minute);
+        }
+        return mirrors == 0 || !Double.isNaN(out[0]);
+    }
+
+    private static double minuteOfDay(LocalDateTime time) {
+        return time.getHour() * 60 + time.getMinute() + (time.getSecond() + time.getNano() / 1e9) / 60.0;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getMirrorCount() {
+        return mirrors;
+    }
+
+    public long getGeometryHash() {
+        return geometryHash;
+    }
+
+    public int getStepMinutes() {
+        return stepMinutes;
+    }
+
+    /**
+     * First minute of day covered by the table
+     */
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    /**
+     * Last minute of day covered by the table
+     */
+    public int getEndMinute() {
+        return startMinute + (samples - 1) * stepMinutes;
+    }
+
+    /**
+     * Number of stored angles
+     */
+    public int getValueCount() {
+        return values.length;
+    }
+
+    /**
+     * Writes the table in its delta-encoded binary form
+     */
+    public void write(OutputStream stream) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(values.length / 2);
+        int[] residuals = new int[samples];
+        for (int row = 0; row < mirrors * DAYS; row++) {
+            int offset = row * samples;
+            writeVarint(encoded, zigZag(values[offset]));
+            if (samples < 2) {
+                continue;
+            }
+            int firstDelta = values[offset + 1] - values[offset];
+            writeVarint(encoded, zigZag(firstDelta));
+            int previousDelta = firstDelta;
+            int combined = 0;
+            for (int s = 2; s < samples; s++) {
+                int delta = values[offset + s] - values[offset + s - 1];
+                residuals[s] = zigZag(delta - previousDelta);
+                combined |= residuals[s];
+                previousDelta = delta;
+            }
+            int fullWidth = 32 - Integer.numberOfLeadingZeros(combined);
+            int width = packedWidth(residuals, 2, samples, fullWidth);
+            encoded.write(fullWidth);
+            encoded.write(width);
+            BitWriter bits = new BitWriter(encoded);
+            int escape = (1 << width) - 1;
+            for (int s = 2; s < samples; s++) {
+                if (width < fullWidth && residuals[s] >= escape) {
+                    bits.write(escape, width);
+                    bits.write(residuals[s], fullWidth);
+                } else {
+                    bits.write(residuals[s], width);
+                }
+            }
+            bits.flush();
+        }
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeDouble(latitude);
+        out.writeDouble(longitude);
+        out.writeInt(mirrors);
+        out.writeLong(geometryHash);
+        out.writeInt(stepMinutes);
+        out.writeInt(startMinute);
+        out.writeInt(samples);
+        out.writeInt(encoded.size());
+        encoded.writeTo(out);
+        out.flush();
+    }
+
+    public void write(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    /**
+     * @throws IOException if the magic or version does not match or the data is truncated
+     */
+    public static MirrorAngleTable read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a mirror angle table");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported mirror angle table version: " + version);
+        }
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        int mirrors = in.readInt();
+        long geometryHash = in.readLong();
+        int stepMinutes = in.readInt();
+        int startMinute = in.readInt();
+        int samples = in.readInt();
+        byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+
+        short[] values = new short[mirrors * DAYS * samples];
+        int[] position = {0};
+        for (int row = 0; row < mirrors * DAYS; row++) {
+            int offset = row * samples;
+            int value = unZigZag(readVarint(encoded, position));
+            values[offset] = (short) value;
+            if (samples < 2) {
+                continue;
+            }
+            int delta = unZigZag(readVarint(encoded, position));
+            value += delta;
+            values[offset + 1] = (short) value;
+            if (position[0] + 2 > encoded.length) {
+                throw new IOException("Truncated mirror angle table");
+            }
+            int fullWidth = encoded[position[0]++];
+            int width = encoded[position[0]++];
+            int escape = (1 << width) - 1;
+            BitReader bits = new BitReader(encoded, position);
+            for (int s = 2; s < samples; s++) {
+                int residual = bits.read(width);
+                if (width < fullWidth && residual == escape) {
+                    residual = bits.read(fullWidth);
+                }
+                delta += unZigZag(residual);
+                value += delta;
+                values[offset + s] = (short) value;
+            }
+            bits.finish();
+        }
+        return new MirrorAngleTable(latitude, longitude, mirrors, geometryHash, stepMinutes, startMinute, samples,
+                values);
+    }
+
+    public static MirrorAngleTable read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Width that minimizes the packed size of a row when residuals that do
+     * not fit are escaped and written with the full width
+     */
+    private static int packedWidth(int[] residuals, int from, int to, int fullWidth) {
+        int best = fullWidth;
+        long bestBits = (long) (to - from) * fullWidth;
+        for (int width = 1; width < fullWidth; width++) {
+            int escape = (1 << width) - 1;
+            long bits = (long) (to - from) * width;
+            for (int s = from; s < to; s++) {
+                if (residuals[s] >= escape) {
+                    bits += fullWidth;
+                }
+            }
+            if (bits < bestBits) {
+                best = width;
+                bestBits = bits;
+            }
+        }
+        return best;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IOException("Truncated mirror angle table");
+            }
+            int b = data[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt mirror angle table");
+    }
+
+    private static final class BitWriter {
+        private final ByteArrayOutputStream out;
+        private long bits;
+        private int count;
+
+        BitWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void write(int value, int width) {
+            bits |= (long) value << count;
+            count += width;
+            while (count >= 8) {
+                out.write((int) bits);
+                bits >>>= 8;
+                count -= 8;
+            }
+        }
+
+        void flush() {
+            if (count > 0) {
+                out.write((int) bits);
+            }
+            bits = 0;
+            count = 0;
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private final int[] position;
+        private long bits;
+        private int count;
+
+        BitReader(byte[] data, int[] position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int read(int width) throws IOException {
+            while (count < width) {
+                if (position[0] >= data.length) {
+                    throw new IOException("Truncated mirror angle table");
+                }
+                bits |= (long) (data[position[0]++] & 0xff) << count;
+                count += 8;
+            }
+            int value = (int) (bits & ((1L << width) - 1));
+            bits >>>= width;
+            count -= width;
+            return value;
+        }
+
+        /**
+         * Drops the padding bits of the last byte
+         */
+        void finish() {
+            bits = 0;
+            count = 0;
+        }
+    }
+}
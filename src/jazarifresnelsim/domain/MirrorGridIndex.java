@@ -0,0 +1,399 @@
+// MirrorGridIndex.java
+package jazarifresnelsim.domain;
+
+import java.util.Arrays;
+import jazarifresnelsim.models.FieldLayout;
+
+/**
+ * Uniform grid over the ground plane for ray-mirror intersection in large
+ * fields.
+ * <p>
+ * A mirror is a rectangle centred at {@code (x, y, height)} of the layout,
+ * rotated about its Y axis like in {@link ReceiverRayTracer}: a point at
+ * width coordinate u and length coordinate v lies at
+ * {@code (x + u cosθ, y + v, height - u sinθ)}, the normal is
+ * {@code (sinθ, 0, cosθ)}. Every mirror is listed in the cells its
+ * footprint (tight XY bounding box for the current angle) overlaps. Cells
+ * are about one mirror wide and one mirror long, so a cell holds a handful
+ * of mirrors whatever the field size.
+ * <p>
+ * {@link #update} moves only the mirrors whose footprint crosses a cell
+ * boundary; rotation never changes the Y extent, so most steps move few or
+ * no mirrors and an update is O(mirrors) with small constants instead of
+ * a rebuild. A query clips the ray to the height band of the field and
+ * walks the cells it crosses (2-D DDA), testing the mirrors of each cell
+ * and stopping at the first cell that contains a hit, so it touches only
+ * the cells near the ray instead of every mirror.
+ * <p>
+ * Updates must not run concurrently with queries; queries may run
+ * concurrently with each other. Lengths are in cm.
+ */
+public class MirrorGridIndex {
+
+    private static final double EPSILON = 1e-9;
+
+    private final int mirrors;
+    private final double[] centerX;
+    private final double[] centerY;
+    private final double[] centerZ;
+    private final double[] halfWidth;
+    private final double halfLength;
+    private final double[] sin;
+    private final double[] cos;
+
+    private final double originX;
+    private final double originY;
+    private final double cellWidth;
+    private final double cellLength;
+    private final int columns;
+    private final int rows;
+    private final double minZ;
+    private final double maxZ;
+
+    private final int[][] cells;
+    private final int[] cellCount;
+    private final int[] firstColumn; // current column range of each mirror
+    private final int[] lastColumn;
+    private final int[] firstRow;
+    private final int[] lastRow;
+
+    /**
+     * Builds the index with all mirrors horizontal
+     * @param mirrorLength Mirror length along Y in cm
+     */
+    public MirrorGridIndex(FieldLayout layout, double mirrorLength) {
+        this.mirrors = layout.getMirrorCount();
+        this.centerX = new double[mirrors];
+        this.centerY = new double[mirrors];
+        this.centerZ = new double[mirrors];
+        this.halfWidth = new double[mirrors];
+        this.halfLength = mirrorLength / 2;
+        this.sin = new double[mirrors];
+        this.cos = new double[mirrors];
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double lowZ = Double.POSITIVE_INFINITY;
+        double highZ = Double.NEGATIVE_INFINITY;
+        double widest = 0;
+        for (int i = 0; i < mirrors; i++) {
+            centerX[i] = layout.getX(i);
+            centerY[i] = layout.getY(i);
+            centerZ[i] = layout.getHeight(i);
+            halfWidth[i] = layout.getWidth(i) / 2;
+            cos[i] = 1;
+            widest = Math.max(widest, layout.getWidth(i));
+            // Bounds over every possible angle, so the grid never has to grow
+            minX = Math.min(minX, centerX[i] - halfWidth[i]);
+            maxX = Math.max(maxX, centerX[i] + halfWidth[i]);
+            minY = Math.min(minY, centerY[i] - halfLength);
+            maxY = Math.max(maxY, centerY[i] + halfLength);
+            lowZ = Math.min(lowZ, centerZ[i] - halfWidth[i]);
+            highZ = Math.max(highZ, centerZ[i] + halfWidth[i]);
+        }
+        if (mirrors == 0) {
+            minX = maxX = minY = maxY = lowZ = highZ = 0;
+        }
+        this.minZ = lowZ;
+        this.maxZ = highZ;
+
+        // About one mirror per cell; coarser if the field is sparse, so the
+        // grid stays within a few cells per mirror
+        double spanX = Math.max(maxX - minX, EPSILON);
+        double spanY = Math.max(maxY - minY, EPSILON);
+        double width = Math.max(widest, spanX / 4096);
+        double length = Math.max(mirrorLength, spanY / 4096);
+        double maxCells = 4.0 * Math.max(1, mirrors);
+        double scale = Math.sqrt(Math.max(1, (spanX / width) * (spanY / length) / maxCells));
+        this.cellWidth = width * scale;
+        this.cellLength = length * scale;
+        this.columns = Math.max(1, (int) Math.ceil(spanX / cellWidth));
+        this.rows = Math.max(1, (int) Math.ceil(spanY / cellLength));
+        this.originX = minX;
+        this.originY = minY;
+
+        this.cells = new int[columns * rows][];
+        this.cellCount = new int[columns * rows];
+        this.firstColumn = new int[mirrors];
+        this.lastColumn = new int[mirrors];
+        this.firstRow = new int[mirrors];
+        this.lastRow = new int[mirrors];
+        for (int i = 0; i < mirrors; i++) {
+            firstColumn[i] = column(centerX[i] - halfWidth[i]);
+            lastColumn[i] = column(centerX[i] + halfWidth[i]);
+            firstRow[i] = row(centerY[i] - halfLength);
+            lastRow[i] = row(centerY[i] + halfLength);
+            for (int r = firstRow[i]; r <= lastRow[i]; r++) {
+                for (int c = firstColumn[i]; c <= lastColumn[i]; c++) {
+                    insert(r * columns + c, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the mirror angles and moves the mirrors whose footprint now covers
+     * other cells
+     * @param anglesDegrees Rotation angle of every mirror, as from the kernels
+     * @return number of mirrors that changed cells
+     */
+    public int update(double[] anglesDegrees) {
+        if (anglesDegrees.length < mirrors) {
+            throw new IllegalArgumentException("Expected " + mirrors + " angles, got " + anglesDegrees.length);
+        }
+        int moved = 0;
+        for (int i = 0; i < mirrors; i++) {
+            double angle = Math.toRadians(anglesDegrees[i]);
+            sin[i] = Math.sin(angle);
+            cos[i] = Math.cos(angle);
+            double extent = halfWidth[i] * Math.abs(cos[i]);
+            int first = column(centerX[i] - extent);
+            int last = column(centerX[i] + extent);
+            int oldFirst = firstColumn[i];
+            int oldLast = lastColumn[i];
+            if (first == oldFirst && last == oldLast) {
+                continue;
+            }
+            for (int r = firstRow[i]; r <= lastRow[i]; r++) {
+                int base = r * columns;
+                for (int c = oldFirst; c <= oldLast; c++) {
+                    if (c < first || c > last) {
+                        remove(base + c, i);
+                    }
+                }
+                for (int c = first; c <= last; c++) {
+                    if (c < oldFirst || c > oldLast) {
+                        insert(base + c, i);
+                    }
+                }
+            }
+            firstColumn[i] = first;
+            lastColumn[i] = last;
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Nearest mirror hit by a ray
+     * @param exclude Mirror to ignore (the one the ray starts on), or -1
+     * @param maxDistance Largest ray parameter to accept
+     * @param hit Receives the ray parameter and the hit point x, y, z; may be null
+     * @return mirror index, or -1 if nothing is hit
+     */
+    public int intersect(double originX, double originY, double originZ,
+            double dirX, double dirY, double dirZ, int exclude, double maxDistance, double[] hit) {
+        return traverse(originX, originY, originZ, dirX, dirY, dirZ, exclude, maxDistance, hit, false);
+    }
+
+    /**
+     * True if any mirror other than {@code exclude} blocks the ray before
+     * maxDistance; cheaper than {@link #intersect} for shading and blocking
+     */
+    public boolean occluded(double originX, double originY, double originZ,
+            double dirX, double dirY, double dirZ, int exclude, double maxDistance) {
+        return traverse(originX, originY, originZ, dirX, dirY, dirZ, exclude, maxDistance, null, true) >= 0;
+    }
+
+    /**
+     * Nearest hit by testing every mirror; reference for the grid
+     */
+    public int intersectBruteForce(double originX, double originY, double originZ,
+            double dirX, double dirY, double dirZ, int exclude, double maxDistance, double[] hit) {
+        int best = -1;
+        double bestT = maxDistance;
+        for (int i = 0; i < mirrors; i++) {
+            if (i == exclude) {
+                continue;
+            }
+            double t = hitDistance(i, originX, originY, originZ, dirX, dirY, dirZ);
+            if (t < bestT) {
+                bestT = t;
+                best = i;
+            }
+        }
+        if (best >= 0 && hit != null) {
+            store(hit, bestT, originX, originY, originZ, dirX, dirY, dirZ);
+        }
+        return best;
+    }
+
+    public int getMirrorCount() {
+        return mirrors;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Mean number of mirrors per non-empty cell
+     */
+    public double getMeanOccupancy() {
+        long total = 0;
+        int used = 0;
+        for (int count : cellCount) {
+            if (count > 0) {
+                total += count;
+                used++;
+            }
+        }
+        return used > 0 ? (double) total / used : 0;
+    }
+
+    private int traverse(double ox, double oy, double oz, double dx, double dy, double dz,
+            int exclude, double maxDistance, double[] hit, boolean anyHit) {
+        if (mirrors == 0) {
+            return -1;
+        }
+        // Clip to the height band and the grid rectangle
+        double tMin = 0;
+        double tMax = maxDistance;
+        double[] range = {tMin, tMax};
+        if (!clip(oz, dz, minZ, maxZ, range)
+                || !clip(ox, dx, originX, originX + columns * cellWidth, range)
+                || !clip(oy, dy, originY, originY + rows * cellLength, range)) {
+            return -1;
+        }
+        tMin = range[0];
+        tMax = range[1];
+
+        double startX = ox + dx * tMin;
+        double startY = oy + dy * tMin;
+        int c = column(startX);
+        int r = row(startY);
+        int stepC = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepR = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        double nextX = stepC == 0 ? Double.POSITIVE_INFINITY
+                : tMin + ((originX + (c + (stepC > 0 ? 1 : 0)) * cellWidth) - startX) / dx;
+        double nextY = stepR == 0 ? Double.POSITIVE_INFINITY
+                : tMin + ((originY + (r + (stepR > 0 ? 1 : 0)) * cellLength) - startY) / dy;
+        double deltaX = stepC == 0 ? Double.POSITIVE_INFINITY : cellWidth / Math.abs(dx);
+        double deltaY = stepR == 0 ? Double.POSITIVE_INFINITY : cellLength / Math.abs(dy);
+
+        int best = -1;
+        double bestT = maxDistance;
+        while (true) {
+            int cell = r * columns + c;
+            int[] list = cells[cell];
+            for (int k = 0; k < cellCount[cell]; k++) {
+                int i = list[k];
+                if (i == exclude) {
+                    continue;
+                }
+                double t = hitDistance(i, ox, oy, oz, dx, dy, dz);
+                if (t < bestT) {
+                    if (anyHit) {
+                        return i;
+                    }
+                    bestT = t;
+                    best = i;
+                }
+            }
+            double cellExit = Math.min(nextX, nextY);
+            // A hit inside this cell is nearer than anything in later cells
+            if (best >= 0 && bestT <= cellExit || cellExit > tMax) {
+                break;
+            }
+            if (nextX < nextY) {
+                c += stepC;
+                nextX += deltaX;
+                if (c < 0 || c >= columns) {
+                    break;
+                }
+            } else {
+                r += stepR;
+                nextY += deltaY;
+                if (r < 0 || r >= rows) {
+                    break;
+                }
+            }
+        }
+        if (best >= 0 && hit != null) {
+            store(hit, bestT, ox, oy, oz, dx, dy, dz);
+        }
+        return best;
+    }
+
+    /**
+     * Ray parameter of the hit with mirror i, or +infinity
+     */
+    private double hitDistance(int i, double ox, double oy, double oz, double dx, double dy, double dz) {
+        double nx = sin[i];
+        double nz = cos[i];
+        double denominator = nx * dx + nz * dz;
+        if (Math.abs(denominator) < EPSILON) {
+            return Double.POSITIVE_INFINITY; // parallel to the mirror
+        }
+        double t = (nx * (centerX[i] - ox) + nz * (centerZ[i] - oz)) / denominator;
+        if (t <= EPSILON) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double px = ox + dx * t - centerX[i];
+        double pz = oz + dz * t - centerZ[i];
+        double u = px * cos[i] - pz * sin[i];
+        double v = oy + dy * t - centerY[i];
+        if (Math.abs(u) > halfWidth[i] || Math.abs(v) > halfLength) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return t;
+    }
+
+    /**
+     * Narrows range to the parameters where origin + t·dir lies in [low, high]
+     */
+    private static boolean clip(double origin, double dir, double low, double high, double[] range) {
+        if (Math.abs(dir) < EPSILON) {
+            return origin >= low && origin <= high;
+        }
+        double t0 = (low - origin) / dir;
+        double t1 = (high - origin) / dir;
+        range[0] = Math.max(range[0], Math.min(t0, t1));
+        range[1] = Math.min(range[1], Math.max(t0, t1));
+        return range[0] <= range[1];
+    }
+
+    private static void store(double[] hit, double t, double ox, double oy, double oz,
+            double dx, double dy, double dz) {
+        hit[0] = t;
+        hit[1] = ox + dx * t;
+        hit[2] = oy + dy * t;
+        hit[3] = oz + dz * t;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - originX) / cellWidth)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - originY) / cellLength)));
+    }
+
+    private void insert(int cell, int mirror) {
+        int[] list = cells[cell];
+        if (list == null) {
+            list = cells[cell] = new int[4];
+        } else if (cellCount[cell] == list.length) {
+            list = cells[cell] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[cellCount[cell]++] = mirror;
+    }
+
+    private void remove(int cell, int mirror) {
+        int[] list = cells[cell];
+        int n = cellCount[cell];
+        for (int k = 0; k < n; k++) {
+            if (list[k] == mirror) {
+                list[k] = list[n - 1];
+                cellCount[cell] = n - 1;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+// OpticsKernels.java
+package jazarifresnelsim.domain;
+
+/**
+ * Selects an {@link IOpticsKernel} implementation.
+ * <p>
+ * The SIMD kernel is used when the {@code jdk.incubator.vector} module is
+ * resolved (run with {@code --add-modules jdk.incubator.vector}); otherwise
+ * the scalar kernel is returned. The system property
+ * {@code jazarifresnelsim.kernel} forces {@code scalar} or {@code vector}, or
+ * selects the approximate {@code fast} kernel.
+ */
+public final class OpticsKernels {
+
+    public static final String KERNEL_PROPERTY = "jazarifresnelsim.kernel";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final IOpticsKernel SCALAR = new ScalarOpticsKernel();
+    private static final IOpticsKernel VECTOR = loadVectorKernel();
+    private static final IOpticsKernel FAST = new FastOpticsKernel();
+
+    private OpticsKernels() {
+        // Prevent instantiation
+    }
+
+    public static IOpticsKernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Returns the SIMD kernel, or the scalar kernel if the Vector API is absent
+     */
+    public static IOpticsKernel vector() {
+        return VECTOR != null ? VECTOR : SCALAR;
+    }
+
+    /**
+     * Returns the bounded-error table-based kernel (max error below 0.001°)
+     */
+    public static IOpticsKernel fast() {
+        return FAST;
+    }
+
+    public static boolean isVectorAvailable() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Kernel selected by the {@value #KERNEL_PROPERTY} property, defaulting to
+     * the fastest available one
+     */
+    public static IOpticsKernel getDefault() {
+        String name = System.getProperty(KERNEL_PROPERTY, "auto");
+        return switch (name) {
+            case "scalar" -> SCALAR;
+            case "fast" -> FAST;
+            default -> vector();
+        };
+    }
+
+    private static IOpticsKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            // Loaded reflectively so this class never links against the incubator module
+            Class<?> kernelClass = Class.forName("jazarifresnelsim.domain.VectorOpticsKernel");
+            return (IOpticsKernel) kernelClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Vector kernel unavailable, using scalar: " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+// ReceiverRayTracer.java
+package jazarifresnelsim.domain;
+
+/**
+ * Traces reflected sun rays from flat mirrors onto the cylindrical receiver.
+ * <p>
+ * Geometry follows the renderer: mirrors rotate about an axis parallel to Y
+ * through {@code (mirrorX, *, mirrorHeight)}, the receiver axis runs along Y
+ * at {@code (0, *, receiverHeight)} and spans {@code ±receiverLength/2}.
+ * Each mirror is sampled on a regular grid; every sample carries
+ * {@code DNI · cos(incidence) · area} and is binned where its reflected ray
+ * first hits the tube (axial × angular). Shading and blocking between
+ * mirrors are not modelled. Lengths are in cm, power in W.
+ * <p>
+ * Instances are immutable and can be shared between threads; the histogram
+ * passed to {@link #traceMirror} must not be.
+ */
+public class ReceiverRayTracer {
+
+    private final double mirrorWidth;
+    private final double mirrorLength;
+    private final double receiverHeight;
+    private final double receiverRadius;
+    private final double receiverLength;
+    private final int axialBins;
+    private final int angularBins;
+    private final int samplesAcross;
+    private final int samplesAlong;
+    private final double sampleArea; // m²
+
+    public ReceiverRayTracer(double mirrorWidth, double mirrorLength,
+            double receiverHeight, double receiverRadius, double receiverLength,
+            int axialBins, int angularBins, int samplesAcross, int samplesAlong) {
+        this.mirrorWidth = mirrorWidth;
+        this.mirrorLength = mirrorLength;
+        this.receiverHeight = receiverHeight;
+        this.receiverRadius = receiverRadius;
+        this.receiverLength = receiverLength;
+        this.axialBins = axialBins;
+        this.angularBins = angularBins;
+        this.samplesAcross = samplesAcross;
+        this.samplesAlong = samplesAlong;
+        this.sampleArea = (mirrorWidth / samplesAcross) * (mirrorLength / samplesAlong) * 1e-4;
+    }
+
+    /**
+     * Unit vector pointing at the sun, in simulation coordinates
+     * @param out Receives x, y, z
+     */
+    public static void sunVector(double altitudeDegrees, double azimuthDegrees, double[] out) {
+        double altitude = Math.toRadians(altitudeDegrees);
+        double azimuth = Math.toRadians(azimuthDegrees);
+        out[0] = -Math.cos(altitude) * Math.sin(azimuth);
+        out[1] = Math.cos(altitude) * Math.cos(azimuth);
+        out[2] = Math.sin(altitude);
+    }
+
+    /**
+     * Traces one mirror
+     * @param sunX Sun unit vector X
+     * @param sunY Sun unit vector Y
+     * @param sunZ Sun unit vector Z
+     * @param dni Direct normal irradiance in W/m²
+     * @param mirrorX Mirror pivot X offset
+     * @param mirrorHeight Mirror pivot height
+     * @param angleDegrees Mirror rotation around Y in degrees
+     * @param histogram Power per receiver cell, {@code axial * angularBins + angular}; may be null
+     * @return Power reaching the receiver in W
+     */
+    public double traceMirror(double sunX, double sunY, double sunZ, double dni,
+            double mirrorX, double mirrorHeight, double angleDegrees, double[] histogram) {
+        double angle = Math.toRadians(angleDegrees);
+        double sinAngle = Math.sin(angle);
+        double cosAngle = Math.cos(angle);
+
+        // Mirror normal and in-plane width axis after rotateY(angle)
+        double normalX = sinAngle;
+        double normalZ = cosAngle;
+        double cosIncidence = sunX * normalX + sunZ * normalZ;
+        if (cosIncidence <= 0 || dni <= 0) {
+            return 0;
+        }
+
+        // Reflected direction r = -s + 2 (s·n) n
+        double rayX = -sunX + 2 * cosIncidence * normalX;
+        double rayY = -sunY;
+        double rayZ = -sunZ + 2 * cosIncidence * normalZ;
+        double a = rayX * rayX + rayZ * rayZ;
+        if (a < 1e-12) {
+            return 0; // ray parallel to the receiver axis
+        }
+
+        double samplePower = dni * cosIncidence * sampleArea;
+        double radiusSquared = receiverRadius * receiverRadius;
+        double halfLength = receiverLength / 2;
+        double intercepted = 0;
+
+        for (int i = 0; i < samplesAcross; i++) {
+            double u = ((i + 0.5) / samplesAcross - 0.5) * mirrorWidth;
+            double originX = mirrorX + u * cosAngle;
+            double originZ = mirrorHeight - u * sinAngle - receiverHeight; // relative to the tube axis
+            double b = 2 * (originX * rayX + originZ * rayZ);
+            double c = originX * originX + originZ * originZ - radiusSquared;
+            double discriminant = b * b - 4 * a * c;
+            if (discriminant < 0) {
+                continue; // every sample of this row misses
+            }
+            double t = (-b - Math.sqrt(discriminant)) / (2 * a);
+            if (t <= 0) {
+                continue;
+            }
+            double hitX = originX + t * rayX;
+            double hitZ = originZ + t * rayZ;
+            int angular = angularBin(hitX, hitZ);
+
+            for (int j = 0; j < samplesAlong; j++) {
+                double hitY = ((j + 0.5) / samplesAlong - 0.5) * mirrorLength + t * rayY;
+                if (hitY < -halfLength || hitY >= halfLength) {
+                    continue; // end loss
+                }
+                intercepted += samplePower;
+                if (histogram != null) {
+                    int axial = (int) ((hitY + halfLength) / receiverLength * axialBins);
+                    histogram[axial * angularBins + angular] += samplePower;
+                }
+            }
+        }
+        return intercepted;
+    }
+
+    /**
+     * Power a mirror reflects towards the receiver before interception, in W
+     */
+    public double reflectedPower(double sunX, double sunZ, double dni, double angleDegrees) {
+        double angle = Math.toRadians(angleDegrees);
+        double cosIncidence = sunX * Math.sin(angle) + sunZ * Math.cos(angle);
+        return cosIncidence > 0 && dni > 0 ? dni * cosIncidence * mirrorWidth * mirrorLength * 1e-4 : 0;
+    }
+
+    public int getAxialBins() {
+        return axialBins;
+    }
+
+    public int getAngularBins() {
+        return angularBins;
+    }
+
+    public double getMirrorWidth() {
+        return mirrorWidth;
+    }
+
+    public double getMirrorLength() {
+        return mirrorLength;
+    }
+
+    public double getReceiverHeight() {
+        return receiverHeight;
+    }
+
+    public double getReceiverLength() {
+        return receiverLength;
+    }
+
+    public double getReceiverRadius() {
+        return receiverRadius;
+    }
+
+    private int angularBin(double x, double z) {
+        double phi = Math.atan2(z, x);
+        if (phi < 0) {
+            phi += 2 * Math.PI;
+        }
+        int bin = (int) (phi / (2 * Math.PI) * angularBins);
+        return Math.min(bin, angularBins - 1);
+    }
+}
@@ -0,0 +1,281 @@
+// ReceiverThermalModel.java
+package jazarifresnelsim.domain;
+
+import java.util.Arrays;
+
+/**
+ * Transient 1D finite-volume model of the heat transfer fluid along the
+ * receiver tube.
+ * <p>
+ * The tube is split into equal axial nodes from the inlet ({@code -length/2})
+ * to the outlet ({@code +length/2}). Each node balances upwind advection,
+ * axial conduction, absorbed solar power and a linear heat loss to ambient:
+ * <pre>
+ * C'·dx·dT/dt = ṁ·cp·(T[i-1] - T[i]) + k·A/dx·(T[i-1] - 2T[i] + T[i+1]) + P[i] - U'·dx·(T[i] - Tamb)
+ * </pre>
+ * Steps are fully implicit (backward Euler), so any time step is stable; the
+ * resulting tridiagonal system is solved with the Thomas algorithm over
+ * preallocated arrays. Advancing a step allocates nothing.
+ * Temperatures are in °C, power in W, inputs in SI units unless noted.
+ * Not thread-safe.
+ */
+public class ReceiverThermalModel {
+
+    // Defaults: water in a thin steel tube
+    private static final double DEFAULT_FLUID_DENSITY = 1000;       // kg/m³
+    private static final double DEFAULT_FLUID_HEAT_CAPACITY = 4180; // J/(kg·K)
+    private static final double DEFAULT_FLUID_CONDUCTIVITY = 0.6;   // W/(m·K)
+    private static final double WALL_THICKNESS = 0.002;             // m
+    private static final double WALL_DENSITY = 7850;                // kg/m³
+    private static final double WALL_HEAT_CAPACITY = 500;           // J/(kg·K)
+    private static final double DEFAULT_LOSS_COEFFICIENT = 10;      // W/(m²·K) on the outer surface
+
+    private final int nodes;
+    private final double length;        // m
+    private final double nodeLength;    // m
+    private final double flowArea;      // m²
+    private final double wallHeatCapacity; // J/(m·K) per unit length
+    private double heatCapacity;        // J/(m·K), fluid plus wall per unit length
+
+    private double massFlowRate = 0.05;  // kg/s
+    private double fluidHeatCapacity = DEFAULT_FLUID_HEAT_CAPACITY;
+    private double fluidConductivity = DEFAULT_FLUID_CONDUCTIVITY;
+    private double inletTemperature = 20;
+    private double ambientTemperature = 20;
+    private double lossCoefficient;      // W/(m·K), per unit length
+    private double absorptance = 0.95;
+
+    private final double[] temperature;
+    private final double[] absorbedPower; // W per node, before absorptance
+    private final double[] lower;
+    private final double[] diagonal;
+    private final double[] upper;
+    private final double[] rhs;
+    private double time;                  // s since reset
+
+    /**
+     * @param nodes Number of axial control volumes
+     * @param lengthCm Receiver length in cm
+     * @param diameterCm Receiver outer diameter in cm
+     */
+    public ReceiverThermalModel(int nodes, double lengthCm, double diameterCm) {
+        if (nodes < 2) {
+            throw new IllegalArgumentException("At least two nodes are required: " + nodes);
+        }
+        this.nodes = nodes;
+        this.length = lengthCm / 100.0;
+        this.nodeLength = length / nodes;
+
+        double outerDiameter = diameterCm / 100.0;
+        double innerDiameter = Math.max(outerDiameter - 2 * WALL_THICKNESS, outerDiameter / 2);
+        this.flowArea = Math.PI * innerDiameter * innerDiameter / 4;
+        double wallArea = Math.PI * (outerDiameter * outerDiameter - innerDiameter * innerDiameter) / 4;
+        this.wallHeatCapacity = WALL_DENSITY * WALL_HEAT_CAPACITY * wallArea;
+        this.heatCapacity = DEFAULT_FLUID_DENSITY * DEFAULT_FLUID_HEAT_CAPACITY * flowArea + wallHeatCapacity;
+        this.lossCoefficient = DEFAULT_LOSS_COEFFICIENT * Math.PI * outerDiameter;
+
+        this.temperature = new double[nodes];
+        this.absorbedPower = new double[nodes];
+        this.lower = new double[nodes];
+        this.diagonal = new double[nodes];
+        this.upper = new double[nodes];
+        this.rhs = new double[nodes];
+        reset(inletTemperature);
+    }
+
+    /**
+     * Sets every node to the given temperature and the clock to zero
+     */
+    public void reset(double initialTemperature) {
+        Arrays.fill(temperature, initialTemperature);
+        time = 0;
+    }
+
+    /**
+     * Sets the node temperatures and the clock saved from another model of
+     * the same node count, e.g. from a checkpoint
+     * @param temperatures Node temperatures, inlet first
+     * @param seconds Simulated seconds since the reset
+     */
+    public void restore(double[] temperatures, double seconds) {
+        if (temperatures.length != nodes) {
+            throw new IllegalArgumentException("Expected " + nodes + " node temperatures, got " + temperatures.length);
+        }
+        System.arraycopy(temperatures, 0, temperature, 0, nodes);
+        time = seconds;
+    }
+
+    public void setMassFlowRate(double kgPerSecond) {
+        this.massFlowRate = kgPerSecond;
+    }
+
+    public void setInletTemperature(double celsius) {
+        this.inletTemperature = celsius;
+    }
+
+    public double getInletTemperature() {
+        return inletTemperature;
+    }
+
+    public void setAmbientTemperature(double celsius) {
+        this.ambientTemperature = celsius;
+    }
+
+    /**
+     * @param wattsPerMeterKelvin Heat loss per metre of tube and kelvin above ambient
+     */
+    public void setLossCoefficient(double wattsPerMeterKelvin) {
+        this.lossCoefficient = wattsPerMeterKelvin;
+    }
+
+    public void setAbsorptance(double absorptance) {
+        this.absorptance = absorptance;
+    }
+
+    /**
+     * Heat transfer fluid; the defaults are water. Sets the stored heat as
+     * well as advection and conduction.
+     * @param density Fluid density in kg/m³
+     * @param heatCapacity Specific heat in J/(kg·K)
+     * @param conductivity Thermal conductivity in W/(m·K)
+     */
+    public void setFluidProperties(double density, double heatCapacity, double conductivity) {
+        this.fluidHeatCapacity = heatCapacity;
+        this.fluidConductivity = conductivity;
+        this.heatCapacity = density * heatCapacity * flowArea + wallHeatCapacity;
+    }
+
+    /**
+     * Clears the incident power of all nodes
+     */
+    public void clearAbsorbedPower() {
+        Arrays.fill(absorbedPower, 0);
+    }
+
+    /**
+     * Spreads incident power evenly over the tube
+     * @param watts Total power reaching the tube
+     */
+    public void setUniformAbsorbedPower(double watts) {
+        Arrays.fill(absorbedPower, watts / nodes);
+    }
+
+    /**
+     * Adds incident power falling on an axial segment of the tube, split
+     * over the nodes it overlaps in proportion to the overlap
+     * @param from Segment start as a fraction of the length from the inlet (0..1)
+     * @param to Segment end as a fraction of the length (0..1)
+     * @param watts Power reaching the segment
+     */
+    public void addAbsorbedPower(double from, double to, double watts) {
+        if (to <= from) {
+            return;
+        }
+        double first = from * nodes;
+        double last = to * nodes;
+        double density = watts / (last - first);
+        int start = Math.max(0, (int) first);
+        int end = Math.min(nodes - 1, (int) Math.ceil(last) - 1);
+        for (int i = start; i <= end; i++) {
+            double overlap = Math.min(i + 1, last) - Math.max(i, first);
+            if (overlap > 0) {
+                absorbedPower[i] += density * overlap;
+            }
+        }
+    }
+
+    /**
+     * Advances the temperatures by one implicit time step
+     * @param dtSeconds Step length in seconds
+     */
+    public void step(double dtSeconds) {
+        double storage = heatCapacity * nodeLength / dtSeconds;
+        double advection = massFlowRate * fluidHeatCapacity;
+        double conduction = fluidConductivity * flowArea / nodeLength;
+        double loss = lossCoefficient * nodeLength;
+
+        for (int i = 0; i < nodes; i++) {
+            double west = i > 0 ? conduction : 0;   // insulated ends
+            double east = i < nodes - 1 ? conduction : 0;
+            lower[i] = -(advection + west);
+            upper[i] = -east;
+            diagonal[i] = storage + advection + west + east + loss;
+            rhs[i] = storage * temperature[i] + absorptance * absorbedPower[i] + loss * ambientTemperature;
+        }
+        rhs[0] += advection * inletTemperature; // upwind inflow; lower[0] is unused
+
+        solveTridiagonal();
+        time += dtSeconds;
+    }
+
+    /**
+     * Thomas algorithm; the system is diagonally dominant so no pivoting is
+     * needed. Overwrites upper and rhs, leaves the solution in temperature.
+     */
+    private void solveTridiagonal() {
+        upper[0] /= diagonal[0];
+        rhs[0] /= diagonal[0];
+        for (int i = 1; i < nodes; i++) {
+            double m = diagonal[i] - lower[i] * upper[i - 1];
+            upper[i] /= m;
+            rhs[i] = (rhs[i] - lower[i] * rhs[i - 1]) / m;
+        }
+        temperature[nodes - 1] = rhs[nodes - 1];
+        for (int i = nodes - 2; i >= 0; i--) {
+            temperature[i] = rhs[i] - upper[i] * temperature[i + 1];
+        }
+    }
+
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    public double getTemperature(int node) {
+        return temperature[node];
+    }
+
+    /**
+     * Copies the node temperatures into out, inlet first
+     */
+    public void getTemperatures(double[] out) {
+        System.arraycopy(temperature, 0, out, 0, nodes);
+    }
+
+    public double getOutletTemperature() {
+        return temperature[nodes - 1];
+    }
+
+    public double getMaxTemperature() {
+        double max = temperature[0];
+        for (int i = 1; i < nodes; i++) {
+            max = Math.max(max, temperature[i]);
+        }
+        return max;
+    }
+
+    public double getMeanTemperature() {
+        double sum = 0;
+        for (int i = 0; i < nodes; i++) {
+            sum += temperature[i];
+        }
+        return sum / nodes;
+    }
+
+    /**
+     * Heat carried away by the fluid, ṁ·cp·(Tout - Tin), in W
+     */
+    public double getUsefulPower() {
+        return massFlowRate * fluidHeatCapacity * (getOutletTemperature() - inletTemperature);
+    }
+
+    /**
+     * Simulated seconds since the last reset
+     */
+    public double getTime() {
+        return time;
+    }
+
+    public double getLength() {
+        return length;
+    }
+}
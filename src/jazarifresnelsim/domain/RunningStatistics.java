@@ -0,0 +1,91 @@
+// RunningStatistics.java
+package jazarifresnelsim.domain;
+
+/**
+ * Single-pass mean, variance and range of a stream of values (Welford's
+ * algorithm). Numerically stable, constant memory, allocation-free.
+ * Not thread-safe.
+ */
+public final class RunningStatistics {
+
+    private long count;
+    private double mean;
+    private double sumSquares; // sum of squared deviations from the mean
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        sumSquares += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void reset() {
+        count = 0;
+        mean = 0;
+        sumSquares = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Continues from values saved with {@link #getCount}, {@link #getMean},
+     * {@link #getSumOfSquares}, {@link #getMin} and {@link #getMax}
+     */
+    public void restore(long count, double mean, double sumOfSquares, double min, double max) {
+        if (count <= 0) {
+            reset();
+            return;
+        }
+        this.count = count;
+        this.mean = mean;
+        this.sumSquares = sumOfSquares;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Sample variance (n - 1 denominator); NaN below two values
+     */
+    public double getVariance() {
+        return count > 1 ? sumSquares / (count - 1) : Double.NaN;
+    }
+
+    /**
+     * Sum of squared deviations from the mean
+     */
+    public double getSumOfSquares() {
+        return sumSquares;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Half width of the normal-approximation confidence interval of the mean
+     * @param z Standard normal quantile, e.g. 1.96 for 95 %
+     */
+    public double getConfidenceHalfWidth(double z) {
+        return count > 1 ? z * Math.sqrt(getVariance() / count) : Double.POSITIVE_INFINITY;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+}
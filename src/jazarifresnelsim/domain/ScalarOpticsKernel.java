@@ -0,0 +1,127 @@
+// ScalarOpticsKernel.java
+package jazarifresnelsim.domain;
+
+/**
+ * Reference implementation of {@link IOpticsKernel} using plain double math.
+ * Results are bit-identical to {@link SolarCalculator#calculateSolarPosition}.
+ */
+public class ScalarOpticsKernel implements IOpticsKernel {
+
+    @Override
+    public void calculateSolarPositions(double latitude, double longitude, int[] dayOfYear, double[] hour,
+            double[] outAltitude, double[] outAzimuth, double[] outIntensity, int count) {
+        double[] sample = new double[3];
+        for (int i = 0; i < count; i++) {
+            SolarCalculator.calculateSample(latitude, longitude, dayOfYear[i], hour[i], sample);
+            outAltitude[i] = sample[0];
+            outAzimuth[i] = sample[1];
+            outIntensity[i] = sample[2];
+        }
+    }
+
+    @Override
+    public void calculateMirrorAngles(double sunAltitude, double sunAzimuth, double[] mirrorX,
+            double mirrorHeight, double receiverHeight, double[] outAngles, int count) {
+        for (int i = 0; i < count; i++) {
+            outAngles[i] = calculateMirrorAngle(mirrorX[i], mirrorHeight, receiverHeight, sunAltitude, sunAzimuth);
+        }
+    }
+
+    @Override
+    public void calculateMirrorAngles(double sunAltitude, double sunAzimuth, double[] targetX, double[] targetZ,
+            double[] outAngles, int count) {
+        for (int i = 0; i < count; i++) {
+            outAngles[i] = calculateMirrorAngle(-targetX[i], 0, targetZ[i], sunAltitude, sunAzimuth);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Rotation angle that reflects the sun ray onto the receiver axis.
+     * The mirror normal is the bisector of the sun ray and the mirror-to-receiver vector.
+     * @param mirrorX Mirror X offset from the receiver axis
+     * @param mirrorHeight Height of the mirror pivot
+     * @param receiverHeight Height of the receiver axis
+     * @param sunAltitudeDegrees Solar altitude in degrees
+     * @param sunAzimuthDegrees Solar azimuth in degrees
+     * @return Rotation angle around the Y axis in degrees
+     */
+    public static double calculateMirrorAngle(double mirrorX, double mirrorHeight, double receiverHeight,
+            double sunAltitudeDegrees, double sunAzimuthDegrees) {
+        // Convert sun position to radians
+        double sunAltitude = Math.toRadians(sunAltitudeDegrees);
+        double sunAzimuth = Math.toRadians(sunAzimuthDegrees);
+
+        // Sun ray vector
+        double[] sunRay = {
+            -Math.cos(sunAltitude) * Math.sin(sunAzimuth),
+            Math.cos(sunAltitude) * Math.cos(sunAzimuth),
+            Math.sin(sunAltitude)
+        };
+
+        // Target vector (to receiver)
+        double[] targetRay = {
+            -mirrorX,
+            0,
+            receiverHeight - mirrorHeight
+        };
+
+        // Normalize target ray
+        double targetMagnitude = Math.sqrt(
+                targetRay[0] * targetRay[0]
+                + targetRay[1] * targetRay[1]
+                + targetRay[2] * targetRay[2]
+        );
+
+        for (int i = 0; i < 3; i++) {
+            targetRay[i] /= targetMagnitude;
+        }
+
+        // Normal vector (bisector of incident and reflected rays)
+        double[] normalVector = {
+            sunRay[0] + targetRay[0],
+            sunRay[1] + targetRay[1],
+            sunRay[2] + targetRay[2]
+        };
+
+        // Normalize normal vector
+        double normalMagnitude = Math.sqrt(
+                normalVector[0] * normalVector[0]
+                + normalVector[1] * normalVector[1]
+                + normalVector[2] * normalVector[2]
+        );
+
+        for (int i = 0; i < 3; i++) {
+            normalVector[i] /= normalMagnitude;
+        }
+
+        // Calculate rotation angle around Y axis
+        return Math.toDegrees(Math.atan2(normalVector[0], normalVector[2]));
+    }
+
+    /**
+     * Dual-number version of {@link #calculateMirrorAngle} for sensitivity
+     * analysis, in the frame of {@link #calculateMirrorAngles(double, double, double[], double[], double[], int)}
+     * @param targetX X from the mirror pivot to the receiver axis
+     * @param targetZ Height from the mirror pivot to the receiver axis
+     * @return Rotation angle around the Y axis in degrees, with its partials
+     */
+    public static Dual calculateMirrorAngle(Dual targetX, Dual targetZ, Dual sunAltitudeDegrees,
+            Dual sunAzimuthDegrees) {
+        Dual sunAltitude = sunAltitudeDegrees.toRadians();
+        Dual sunAzimuth = sunAzimuthDegrees.toRadians();
+        Dual cosAltitude = sunAltitude.cos();
+        Dual sunX = cosAltitude.multiply(sunAzimuth.sin()).negate();
+        Dual sunZ = sunAltitude.sin();
+
+        // The Y components and the normalization of the bisector cancel in atan2
+        Dual targetMagnitude = targetX.multiply(targetX).add(targetZ.multiply(targetZ)).sqrt();
+        Dual normalX = sunX.add(targetX.divide(targetMagnitude));
+        Dual normalZ = sunZ.add(targetZ.divide(targetMagnitude));
+        return normalX.atan2(normalZ).toDegrees();
+    }
+}
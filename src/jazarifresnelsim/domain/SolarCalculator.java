@@ -3,32 +3,168 @@ package jazarifresnelsim.domain;
 
 import jazarifresnelsim.models.SolarPosition;
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Calculates solar position based on time and location.
  * This class handles all astronomical calculations for solar tracking.
+ * <p>
+ * Instances are immutable and bound to one site, so any number of threads
+ * and scenarios may share one. The day-of-year terms (declination and
+ * equation of time) are tabulated once for all sites, the site-dependent
+ * time correction once per site; {@link #forSite} hands out one shared
+ * calculator per location.
  */
-public class SolarCalculator {
-    private double latitude;  // in radians
-    private double longitude; // in radians
-    private double altitude; // in meters
-    
-    private static final double SOLAR_CONSTANT = 1361.0; // W/m²
-    
-    public SolarCalculator(double latitudeDegrees, double longitudeDegrees, double altitude) {
-        updateLocation(latitudeDegrees, longitudeDegrees);
-        this.altitude = altitude;
+public final class SolarCalculator {
+    private final double latitudeDegrees;
+    private final double longitudeDegrees;
+    private final double latitude;  // in radians
+    private final double longitude; // in radians
+    private final double altitude; // in meters
+    private final double sinLatitude;
+    private final double cosLatitude;
+    private final double[] timeCorrection; // minutes, per day of year
+
+    static final double SOLAR_CONSTANT = 1361.0; // W/m²
+    private static final double LOCAL_LONGITUDE = 45.0; // UTC+3 meridian
+    private static final int MAX_SHARED_SITES = 1024;
+
+    // Indexed by day of year (1-366), shared by every site
+    private static final double[] SIN_DECLINATION = new double[367];
+    private static final double[] COS_DECLINATION = new double[367];
+    private static final double[] EQUATION_OF_TIME = new double[367];
+
+    private static final Map<Site, SolarCalculator> SITES = new ConcurrentHashMap<>();
+
+    static {
+        double[] terms = new double[3];
+        for (int day = 1; day <= 366; day++) {
+            dayTerms(day, terms);
+            SIN_DECLINATION[day] = terms[0];
+            COS_DECLINATION[day] = terms[1];
+            EQUATION_OF_TIME[day] = terms[2];
+        }
     }
-    
-    public void updateLocation(double latitudeDegrees, double longitudeDegrees) {
+
+    public SolarCalculator(double latitudeDegrees, double longitudeDegrees, double altitude) {
+        this.latitudeDegrees = latitudeDegrees;
+        this.longitudeDegrees = longitudeDegrees;
         this.latitude = Math.toRadians(latitudeDegrees);
         this.longitude = Math.toRadians(longitudeDegrees);
+        this.altitude = altitude;
+        this.sinLatitude = Math.sin(latitude);
+        this.cosLatitude = Math.cos(latitude);
+        this.timeCorrection = new double[367];
+        for (int day = 1; day <= 366; day++) {
+            timeCorrection[day] = timeCorrection(longitude, EQUATION_OF_TIME[day]);
+        }
     }
-    
+
+    /**
+     * Shared calculator for a site at sea level. Scenarios at the same
+     * location get the same instance and so share its tables.
+     */
+    public static SolarCalculator forSite(double latitudeDegrees, double longitudeDegrees) {
+        Site site = new Site(latitudeDegrees, longitudeDegrees);
+        SolarCalculator calculator = SITES.get(site);
+        if (calculator == null) {
+            if (SITES.size() >= MAX_SHARED_SITES) {
+                SITES.clear(); // e.g. a long location sweep; calculators in use stay valid
+            }
+            calculator = SITES.computeIfAbsent(site,
+                    s -> new SolarCalculator(s.latitude, s.longitude, 0));
+        }
+        return calculator;
+    }
+
+    public double getLatitude() {
+        return latitudeDegrees;
+    }
+
+    public double getLongitude() {
+        return longitudeDegrees;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * True if this calculator is bound to the given location
+     */
+    public boolean isAt(double latitudeDegrees, double longitudeDegrees) {
+        return this.latitudeDegrees == latitudeDegrees && this.longitudeDegrees == longitudeDegrees;
+    }
+
     public SolarPosition calculateSolarPosition(LocalDateTime dateTime) {
         //System.out.println("Calculating solar position for: " + dateTime);
         int dayOfYear = dateTime.getDayOfYear();
-        
+        double hour = dateTime.getHour() + dateTime.getMinute()/60.0
+                + (dateTime.getSecond() + dateTime.getNano() / 1e9) / 3600.0;
+        double[] sample = new double[3];
+        calculateSolarPosition(dayOfYear, hour, sample);
+        return new SolarPosition(sample[0], sample[1], sample[2]);
+    }
+
+    /**
+     * Allocation-free version of {@link #calculateSolarPosition(LocalDateTime)}
+     * @param dayOfYear Day of year (1-366)
+     * @param hour Local standard time in fractional hours
+     * @param out Receives altitude (degrees), azimuth (degrees) and intensity (W/m²)
+     */
+    public void calculateSolarPosition(int dayOfYear, double hour, double[] out) {
+        solve(sinLatitude, cosLatitude, SIN_DECLINATION[dayOfYear], COS_DECLINATION[dayOfYear],
+                timeCorrection[dayOfYear], hour, out);
+    }
+
+    /**
+     * Batch version of {@link #calculateSolarPosition(LocalDateTime)} for many
+     * samples at this location, evaluated by the given kernel.
+     * @param dayOfYear Day of year per sample (1-366)
+     * @param hour Local standard time per sample in fractional hours
+     * @param outAltitude Apparent solar altitude in degrees
+     * @param outAzimuth Solar azimuth in degrees
+     * @param outIntensity Clear-sky DNI in W/m²
+     * @param count Number of samples to compute
+     */
+    public void calculateSolarPositions(IOpticsKernel kernel, int[] dayOfYear, double[] hour,
+            double[] outAltitude, double[] outAzimuth, double[] outIntensity, int count) {
+        kernel.calculateSolarPositions(latitude, longitude, dayOfYear, hour,
+                outAltitude, outAzimuth, outIntensity, count);
+    }
+
+    /**
+     * Reference per-sample computation shared by {@link #calculateSolarPosition(LocalDateTime)}
+     * and {@link ScalarOpticsKernel}.
+     * @param latitude Latitude in radians
+     * @param longitude Longitude in radians
+     * @param out Receives altitude (degrees), azimuth (degrees) and intensity (W/m²)
+     */
+    static void calculateSample(double latitude, double longitude, int dayOfYear, double hour, double[] out) {
+        double sinDeclination;
+        double cosDeclination;
+        double E;
+        if (dayOfYear >= 1 && dayOfYear <= 366) {
+            sinDeclination = SIN_DECLINATION[dayOfYear];
+            cosDeclination = COS_DECLINATION[dayOfYear];
+            E = EQUATION_OF_TIME[dayOfYear];
+        } else {
+            double[] terms = new double[3];
+            dayTerms(dayOfYear, terms);
+            sinDeclination = terms[0];
+            cosDeclination = terms[1];
+            E = terms[2];
+        }
+        solve(Math.sin(latitude), Math.cos(latitude), sinDeclination, cosDeclination,
+                timeCorrection(longitude, E), hour, out);
+    }
+
+    /**
+     * Sine and cosine of the declination and the equation of time (minutes)
+     */
+    private static void dayTerms(int dayOfYear, double[] out) {
         // Calculate solar declination angle (Spencer formula)
         double B = 2 * Math.PI * (dayOfYear - 1) / 365.0;
         double declination = Math.toDegrees(0.006918 - 0.399912 * Math.cos(B) + 0.070257 * Math.sin(B) 
@@ -38,19 +174,23 @@ public class SolarCalculator {
         // Calculate equation of time
         double E = 229.18 * (0.000075 + 0.001868 * Math.cos(B) - 0.032077 * Math.sin(B) 
                             - 0.014615 * Math.cos(2*B) - 0.040849 * Math.sin(2*B));
-        
+
+        out[0] = Math.sin(Math.toRadians(declination));
+        out[1] = Math.cos(Math.toRadians(declination));
+        out[2] = E;
+    }
+
+    private static double timeCorrection(double longitude, double E) {
+        return 4 * (Math.toDegrees(longitude) - LOCAL_LONGITUDE) + E;
+    }
+
+    private static void solve(double sinLatitude, double cosLatitude, double sinDeclination,
+            double cosDeclination, double timeCorrection, double hour, double[] out) {
         // Calculate hour angle
-        double hour = dateTime.getHour() + dateTime.getMinute()/60.0;
-        double localLongitude = 45.0; // UTC+3 meridian
-        double timeCorrection = 4 * (Math.toDegrees(longitude) - localLongitude) + E;
         double solarTime = hour + timeCorrection/60.0;
         double hourAngle = 15.0 * (solarTime - 12.0);
         
         // Calculate altitude angle
-        double sinDeclination = Math.sin(Math.toRadians(declination));
-        double cosDeclination = Math.cos(Math.toRadians(declination));
-        double sinLatitude = Math.sin(latitude);
-        double cosLatitude = Math.cos(latitude);
         double sinHourAngle = Math.sin(Math.toRadians(hourAngle));
         double cosHourAngle = Math.cos(Math.toRadians(hourAngle));
         
@@ -68,24 +208,107 @@ public class SolarCalculator {
             azimuthAngle = 360 - azimuthAngle;
         }
         
+        // Calculate solar intensity with atmospheric effects
+        double solarIntensity = calculateClearSkyIntensity(altitudeAngle);
+
         // Apply atmospheric corrections
-        double airMass = calculateAirMass(altitudeAngle);
         double atmosphericRefraction = calculateAtmosphericRefraction(altitudeAngle);
         altitudeAngle += atmosphericRefraction / 3600.0; // Convert arcseconds to degrees
         
-        // Calculate solar intensity with atmospheric effects
-        double solarIntensity = SOLAR_CONSTANT * Math.pow(0.7, Math.pow(airMass, 0.678));
-        
-        return new SolarPosition(altitudeAngle, azimuthAngle, solarIntensity);
+        out[0] = altitudeAngle;
+        out[1] = azimuthAngle;
+        out[2] = solarIntensity;
+    }
+
+    /**
+     * Dual-number version of {@link #calculateSolarPosition(int, double, double[])}
+     * for sensitivity analysis: the same model, evaluated with the partial
+     * derivatives of the outputs with respect to whatever inputs the
+     * location was built from
+     * @param latitudeDegrees Latitude in degrees
+     * @param longitudeDegrees Longitude in degrees
+     * @param out Receives altitude (degrees), azimuth (degrees) and clear-sky DNI (W/m²)
+     */
+    public static void calculateSolarPosition(Dual latitudeDegrees, Dual longitudeDegrees, int dayOfYear,
+            double hour, Dual[] out) {
+        double[] terms = new double[3];
+        dayTerms(dayOfYear, terms);
+        double sinDeclination = terms[0];
+        double cosDeclination = terms[1];
+        Dual latitude = latitudeDegrees.toRadians();
+        Dual sinLatitude = latitude.sin();
+        Dual cosLatitude = latitude.cos();
+        Dual timeCorrection = longitudeDegrees.subtract(LOCAL_LONGITUDE).multiply(4).add(terms[2]);
+
+        Dual hourAngle = timeCorrection.divide(60.0).add(hour - 12.0).multiply(15.0);
+        Dual cosHourAngle = hourAngle.toRadians().cos();
+
+        Dual sinAltitude = sinLatitude.multiply(sinDeclination)
+                .add(cosLatitude.multiply(cosHourAngle).multiply(cosDeclination));
+        Dual altitudeAngle = sinAltitude.asin().toDegrees();
+
+        Dual cosAzimuth = cosLatitude.multiply(sinDeclination)
+                .subtract(sinLatitude.multiply(cosHourAngle).multiply(cosDeclination))
+                .divide(altitudeAngle.toRadians().cos());
+        if (Math.abs(cosAzimuth.getValue()) > 1) {
+            cosAzimuth = Dual.constant(Math.signum(cosAzimuth.getValue()), cosAzimuth.getPartialCount());
+        }
+        Dual azimuthAngle = cosAzimuth.acos().toDegrees();
+        if (hourAngle.getValue() > 0) {
+            azimuthAngle = azimuthAngle.subtractFrom(360);
+        }
+
+        Dual solarIntensity = calculateClearSkyIntensity(altitudeAngle);
+        altitudeAngle = altitudeAngle.add(calculateAtmosphericRefraction(altitudeAngle).divide(3600.0));
+
+        out[0] = altitudeAngle;
+        out[1] = azimuthAngle;
+        out[2] = solarIntensity;
+    }
+
+    private static Dual calculateClearSkyIntensity(Dual altitude) {
+        Dual zenith = altitude.subtractFrom(90);
+        Dual airMass = zenith.toRadians().cos()
+                .add(zenith.subtractFrom(96.07995).pow(-1.6364).multiply(0.50572)).divideInto(1);
+        return airMass.pow(0.678).multiply(Math.log(0.7)).exp().multiply(SOLAR_CONSTANT);
+    }
+
+    private static Dual calculateAtmosphericRefraction(Dual altitude) {
+        double a = altitude.getValue();
+        if (a > 85.0) {
+            return Dual.constant(0, altitude.getPartialCount());
+        }
+        Dual te = altitude.toRadians().tan();
+        if (a > 5.0) {
+            return te.divideInto(58.1).subtract(te.pow(3).divideInto(0.07)).add(te.pow(5).divideInto(0.000086));
+        }
+        if (a > -0.575) {
+            return altitude.multiply(0.711).add(-12.79).multiply(altitude).add(103.4).multiply(altitude)
+                    .add(-518.2).multiply(altitude).add(1735.0);
+        }
+        return te.divideInto(-20.774);
+    }
+
+    /**
+     * Clear-sky direct normal irradiance for the given solar altitude.
+     * @param altitude Solar altitude in degrees
+     * @return DNI in W/m²
+     */
+    public static double calculateClearSkyIntensity(double altitude) {
+        double airMass = calculateAirMass(altitude);
+        return SOLAR_CONSTANT * Math.pow(0.7, Math.pow(airMass, 0.678));
     }
     
-    private double calculateAirMass(double altitude) {
+    /**
+     * Relative optical air mass (Kasten-Young) for the given solar altitude in degrees
+     */
+    static double calculateAirMass(double altitude) {
         double zenith = 90 - altitude;
         double cosZenith = Math.cos(Math.toRadians(zenith));
         return 1 / (cosZenith + 0.50572 * Math.pow(96.07995 - zenith, -1.6364));
     }
     
-    private double calculateAtmosphericRefraction(double altitude) {
+    private static double calculateAtmosphericRefraction(double altitude) {
         if (altitude > 85.0) return 0;
         
         double te = Math.tan(Math.toRadians(altitude));
@@ -97,4 +320,26 @@ public class SolarCalculator {
         }
         return -20.774 / te;
     }
-}
\ No newline at end of file
+
+    private static final class Site {
+        final double latitude;
+        final double longitude;
+
+        Site(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Site site
+                    && Double.compare(latitude, site.latitude) == 0
+                    && Double.compare(longitude, site.longitude) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(latitude, longitude);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+// VectorOpticsKernel.java
+package jazarifresnelsim.domain;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of {@link IOpticsKernel} on the incubating Vector API.
+ * Mirrors (or timestamps) are processed one vector of lanes at a time using
+ * the widest shape the CPU supports (AVX2/AVX-512 on x86, NEON on aarch64).
+ * <p>
+ * A few algebraic shortcuts replace trig calls: multiple-angle identities for
+ * the Spencer series, {@code sqrt(1 - sin²)} for the altitude cosine and the
+ * unnormalized bisector for {@code atan2}. Results agree with
+ * {@link ScalarOpticsKernel} to about 1e-8 degrees.
+ * <p>
+ * Only load this class through {@link OpticsKernels}; it needs the
+ * {@code jdk.incubator.vector} module at runtime.
+ */
+public class VectorOpticsKernel implements IOpticsKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> DAY_SPECIES =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.length() * Integer.SIZE));
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+    private static final double RAD_TO_DEG = 180.0 / Math.PI;
+    private static final double LN_07 = Math.log(0.7);
+
+    @Override
+    public void calculateSolarPositions(double latitude, double longitude, int[] dayOfYear, double[] hour,
+            double[] outAltitude, double[] outAzimuth, double[] outIntensity, int count) {
+        double sinLatitude = Math.sin(latitude);
+        double cosLatitude = Math.cos(latitude);
+        double longitudeCorrection = 4 * (Math.toDegrees(longitude) - 45.0); // UTC+3 meridian
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+
+        int i = 0;
+        int bound = SPECIES.loopBound(count);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector day = (DoubleVector) IntVector.fromArray(DAY_SPECIES, dayOfYear, i).castShape(SPECIES, 0);
+
+            // Spencer series with multiple-angle identities instead of six trig calls
+            DoubleVector b = day.sub(1).mul(2 * Math.PI / 365.0);
+            DoubleVector c1 = b.lanewise(VectorOperators.COS);
+            DoubleVector s1 = b.lanewise(VectorOperators.SIN);
+            DoubleVector c2 = c1.mul(c1).mul(2).sub(1);
+            DoubleVector s2 = s1.mul(c1).mul(2);
+            DoubleVector c3 = c1.mul(c2).sub(s1.mul(s2));
+            DoubleVector s3 = s1.mul(c2).add(c1.mul(s2));
+
+            DoubleVector declination = c1.mul(-0.399912).add(0.006918)
+                    .add(s1.mul(0.070257)).sub(c2.mul(0.006758)).add(s2.mul(0.000907))
+                    .sub(c3.mul(0.002697)).add(s3.mul(0.001480));
+            DoubleVector equationOfTime = c1.mul(0.001868).add(0.000075)
+                    .sub(s1.mul(0.032077)).sub(c2.mul(0.014615)).sub(s2.mul(0.040849))
+                    .mul(229.18);
+
+            DoubleVector hourAngle = DoubleVector.fromArray(SPECIES, hour, i)
+                    .add(equationOfTime.add(longitudeCorrection).div(60.0))
+                    .sub(12.0).mul(15.0);
+
+            DoubleVector sinDeclination = declination.lanewise(VectorOperators.SIN);
+            DoubleVector cosDeclination = declination.lanewise(VectorOperators.COS);
+            DoubleVector cosHourAngle = hourAngle.mul(DEG_TO_RAD).lanewise(VectorOperators.COS);
+
+            DoubleVector sinAltitude = sinDeclination.mul(sinLatitude)
+                    .add(cosDeclination.mul(cosHourAngle).mul(cosLatitude));
+            DoubleVector cosAltitude = sinAltitude.mul(sinAltitude).neg().add(1).max(0).sqrt();
+            DoubleVector altitude = sinAltitude.lanewise(VectorOperators.ASIN).mul(RAD_TO_DEG);
+
+            DoubleVector cosAzimuth = sinDeclination.mul(cosLatitude)
+                    .sub(cosDeclination.mul(cosHourAngle).mul(sinLatitude))
+                    .div(cosAltitude).max(-1).min(1);
+            DoubleVector azimuth = cosAzimuth.lanewise(VectorOperators.ACOS).mul(RAD_TO_DEG);
+            VectorMask<Double> afternoon = hourAngle.compare(VectorOperators.GT, 0);
+            azimuth = azimuth.blend(azimuth.neg().add(360), afternoon);
+
+            // Clear-sky intensity: zenith cosine equals the altitude sine
+            DoubleVector zenith = altitude.neg().add(90);
+            DoubleVector airMass = one.div(zenith.neg().add(96.07995)
+                    .lanewise(VectorOperators.POW, -1.6364).mul(0.50572).add(sinAltitude));
+            DoubleVector intensity = airMass.lanewise(VectorOperators.POW, 0.678).mul(LN_07)
+                    .lanewise(VectorOperators.EXP).mul(1361.0);
+            intensity.intoArray(outIntensity, i);
+
+            // Atmospheric refraction in arcseconds, piecewise as in SolarCalculator
+            DoubleVector te = sinAltitude.div(cosAltitude);
+            DoubleVector te3 = te.mul(te).mul(te);
+            DoubleVector te5 = te3.mul(te).mul(te);
+            DoubleVector high = one.div(te).mul(58.1)
+                    .sub(one.div(te3).mul(0.07))
+                    .add(one.div(te5).mul(0.000086));
+            DoubleVector low = altitude.mul(0.711).add(-12.79).mul(altitude).add(103.4)
+                    .mul(altitude).add(-518.2).mul(altitude).add(1735.0);
+            DoubleVector belowHorizon = one.div(te).mul(-20.774);
+            DoubleVector refraction = belowHorizon
+                    .blend(low, altitude.compare(VectorOperators.GT, -0.575))
+                    .blend(high, altitude.compare(VectorOperators.GT, 5.0))
+                    .blend(0, altitude.compare(VectorOperators.GT, 85.0));
+
+            altitude.add(refraction.div(3600.0)).intoArray(outAltitude, i);
+            azimuth.intoArray(outAzimuth, i);
+        }
+
+        double[] sample = new double[3];
+        for (; i < count; i++) {
+            SolarCalculator.calculateSample(latitude, longitude, dayOfYear[i], hour[i], sample);
+            outAltitude[i] = sample[0];
+            outAzimuth[i] = sample[1];
+            outIntensity[i] = sample[2];
+        }
+    }
+
+    @Override
+    public void calculateMirrorAngles(double sunAltitude, double sunAzimuth, double[] mirrorX,
+            double mirrorHeight, double receiverHeight, double[] outAngles, int count) {
+        double altitude = Math.toRadians(sunAltitude);
+        double azimuth = Math.toRadians(sunAzimuth);
+        double sunX = -Math.cos(altitude) * Math.sin(azimuth);
+        double sunZ = Math.sin(altitude);
+        double dz = receiverHeight - mirrorHeight;
+
+        // atan2 is scale invariant, so the bisector does not need normalizing
+        int i = 0;
+        int bound = SPECIES.loopBound(count);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector targetX = DoubleVector.fromArray(SPECIES, mirrorX, i).neg();
+            DoubleVector magnitude = targetX.mul(targetX).add(dz * dz).sqrt();
+            DoubleVector normalX = targetX.div(magnitude).add(sunX);
+            DoubleVector normalZ = DoubleVector.broadcast(SPECIES, dz).div(magnitude).add(sunZ);
+            normalX.lanewise(VectorOperators.ATAN2, normalZ).mul(RAD_TO_DEG).intoArray(outAngles, i);
+        }
+        for (; i < count; i++) {
+            outAngles[i] = ScalarOpticsKernel.calculateMirrorAngle(mirrorX[i], mirrorHeight, receiverHeight,
+                    sunAltitude, sunAzimuth);
+        }
+    }
+
+    @Override
+    public void calculateMirrorAngles(double sunAltitude, double sunAzimuth, double[] targetX, double[] targetZ,
+            double[] outAngles, int count) {
+        double altitude = Math.toRadians(sunAltitude);
+        double azimuth = Math.toRadians(sunAzimuth);
+        double sunX = -Math.cos(altitude) * Math.sin(azimuth);
+        double sunZ = Math.sin(altitude);
+
+        int i = 0;
+        int bound = SPECIES.loopBound(count);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, targetX, i);
+            DoubleVector dz = DoubleVector.fromArray(SPECIES, targetZ, i);
+            DoubleVector magnitude = dx.mul(dx).add(dz.mul(dz)).sqrt();
+            DoubleVector normalX = dx.div(magnitude).add(sunX);
+            DoubleVector normalZ = dz.div(magnitude).add(sunZ);
+            normalX.lanewise(VectorOperators.ATAN2, normalZ).mul(RAD_TO_DEG).intoArray(outAngles, i);
+        }
+        for (; i < count; i++) {
+            outAngles[i] = ScalarOpticsKernel.calculateMirrorAngle(-targetX[i], 0, targetZ[i],
+                    sunAltitude, sunAzimuth);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+}
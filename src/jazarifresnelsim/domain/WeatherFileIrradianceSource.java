@@ -0,0 +1,369 @@
+// WeatherFileIrradianceSource.java
+package jazarifresnelsim.domain;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * Streams measured DNI from an hourly or sub-hourly weather file.
+ * <p>
+ * The file is memory-mapped and parsed in place. No line strings are created
+ * and only the two records bracketing the last query are kept on the heap, so
+ * multi-year minute-resolution files are read at disk speed. Sequential
+ * queries advance a cursor; random queries use a binary search over the
+ * mapped bytes.
+ * <p>
+ * Supported layouts (detected automatically):
+ * <ul>
+ * <li>EPW: eight header lines, hour 1-24 convention, DNI in field 15. Values
+ * are interval averages and are placed at the interval midpoint. The EPW
+ * missing marker (9999) is read as 0.</li>
+ * <li>CSV: {@code year,month,day,hour,minute,dni} rows with hour 0-23 holding
+ * instantaneous samples. Leading lines that do not start with a digit are
+ * treated as headers.</li>
+ * </ul>
+ * DNI between two records is linearly interpolated; times outside the file
+ * return 0. Instances keep a read cursor and are not thread-safe.
+ */
+public class WeatherFileIrradianceSource implements IIrradianceSource, AutoCloseable {
+
+    public enum Format {
+        EPW, CSV
+    }
+
+    private static final int EPW_HEADER_LINES = 8;
+    private static final int EPW_DNI_FIELD = 14;
+    private static final int CSV_DNI_FIELD = 5;
+    private static final double EPW_MISSING_DNI = 9999;
+    private static final int TYPICAL_YEAR = 2001;        // Non-leap reference year for TMY files
+    private static final int SEQUENTIAL_SCAN_LIMIT = 16; // Records stepped before falling back to search
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Format format;
+    private final boolean typicalYear;
+    private final int dataStart;
+    private final int dataEnd;
+    private final long midpointShift;  // seconds subtracted from EPW interval-end stamps
+    private final long firstKey;
+    private final long lastKey;
+
+    // Cursor: records bracketing the last query
+    private long lowerKey = Long.MAX_VALUE;
+    private double lowerDni;
+    private long upperKey = Long.MIN_VALUE;
+    private double upperDni;
+    private int upperLine;
+
+    // Scratch output of parseRecord
+    private int scanPos;
+    private long parsedKey;
+    private double parsedDni;
+
+    /**
+     * Opens a weather file
+     * @param file EPW or CSV weather file
+     * @param typicalYear true for TMY-style files whose months come from
+     * different years; the year is then ignored and Feb 29 maps to Feb 28
+     */
+    public WeatherFileIrradianceSource(Path file, boolean typicalYear) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Weather file larger than 2 GB is not supported: " + file);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.typicalYear = typicalYear;
+            this.format = startsWith(0, "LOCATION") ? Format.EPW : Format.CSV;
+
+            int start = 0;
+            if (format == Format.EPW) {
+                for (int i = 0; i < EPW_HEADER_LINES && start < buffer.limit(); i++) {
+                    start = nextLine(start);
+                }
+            }
+            while (start < buffer.limit() && !isDigit(buffer.get(start))) {
+                start = nextLine(start);
+            }
+            this.dataStart = start;
+            this.dataEnd = trimmedEnd();
+            if (dataStart >= dataEnd) {
+                throw new IOException("No weather records found in " + file);
+            }
+
+            int lastLine = previousLineStart(dataEnd);
+            if (format == Format.EPW && nextLine(dataStart) < dataEnd) {
+                // midpointShift is still 0 here, so these are raw interval-end stamps
+                parseRecord(dataStart);
+                long first = parsedKey;
+                parseRecord(nextLine(dataStart));
+                this.midpointShift = (parsedKey - first) / 2;
+            } else {
+                this.midpointShift = 0;
+            }
+            parseRecord(dataStart);
+            this.firstKey = parsedKey;
+            parseRecord(lastLine);
+            this.lastKey = parsedKey;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    @Override
+    public double getDirectNormalIrradiance(LocalDateTime dateTime, double solarAltitude) {
+        long key = toKey(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(),
+                dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond());
+        return interpolate(key);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private double interpolate(long key) {
+        if (key < firstKey || key > lastKey) {
+            return 0;
+        }
+        if (key < lowerKey || key > upperKey) {
+            seek(key);
+        }
+        if (upperKey == lowerKey) {
+            return upperDni;
+        }
+        double fraction = (double) (key - lowerKey) / (upperKey - lowerKey);
+        return lowerDni + fraction * (upperDni - lowerDni);
+    }
+
+    private void seek(long key) {
+        // Stepping forward a few records is cheaper than a search when time advances
+        if (upperKey != Long.MIN_VALUE && key > upperKey) {
+            for (int i = 0; i < SEQUENTIAL_SCAN_LIMIT && key > upperKey; i++) {
+                int next = nextLine(upperLine);
+                if (next >= dataEnd) {
+                    break;
+                }
+                lowerKey = upperKey;
+                lowerDni = upperDni;
+                parseRecord(next);
+                upperKey = parsedKey;
+                upperDni = parsedDni;
+                upperLine = next;
+            }
+            if (key >= lowerKey && key <= upperKey) {
+                return;
+            }
+        }
+
+        int upper = findFirstAtOrAfter(key);
+        parseRecord(upper);
+        upperLine = upper;
+        upperKey = parsedKey;
+        upperDni = parsedDni;
+        if (upper > dataStart) {
+            parseRecord(previousLineStart(upper));
+        }
+        lowerKey = parsedKey;
+        lowerDni = parsedDni;
+    }
+
+    /**
+     * Binary search over line starts for the first record with key >= target.
+     */
+    private int findFirstAtOrAfter(long target) {
+        int lo = dataStart;
+        int hi = dataEnd;
+        while (lo < hi) {
+            int mid = lineStartAtOrAfter(lo + (hi - lo) / 2);
+            if (mid >= hi) {
+                mid = lo;
+            }
+            parseRecord(mid);
+            if (parsedKey < target) {
+                lo = nextLine(mid);
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void parseRecord(int lineStart) {
+        scanPos = lineStart;
+        int year = parseIntField();
+        int month = parseIntField();
+        int day = parseIntField();
+        int hour = parseIntField();
+        int minute = parseIntField();
+
+        if (format == Format.EPW) {
+            // Hour 1 covers 00:00-01:00; hourly files use minute 0 or 60 for the interval end
+            skipFields(EPW_DNI_FIELD - 5);
+            double dni = parseDoubleField();
+            parsedDni = dni >= EPW_MISSING_DNI ? 0 : dni;
+            parsedKey = toKey(year, month, day, hour - 1, minute == 0 ? 60 : minute, 0) - midpointShift;
+        } else {
+            skipFields(CSV_DNI_FIELD - 5);
+            parsedDni = parseDoubleField();
+            parsedKey = toKey(year, month, day, hour, minute, 0);
+        }
+    }
+
+    private long toKey(int year, int month, int day, int hour, int minute, int second) {
+        if (typicalYear) {
+            year = TYPICAL_YEAR;
+            if (month == 2 && day == 29) {
+                day = 28;
+            }
+        }
+        return (daysFromCivil(year, month, day) * 24 + hour) * 3600L + minute * 60L + second;
+    }
+
+    /**
+     * Days since 1970-01-01 for a proleptic Gregorian date, without allocating.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private int parseIntField() {
+        int value = 0;
+        boolean negative = false;
+        byte b = buffer.get(scanPos);
+        if (b == '-') {
+            negative = true;
+            scanPos++;
+        }
+        while (scanPos < buffer.limit() && isDigit(b = buffer.get(scanPos))) {
+            value = value * 10 + (b - '0');
+            scanPos++;
+        }
+        skipToNextField();
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleField() {
+        int end = buffer.limit();
+        boolean negative = false;
+        byte b = buffer.get(scanPos);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            scanPos++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean fraction = false;
+        while (scanPos < end) {
+            b = buffer.get(scanPos);
+            if (isDigit(b)) {
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction) {
+                    scale--;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            scanPos++;
+        }
+        if (scanPos < end && (buffer.get(scanPos) == 'e' || buffer.get(scanPos) == 'E')) {
+            scanPos++;
+            boolean negativeExponent = buffer.get(scanPos) == '-';
+            if (negativeExponent || buffer.get(scanPos) == '+') {
+                scanPos++;
+            }
+            int exponent = 0;
+            while (scanPos < end && isDigit(b = buffer.get(scanPos))) {
+                exponent = exponent * 10 + (b - '0');
+                scanPos++;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        double value = scale == 0 ? mantissa : mantissa * Math.pow(10, scale);
+        return negative ? -value : value;
+    }
+
+    private void skipFields(int count) {
+        for (int i = 0; i < count; i++) {
+            skipToNextField();
+        }
+    }
+
+    private void skipToNextField() {
+        int end = buffer.limit();
+        while (scanPos < end) {
+            byte b = buffer.get(scanPos++);
+            if (b == ',' || b == '\n') {
+                return;
+            }
+        }
+    }
+
+    private int nextLine(int pos) {
+        int end = buffer.limit();
+        while (pos < end && buffer.get(pos) != '\n') {
+            pos++;
+        }
+        return Math.min(pos + 1, end);
+    }
+
+    private int lineStartAtOrAfter(int pos) {
+        if (pos <= dataStart || buffer.get(pos - 1) == '\n') {
+            return pos;
+        }
+        return nextLine(pos);
+    }
+
+    private int previousLineStart(int lineStart) {
+        int pos = lineStart - 2; // skip the newline terminating the previous line
+        while (pos >= dataStart && buffer.get(pos) != '\n') {
+            pos--;
+        }
+        return Math.max(pos + 1, dataStart);
+    }
+
+    private int trimmedEnd() {
+        int end = buffer.limit();
+        while (end > dataStart && isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        return end > dataStart ? nextLine(end - 1) : dataStart;
+    }
+
+    private boolean startsWith(int pos, String prefix) {
+        if (buffer.limit() - pos < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(pos + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == '\n' || b == '\r' || b == ' ' || b == '\t';
+    }
+}
@@ -0,0 +1,304 @@
+// FieldLayout.java
+package jazarifresnelsim.models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Geometry of an arbitrary linear Fresnel field in compact primitive arrays.
+ * <p>
+ * Every mirror has a pivot position (X across the rows, Y along the receiver
+ * axis), a pivot height, an aperture width and the index of the receiver it
+ * aims at. Every receiver is a tube parallel to Y, given by its X position
+ * and height. Lengths are in cm. The mirror-to-receiver vectors the angle
+ * kernels need are precomputed. Immutable.
+ * <p>
+ * Layout files are CSV with one {@code x,y,height,width,receiver} line per
+ * mirror and one {@code receiver,x,height} line per receiver, numbered in
+ * file order. Blank lines, {@code #} comments and a header line starting
+ * with {@code x} are skipped.
+ */
+public final class FieldLayout {
+
+    private static final String HEADER = "x,y,height,width,receiver";
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] height;
+    private final double[] width;
+    private final int[] receiver;
+    private final double[] receiverX;
+    private final double[] receiverHeight;
+    private final double[] targetX;  // receiver X - mirror X
+    private final double[] targetZ;  // receiver height - mirror height
+
+    /**
+     * @param x Mirror pivot X positions
+     * @param y Mirror center positions along the receiver axis
+     * @param height Mirror pivot heights
+     * @param width Mirror aperture widths
+     * @param receiver Receiver index of every mirror
+     * @param receiverX Receiver axis X positions
+     * @param receiverHeight Receiver axis heights
+     */
+    public FieldLayout(double[] x, double[] y, double[] height, double[] width, int[] receiver,
+            double[] receiverX, double[] receiverHeight) {
+        int mirrors = x.length;
+        if (y.length != mirrors || height.length != mirrors || width.length != mirrors
+                || receiver.length != mirrors || receiverX.length != receiverHeight.length) {
+            throw new IllegalArgumentException("Field layout arrays differ in length");
+        }
+        this.x = x.clone();
+        this.y = y.clone();
+        this.height = height.clone();
+        this.width = width.clone();
+        this.receiver = receiver.clone();
+        this.receiverX = receiverX.clone();
+        this.receiverHeight = receiverHeight.clone();
+        this.targetX = new double[mirrors];
+        this.targetZ = new double[mirrors];
+        for (int i = 0; i < mirrors; i++) {
+            int r = receiver[i];
+            if (r < 0 || r >= receiverX.length) {
+                throw new IllegalArgumentException("Mirror " + i + " aims at unknown receiver " + r);
+            }
+            targetX[i] = receiverX[r] - x[i];
+            targetZ[i] = receiverHeight[r] - height[i];
+        }
+    }
+
+    /**
+     * The classic field: one row of equal mirrors split evenly on both sides
+     * of a single receiver at X = 0
+     */
+    public static FieldLayout symmetric(int mirrors, double spacing, double pivotHeight, double width,
+            double receiverHeight) {
+        double[] x = new double[mirrors];
+        for (int i = 0; i < mirrors; i++) {
+            x[i] = symmetricOffset(i, mirrors, spacing);
+        }
+        double[] heights = new double[mirrors];
+        double[] widths = new double[mirrors];
+        Arrays.fill(heights, pivotHeight);
+        Arrays.fill(widths, width);
+        return new FieldLayout(x, new double[mirrors], heights, widths, new int[mirrors],
+                new double[]{0}, new double[]{receiverHeight});
+    }
+
+    /**
+     * Pivot X of mirror {@code index} in the symmetric row: the first half on
+     * the negative side, the second half on the positive side
+     */
+    public static double symmetricOffset(int index, int mirrors, double spacing) {
+        double offset = (index < mirrors / 2)
+                ? -(index + 0.5) : (index - mirrors / 2 + 0.5);
+        return offset * spacing;
+    }
+
+    /**
+     * Reads a layout file (see the class comment for the format)
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static FieldLayout load(Path file) throws IOException {
+        int capacity = 1024;
+        double[] x = new double[capacity];
+        double[] y = new double[capacity];
+        double[] height = new double[capacity];
+        double[] width = new double[capacity];
+        int[] receiver = new int[capacity];
+        double[] receiverX = new double[4];
+        double[] receiverHeight = new double[4];
+        double[] fields = new double[5];
+        int mirrors = 0;
+        int receivers = 0;
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == 'x') {
+                    continue;
+                }
+                if (line.startsWith("receiver")) {
+                    parseFields(line, line.indexOf(',') + 1, fields, 2, file, lineNumber);
+                    if (receivers == receiverX.length) {
+                        receiverX = Arrays.copyOf(receiverX, receivers * 2);
+                        receiverHeight = Arrays.copyOf(receiverHeight, receivers * 2);
+                    }
+                    receiverX[receivers] = fields[0];
+                    receiverHeight[receivers] = fields[1];
+                    receivers++;
+                    continue;
+                }
+                parseFields(line, 0, fields, 5, file, lineNumber);
+                if (mirrors == capacity) {
+                    capacity *= 2;
+                    x = Arrays.copyOf(x, capacity);
+                    y = Arrays.copyOf(y, capacity);
+                    height = Arrays.copyOf(height, capacity);
+                    width = Arrays.copyOf(width, capacity);
+                    receiver = Arrays.copyOf(receiver, capacity);
+                }
+                x[mirrors] = fields[0];
+                y[mirrors] = fields[1];
+                height[mirrors] = fields[2];
+                width[mirrors] = fields[3];
+                receiver[mirrors] = (int) fields[4];
+                mirrors++;
+            }
+        }
+        if (mirrors == 0 || receivers == 0) {
+            throw new IOException("No mirrors or no receivers in " + file);
+        }
+        try {
+            return new FieldLayout(Arrays.copyOf(x, mirrors), Arrays.copyOf(y, mirrors),
+                    Arrays.copyOf(height, mirrors), Arrays.copyOf(width, mirrors), Arrays.copyOf(receiver, mirrors),
+                    Arrays.copyOf(receiverX, receivers), Arrays.copyOf(receiverHeight, receivers));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + " in " + file);
+        }
+    }
+
+    /**
+     * Parses {@code count} comma separated numbers starting at {@code from}
+     * without splitting the line
+     */
+    private static void parseFields(String line, int from, double[] out, int count, Path file, int lineNumber)
+            throws IOException {
+        int start = from;
+        for (int f = 0; f < count; f++) {
+            int end = line.indexOf(',', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            if (start >= end) {
+                throw new IOException(file + ":" + lineNumber + ": expected " + count + " values");
+            }
+            try {
+                out[f] = Double.parseDouble(line.substring(start, end).strip());
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Writes the layout in the format read by {@link #load}
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        for (int r = 0; r < receiverX.length; r++) {
+            line.setLength(0);
+            line.append("receiver,").append(receiverX[r]).append(',').append(receiverHeight[r]).append('\n');
+            out.write(line.toString());
+        }
+        out.write(HEADER + "\n");
+        for (int i = 0; i < x.length; i++) {
+            line.setLength(0);
+            line.append(x[i]).append(',').append(y[i]).append(',').append(height[i])
+                    .append(',').append(width[i]).append(',').append(receiver[i]).append('\n');
+            out.write(line.toString());
+        }
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+    }
+
+    public int getMirrorCount() {
+        return x.length;
+    }
+
+    public int getReceiverCount() {
+        return receiverX.length;
+    }
+
+    public double getX(int mirror) {
+        return x[mirror];
+    }
+
+    public double getY(int mirror) {
+        return y[mirror];
+    }
+
+    public double getHeight(int mirror) {
+        return height[mirror];
+    }
+
+    public double getWidth(int mirror) {
+        return width[mirror];
+    }
+
+    public int getReceiver(int mirror) {
+        return receiver[mirror];
+    }
+
+    public double getReceiverX(int receiverIndex) {
+        return receiverX[receiverIndex];
+    }
+
+    public double getReceiverHeight(int receiverIndex) {
+        return receiverHeight[receiverIndex];
+    }
+
+    /**
+     * Pivot X relative to the axis of the mirror's receiver
+     */
+    public double getRelativeX(int mirror) {
+        return x[mirror] - receiverX[receiver[mirror]];
+    }
+
+    /**
+     * Pivot height in the frame of one reference receiver at the given
+     * height, keeping the mirror's distance below its own receiver. With
+     * {@link #getRelativeX} this maps every mirror onto a single-receiver
+     * field, e.g. for ray tracing.
+     */
+    public double getRelativeHeight(int mirror, double referenceReceiverHeight) {
+        return height[mirror] + (referenceReceiverHeight - receiverHeight[receiver[mirror]]);
+    }
+
+    /**
+     * Copy of the mirror pivot X positions
+     */
+    public double[] getXPositions() {
+        return x.clone();
+    }
+
+    /**
+     * X from each mirror pivot to its receiver axis. Shared with the
+     * kernels; must not be modified.
+     */
+    public double[] getTargetX() {
+        return targetX;
+    }
+
+    /**
+     * Height from each mirror pivot to its receiver axis. Shared with the
+     * kernels; must not be modified.
+     */
+    public double[] getTargetZ() {
+        return targetZ;
+    }
+
+    /**
+     * Sum of the mirror widths, in cm
+     */
+    public double getTotalWidth() {
+        double total = 0;
+        for (double w : width) {
+            total += w;
+        }
+        return total;
+    }
+}
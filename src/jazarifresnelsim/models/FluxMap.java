@@ -0,0 +1,133 @@
+// FluxMap.java
+package jazarifresnelsim.models;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Concentrated flux on the receiver tube surface, binned along the tube
+ * (axial, -length/2 to +length/2) and around it (angular, measured from +X
+ * towards +Z). Immutable once created.
+ */
+public final class FluxMap {
+
+    private final int axialBins;
+    private final int angularBins;
+    private final double receiverLength;   // cm
+    private final double receiverRadius;   // cm
+    private final double[] power;          // W per cell, axial-major
+    private final double cellArea;         // m²
+    private final double totalPower;
+    private final double peakPower;
+
+    /**
+     * @param power Power per cell in W, indexed {@code axial * angularBins + angular}; copied
+     */
+    public FluxMap(int axialBins, int angularBins, double receiverLength, double receiverRadius, double[] power) {
+        this.axialBins = axialBins;
+        this.angularBins = angularBins;
+        this.receiverLength = receiverLength;
+        this.receiverRadius = receiverRadius;
+        this.power = power.clone();
+        this.cellArea = (receiverLength / axialBins) * (2 * Math.PI * receiverRadius / angularBins) * 1e-4;
+
+        double total = 0;
+        double peak = 0;
+        for (double cell : this.power) {
+            total += cell;
+            peak = Math.max(peak, cell);
+        }
+        this.totalPower = total;
+        this.peakPower = peak;
+    }
+
+    public int getAxialBins() {
+        return axialBins;
+    }
+
+    public int getAngularBins() {
+        return angularBins;
+    }
+
+    public double getReceiverLength() {
+        return receiverLength;
+    }
+
+    public double getReceiverRadius() {
+        return receiverRadius;
+    }
+
+    /**
+     * Power absorbed by one cell in W
+     */
+    public double getPower(int axial, int angular) {
+        return power[axial * angularBins + angular];
+    }
+
+    /**
+     * Power reaching one axial slice of the tube, all angles, in W
+     */
+    public double getAxialPower(int axial) {
+        double sum = 0;
+        for (int b = 0; b < angularBins; b++) {
+            sum += power[axial * angularBins + b];
+        }
+        return sum;
+    }
+
+    /**
+     * Flux density of one cell in W/m²
+     */
+    public double getFluxDensity(int axial, int angular) {
+        return getPower(axial, angular) / cellArea;
+    }
+
+    /**
+     * Power reaching the whole tube in W
+     */
+    public double getTotalPower() {
+        return totalPower;
+    }
+
+    /**
+     * Highest cell flux density in W/m²
+     */
+    public double getPeakFluxDensity() {
+        return peakPower / cellArea;
+    }
+
+    /**
+     * Writes the map as a CSV matrix of flux densities in W/m²: one row per
+     * axial bin (first column: bin center in cm), one column per angular bin
+     * (header: bin center in degrees).
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder("axial_cm\\angle_deg");
+        for (int b = 0; b < angularBins; b++) {
+            line.append(',').append(format((b + 0.5) * 360.0 / angularBins));
+        }
+        out.write(line.append('\n').toString());
+        for (int a = 0; a < axialBins; a++) {
+            line.setLength(0);
+            line.append(format((a + 0.5) * receiverLength / axialBins - receiverLength / 2));
+            for (int b = 0; b < angularBins; b++) {
+                line.append(',').append(format(getFluxDensity(a, b)));
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -0,0 +1,139 @@
+// GroundShadowMap.java
+package jazarifresnelsim.models;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Time-weighted shade on the ground around the field: for every cell of a
+ * regular grid, the fraction of the daylight time it lay in the shadow of
+ * a mirror, a support or a receiver. Immutable once created.
+ */
+public final class GroundShadowMap {
+
+    private final double originX;     // cm, lower edge of column 0
+    private final double originY;     // cm, lower edge of row 0
+    private final double cellSize;    // cm
+    private final int columns;
+    private final int rows;
+    private final float[] fraction;   // row-major
+    private final double daylightSeconds;
+
+    /**
+     * @param fraction Shade fraction per cell, indexed {@code row * columns + column}; copied
+     * @param daylightSeconds Daylight time the fractions refer to
+     */
+    public GroundShadowMap(double originX, double originY, double cellSize, int columns, int rows,
+            float[] fraction, double daylightSeconds) {
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.fraction = fraction.clone();
+        this.daylightSeconds = daylightSeconds;
+    }
+
+    public double getOriginX() {
+        return originX;
+    }
+
+    public double getOriginY() {
+        return originY;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public double getDaylightHours() {
+        return daylightSeconds / 3600;
+    }
+
+    /**
+     * Fraction of the daylight time a cell was shaded (0..1)
+     */
+    public double getShadeFraction(int column, int row) {
+        return fraction[row * columns + column];
+    }
+
+    /**
+     * Shade fraction at a ground point in cm, NaN outside the grid
+     */
+    public double getShadeFractionAt(double x, double y) {
+        int column = (int) Math.floor((x - originX) / cellSize);
+        int row = (int) Math.floor((y - originY) / cellSize);
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            return Double.NaN;
+        }
+        return fraction[row * columns + column];
+    }
+
+    /**
+     * Shade fraction averaged over the whole grid
+     */
+    public double getMeanShadeFraction() {
+        double sum = 0;
+        for (float cell : fraction) {
+            sum += cell;
+        }
+        return fraction.length > 0 ? sum / fraction.length : 0;
+    }
+
+    /**
+     * Ground area shaded for at least the given fraction of the daylight
+     * time, in m²
+     */
+    public double getShadedArea(double minFraction) {
+        long cells = 0;
+        for (float cell : fraction) {
+            if (cell >= minFraction && cell > 0) {
+                cells++;
+            }
+        }
+        return cells * cellSize * cellSize * 1e-4;
+    }
+
+    /**
+     * Writes the map as a CSV matrix of shade fractions: one row per grid
+     * row (first column: row center Y in cm), one column per grid column
+     * (header: column center X in cm).
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder("y_cm\\x_cm");
+        for (int c = 0; c < columns; c++) {
+            line.append(',').append(format(originX + (c + 0.5) * cellSize));
+        }
+        out.write(line.append('\n').toString());
+        for (int r = 0; r < rows; r++) {
+            line.setLength(0);
+            line.append(format(originY + (r + 0.5) * cellSize));
+            for (int c = 0; c < columns; c++) {
+                line.append(',').append(String.format(Locale.ROOT, "%.4f", fraction[r * columns + c]));
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCsv(out);
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
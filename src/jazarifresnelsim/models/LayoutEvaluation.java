@@ -0,0 +1,104 @@
+// LayoutEvaluation.java
+package jazarifresnelsim.models;
+
+/**
+ * Annual yield, areas and cost of one symmetric field configuration, as
+ * computed by the layout optimizer's evaluator. Immutable.
+ */
+public final class LayoutEvaluation {
+
+    private final int mirrors;
+    private final double spacing;        // cm
+    private final double receiverHeight; // cm
+    private final double supportHeight;  // cm
+    private final double annualEnergy;   // kWh
+    private final double apertureArea;   // m²
+    private final double landArea;       // m²
+    private final double cost;
+
+    public LayoutEvaluation(int mirrors, double spacing, double receiverHeight, double supportHeight,
+            double annualEnergy, double apertureArea, double landArea, double cost) {
+        this.mirrors = mirrors;
+        this.spacing = spacing;
+        this.receiverHeight = receiverHeight;
+        this.supportHeight = supportHeight;
+        this.annualEnergy = annualEnergy;
+        this.apertureArea = apertureArea;
+        this.landArea = landArea;
+        this.cost = cost;
+    }
+
+    public int getMirrors() {
+        return mirrors;
+    }
+
+    public double getSpacing() {
+        return spacing;
+    }
+
+    public double getReceiverHeight() {
+        return receiverHeight;
+    }
+
+    public double getSupportHeight() {
+        return supportHeight;
+    }
+
+    /**
+     * Energy reaching the receiver over a year, in kWh
+     */
+    public double getAnnualEnergy() {
+        return annualEnergy;
+    }
+
+    /**
+     * Total mirror area in m²
+     */
+    public double getApertureArea() {
+        return apertureArea;
+    }
+
+    /**
+     * Ground covered by the mirror row, in m²
+     */
+    public double getLandArea() {
+        return landArea;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * kWh per year per unit of cost
+     */
+    public double getEnergyPerCost() {
+        return cost > 0 ? annualEnergy / cost : 0;
+    }
+
+    /**
+     * kWh per year per m² of land
+     */
+    public double getEnergyPerLandArea() {
+        return landArea > 0 ? annualEnergy / landArea : 0;
+    }
+
+    /**
+     * Writes the geometry into a state; the symmetric row replaces any
+     * custom field layout
+     */
+    public void applyTo(SimulationState state) {
+        state.setFieldLayout(null);
+        state.setNumReflectors(mirrors);
+        state.setReflectorSpacing((float) spacing);
+        state.setReceiverHeight((float) receiverHeight);
+        state.setSupportHeight((float) supportHeight);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LayoutEvaluation[mirrors=%d, spacing=%.1f cm, receiver=%.1f cm, support=%.1f cm, "
+                + "energy=%.1f kWh/a, aperture=%.2f m², land=%.2f m², cost=%.0f]",
+                mirrors, spacing, receiverHeight, supportHeight, annualEnergy, apertureArea, landArea, cost);
+    }
+}
@@ -0,0 +1,79 @@
+// LayoutOptimizationResult.java
+package jazarifresnelsim.models;
+
+/**
+ * Snapshot of a layout optimization: the best configuration found so far
+ * and the search effort. Immutable.
+ */
+public final class LayoutOptimizationResult {
+
+    private final LayoutEvaluation best;
+    private final double objective;
+    private final int iterations;
+    private final int evaluations;
+    private final long cacheHits;
+    private final boolean converged;
+    private final String stopReason; // null while running
+
+    public LayoutOptimizationResult(LayoutEvaluation best, double objective, int iterations, int evaluations,
+            long cacheHits, boolean converged, String stopReason) {
+        this.best = best;
+        this.objective = objective;
+        this.iterations = iterations;
+        this.evaluations = evaluations;
+        this.cacheHits = cacheHits;
+        this.converged = converged;
+        this.stopReason = stopReason;
+    }
+
+    public LayoutEvaluation getBest() {
+        return best;
+    }
+
+    /**
+     * Objective value of the best configuration
+     */
+    public double getObjective() {
+        return objective;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Distinct configurations evaluated
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Candidates answered from the cache of evaluated configurations
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * True if the search stopped because the simplex collapsed or stopped
+     * improving, not because of a limit
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Why the search stopped; null for intermediate results
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LayoutOptimizationResult[objective=%.6g, iterations=%d, evaluations=%d, "
+                + "cache hits=%d%s, %s]", objective, iterations, evaluations, cacheHits,
+                stopReason != null ? ", " + stopReason : "", best);
+    }
+}
@@ -0,0 +1,98 @@
+// SensitivityResult.java
+package jazarifresnelsim.models;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Outputs of a sensitivity run with the partial derivative of every output
+ * with respect to every design or location parameter. Immutable.
+ */
+public final class SensitivityResult {
+
+    private final String[] parameters;
+    private final String[] outputs;
+    private final double[] values;
+    private final double[][] partials; // [output][parameter]
+
+    public SensitivityResult(String[] parameters, String[] outputs, double[] values, double[][] partials) {
+        if (outputs.length != values.length || outputs.length != partials.length) {
+            throw new IllegalArgumentException("Sensitivity outputs differ in length");
+        }
+        this.parameters = parameters.clone();
+        this.outputs = outputs.clone();
+        this.values = values.clone();
+        this.partials = new double[partials.length][];
+        for (int o = 0; o < partials.length; o++) {
+            if (partials[o].length != parameters.length) {
+                throw new IllegalArgumentException("Output " + outputs[o] + " has a wrong number of partials");
+            }
+            this.partials[o] = partials[o].clone();
+        }
+    }
+
+    public int getParameterCount() {
+        return parameters.length;
+    }
+
+    public String getParameterName(int parameter) {
+        return parameters[parameter];
+    }
+
+    public int getOutputCount() {
+        return outputs.length;
+    }
+
+    public String getOutputName(int output) {
+        return outputs[output];
+    }
+
+    /**
+     * Index of the named output, -1 if there is none
+     */
+    public int indexOf(String output) {
+        for (int o = 0; o < outputs.length; o++) {
+            if (outputs[o].equals(output)) {
+                return o;
+            }
+        }
+        return -1;
+    }
+
+    public double getValue(int output) {
+        return values[output];
+    }
+
+    /**
+     * d output / d parameter
+     */
+    public double getPartial(int output, int parameter) {
+        return partials[output][parameter];
+    }
+
+    /**
+     * Copy of the partials of one output, in parameter order
+     */
+    public double[] getGradient(int output) {
+        return partials[output].clone();
+    }
+
+    /**
+     * One line per output: name, value and the partials in parameter order
+     */
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(128).append("output,value");
+        for (String parameter : parameters) {
+            line.append(",d/d_").append(parameter);
+        }
+        out.write(line.append('\n').toString());
+        for (int o = 0; o < outputs.length; o++) {
+            line.setLength(0);
+            line.append(outputs[o]).append(',').append(values[o]);
+            for (double partial : partials[o]) {
+                line.append(',').append(partial);
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+}
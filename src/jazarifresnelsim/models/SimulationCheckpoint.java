@@ -0,0 +1,316 @@
+// SimulationCheckpoint.java
+package jazarifresnelsim.models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import jazarifresnelsim.domain.EpochTime;
+
+/**
+ * Immutable snapshot of a {@link SimulationState}, taken under the state's
+ * lock so it can be serialized on another thread while the simulation keeps
+ * stepping.
+ * <p>
+ * Binary layout (big-endian, version 3): magic {@code JFSC}, format version,
+ * location, the current time as the engine's clock value (double, see
+ * {@link EpochTime}), start and end time as epoch second + nanos, animation
+ * flag, step size, geometry, optional solar position, the mirror list, the
+ * optional receiver thermal state (node temperatures and model time) and
+ * the optional {@link TrackingCheckpoint}. Doubles and floats are stored as
+ * raw IEEE bits so a resumed run continues bit-identically.
+ */
+public final class SimulationCheckpoint {
+
+    public static final int MAGIC = 0x4A465343; // "JFSC"
+    public static final short FORMAT_VERSION = 3;
+
+    private final double latitude;
+    private final double longitude;
+    private final double currentTimeSeconds;
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+    private final boolean animating;
+    private final double simulationStepMinutes;
+    private final int numReflectors;
+    private final float receiverHeight;
+    private final float receiverDiameter;
+    private final float reflectorWidth;
+    private final float reflectorLength;
+    private final float reflectorSpacing;
+    private final float supportHeight;
+    private final SolarPosition solarPosition;
+    private final List<MirrorPosition> mirrorPositions;
+    private final double[] receiverTemperatures; // null without a thermal model
+    private final double receiverModelTime;
+    private final TrackingCheckpoint tracking;   // null without a command generator
+
+    SimulationCheckpoint(double latitude, double longitude,
+            double currentTimeSeconds, LocalDateTime startTime, LocalDateTime endTime,
+            boolean animating, double simulationStepMinutes, int numReflectors,
+            float receiverHeight, float receiverDiameter, float reflectorWidth,
+            float reflectorLength, float reflectorSpacing, float supportHeight,
+            SolarPosition solarPosition, List<MirrorPosition> mirrorPositions) {
+        this(latitude, longitude, currentTimeSeconds, startTime, endTime, animating, simulationStepMinutes,
+                numReflectors, receiverHeight, receiverDiameter, reflectorWidth, reflectorLength,
+                reflectorSpacing, supportHeight, solarPosition, mirrorPositions, null, 0, null);
+    }
+
+    private SimulationCheckpoint(double latitude, double longitude,
+            double currentTimeSeconds, LocalDateTime startTime, LocalDateTime endTime,
+            boolean animating, double simulationStepMinutes, int numReflectors,
+            float receiverHeight, float receiverDiameter, float reflectorWidth,
+            float reflectorLength, float reflectorSpacing, float supportHeight,
+            SolarPosition solarPosition, List<MirrorPosition> mirrorPositions,
+            double[] receiverTemperatures, double receiverModelTime, TrackingCheckpoint tracking) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.currentTimeSeconds = currentTimeSeconds;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.animating = animating;
+        this.simulationStepMinutes = simulationStepMinutes;
+        this.numReflectors = numReflectors;
+        this.receiverHeight = receiverHeight;
+        this.receiverDiameter = receiverDiameter;
+        this.reflectorWidth = reflectorWidth;
+        this.reflectorLength = reflectorLength;
+        this.reflectorSpacing = reflectorSpacing;
+        this.supportHeight = supportHeight;
+        this.solarPosition = solarPosition;
+        this.mirrorPositions = Collections.unmodifiableList(new ArrayList<>(mirrorPositions));
+        this.receiverTemperatures = receiverTemperatures != null ? receiverTemperatures.clone() : null;
+        this.receiverModelTime = receiverModelTime;
+        this.tracking = tracking;
+    }
+
+    /**
+     * The same snapshot with the state of the engine's models added
+     * @param receiverTemperatures Receiver node temperatures, inlet first; null without a thermal model
+     * @param receiverModelTime Simulated seconds of the thermal model
+     * @param tracking Command generator state; null without one
+     */
+    public SimulationCheckpoint withModels(double[] receiverTemperatures, double receiverModelTime,
+            TrackingCheckpoint tracking) {
+        return new SimulationCheckpoint(latitude, longitude, currentTimeSeconds, startTime, endTime,
+                animating, simulationStepMinutes, numReflectors, receiverHeight, receiverDiameter,
+                reflectorWidth, reflectorLength, reflectorSpacing, supportHeight, solarPosition,
+                mirrorPositions, receiverTemperatures, receiverModelTime, tracking);
+    }
+
+    /**
+     * Writes the checkpoint body, including magic and version
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeDouble(latitude);
+        out.writeDouble(longitude);
+        out.writeDouble(currentTimeSeconds);
+        writeTime(out, startTime);
+        writeTime(out, endTime);
+        out.writeBoolean(animating);
+        out.writeDouble(simulationStepMinutes);
+        out.writeInt(numReflectors);
+        out.writeFloat(receiverHeight);
+        out.writeFloat(receiverDiameter);
+        out.writeFloat(reflectorWidth);
+        out.writeFloat(reflectorLength);
+        out.writeFloat(reflectorSpacing);
+        out.writeFloat(supportHeight);
+
+        out.writeBoolean(solarPosition != null);
+        if (solarPosition != null) {
+            out.writeDouble(solarPosition.getAltitudeAngle());
+            out.writeDouble(solarPosition.getAzimuthAngle());
+            out.writeDouble(solarPosition.getSolarIntensity());
+        }
+
+        out.writeInt(mirrorPositions.size());
+        for (MirrorPosition pos : mirrorPositions) {
+            out.writeDouble(pos.getRotationAngle());
+            out.writeDouble(pos.getXOffset());
+            out.writeDouble(pos.getHeight());
+            out.writeInt(pos.getMirrorIndex());
+        }
+
+        out.writeBoolean(receiverTemperatures != null);
+        if (receiverTemperatures != null) {
+            out.writeInt(receiverTemperatures.length);
+            for (double temperature : receiverTemperatures) {
+                out.writeDouble(temperature);
+            }
+            out.writeDouble(receiverModelTime);
+        }
+        out.writeBoolean(tracking != null);
+        if (tracking != null) {
+            tracking.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #writeTo(DataOutput)}
+     * @throws IOException if the magic or version does not match
+     */
+    public static SimulationCheckpoint readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a simulation checkpoint");
+        }
+        short version = in.readShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported checkpoint version: " + version);
+        }
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        double currentTime = in.readDouble();
+        LocalDateTime startTime = readTime(in);
+        LocalDateTime endTime = readTime(in);
+        boolean animating = in.readBoolean();
+        double stepMinutes = in.readDouble();
+        int numReflectors = in.readInt();
+        float receiverHeight = in.readFloat();
+        float receiverDiameter = in.readFloat();
+        float reflectorWidth = in.readFloat();
+        float reflectorLength = in.readFloat();
+        float reflectorSpacing = in.readFloat();
+        float supportHeight = in.readFloat();
+
+        SolarPosition solarPosition = null;
+        if (in.readBoolean()) {
+            solarPosition = new SolarPosition(in.readDouble(), in.readDouble(), in.readDouble());
+        }
+
+        int mirrorCount = in.readInt();
+        List<MirrorPosition> mirrors = new ArrayList<>(mirrorCount);
+        for (int i = 0; i < mirrorCount; i++) {
+            mirrors.add(new MirrorPosition(in.readDouble(), in.readDouble(), in.readDouble(), in.readInt()));
+        }
+
+        double[] receiverTemperatures = null;
+        double receiverModelTime = 0;
+        TrackingCheckpoint tracking = null;
+        if (in.readBoolean()) {
+            int nodes = in.readInt();
+            if (nodes < 0) {
+                throw new IOException("Invalid receiver node count: " + nodes);
+            }
+            receiverTemperatures = new double[nodes];
+            for (int i = 0; i < nodes; i++) {
+                receiverTemperatures[i] = in.readDouble();
+            }
+            receiverModelTime = in.readDouble();
+        }
+        if (in.readBoolean()) {
+            tracking = TrackingCheckpoint.readFrom(in);
+        }
+
+        return new SimulationCheckpoint(latitude, longitude, currentTime, startTime, endTime,
+                animating, stepMinutes, numReflectors, receiverHeight, receiverDiameter,
+                reflectorWidth, reflectorLength, reflectorSpacing, supportHeight,
+                solarPosition, mirrors, receiverTemperatures, receiverModelTime, tracking);
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInput in) throws IOException {
+        long epochSecond = in.readLong();
+        int nanos = in.readInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public LocalDateTime getCurrentTime() {
+        return EpochTime.toDateTime(currentTimeSeconds);
+    }
+
+    /**
+     * Current time as the engine's clock value, see {@link EpochTime}
+     */
+    public double getCurrentTimeSeconds() {
+        return currentTimeSeconds;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public boolean isAnimating() {
+        return animating;
+    }
+
+    public double getSimulationStepMinutes() {
+        return simulationStepMinutes;
+    }
+
+    public int getNumReflectors() {
+        return numReflectors;
+    }
+
+    public float getReceiverHeight() {
+        return receiverHeight;
+    }
+
+    public float getReceiverDiameter() {
+        return receiverDiameter;
+    }
+
+    public float getReflectorWidth() {
+        return reflectorWidth;
+    }
+
+    public float getReflectorLength() {
+        return reflectorLength;
+    }
+
+    public float getReflectorSpacing() {
+        return reflectorSpacing;
+    }
+
+    public float getSupportHeight() {
+        return supportHeight;
+    }
+
+    public SolarPosition getSolarPosition() {
+        return solarPosition;
+    }
+
+    public List<MirrorPosition> getMirrorPositions() {
+        return mirrorPositions;
+    }
+
+    /**
+     * Receiver node temperatures, inlet first, or null if no thermal model was attached
+     */
+    public double[] getReceiverTemperatures() {
+        return receiverTemperatures != null ? receiverTemperatures.clone() : null;
+    }
+
+    public double getReceiverModelTime() {
+        return receiverModelTime;
+    }
+
+    /**
+     * Command generator state, or null if no generator was attached
+     */
+    public TrackingCheckpoint getTracking() {
+        return tracking;
+    }
+}
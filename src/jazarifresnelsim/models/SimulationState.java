@@ -2,15 +2,20 @@
 package jazarifresnelsim.models;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import jazarifresnelsim.domain.EpochTime;
 import static jazarifresnelsim.domain.Constants.*;
 
 /**
  * Maintains the current state of the simulation. This class is mutable but
  * thread-safe through synchronization.
+ * <p>
+ * The clock, the sun and the mirror angles are kept as primitives, so the
+ * engine can step without allocating; the {@link LocalDateTime},
+ * {@link SolarPosition} and {@link MirrorPosition} views are built only
+ * when someone asks for them and cached until the next update.
  */
 public class SimulationState {
 
@@ -18,12 +23,21 @@ public class SimulationState {
 //    private static final double DEFAULT_LONGITUDE = 41.850347;
     private double latitude;
     private double longitude;
-    private LocalDateTime currentTime;
+    private double currentTimeSeconds;      // epoch seconds, see EpochTime
+    private LocalDateTime currentTime;      // view of currentTimeSeconds, null until asked for
     private LocalDateTime startTime;
     private LocalDateTime endTime;
+    private double endTimeSeconds;
     private boolean isAnimating;
-    private List<MirrorPosition> mirrorPositions;
-    private SolarPosition currentSolarPosition;
+    private double[] mirrorAngles = new double[0];
+    private int mirrorCount;
+    private FieldLayout mirrorLayout;       // layout the angles belong to
+    private List<MirrorPosition> mirrorPositions; // view of the angles, null until asked for
+    private boolean hasSun;
+    private double sunAltitude;
+    private double sunAzimuth;
+    private double sunIntensity;
+    private SolarPosition currentSolarPosition;   // view of the sun fields, null until asked for
     private double simulationStepMinutes;
     private int numReflectors = NUM_REFLECTORS;
     private float receiverHeight = RECEIVER_HEIGHT;
@@ -32,18 +46,24 @@ public class SimulationState {
     private float reflectorLength = REFLECTOR_LENGTH;
     private float reflectorSpacing = REFLECTOR_SPACING;
     private float supportHeight = SUPPORT_HEIGHT;
+    private FluxMap fluxMap;
+    private double receiverOutletTemperature = Double.NaN;
+    private double opticalEfficiency = Double.NaN;
+    private FieldLayout fieldLayout;      // loaded layout, null for the symmetric row
+    private FieldLayout symmetricLayout;  // row built from the scalar parameters
 
     public SimulationState() {
         this.latitude = DEFAULT_LATITUDE;
         this.longitude = DEFAULT_LONGITUDE;
-        this.currentTime = LocalDateTime.now()
+        LocalDateTime noon = LocalDateTime.now()
                 .withHour(12)
                 .withMinute(0)
-                .withSecond(0);
-        this.startTime = currentTime;
-        this.endTime = currentTime.withHour(17).withMinute(0);
+                .withSecond(0)
+                .withNano(0);
+        setCurrentTime(noon);
+        this.startTime = noon;
+        setEndTime(noon.withHour(17).withMinute(0));
         this.isAnimating = false;
-        this.mirrorPositions = new ArrayList<>();
         this.simulationStepMinutes = 1.0;
     }
 
@@ -53,17 +73,21 @@ public class SimulationState {
 
     // Var olan setTimeRange metodunu güncelleyelim
     public synchronized void setTimeRange(LocalDateTime start, LocalDateTime end) {
-        System.out.println("Setting time range in state:");
-        System.out.println("Start: " + start.format(DateTimeFormatter.ofPattern("HH:mm")));
-        System.out.println("End: " + end.format(DateTimeFormatter.ofPattern("HH:mm")));
         this.startTime = start;
-        this.endTime = end;
+        setEndTime(end);
     }
 
     // Yeni direkt setter metodu ekleyelim
     public synchronized void setEndTime(LocalDateTime end) {
-        System.out.println("Setting end time to: " + end.format(DateTimeFormatter.ofPattern("HH:mm")));
         this.endTime = end;
+        this.endTimeSeconds = EpochTime.toSeconds(end);
+    }
+
+    /**
+     * End time as a clock value, see {@link EpochTime}
+     */
+    public synchronized double getEndTimeSeconds() {
+        return endTimeSeconds;
     }
 
     // Synchronized getters and setters
@@ -84,11 +108,27 @@ public class SimulationState {
     }
 
     public synchronized LocalDateTime getCurrentTime() {
+        if (currentTime == null) {
+            currentTime = EpochTime.toDateTime(currentTimeSeconds);
+        }
         return currentTime;
     }
 
     public synchronized void setCurrentTime(LocalDateTime time) {
-        this.currentTime = time;
+        this.currentTimeSeconds = EpochTime.toSeconds(time);
+        this.currentTime = null;
+    }
+
+    /**
+     * Current time as a clock value, see {@link EpochTime}
+     */
+    public synchronized double getCurrentTimeSeconds() {
+        return currentTimeSeconds;
+    }
+
+    public synchronized void setCurrentTimeSeconds(double seconds) {
+        this.currentTimeSeconds = EpochTime.round(seconds);
+        this.currentTime = null;
     }
 
     public synchronized boolean isAnimating() {
@@ -100,13 +140,45 @@ public class SimulationState {
     }
 
     public synchronized SolarPosition getCurrentSolarPosition() {
+        if (currentSolarPosition == null && hasSun) {
+            currentSolarPosition = new SolarPosition(sunAltitude, sunAzimuth, sunIntensity);
+        }
         return currentSolarPosition;
     }
 
     public synchronized void setCurrentSolarPosition(SolarPosition position) {
+        this.hasSun = position != null;
+        if (position != null) {
+            this.sunAltitude = position.getAltitudeAngle();
+            this.sunAzimuth = position.getAzimuthAngle();
+            this.sunIntensity = position.getSolarIntensity();
+        }
         this.currentSolarPosition = position;
     }
 
+    /**
+     * Allocation-free version of {@link #setCurrentSolarPosition(SolarPosition)}
+     */
+    public synchronized void setCurrentSolarPosition(double altitude, double azimuth, double intensity) {
+        this.hasSun = true;
+        this.sunAltitude = altitude;
+        this.sunAzimuth = azimuth;
+        this.sunIntensity = intensity;
+        this.currentSolarPosition = null;
+    }
+
+    /**
+     * Allocation-free version of {@link #getCurrentSolarPosition()}
+     * @param out Receives altitude, azimuth (degrees) and intensity (W/m²)
+     * @return false if no solar position has been computed yet
+     */
+    public synchronized boolean getCurrentSolarPosition(double[] out) {
+        out[0] = sunAltitude;
+        out[1] = sunAzimuth;
+        out[2] = sunIntensity;
+        return hasSun;
+    }
+
     public synchronized LocalDateTime getStartTime() {
         return startTime;
     }
@@ -123,10 +195,125 @@ public class SimulationState {
     public synchronized void updateMirrorPositions(List<MirrorPosition> newPositions) {
         //System.out.println("Updating mirror positions with size: " + newPositions.size());
         this.mirrorPositions = new ArrayList<>(newPositions);
+        this.mirrorLayout = null;
+        this.mirrorCount = newPositions.size();
+        if (mirrorAngles.length < mirrorCount) {
+            mirrorAngles = new double[mirrorCount];
+        }
+        for (int i = 0; i < mirrorCount; i++) {
+            mirrorAngles[i] = newPositions.get(i).getRotationAngle();
+        }
+    }
+
+    /**
+     * Allocation-free version of {@link #updateMirrorPositions(List)}: copies
+     * the angles; positions come from the layout
+     * @param angles Rotation angle of every mirror in degrees
+     */
+    public synchronized void updateMirrorAngles(FieldLayout layout, double[] angles, int count) {
+        if (mirrorAngles.length < count) {
+            mirrorAngles = new double[count];
+        }
+        System.arraycopy(angles, 0, mirrorAngles, 0, count);
+        this.mirrorCount = count;
+        this.mirrorLayout = layout;
+        this.mirrorPositions = null;
     }
 
     public synchronized List<MirrorPosition> getMirrorPositions() {
-        return mirrorPositions != null ? new ArrayList<>(mirrorPositions) : new ArrayList<>();
+        if (mirrorPositions == null) {
+            List<MirrorPosition> positions = new ArrayList<>(mirrorCount);
+            for (int i = 0; i < mirrorCount; i++) {
+                positions.add(new MirrorPosition(mirrorAngles[i], mirrorLayout.getX(i), mirrorLayout.getHeight(i), i));
+            }
+            mirrorPositions = positions;
+        }
+        return new ArrayList<>(mirrorPositions);
+    }
+
+    /**
+     * Allocation-free version of {@link #getMirrorPositions()}
+     * @param out Receives the rotation angle of every mirror; grown if too small
+     * @return the array holding the angles
+     */
+    public synchronized double[] getMirrorAngles(double[] out) {
+        double[] angles = out != null && out.length >= mirrorCount ? out : new double[mirrorCount];
+        System.arraycopy(mirrorAngles, 0, angles, 0, mirrorCount);
+        return angles;
+    }
+
+    public synchronized int getMirrorCount() {
+        return mirrorCount;
+    }
+
+    /**
+     * Receiver flux map of the current step, or null if not computed
+     */
+    public synchronized FluxMap getFluxMap() {
+        return fluxMap;
+    }
+
+    public synchronized void setFluxMap(FluxMap fluxMap) {
+        this.fluxMap = fluxMap;
+    }
+
+    /**
+     * Fluid outlet temperature of the receiver in °C, NaN if no thermal model runs
+     */
+    public synchronized double getReceiverOutletTemperature() {
+        return receiverOutletTemperature;
+    }
+
+    public synchronized void setReceiverOutletTemperature(double celsius) {
+        this.receiverOutletTemperature = celsius;
+    }
+
+    /**
+     * Optical efficiency of the field for the current sun position (0..1),
+     * NaN if no IAM table is set
+     */
+    public synchronized double getOpticalEfficiency() {
+        return opticalEfficiency;
+    }
+
+    public synchronized void setOpticalEfficiency(double efficiency) {
+        this.opticalEfficiency = efficiency;
+    }
+
+    /**
+     * Takes a consistent snapshot of the whole state for checkpointing
+     */
+    public synchronized SimulationCheckpoint createCheckpoint() {
+        return new SimulationCheckpoint(latitude, longitude, currentTimeSeconds, startTime, endTime,
+                isAnimating, simulationStepMinutes, numReflectors, receiverHeight, receiverDiameter,
+                reflectorWidth, reflectorLength, reflectorSpacing, supportHeight,
+                getCurrentSolarPosition(), getMirrorPositions());
+    }
+
+    /**
+     * Restores every field from a checkpoint
+     */
+    public synchronized void restoreCheckpoint(SimulationCheckpoint checkpoint) {
+        this.latitude = checkpoint.getLatitude();
+        this.longitude = checkpoint.getLongitude();
+        this.currentTimeSeconds = checkpoint.getCurrentTimeSeconds();
+        this.currentTime = null;
+        this.startTime = checkpoint.getStartTime();
+        setEndTime(checkpoint.getEndTime());
+        this.isAnimating = checkpoint.isAnimating();
+        this.simulationStepMinutes = checkpoint.getSimulationStepMinutes();
+        this.numReflectors = checkpoint.getNumReflectors();
+        if (fieldLayout != null && fieldLayout.getMirrorCount() != numReflectors) {
+            fieldLayout = null;
+        }
+        this.receiverHeight = checkpoint.getReceiverHeight();
+        this.receiverDiameter = checkpoint.getReceiverDiameter();
+        this.reflectorWidth = checkpoint.getReflectorWidth();
+        this.reflectorLength = checkpoint.getReflectorLength();
+        this.reflectorSpacing = checkpoint.getReflectorSpacing();
+        this.supportHeight = checkpoint.getSupportHeight();
+        setCurrentSolarPosition(checkpoint.getSolarPosition());
+        updateMirrorPositions(checkpoint.getMirrorPositions());
     }
 
     public synchronized int getNumReflectors() {
@@ -134,9 +321,52 @@ public class SimulationState {
     }
 
     public synchronized void setNumReflectors(int value) {
+        if (fieldLayout != null && fieldLayout.getMirrorCount() != value) {
+            fieldLayout = null; // a new mirror count means the symmetric row again
+        }
         this.numReflectors = value;
     }
 
+    /**
+     * Mirror and receiver geometry: the loaded layout if one is set,
+     * otherwise the symmetric row described by the mirror count, spacing,
+     * support height, mirror width and receiver height
+     */
+    public synchronized FieldLayout getFieldLayout() {
+        if (fieldLayout != null) {
+            return fieldLayout;
+        }
+        double pivotHeight = supportHeight + 2;
+        FieldLayout row = symmetricLayout;
+        int last = numReflectors - 1;
+        if (row == null || row.getMirrorCount() != numReflectors
+                || row.getReceiverHeight(0) != receiverHeight
+                || (last >= 0 && (row.getHeight(0) != pivotHeight || row.getWidth(0) != reflectorWidth
+                        || row.getX(last) != FieldLayout.symmetricOffset(last, numReflectors, reflectorSpacing)))) {
+            row = FieldLayout.symmetric(numReflectors, reflectorSpacing, pivotHeight, reflectorWidth, receiverHeight);
+            symmetricLayout = row;
+        }
+        return row;
+    }
+
+    /**
+     * Replaces the symmetric row by an arbitrary layout and takes over its
+     * mirror count. Pass null to return to the symmetric row.
+     */
+    public synchronized void setFieldLayout(FieldLayout layout) {
+        this.fieldLayout = layout;
+        if (layout != null) {
+            this.numReflectors = layout.getMirrorCount();
+        }
+    }
+
+    /**
+     * True if a loaded layout replaces the symmetric row
+     */
+    public synchronized boolean hasCustomFieldLayout() {
+        return fieldLayout != null;
+    }
+
     public synchronized float getReceiverHeight() {
         return receiverHeight;
     }
@@ -179,7 +409,7 @@ public class SimulationState {
     }
 
     public void setMirrorPositions(List<MirrorPosition> mirrorPositions) {
-        this.mirrorPositions = mirrorPositions;
+        updateMirrorPositions(mirrorPositions);
     }
 
     public void setReceiverDiameter(float receiverDiameter) {
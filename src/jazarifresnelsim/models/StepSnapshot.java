@@ -0,0 +1,71 @@
+// StepSnapshot.java
+package jazarifresnelsim.models;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * One simulation step as published to subscribers: time, sun position and
+ * the rotation angle of every mirror. Immutable; the angles are copied.
+ */
+public final class StepSnapshot {
+
+    private final long sequence;
+    private final double timeSeconds;
+    private final SolarPosition sun;
+    private final double[] angles;
+
+    /**
+     * @param sequence Number of the step among those published
+     * @param timeSeconds Simulation time in epoch seconds (local time as UTC)
+     * @param angles Mirror angles in degrees; the first count are copied
+     */
+    public StepSnapshot(long sequence, double timeSeconds, SolarPosition sun, double[] angles, int count) {
+        this.sequence = sequence;
+        this.timeSeconds = timeSeconds;
+        this.sun = sun;
+        this.angles = Arrays.copyOf(angles, count);
+    }
+
+    /**
+     * Consecutive step number; gaps show dropped snapshots
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public double getTimeSeconds() {
+        return timeSeconds;
+    }
+
+    public LocalDateTime getTime() {
+        long seconds = (long) Math.floor(timeSeconds);
+        return LocalDateTime.ofEpochSecond(seconds, (int) Math.round((timeSeconds - seconds) * 1e9) % 1_000_000_000,
+                ZoneOffset.UTC);
+    }
+
+    public SolarPosition getSolarPosition() {
+        return sun;
+    }
+
+    public int getMirrorCount() {
+        return angles.length;
+    }
+
+    /**
+     * Rotation angle of a mirror in degrees
+     */
+    public double getAngle(int mirror) {
+        return angles[mirror];
+    }
+
+    public double[] getAngles() {
+        return angles.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StepSnapshot[#%d, %s, %s, %d mirrors]", sequence, getTime(), sun, angles.length);
+    }
+}
@@ -0,0 +1,135 @@
+// TrackingCheckpoint.java
+package jazarifresnelsim.models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable snapshot of a tracking command generator: the setpoint, last
+ * ideal angle and angular rate of every mirror, the update clock, the
+ * command counters and the running tracking-error statistics. Stored in a
+ * {@link SimulationCheckpoint} so drive commands resume where they stopped.
+ */
+public final class TrackingCheckpoint {
+
+    private final double[] commanded;
+    private final double[] lastTarget;
+    private final double[] rate;
+    private final double lastTime;
+    private final double nextCrossingTime;
+    private final long commandCount;
+    private final long updateCount;
+    private final long errorCount;
+    private final double errorMean;
+    private final double errorSumOfSquares;
+    private final double errorMin;
+    private final double errorMax;
+
+    /**
+     * @param commanded Current setpoint per mirror (NaN before the first command); copied
+     * @param lastTarget Ideal angle per mirror at the last update; copied
+     * @param rate Angular rate per mirror in degrees per second; copied
+     */
+    public TrackingCheckpoint(double[] commanded, double[] lastTarget, double[] rate,
+            double lastTime, double nextCrossingTime, long commandCount, long updateCount,
+            long errorCount, double errorMean, double errorSumOfSquares, double errorMin, double errorMax) {
+        this.commanded = commanded.clone();
+        this.lastTarget = lastTarget.clone();
+        this.rate = rate.clone();
+        this.lastTime = lastTime;
+        this.nextCrossingTime = nextCrossingTime;
+        this.commandCount = commandCount;
+        this.updateCount = updateCount;
+        this.errorCount = errorCount;
+        this.errorMean = errorMean;
+        this.errorSumOfSquares = errorSumOfSquares;
+        this.errorMin = errorMin;
+        this.errorMax = errorMax;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(commanded.length);
+        for (int i = 0; i < commanded.length; i++) {
+            out.writeDouble(commanded[i]);
+            out.writeDouble(lastTarget[i]);
+            out.writeDouble(rate[i]);
+        }
+        out.writeDouble(lastTime);
+        out.writeDouble(nextCrossingTime);
+        out.writeLong(commandCount);
+        out.writeLong(updateCount);
+        out.writeLong(errorCount);
+        out.writeDouble(errorMean);
+        out.writeDouble(errorSumOfSquares);
+        out.writeDouble(errorMin);
+        out.writeDouble(errorMax);
+    }
+
+    static TrackingCheckpoint readFrom(DataInput in) throws IOException {
+        int mirrors = in.readInt();
+        if (mirrors < 0) {
+            throw new IOException("Invalid tracking mirror count: " + mirrors);
+        }
+        double[] commanded = new double[mirrors];
+        double[] lastTarget = new double[mirrors];
+        double[] rate = new double[mirrors];
+        for (int i = 0; i < mirrors; i++) {
+            commanded[i] = in.readDouble();
+            lastTarget[i] = in.readDouble();
+            rate[i] = in.readDouble();
+        }
+        return new TrackingCheckpoint(commanded, lastTarget, rate, in.readDouble(), in.readDouble(),
+                in.readLong(), in.readLong(), in.readLong(), in.readDouble(), in.readDouble(),
+                in.readDouble(), in.readDouble());
+    }
+
+    public int getMirrorCount() {
+        return commanded.length;
+    }
+
+    /**
+     * Copies the setpoints, last ideal angles and rates into the given arrays
+     */
+    public void getMirrorState(double[] commandedOut, double[] lastTargetOut, double[] rateOut) {
+        System.arraycopy(commanded, 0, commandedOut, 0, commanded.length);
+        System.arraycopy(lastTarget, 0, lastTargetOut, 0, lastTarget.length);
+        System.arraycopy(rate, 0, rateOut, 0, rate.length);
+    }
+
+    public double getLastTime() {
+        return lastTime;
+    }
+
+    public double getNextCrossingTime() {
+        return nextCrossingTime;
+    }
+
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public double getErrorMean() {
+        return errorMean;
+    }
+
+    public double getErrorSumOfSquares() {
+        return errorSumOfSquares;
+    }
+
+    public double getErrorMin() {
+        return errorMin;
+    }
+
+    public double getErrorMax() {
+        return errorMax;
+    }
+}
@@ -0,0 +1,77 @@
+// UncertaintyResult.java
+package jazarifresnelsim.models;
+
+/**
+ * Snapshot of a Monte Carlo uncertainty run: means and 95 % confidence
+ * half widths of the intercept factor and the yield over the scenarios
+ * evaluated so far. Immutable.
+ */
+public final class UncertaintyResult {
+
+    private final long scenarios;
+    private final double meanInterceptFactor;
+    private final double interceptFactorHalfWidth;
+    private final double interceptFactorStdDev;
+    private final double meanYield;          // Wh
+    private final double yieldHalfWidth;
+    private final double yieldStdDev;
+    private final boolean converged;
+
+    public UncertaintyResult(long scenarios, double meanInterceptFactor, double interceptFactorHalfWidth,
+            double interceptFactorStdDev, double meanYield, double yieldHalfWidth, double yieldStdDev,
+            boolean converged) {
+        this.scenarios = scenarios;
+        this.meanInterceptFactor = meanInterceptFactor;
+        this.interceptFactorHalfWidth = interceptFactorHalfWidth;
+        this.interceptFactorStdDev = interceptFactorStdDev;
+        this.meanYield = meanYield;
+        this.yieldHalfWidth = yieldHalfWidth;
+        this.yieldStdDev = yieldStdDev;
+        this.converged = converged;
+    }
+
+    public long getScenarios() {
+        return scenarios;
+    }
+
+    public double getMeanInterceptFactor() {
+        return meanInterceptFactor;
+    }
+
+    public double getInterceptFactorHalfWidth() {
+        return interceptFactorHalfWidth;
+    }
+
+    public double getInterceptFactorStdDev() {
+        return interceptFactorStdDev;
+    }
+
+    /**
+     * Mean energy reaching the receiver over the sun samples, in Wh
+     */
+    public double getMeanYield() {
+        return meanYield;
+    }
+
+    public double getYieldHalfWidth() {
+        return yieldHalfWidth;
+    }
+
+    public double getYieldStdDev() {
+        return yieldStdDev;
+    }
+
+    /**
+     * True if both intervals reached the requested relative tolerance
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UncertaintyResult[n=%d, intercept=%.4f±%.4f, yield=%.1f±%.1f Wh%s]",
+                scenarios, meanInterceptFactor, interceptFactorHalfWidth, meanYield, yieldHalfWidth,
+                converged ? ", converged" : "");
+    }
+}
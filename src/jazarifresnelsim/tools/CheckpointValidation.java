@@ -0,0 +1,129 @@
+// CheckpointValidation.java
+package jazarifresnelsim.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jazarifresnelsim.core.CheckpointManager;
+import jazarifresnelsim.core.SimulationEngine;
+import jazarifresnelsim.core.TrackingCommandGenerator;
+import jazarifresnelsim.domain.ReceiverThermalModel;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Checks that a run resumed from a checkpoint continues bit-identically to
+ * the uninterrupted run: clock, sun, mirror angles, receiver node
+ * temperatures and drive setpoints. The run couples the thermal model and
+ * the tracking command generator; every step is checkpointed through a
+ * file and resumed on a fresh engine at several points of the run.
+ * Exits with status 1 on the first difference.
+ * <pre>
+ * java -cp JazariFresnelSim.jar jazarifresnelsim.tools.CheckpointValidation [steps] [step minutes]
+ * </pre>
+ */
+public class CheckpointValidation {
+
+    private static final int THERMAL_NODES = 50;
+    private static final int RESUME_POINTS = 7;
+
+    public static void main(String[] args) throws IOException {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        double stepMinutes = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+
+        List<double[]> reference = new ArrayList<>(steps + 1);
+        Path file = Files.createTempFile("checkpoint-validation", ".bin");
+        try {
+            SimulationEngine engine = newEngine(steps, stepMinutes);
+            engine.reset();
+            reference.add(record(engine));
+            while (engine.step()) {
+                reference.add(record(engine));
+            }
+
+            int mismatches = 0;
+            for (int p = 1; p <= RESUME_POINTS; p++) {
+                int resumeAt = p * (reference.size() - 1) / (RESUME_POINTS + 1);
+                // Run up to the resume point, checkpoint, and continue on a fresh engine
+                SimulationEngine first = newEngine(steps, stepMinutes);
+                first.reset();
+                for (int s = 0; s < resumeAt; s++) {
+                    first.step();
+                }
+                CheckpointManager.save(first.createCheckpoint(), file);
+
+                SimulationEngine resumed = newEngine(steps, stepMinutes);
+                resumed.resumeFromCheckpoint(file);
+                int s = resumeAt;
+                boolean more = true;
+                while (more) {
+                    if (s >= reference.size() || !Arrays.equals(reference.get(s), record(resumed))) {
+                        System.out.printf("MISMATCH resuming at step %d: step %d differs%n", resumeAt, s);
+                        mismatches++;
+                        break;
+                    }
+                    more = resumed.step();
+                    s++;
+                }
+                if (s < reference.size() && mismatches == 0) {
+                    System.out.printf("MISMATCH resuming at step %d: ended after %d of %d steps%n",
+                            resumeAt, s, reference.size());
+                    mismatches++;
+                }
+            }
+            System.out.printf("%d steps, %d resume points, %d mismatches%n",
+                    reference.size(), RESUME_POINTS, mismatches);
+            if (mismatches > 0) {
+                System.exit(1);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static SimulationEngine newEngine(int steps, double stepMinutes) {
+        SimulationState state = new SimulationState();
+        SimulationEngine engine = new SimulationEngine(state);
+        LocalDateTime start = LocalDateTime.of(2024, 6, 21, 6, 0);
+        state.setTimeRange(start, start.plusSeconds(Math.round(steps * stepMinutes * 60)));
+        state.setSimulationStepMinutes(stepMinutes);
+        ReceiverThermalModel thermal = new ReceiverThermalModel(THERMAL_NODES, state.getReflectorLength(),
+                state.getReceiverDiameter());
+        engine.setThermalModel(thermal);
+        engine.setTrackingCommandGenerator(new TrackingCommandGenerator(state.getNumReflectors(), 0.2, 0.01));
+        return engine;
+    }
+
+    /**
+     * Everything a step produces, as raw values compared bit for bit
+     */
+    private static double[] record(SimulationEngine engine) {
+        SimulationState state = engine.getState();
+        ReceiverThermalModel thermal = engine.getThermalModel();
+        TrackingCommandGenerator commands = engine.getTrackingCommandGenerator();
+        int mirrors = state.getMirrorCount();
+        double[] values = new double[7 + 2 * mirrors + thermal.getNodeCount()];
+        double[] sun = new double[3];
+        state.getCurrentSolarPosition(sun);
+        double[] angles = state.getMirrorAngles(null);
+        int i = 0;
+        values[i++] = state.getCurrentTimeSeconds();
+        values[i++] = sun[0];
+        values[i++] = sun[1];
+        values[i++] = sun[2];
+        values[i++] = commands.getCommandCount();
+        values[i++] = commands.getMeanTrackingError();
+        values[i++] = commands.getNextCrossingTime();
+        for (int m = 0; m < mirrors; m++) {
+            values[i++] = angles[m];
+            values[i++] = commands.getCommandedAngle(m);
+        }
+        for (int n = 0; n < thermal.getNodeCount(); n++) {
+            values[i++] = thermal.getTemperature(n);
+        }
+        return values;
+    }
+}
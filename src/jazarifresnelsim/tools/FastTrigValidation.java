@@ -0,0 +1,89 @@
+// FastTrigValidation.java
+package jazarifresnelsim.tools;
+
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.OpticsKernels;
+import static jazarifresnelsim.domain.Constants.*;
+
+/**
+ * Validates the fast-math kernel against the exact scalar path over a full
+ * year of one-minute samples, and reports the throughput of both.
+ * Exits with status 1 if any angle error reaches the documented bound.
+ * <pre>
+ * java -cp JazariFresnelSim.jar jazarifresnelsim.tools.FastTrigValidation [latitude] [longitude] [mirrors]
+ * </pre>
+ */
+public class FastTrigValidation {
+
+    private static final double MAX_ANGLE_ERROR = 0.001; // degrees
+
+    public static void main(String[] args) {
+        double latitudeDegrees = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_LATITUDE;
+        double longitudeDegrees = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_LONGITUDE;
+        int mirrors = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        IOpticsKernel exact = OpticsKernels.scalar();
+        IOpticsKernel fast = OpticsKernels.fast();
+
+        int samples = 365 * 24 * 60;
+        int[] dayOfYear = new int[samples];
+        double[] hour = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            dayOfYear[i] = i / 1440 + 1;
+            hour[i] = (i % 1440) / 60.0;
+        }
+        double latitude = Math.toRadians(latitudeDegrees);
+        double longitude = Math.toRadians(longitudeDegrees);
+        double[][] exactSun = new double[3][samples];
+        double[][] fastSun = new double[3][samples];
+
+        double exactNs = OpticsKernelBenchmark.time(5, () -> exact.calculateSolarPositions(latitude, longitude,
+                dayOfYear, hour, exactSun[0], exactSun[1], exactSun[2], samples));
+        double fastNs = OpticsKernelBenchmark.time(5, () -> fast.calculateSolarPositions(latitude, longitude,
+                dayOfYear, hour, fastSun[0], fastSun[1], fastSun[2], samples));
+
+        // Compare daytime samples only; azimuth is meaningless at the zenith and intensity at night
+        double maxAltitudeError = 0;
+        double maxAzimuthError = 0;
+        double maxIntensityError = 0;
+        double maxMirrorError = 0;
+        int daytimeSamples = 0;
+        double[] mirrorX = new double[mirrors];
+        for (int m = 0; m < mirrors; m++) {
+            mirrorX[m] = (m - mirrors / 2 + 0.5) * REFLECTOR_SPACING;
+        }
+        double[] exactAngles = new double[mirrors];
+        double[] fastAngles = new double[mirrors];
+
+        for (int i = 0; i < samples; i++) {
+            if (exactSun[0][i] <= 0) {
+                continue;
+            }
+            daytimeSamples++;
+            maxAltitudeError = Math.max(maxAltitudeError, Math.abs(exactSun[0][i] - fastSun[0][i]));
+            double azimuthError = Math.abs(exactSun[1][i] - fastSun[1][i]);
+            maxAzimuthError = Math.max(maxAzimuthError, Math.min(azimuthError, 360 - azimuthError));
+            maxIntensityError = Math.max(maxIntensityError, Math.abs(exactSun[2][i] - fastSun[2][i]));
+
+            exact.calculateMirrorAngles(exactSun[0][i], exactSun[1][i], mirrorX,
+                    SUPPORT_HEIGHT + 2, RECEIVER_HEIGHT, exactAngles, mirrors);
+            fast.calculateMirrorAngles(exactSun[0][i], exactSun[1][i], mirrorX,
+                    SUPPORT_HEIGHT + 2, RECEIVER_HEIGHT, fastAngles, mirrors);
+            maxMirrorError = Math.max(maxMirrorError, OpticsKernelBenchmark.maxDifference(exactAngles, fastAngles));
+        }
+
+        System.out.printf("Site %.4f, %.4f: %d daytime samples, %d mirrors%n",
+                latitudeDegrees, longitudeDegrees, daytimeSamples, mirrors);
+        System.out.printf("Solar positions: exact %.1f ns/sample, fast %.1f ns/sample, speedup %.2fx%n",
+                exactNs / samples, fastNs / samples, exactNs / fastNs);
+        System.out.printf("Max error: altitude %.2e°, azimuth %.2e°, mirror angle %.2e°, intensity %.2e W/m²%n",
+                maxAltitudeError, maxAzimuthError, maxMirrorError, maxIntensityError);
+
+        double worst = Math.max(maxAltitudeError, Math.max(maxAzimuthError, maxMirrorError));
+        if (worst >= MAX_ANGLE_ERROR) {
+            System.out.printf("FAILED: %.2e° exceeds the %.3f° bound%n", worst, MAX_ANGLE_ERROR);
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+}
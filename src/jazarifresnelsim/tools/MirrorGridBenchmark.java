@@ -0,0 +1,169 @@
+// MirrorGridBenchmark.java
+package jazarifresnelsim.tools;
+
+import java.util.Arrays;
+import java.util.Random;
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.MirrorGridIndex;
+import jazarifresnelsim.domain.OpticsKernels;
+import jazarifresnelsim.domain.ReceiverRayTracer;
+import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.models.FieldLayout;
+import static jazarifresnelsim.domain.Constants.*;
+
+/**
+ * Shading and blocking rays in a large multi-row plant: compares the grid
+ * index with testing every mirror, checks that both find the same mirrors,
+ * and times an incremental index update against a rebuild over one day of
+ * sun positions. Exits with status 1 on any mismatch.
+ * <pre>
+ * java -cp JazariFresnelSim.jar jazarifresnelsim.tools.MirrorGridBenchmark [receivers] [modules] [mirrorsPerReceiver] [rays]
+ * </pre>
+ */
+public class MirrorGridBenchmark {
+
+    public static void main(String[] args) {
+        int receivers = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int modules = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int perReceiver = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int rays = args.length > 3 ? Integer.parseInt(args[3]) : 200_000;
+
+        // Receivers side by side in X, modules one after another along Y
+        int mirrors = receivers * modules * perReceiver;
+        double loopWidth = perReceiver * REFLECTOR_SPACING + 2 * REFLECTOR_SPACING;
+        double[] x = new double[mirrors];
+        double[] y = new double[mirrors];
+        double[] height = new double[mirrors];
+        double[] width = new double[mirrors];
+        int[] receiver = new int[mirrors];
+        double[] receiverX = new double[receivers];
+        double[] receiverHeight = new double[receivers];
+        int i = 0;
+        for (int r = 0; r < receivers; r++) {
+            receiverX[r] = r * loopWidth;
+            receiverHeight[r] = RECEIVER_HEIGHT;
+            for (int m = 0; m < modules; m++) {
+                for (int k = 0; k < perReceiver; k++) {
+                    x[i] = receiverX[r] + FieldLayout.symmetricOffset(k, perReceiver, REFLECTOR_SPACING);
+                    y[i] = m * REFLECTOR_LENGTH * 1.05;
+                    height[i] = SUPPORT_HEIGHT + 2;
+                    width[i] = REFLECTOR_WIDTH;
+                    receiver[i] = r;
+                    i++;
+                }
+            }
+        }
+        FieldLayout layout = new FieldLayout(x, y, height, width, receiver, receiverX, receiverHeight);
+        System.out.printf("Field: %d mirrors (%d receivers x %d modules x %d)%n",
+                mirrors, receivers, modules, perReceiver);
+
+        IOpticsKernel kernel = OpticsKernels.getDefault();
+        SolarCalculator calculator = SolarCalculator.forSite(DEFAULT_LATITUDE, DEFAULT_LONGITUDE);
+        MirrorGridIndex index = new MirrorGridIndex(layout, REFLECTOR_LENGTH);
+        System.out.printf("Grid: %d x %d cells, %.2f mirrors per used cell%n",
+                index.getColumns(), index.getRows(), index.getMeanOccupancy());
+
+        // Index maintenance over one day, every 5 minutes
+        double[] angles = new double[mirrors];
+        double[] sun = new double[3];
+        long updateNs = 0;
+        long rebuildNs = 0;
+        long moved = 0;
+        int steps = 0;
+        for (int minute = 6 * 60; minute <= 18 * 60; minute += 5) {
+            calculator.calculateSolarPosition(172, minute / 60.0, sun);
+            kernel.calculateMirrorAngles(sun[0], sun[1], layout.getTargetX(), layout.getTargetZ(), angles, mirrors);
+            long start = System.nanoTime();
+            moved += index.update(angles);
+            updateNs += System.nanoTime() - start;
+            start = System.nanoTime();
+            new MirrorGridIndex(layout, REFLECTOR_LENGTH).update(angles);
+            rebuildNs += System.nanoTime() - start;
+            steps++;
+        }
+        System.out.printf("Update: %.3f ms per step (%.1f mirrors moved), rebuild: %.3f ms%n",
+                updateNs / 1e6 / steps, (double) moved / steps, rebuildNs / 1e6 / steps);
+
+        // Morning sun: long shadows, lots of shading and blocking
+        calculator.calculateSolarPosition(172, 8, sun);
+        kernel.calculateMirrorAngles(sun[0], sun[1], layout.getTargetX(), layout.getTargetZ(), angles, mirrors);
+        index.update(angles);
+        double[] sunVector = new double[3];
+        ReceiverRayTracer.sunVector(sun[0], sun[1], sunVector);
+
+        // Ray origins on random mirror points; shading rays towards the sun,
+        // blocking rays along the reflection
+        Random random = new Random(42);
+        double[][] origin = new double[3][rays];
+        double[][] reflected = new double[3][rays];
+        int[] source = new int[rays];
+        for (int r = 0; r < rays; r++) {
+            int m = random.nextInt(mirrors);
+            double angle = Math.toRadians(angles[m]);
+            double u = (random.nextDouble() - 0.5) * REFLECTOR_WIDTH;
+            double v = (random.nextDouble() - 0.5) * REFLECTOR_LENGTH;
+            origin[0][r] = x[m] + u * Math.cos(angle);
+            origin[1][r] = y[m] + v;
+            origin[2][r] = height[m] - u * Math.sin(angle);
+            double nx = Math.sin(angle);
+            double nz = Math.cos(angle);
+            double dot = sunVector[0] * nx + sunVector[2] * nz;
+            reflected[0][r] = 2 * dot * nx - sunVector[0];
+            reflected[1][r] = -sunVector[1];
+            reflected[2][r] = 2 * dot * nz - sunVector[2];
+            source[r] = m;
+        }
+
+        int[] gridHits = new int[rays];
+        int[] bruteHits = new int[rays];
+        int bruteRays = Math.min(rays, 20_000);
+        double[] hit = new double[4];
+        long start = System.nanoTime();
+        int shaded = 0;
+        for (int r = 0; r < rays; r++) {
+            if (index.occluded(origin[0][r], origin[1][r], origin[2][r], sunVector[0], sunVector[1], sunVector[2],
+                    source[r], Double.POSITIVE_INFINITY)) {
+                shaded++;
+            }
+            gridHits[r] = index.intersect(origin[0][r], origin[1][r], origin[2][r],
+                    reflected[0][r], reflected[1][r], reflected[2][r], source[r], Double.POSITIVE_INFINITY, hit);
+        }
+        double gridNs = (double) (System.nanoTime() - start) / rays;
+        start = System.nanoTime();
+        int bruteShaded = 0;
+        for (int r = 0; r < bruteRays; r++) {
+            if (index.intersectBruteForce(origin[0][r], origin[1][r], origin[2][r],
+                    sunVector[0], sunVector[1], sunVector[2], source[r], Double.POSITIVE_INFINITY, null) >= 0) {
+                bruteShaded++;
+            }
+            bruteHits[r] = index.intersectBruteForce(origin[0][r], origin[1][r], origin[2][r],
+                    reflected[0][r], reflected[1][r], reflected[2][r], source[r], Double.POSITIVE_INFINITY, hit);
+        }
+        double bruteNs = (double) (System.nanoTime() - start) / bruteRays;
+
+        int gridShadedPrefix = 0;
+        for (int r = 0; r < bruteRays; r++) {
+            if (index.occluded(origin[0][r], origin[1][r], origin[2][r], sunVector[0], sunVector[1], sunVector[2],
+                    source[r], Double.POSITIVE_INFINITY)) {
+                gridShadedPrefix++;
+            }
+        }
+        int mismatches = 0;
+        for (int r = 0; r < bruteRays; r++) {
+            if (gridHits[r] != bruteHits[r]) {
+                mismatches++;
+            }
+        }
+        mismatches += Math.abs(gridShadedPrefix - bruteShaded);
+        long blocked = Arrays.stream(gridHits).filter(h -> h >= 0).count();
+
+        System.out.printf("Rays: %d shading + %d blocking, %.1f%% shaded, %.1f%% blocked%n",
+                rays, rays, 100.0 * shaded / rays, 100.0 * blocked / rays);
+        System.out.printf("Grid: %.0f ns per ray pair, all mirrors: %.0f ns, speedup %.0fx%n",
+                gridNs, bruteNs, bruteNs / gridNs);
+        System.out.printf("Mismatches against all mirrors (%d rays): %d%n", bruteRays, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+}
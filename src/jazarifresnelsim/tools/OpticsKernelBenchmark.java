@@ -0,0 +1,103 @@
+// OpticsKernelBenchmark.java
+package jazarifresnelsim.tools;
+
+import jazarifresnelsim.domain.IOpticsKernel;
+import jazarifresnelsim.domain.OpticsKernels;
+import static jazarifresnelsim.domain.Constants.*;
+
+/**
+ * Compares the scalar and SIMD optics kernels: throughput of the batch
+ * mirror-angle and solar-position kernels and the largest deviation between them.
+ * <p>
+ * Run with {@code --add-modules jdk.incubator.vector}; without it both columns
+ * use the scalar kernel.
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp JazariFresnelSim.jar \
+ *     jazarifresnelsim.tools.OpticsKernelBenchmark [mirrors] [rounds]
+ * </pre>
+ */
+public class OpticsKernelBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int mirrors = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        IOpticsKernel scalar = OpticsKernels.scalar();
+        IOpticsKernel vector = OpticsKernels.vector();
+        System.out.println("Kernels: " + scalar.getName() + " vs " + vector.getName());
+
+        // One sample per minute for a whole year
+        int samples = 365 * 24 * 60;
+        int[] dayOfYear = new int[samples];
+        double[] hour = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            dayOfYear[i] = i / 1440 + 1;
+            hour[i] = (i % 1440) / 60.0;
+        }
+        double latitude = Math.toRadians(DEFAULT_LATITUDE);
+        double longitude = Math.toRadians(DEFAULT_LONGITUDE);
+        double[][] scalarSun = new double[3][samples];
+        double[][] vectorSun = new double[3][samples];
+
+        double scalarSolarNs = time(rounds, () -> scalar.calculateSolarPositions(latitude, longitude,
+                dayOfYear, hour, scalarSun[0], scalarSun[1], scalarSun[2], samples));
+        double vectorSolarNs = time(rounds, () -> vector.calculateSolarPositions(latitude, longitude,
+                dayOfYear, hour, vectorSun[0], vectorSun[1], vectorSun[2], samples));
+
+        double[] mirrorX = new double[mirrors];
+        for (int i = 0; i < mirrors; i++) {
+            mirrorX[i] = (i - mirrors / 2 + 0.5) * REFLECTOR_SPACING;
+        }
+        double[] scalarAngles = new double[mirrors];
+        double[] vectorAngles = new double[mirrors];
+        double sunAltitude = 42.7;
+        double sunAzimuth = 160.3;
+
+        double scalarMirrorNs = time(rounds, () -> scalar.calculateMirrorAngles(sunAltitude, sunAzimuth,
+                mirrorX, SUPPORT_HEIGHT + 2, RECEIVER_HEIGHT, scalarAngles, mirrors));
+        double vectorMirrorNs = time(rounds, () -> vector.calculateMirrorAngles(sunAltitude, sunAzimuth,
+                mirrorX, SUPPORT_HEIGHT + 2, RECEIVER_HEIGHT, vectorAngles, mirrors));
+
+        System.out.printf("Solar positions (%d samples): scalar %.1f ns/sample, vector %.1f ns/sample, speedup %.2fx%n",
+                samples, scalarSolarNs / samples, vectorSolarNs / samples, scalarSolarNs / vectorSolarNs);
+        System.out.printf("  max |diff| altitude %.3e°, azimuth %.3e°, intensity %.3e W/m²%n",
+                maxDifference(scalarSun[0], vectorSun[0]), maxDifference(scalarSun[1], vectorSun[1]),
+                maxDifference(scalarSun[2], vectorSun[2]));
+        System.out.printf("Mirror angles (%d mirrors): scalar %.1f ns/mirror, vector %.1f ns/mirror, speedup %.2fx%n",
+                mirrors, scalarMirrorNs / mirrors, vectorMirrorNs / mirrors, scalarMirrorNs / vectorMirrorNs);
+        System.out.printf("  max |diff| angle %.3e°%n", maxDifference(scalarAngles, vectorAngles));
+    }
+
+    /**
+     * Average wall time of one run in nanoseconds, after warm-up
+     */
+    static double time(int rounds, Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            task.run();
+        }
+        return (double) (System.nanoTime() - start) / rounds;
+    }
+
+    /**
+     * Largest absolute difference, ignoring samples where both are NaN
+     */
+    static double maxDifference(double[] expected, double[] actual) {
+        double max = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (Double.isNaN(expected[i]) && Double.isNaN(actual[i])) {
+                continue;
+            }
+            double diff = Math.abs(expected[i] - actual[i]);
+            if (!(diff <= max)) {
+                max = diff;
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,148 @@
+// SetpointLoadTest.java
+package jazarifresnelsim.tools;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import jazarifresnelsim.core.SetpointServer;
+import jazarifresnelsim.core.SimulationEngine;
+import jazarifresnelsim.models.SimulationState;
+
+/**
+ * Latency test of {@link SetpointServer} with many mock mirror controllers.
+ * <p>
+ * Every client opens its own connection and polls a slice of the field at
+ * the current bench time (which runs 1000x faster than wall time) every
+ * interval, waiting for each answer, like a controller updating its drives.
+ * An interval of 0 polls back to back. Without a port an embedded server is
+ * started on a free port.
+ * <pre>
+ * java -cp JazariFresnelSim.jar jazarifresnelsim.tools.SetpointLoadTest \
+ *     [clients] [requests] [mirrors] [intervalMicros] [port]
+ * </pre>
+ */
+public class SetpointLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int mirrors = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+        long intervalNanos = (args.length > 3 ? Long.parseLong(args[3]) : 10_000) * 1000;
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+        SetpointServer embedded = null;
+        if (port == 0) {
+            SimulationState state = new SimulationState();
+            state.setNumReflectors(mirrors);
+            embedded = new SetpointServer(new SimulationEngine(state), 0);
+            embedded.start();
+            port = embedded.getPort();
+        }
+
+        int slice = Math.max(1, mirrors / clients);
+        long[][] latencies = new long[clients][requests];
+        CountDownLatch ready = new CountDownLatch(clients);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        double benchStart = LocalDateTime.of(2025, 6, 21, 8, 0).toEpochSecond(ZoneOffset.UTC);
+        long[] startNanos = new long[1];
+
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            final int serverPort = port;
+            Thread thread = new Thread(() -> {
+                try {
+                    runClient(serverPort, (client * slice) % mirrors, Math.min(slice, mirrors),
+                            benchStart, startNanos, intervalNanos, latencies[client], ready, go);
+                } catch (IOException | InterruptedException e) {
+                    System.out.println("Error in client " + client + ": " + e.getMessage());
+                }
+            }, "mock-controller-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        startNanos[0] = start;
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // The first tenth of every client's requests warms up the JIT and is not reported
+        int warmup = requests / 10;
+        long[] all = Arrays.stream(latencies).flatMapToLong(l -> Arrays.stream(l, warmup, l.length))
+                .filter(l -> l > 0).sorted().toArray();
+        System.out.printf("clients=%d, requests=%d, mirrors/request=%d, interval=%d us, throughput=%.0f req/s%n",
+                clients, all.length, Math.min(slice, mirrors), intervalNanos / 1000, all.length / seconds);
+        System.out.printf("latency us: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99),
+                percentile(all, 0.999), all.length > 0 ? all[all.length - 1] / 1e3 : Double.NaN);
+        if (embedded != null) {
+            System.out.printf("server: %d requests, %.1f %% cache hits%n", embedded.getRequestCount(),
+                    100.0 * embedded.getCacheHits() / Math.max(1, embedded.getRequestCount()));
+            embedded.close();
+        }
+    }
+
+    private static void runClient(int port, int first, int count, double benchStart, long[] startNanos,
+            long intervalNanos, long[] latencies, CountDownLatch ready, CountDownLatch go)
+            throws IOException, InterruptedException {
+        try (SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer request = ByteBuffer.allocateDirect(SetpointServer.REQUEST_SIZE);
+            ByteBuffer response = ByteBuffer.allocateDirect(SetpointServer.RESPONSE_HEADER_SIZE + 4 * count);
+            ready.countDown();
+            go.await();
+            // Spread the first polls over one interval
+            long next = startNanos[0] + ThreadLocalRandom.current().nextLong(Math.max(1, intervalNanos));
+
+            for (int r = 0; r < latencies.length; r++) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                next += intervalNanos;
+                long sent = System.nanoTime();
+                double benchTime = benchStart + (sent - startNanos[0]) / 1_000_000; // whole bench seconds
+                request.clear();
+                request.putInt(r).putDouble(benchTime).putInt(first).putInt(count).flip();
+                while (request.hasRemaining()) {
+                    channel.write(request);
+                }
+                response.clear();
+                while (response.hasRemaining()) {
+                    if (channel.read(response) < 0) {
+                        throw new IOException("Server closed the connection");
+                    }
+                }
+                latencies[r] = System.nanoTime() - sent;
+                if (response.getInt(0) != r || response.getInt(4) != count) {
+                    throw new IOException("Unexpected response " + response.getInt(0) + " to request " + r);
+                }
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+}
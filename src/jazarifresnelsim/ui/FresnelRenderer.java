@@ -1,18 +1,45 @@
 package jazarifresnelsim.ui;
 
+import jazarifresnelsim.domain.EpochTime;
+import jazarifresnelsim.domain.OpticsKernels;
+import jazarifresnelsim.domain.SolarCalculator;
+import jazarifresnelsim.models.FieldLayout;
+import jazarifresnelsim.models.FluxMap;
 import jazarifresnelsim.models.SimulationState;
 import jazarifresnelsim.models.MirrorPosition;
 import jazarifresnelsim.models.SolarPosition;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import processing.core.*;
 import static jazarifresnelsim.domain.Constants.*;
 
 public class FresnelRenderer implements IRenderer {
 
+    // Above this many mirrors labels, normals and most rays are left out
+    private static final int DETAIL_LIMIT = 200;
+    private static final float SUN_DISTANCE = 1000;
+    private static final int SUN_PATH_SAMPLES_PER_HOUR = 30;
+    private static final int RAY_FAN_STRIDE = SUN_PATH_SAMPLES_PER_HOUR / 2; // one ray per half hour
+
     private final PApplet sketch;
     private final SimulationState state;
     private PShape receiverTube;
-    private PShape[] reflectors;
+    private final Map<Double, PShape> reflectors = new HashMap<>(); // one shape per mirror width
+    private FieldLayout spanLayout;     // layout the receiver spans were computed for
+    private float[] receiverSpanCenter; // Y center of the mirrors of each receiver
+    private float[] receiverSpanScale;  // their Y extent over the tube length
+    private PShape fluxOverlay;
+    private FluxMap fluxOverlayMap; // map the overlay was built from
+    private SolarPosition sunVectorSource; // position the sun vector was computed for
+    private final float[] sunVector = new float[3]; // unit vector towards the sun
+    private PShape sunPath;
+    private PShape rayFan;
+    private long sunPathEpochDay = Long.MIN_VALUE; // epoch day and site the path was built for
+    private double sunPathLatitude = Double.NaN;
+    private double sunPathLongitude = Double.NaN;
+    private boolean rayFanVisible;
 
     public FresnelRenderer(PApplet sketch, SimulationState state) {
         this.sketch = sketch;
@@ -59,15 +86,18 @@ public class FresnelRenderer implements IRenderer {
         }
         supports.endShape();
         receiverTube.addChild(supports);
+    }
 
-        // Create reflector mirrors
-        reflectors = new PShape[state.getNumReflectors()];
-        for (int i = 0; i < state.getNumReflectors(); i++) {
-            reflectors[i] = createReflectorShape();
+    private PShape reflectorShape(double width) {
+        PShape shape = reflectors.get(width);
+        if (shape == null) {
+            shape = createReflectorShape((float) width);
+            reflectors.put(width, shape);
         }
+        return shape;
     }
 
-    private PShape createReflectorShape() {
+    private PShape createReflectorShape(float width) {
         PShape reflector = sketch.createShape(PApplet.GROUP);
 
         // Ön yüz (ayna yüzeyi)
@@ -80,10 +110,10 @@ public class FresnelRenderer implements IRenderer {
         frontFace.stroke(200);
         frontFace.strokeWeight(1);
         frontFace.normal(0, 0, 1);
-        frontFace.vertex(-state.getReflectorWidth() / 2, -state.getReflectorLength() / 2, 0);
-        frontFace.vertex(state.getReflectorWidth() / 2, -state.getReflectorLength() / 2, 0);
-        frontFace.vertex(state.getReflectorWidth() / 2, state.getReflectorLength() / 2, 0);
-        frontFace.vertex(-state.getReflectorWidth() / 2, state.getReflectorLength() / 2, 0);
+        frontFace.vertex(-width / 2, -state.getReflectorLength() / 2, 0);
+        frontFace.vertex(width / 2, -state.getReflectorLength() / 2, 0);
+        frontFace.vertex(width / 2, state.getReflectorLength() / 2, 0);
+        frontFace.vertex(-width / 2, state.getReflectorLength() / 2, 0);
         frontFace.endShape();
 
         // Arka yüz
@@ -93,10 +123,10 @@ public class FresnelRenderer implements IRenderer {
         backFace.stroke(150);
         backFace.strokeWeight(1);
         backFace.normal(0, 0, -1);
-        backFace.vertex(-state.getReflectorWidth() / 2, state.getReflectorLength() / 2, -1);
-        backFace.vertex(state.getReflectorWidth() / 2, state.getReflectorLength() / 2, -1);
-        backFace.vertex(state.getReflectorWidth() / 2, -state.getReflectorLength() / 2, -1);
-        backFace.vertex(-state.getReflectorWidth() / 2, -state.getReflectorLength() / 2, -1);
+        backFace.vertex(-width / 2, state.getReflectorLength() / 2, -1);
+        backFace.vertex(width / 2, state.getReflectorLength() / 2, -1);
+        backFace.vertex(width / 2, -state.getReflectorLength() / 2, -1);
+        backFace.vertex(-width / 2, -state.getReflectorLength() / 2, -1);
         backFace.endShape();
 
         // İki yüzü grup olarak birleştir
@@ -106,13 +136,26 @@ public class FresnelRenderer implements IRenderer {
         return reflector;
     }
 
+    /**
+     * Shows the incident rays of the whole day, every half hour, converging
+     * on the field center
+     */
+    public void setRayFanVisible(boolean visible) {
+        this.rayFanVisible = visible;
+    }
+
+    public boolean isRayFanVisible() {
+        return rayFanVisible;
+    }
+
     @Override
     public void render() {
         sketch.pushMatrix();  // Ana çizim transformasyonu
 
         SolarPosition sunPos = state.getCurrentSolarPosition();
         if (sunPos != null) {
-            setupLighting(sunPos);
+            updateSunVector(sunPos);
+            setupLighting();
         }
 
         // Önce grid ve compass
@@ -129,23 +172,33 @@ public class FresnelRenderer implements IRenderer {
         if (sunPos != null) {
             // En son aynalar ve güneş ışınları
             drawReflectors(state.getMirrorPositions(), sunPos);
-            drawSunAndRays(sunPos);
+            drawSunAndRays();
         }
+        drawSunPath();
 
         sketch.popMatrix();
     }
 
-    private void setupLighting(SolarPosition sunPos) {
-        sketch.lights();
+    /**
+     * Recomputes the sun vector only when the state holds a new position
+     */
+    private void updateSunVector(SolarPosition sunPos) {
+        if (sunPos == sunVectorSource) {
+            return;
+        }
+        float azimuth = PApplet.radians((float) sunPos.getAzimuthAngle());
+        float altitude = PApplet.radians((float) sunPos.getAltitudeAngle());
+        sunVector[0] = -PApplet.cos(altitude) * PApplet.sin(azimuth);
+        sunVector[1] = PApplet.cos(altitude) * PApplet.cos(azimuth);
+        sunVector[2] = PApplet.sin(altitude);
+        sunVectorSource = sunPos;
+    }
 
-        float azimuth = sketch.radians((float) sunPos.getAzimuthAngle());
-        float altitude = sketch.radians((float) sunPos.getAltitudeAngle());
+    private void setupLighting() {
+        sketch.lights();
 
         // Ana güneş ışığı
-        sketch.directionalLight(255, 255, 200,
-                -sketch.cos(altitude) * sketch.sin(azimuth),
-                -sketch.cos(altitude) * sketch.cos(azimuth),
-                sketch.sin(altitude));
+        sketch.directionalLight(255, 255, 200, sunVector[0], -sunVector[1], sunVector[2]);
 
         // Yardımcı ışık kaynağı (fill light)
         sketch.pointLight(100, 100, 100, // Işık rengi
@@ -180,44 +233,152 @@ public class FresnelRenderer implements IRenderer {
     }
 
     private void drawReceiverTube() {
-        sketch.pushMatrix();
-        // Referans noktasını receiver'ın alt noktası yerine orta noktası yapalım
-        float height = state.getReceiverHeight();
-        sketch.translate(0, 0, height);
-        sketch.shape(receiverTube);
-        sketch.popMatrix();
+        FieldLayout layout = state.getFieldLayout();
+        updateReceiverSpans(layout);
+        for (int r = 0; r < layout.getReceiverCount(); r++) {
+            sketch.pushMatrix();
+            // Referans noktasını receiver'ın alt noktası yerine orta noktası yapalım
+            float height = (float) layout.getReceiverHeight(r);
+            sketch.translate((float) layout.getReceiverX(r), receiverSpanCenter[r], height);
+            sketch.pushMatrix();
+            sketch.scale(1, receiverSpanScale[r], 1);
+            sketch.shape(receiverTube);
+            sketch.popMatrix();
+            if (layout.getReceiverCount() == 1) {
+                drawFluxOverlay(); // the map sums all receivers, so it is only shown for one
+            }
+            sketch.popMatrix();
+        }
+    }
+
+    /**
+     * Stretches each tube over the mirrors aiming at it
+     */
+    private void updateReceiverSpans(FieldLayout layout) {
+        if (layout == spanLayout) {
+            return;
+        }
+        int receivers = layout.getReceiverCount();
+        float[] min = new float[receivers];
+        float[] max = new float[receivers];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < layout.getMirrorCount(); i++) {
+            int r = layout.getReceiver(i);
+            min[r] = Math.min(min[r], (float) layout.getY(i));
+            max[r] = Math.max(max[r], (float) layout.getY(i));
+        }
+        float length = state.getReflectorLength();
+        receiverSpanCenter = new float[receivers];
+        receiverSpanScale = new float[receivers];
+        for (int r = 0; r < receivers; r++) {
+            boolean used = min[r] <= max[r];
+            receiverSpanCenter[r] = used ? (min[r] + max[r]) / 2 : 0;
+            receiverSpanScale[r] = used ? (max[r] - min[r] + length) / length : 1;
+        }
+        spanLayout = layout;
+    }
+
+    /**
+     * Heat overlay of the receiver flux map, drawn just outside the tube.
+     * The shape is rebuilt only when the state holds a new map.
+     */
+    private void drawFluxOverlay() {
+        FluxMap map = state.getFluxMap();
+        if (map == null || map.getTotalPower() <= 0) {
+            return;
+        }
+        if (map != fluxOverlayMap) {
+            fluxOverlay = createFluxOverlay(map);
+            fluxOverlayMap = map;
+        }
+        sketch.shape(fluxOverlay);
+    }
+
+    private PShape createFluxOverlay(FluxMap map) {
+        int axialBins = map.getAxialBins();
+        int angularBins = map.getAngularBins();
+        float radius = (float) map.getReceiverRadius() + 0.3f;
+        float length = (float) map.getReceiverLength();
+        double peak = map.getPeakFluxDensity();
+
+        PShape overlay = sketch.createShape();
+        overlay.beginShape(PApplet.QUADS);
+        overlay.noStroke();
+        for (int a = 0; a < axialBins; a++) {
+            float y0 = -length / 2 + length * a / axialBins;
+            float y1 = -length / 2 + length * (a + 1) / axialBins;
+            for (int b = 0; b < angularBins; b++) {
+                double flux = map.getFluxDensity(a, b);
+                if (flux <= 0) {
+                    continue;
+                }
+                overlay.fill(heatColor((float) (flux / peak)));
+                float phi0 = PApplet.TWO_PI * b / angularBins;
+                float phi1 = PApplet.TWO_PI * (b + 1) / angularBins;
+                float x0 = PApplet.cos(phi0) * radius, z0 = PApplet.sin(phi0) * radius;
+                float x1 = PApplet.cos(phi1) * radius, z1 = PApplet.sin(phi1) * radius;
+                overlay.vertex(x0, y0, z0);
+                overlay.vertex(x1, y0, z1);
+                overlay.vertex(x1, y1, z1);
+                overlay.vertex(x0, y1, z0);
+            }
+        }
+        overlay.endShape();
+        return overlay;
+    }
+
+    /**
+     * Blue (low) to yellow to red (peak) ramp
+     */
+    private int heatColor(float t) {
+        if (t < 0.5f) {
+            return sketch.color(255 * t * 2, 255 * t * 2, 255 * (1 - t * 2));
+        }
+        return sketch.color(255, 255 * (1 - t) * 2, 0);
     }
 
     private void drawReflectors(List<MirrorPosition> positions, SolarPosition sunPos) {
+        FieldLayout layout = state.getFieldLayout();
+        boolean details = positions.size() <= DETAIL_LIMIT;
         for (MirrorPosition pos : positions) {
+            int index = pos.getMirrorIndex();
+            if (index >= layout.getMirrorCount()) {
+                continue; // layout replaced since the last step
+            }
+            float supportHeight = (float) pos.getHeight() - 2;
             sketch.pushMatrix();
             // Ana pozisyonlama - aynaları yukarı kaldır
-            sketch.translate((float) pos.getXOffset(), 0, SUPPORT_HEIGHT + 2);
+            sketch.translate((float) pos.getXOffset(), (float) layout.getY(index), (float) pos.getHeight());
 
             // Tabureyi (support) çiz - ama tabure için aşağı in
             sketch.pushMatrix();
-            sketch.translate(0, 0, -SUPPORT_HEIGHT);  // Tabure için aşağı git
-            drawSupport();
+            sketch.translate(0, 0, -supportHeight);  // Tabure için aşağı git
+            drawSupport(supportHeight, (float) layout.getWidth(index));
             sketch.popMatrix();
 
             // Aynayı çiz
             sketch.pushMatrix();
             sketch.rotateY(sketch.radians((float) pos.getRotationAngle()));
 
-            // Normal vektör
-            sketch.stroke(255, 0, 0);
-            sketch.strokeWeight(2);
-            float dashLength = 5;
-            for (float j = 0; j < 100; j += dashLength * 2) {
-                sketch.line(0, 0, j, 0, 0, j + dashLength);
+            if (details) {
+                // Normal vektör
+                sketch.stroke(255, 0, 0);
+                sketch.strokeWeight(2);
+                float dashLength = 5;
+                for (float j = 0; j < 100; j += dashLength * 2) {
+                    sketch.line(0, 0, j, 0, 0, j + dashLength);
+                }
             }
 
             // Aynayı çiz
-            sketch.shape(reflectors[pos.getMirrorIndex()]);
+            sketch.shape(reflectorShape(layout.getWidth(index)));
             sketch.popMatrix();
 
-            // Açı etiketini çiz (ayna dönüşünden bağımsız)
-            drawMirrorAngleLabel(pos.getRotationAngle());
+            if (details) {
+                // Açı etiketini çiz (ayna dönüşünden bağımsız)
+                drawMirrorAngleLabel(pos.getRotationAngle());
+            }
 
             sketch.popMatrix();
         }
@@ -248,36 +409,32 @@ public class FresnelRenderer implements IRenderer {
         sketch.popMatrix();
     }
 
-    private void drawSupport() {
+    private void drawSupport(float supportHeight, float width) {
         // Support frame
         sketch.pushMatrix();
         sketch.fill(50);
         // Ana gövde
-        sketch.translate(0, 0, SUPPORT_HEIGHT / 2);
-        sketch.box(REFLECTOR_WIDTH * 0.9f, REFLECTOR_LENGTH, 5);
+        sketch.translate(0, 0, supportHeight / 2);
+        sketch.box(width * 0.9f, REFLECTOR_LENGTH, 5);
 
         // Ayaklar
-        sketch.translate(0, 0, -SUPPORT_HEIGHT / 2);
-        float legSpacing = REFLECTOR_WIDTH * 0.4f;
+        sketch.translate(0, 0, -supportHeight / 2);
+        float legSpacing = width * 0.4f;
         for (float xPos : new float[]{-legSpacing, legSpacing}) {
             for (float yPos : new float[]{-REFLECTOR_LENGTH * 0.4f, REFLECTOR_LENGTH * 0.4f}) {
                 sketch.pushMatrix();
                 sketch.translate(xPos, yPos, 0);
-                sketch.box(5, 5, SUPPORT_HEIGHT);
+                sketch.box(5, 5, supportHeight);
                 sketch.popMatrix();
             }
         }
         sketch.popMatrix();
     }
 
-    private void drawSunAndRays(SolarPosition sunPos) {
-        float sunDist = 1000;
-        float azimuth = sketch.radians((float) sunPos.getAzimuthAngle());
-        float altitude = sketch.radians((float) sunPos.getAltitudeAngle());
-
-        float sunX = -sunDist * sketch.cos(altitude) * sketch.sin(azimuth);
-        float sunY = sunDist * sketch.cos(altitude) * sketch.cos(azimuth);
-        float sunZ = sunDist * sketch.sin(altitude);
+    private void drawSunAndRays() {
+        float sunX = SUN_DISTANCE * sunVector[0];
+        float sunY = SUN_DISTANCE * sunVector[1];
+        float sunZ = SUN_DISTANCE * sunVector[2];
 
         // Draw sun
         sketch.pushMatrix();
@@ -287,18 +444,118 @@ public class FresnelRenderer implements IRenderer {
         sketch.sphere(30);
         sketch.popMatrix();
 
-        // Draw rays
+        // Draw rays, for at most DETAIL_LIMIT evenly picked mirrors
         sketch.stroke(255, 255, 0, 100);
         sketch.strokeWeight(2);
-        for (MirrorPosition pos : state.getMirrorPositions()) {
+        FieldLayout layout = state.getFieldLayout();
+        List<MirrorPosition> positions = state.getMirrorPositions();
+        int stride = Math.max(1, (positions.size() + DETAIL_LIMIT - 1) / DETAIL_LIMIT);
+        for (int p = 0; p < positions.size(); p += stride) {
+            MirrorPosition pos = positions.get(p);
+            int index = pos.getMirrorIndex();
+            if (index >= layout.getMirrorCount()) {
+                continue;
+            }
             float mirrorX = (float) pos.getXOffset();
+            float mirrorY = (float) layout.getY(index);
+            float mirrorZ = (float) pos.getHeight();
+            int receiver = layout.getReceiver(index);
             // Incident ray
-            sketch.line(mirrorX, 0, SUPPORT_HEIGHT + 2, sunX, sunY, sunZ);
+            sketch.line(mirrorX, mirrorY, mirrorZ, sunX, sunY, sunZ);
             // Reflected ray
-            sketch.line(mirrorX, 0, SUPPORT_HEIGHT + 2, 0, 0, RECEIVER_HEIGHT);
+            sketch.line(mirrorX, mirrorY, mirrorZ, (float) layout.getReceiverX(receiver), mirrorY,
+                    (float) layout.getReceiverHeight(receiver));
+        }
+    }
+
+    /**
+     * Daily sun path (and the optional ray fan) as retained shapes, rebuilt
+     * only when the day or the site changes
+     */
+    private void drawSunPath() {
+        long epochDay = EpochTime.epochDay(state.getCurrentTimeSeconds());
+        double latitude = state.getLatitude();
+        double longitude = state.getLongitude();
+        if (sunPath == null || epochDay != sunPathEpochDay || latitude != sunPathLatitude || longitude != sunPathLongitude) {
+            createSunPath(epochDay, latitude, longitude);
+        }
+        sketch.shape(sunPath);
+        if (rayFanVisible) {
+            sketch.shape(rayFan);
         }
     }
 
+    private void createSunPath(long epochDay, double latitude, double longitude) {
+        int day = EpochTime.dayOfYear(epochDay);
+        int samples = 24 * SUN_PATH_SAMPLES_PER_HOUR + 1;
+        int[] days = new int[samples];
+        double[] hours = new double[samples];
+        double[] altitude = new double[samples];
+        double[] azimuth = new double[samples];
+        double[] intensity = new double[samples];
+        Arrays.fill(days, day);
+        for (int i = 0; i < samples; i++) {
+            hours[i] = (double) i / SUN_PATH_SAMPLES_PER_HOUR;
+        }
+        SolarCalculator.forSite(latitude, longitude).calculateSolarPositions(OpticsKernels.getDefault(),
+                days, hours, altitude, azimuth, intensity, samples);
+
+        float[] x = new float[samples];
+        float[] y = new float[samples];
+        float[] z = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            float alt = PApplet.radians((float) altitude[i]);
+            float az = PApplet.radians((float) azimuth[i]);
+            x[i] = -SUN_DISTANCE * PApplet.cos(alt) * PApplet.sin(az);
+            y[i] = SUN_DISTANCE * PApplet.cos(alt) * PApplet.cos(az);
+            z[i] = SUN_DISTANCE * PApplet.sin(alt);
+        }
+
+        // Path segments above the horizon, with a dot at every full hour
+        sunPath = sketch.createShape(PApplet.GROUP);
+        PShape path = sketch.createShape();
+        path.beginShape(PApplet.LINES);
+        path.noFill();
+        path.stroke(255, 160, 0);
+        path.strokeWeight(2);
+        for (int i = 1; i < samples; i++) {
+            if (altitude[i - 1] > 0 && altitude[i] > 0) {
+                path.vertex(x[i - 1], y[i - 1], z[i - 1]);
+                path.vertex(x[i], y[i], z[i]);
+            }
+        }
+        path.endShape();
+        sunPath.addChild(path);
+
+        PShape hourMarks = sketch.createShape();
+        hourMarks.beginShape(PApplet.POINTS);
+        hourMarks.stroke(255, 100, 0);
+        hourMarks.strokeWeight(8);
+        for (int i = 0; i < samples; i += SUN_PATH_SAMPLES_PER_HOUR) {
+            if (altitude[i] > 0) {
+                hourMarks.vertex(x[i], y[i], z[i]);
+            }
+        }
+        hourMarks.endShape();
+        sunPath.addChild(hourMarks);
+
+        rayFan = sketch.createShape();
+        rayFan.beginShape(PApplet.LINES);
+        rayFan.stroke(255, 200, 0, 60);
+        rayFan.strokeWeight(1);
+        for (int i = 0; i < samples; i += RAY_FAN_STRIDE) {
+            if (altitude[i] > 0) {
+                rayFan.vertex(x[i], y[i], z[i]);
+                rayFan.vertex(0, 0, 0);
+            }
+        }
+        rayFan.endShape();
+
+        sunPathEpochDay = epochDay;
+        sunPathLatitude = latitude;
+        sunPathLongitude = longitude;
+    }
+
     @Override
     public void setupCamera() {
         // Camera için gerekli view ve transform ayarları
@@ -318,11 +575,12 @@ public class FresnelRenderer implements IRenderer {
         // PShape nesneleri Processing tarafından yönetildiği için
         // explicit dispose gerekmiyor. Garbage collector temizleyecektir.
         receiverTube = null;
-        if (reflectors != null) {
-            for (int i = 0; i < reflectors.length; i++) {
-                reflectors[i] = null;
-            }
-        }
-        reflectors = null;
+        fluxOverlay = null;
+        fluxOverlayMap = null;
+        reflectors.clear();
+        spanLayout = null;
+        sunPath = null;
+        rayFan = null;
+        sunVectorSource = null;
     }
 }